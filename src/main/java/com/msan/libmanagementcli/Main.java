@@ -1,10 +1,30 @@
 package com.msan.libmanagementcli;
 
+import com.msan.libmanagementcli.dao.BTreeStorageService;
 import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.dao.JournaledStorageService;
+import com.msan.libmanagementcli.dao.LsmStorageService;
+import com.msan.libmanagementcli.dao.ShardedStorageService;
 import com.msan.libmanagementcli.dao.StorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.service.CheckpointManager;
+import com.msan.libmanagementcli.service.LibraryFileMerger;
 import com.msan.libmanagementcli.service.LibraryService;
+import com.msan.libmanagementcli.service.MergeReport;
+import com.msan.libmanagementcli.service.SortedExporter;
+import com.msan.libmanagementcli.service.WriteBehindPersister;
 import com.msan.libmanagementcli.ui.CommandLineInterface;
+import com.msan.libmanagementcli.utils.AppOptions;
 import com.msan.libmanagementcli.utils.ConsoleLogger;
+import com.msan.libmanagementcli.utils.ExternalSorter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Classe principale per l'avvio dell'applicazione LibManagementCLI.
@@ -13,21 +33,36 @@ public class Main {
 
     /**
      * Punto di ingresso (entry point) dell'applicazione.
-     * @param args Argomenti da riga di comando (non utilizzati).
+     * @param args Argomenti da riga di comando, nella forma {@code --nome=valore}.
      */
     public static void main(String[] args) {
+        AppOptions options = AppOptions.parse(args);
 
         // --- Setup del Logger ---
         ConsoleLogger logger = ConsoleLogger.getInstance();
         logger.setLogLevel(ConsoleLogger.LogLevel.INFO);
         logger.logInfo("Applicazione LibManagementCLI in avvio...");
 
+        if (options.has("reshard")) {
+            System.exit(reshard(options) ? 0 : 1);
+        }
+        if (options.has("diff") || options.has("merge")) {
+            System.exit(compareFiles(options) ? 0 : 1);
+        }
+
         // --- Creazione Componenti (Dependency Injection) ---
-        StorageService storageService = new FileStorageService();
+        StorageService storageService = createStorageService(options);
         LibraryService libraryService = LibraryService.getInstance(storageService);
+        // Gli archivi B+tree e LSM vengono sempre aperti in modo differito: sono pensati per cataloghi più grandi dell'heap.
+        libraryService.setLazyLoading(options.has("lazy-load") || storageService instanceof BTreeStorageService
+                || storageService instanceof LsmStorageService);
+        libraryService.setOffHeap(options.has("off-heap"));
+        WriteBehindPersister persister = createPersister(options, libraryService);
+        CheckpointManager checkpointManager = createCheckpointManager(options, libraryService);
 
         // --- Avvio Interfaccia Utente ---
-        CommandLineInterface cli = new CommandLineInterface(libraryService);
+        CommandLineInterface cli = new CommandLineInterface(libraryService, persister, options.has("watch"),
+                new SortedExporter(libraryService, createFileStorageService(options), sortMemory(options), sortTempDirectory(options)));
 
         try {
             cli.start();
@@ -35,7 +70,220 @@ public class Main {
             logger.logError("Errore critico non gestito nell'esecuzione principale.", e);
             System.err.println("ERRORE CRITICO: L'applicazione si è interrotta a causa di un errore imprevisto.");
         } finally {
+            if (persister != null) {
+                persister.close();
+            }
+            if (checkpointManager != null) {
+                checkpointManager.close();
+            }
+            if (storageService instanceof JournaledStorageService) {
+                ((JournaledStorageService) storageService).close();
+            }
+            if (storageService instanceof BTreeStorageService) {
+                ((BTreeStorageService) storageService).close();
+            }
+            if (storageService instanceof LsmStorageService) {
+                ((LsmStorageService) storageService).close();
+            }
+            if (storageService instanceof ShardedStorageService) {
+                ((ShardedStorageService) storageService).close();
+            }
             logger.logInfo("Applicazione LibManagementCLI terminata.");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Crea lo {@link StorageService} richiesto dall'opzione {@code --storage}.
+     * Valori supportati: {@code csv} (default), {@code journal}, {@code btree}
+     * (con {@code --btree-page-size=byte}, almeno {@link BTreeStorageService#MIN_PAGE_SIZE}, e
+     * {@code --btree-cache=pagine}), {@code lsm}
+     * (con {@code --lsm-memtable=voci}) e {@code sharded} (con {@code --shards=N}).
+     */
+    private static StorageService createStorageService(AppOptions options) {
+        FileStorageService fileStorage = createFileStorageService(options);
+        // I checkpoint richiedono il journal: con --checkpoint è il tipo di storage predefinito.
+        String storageType = options.getString("storage", options.has("checkpoint") ? "journal" : "csv");
+        switch (storageType) {
+            case "journal":
+                // Con i checkpoint la compattazione sincrona resta solo come limite di sicurezza.
+                int defaultThreshold = options.has("checkpoint")
+                        ? Math.max(JournaledStorageService.DEFAULT_COMPACTION_THRESHOLD,
+                                2 * options.getInt("checkpoint-log", CheckpointManager.DEFAULT_MAX_JOURNAL_RECORDS))
+                        : JournaledStorageService.DEFAULT_COMPACTION_THRESHOLD;
+                int threshold = options.getInt("journal-compaction", defaultThreshold);
+                // Con --fsync=none anche i record del journal restano nella cache del sistema operativo.
+                return new JournaledStorageService(fileStorage, Math.max(1, threshold),
+                        fileStorage.getFsyncPolicy() != FileStorageService.FsyncPolicy.NONE);
+            case "btree":
+                int pageSize = options.getInt("btree-page-size", BTreeStorageService.DEFAULT_PAGE_SIZE);
+                int cachePages = options.getInt("btree-cache", BTreeStorageService.DEFAULT_CACHE_PAGES);
+                return new BTreeStorageService(Math.max(BTreeStorageService.MIN_PAGE_SIZE, pageSize), Math.max(16, cachePages));
+            case "lsm":
+                int memtableLimit = options.getInt("lsm-memtable", LsmStorageService.DEFAULT_MEMTABLE_LIMIT);
+                return new LsmStorageService(Math.max(1, memtableLimit));
+            case "sharded":
+                return new ShardedStorageService(fileStorage, Math.max(1, options.getInt("shards", ShardedStorageService.DEFAULT_SHARD_COUNT)));
+            case "csv":
+                return fileStorage;
+            default:
+                ConsoleLogger.getInstance().logWarning("Tipo di storage sconosciuto: " + storageType + ". Si usa il CSV.");
+                return fileStorage;
+        }
+    }
+
+    /**
+     * Crea il {@link FileStorageService} con la politica di sincronizzazione richiesta
+     * dalle opzioni {@code --fsync=none|on-save|per-batch} e {@code --fsync-batch=N}
+     * e con la compressione richiesta da {@code --compress}, {@code --compression-level=1..9}
+     * e {@code --io-buffer=byte}.
+     */
+    private static FileStorageService createFileStorageService(AppOptions options) {
+        String policyName = options.getString("fsync", "on-save");
+        FileStorageService.FsyncPolicy policy;
+        try {
+            policy = FileStorageService.FsyncPolicy.valueOf(policyName.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            ConsoleLogger.getInstance().logWarning("Politica di fsync sconosciuta: " + policyName + ". Si usa on-save.");
+            policy = FileStorageService.FsyncPolicy.ON_SAVE;
+        }
+        int batchSize = options.getInt("fsync-batch", FileStorageService.DEFAULT_FSYNC_BATCH_SIZE);
+        int level = options.getInt("compression-level", FileStorageService.DEFAULT_COMPRESSION_LEVEL);
+        int bufferSize = options.getInt("io-buffer", FileStorageService.DEFAULT_BUFFER_SIZE);
+        FileStorageService.CompressionOptions compression = new FileStorageService.CompressionOptions(
+                options.has("compress"), Math.min(9, Math.max(1, level)), Math.max(512, bufferSize));
+        return new FileStorageService(policy, Math.max(1, batchSize), compression);
+    }
+
+    /**
+     * Crea e avvia il salvataggio automatico se richiesto con {@code --write-behind}.
+     * I tempi si configurano con {@code --write-behind-delay=ms} e {@code --write-behind-max-delay=ms}.
+     * Uno shutdown hook garantisce il salvataggio delle modifiche in sospeso anche alla chiusura forzata.
+     * @return Il persister avviato, o null se non richiesto.
+     */
+    private static WriteBehindPersister createPersister(AppOptions options, LibraryService libraryService) {
+        if (!options.has("write-behind")) {
+            return null;
+        }
+        int debounce = Math.max(0, options.getInt("write-behind-delay", (int) WriteBehindPersister.DEFAULT_DEBOUNCE_MILLIS));
+        int maxDelay = Math.max(debounce, options.getInt("write-behind-max-delay", (int) WriteBehindPersister.DEFAULT_MAX_STALENESS_MILLIS));
+        WriteBehindPersister persister = new WriteBehindPersister(libraryService, debounce, maxDelay);
+        persister.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(persister::close, "write-behind-shutdown"));
+        return persister;
+    }
+
+    /**
+     * Crea e avvia i checkpoint periodici se richiesti con {@code --checkpoint}.
+     * La lunghezza massima del journal si configura con {@code --checkpoint-log=N} e l'intervallo
+     * con {@code --checkpoint-interval=ms}. Richiede lo storage {@code journal}.
+     * @return Il gestore avviato, o null se non richiesto o non supportato.
+     */
+    private static CheckpointManager createCheckpointManager(AppOptions options, LibraryService libraryService) {
+        if (!options.has("checkpoint")) {
+            return null;
+        }
+        if (!"journal".equals(options.getString("storage", "journal"))) {
+            ConsoleLogger.getInstance().logWarning("I checkpoint richiedono --storage=journal: opzione ignorata.");
+            return null;
+        }
+        int maxRecords = Math.max(1, options.getInt("checkpoint-log", CheckpointManager.DEFAULT_MAX_JOURNAL_RECORDS));
+        int interval = Math.max(1000, options.getInt("checkpoint-interval", (int) CheckpointManager.DEFAULT_INTERVAL_MILLIS));
+        CheckpointManager checkpointManager = new CheckpointManager(libraryService, maxRecords, interval);
+        checkpointManager.start();
+        return checkpointManager;
+    }
+
+    /**
+     * Strumento di ripartizione: {@code --reshard=<directory> --shards=N} riscrive un archivio
+     * a shard esistente con il nuovo numero di shard, senza avviare l'interfaccia.
+     * @return true se la ripartizione è riuscita.
+     */
+    private static boolean reshard(AppOptions options) {
+        String directory = options.getString("reshard", null);
+        int shards = options.getInt("shards", ShardedStorageService.DEFAULT_SHARD_COUNT);
+        if (directory == null || shards <= 0) {
+            System.err.println("Uso: --reshard=<directory dell'archivio> --shards=N (N > 0)");
+            return false;
+        }
+        try (ShardedStorageService storage = new ShardedStorageService(createFileStorageService(options), shards)) {
+            int books = storage.reshard(directory, shards);
+            System.out.println("Archivio " + directory + " ripartito su " + shards + " shard: " + books + " libri.");
+            return true;
+        } catch (LibraryException e) {
+            ConsoleLogger.getInstance().logError("Ripartizione di " + directory + " non riuscita.", e);
+            System.err.println("ERRORE: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Strumento di confronto e fusione di due file della libreria, senza avviare l'interfaccia:
+     * {@code --diff=<file> --with=<altro file>} stampa le differenze per ISBN (o le scrive in
+     * {@code --diff-output=<file>}), {@code --merge=<file> --with=<altro file> --output=<file>}
+     * fonde i due file con la politica {@code --on-conflict=left|right|fail} (default {@code fail}).
+     * La memoria usata si limita con {@code --sort-memory=libri}; i file temporanei vanno in {@code --sort-temp-dir}.
+     * @return true se l'operazione è riuscita.
+     */
+    private static boolean compareFiles(AppOptions options) {
+        boolean merge = options.has("merge");
+        String leftPath = options.getString(merge ? "merge" : "diff", null);
+        String rightPath = options.getString("with", null);
+        String outputPath = options.getString(merge ? "output" : "diff-output", null);
+        if (leftPath == null || rightPath == null || (merge && outputPath == null)) {
+            System.err.println("Uso: --diff=<file> --with=<altro file> [--diff-output=<file>]");
+            System.err.println("     --merge=<file> --with=<altro file> --output=<file> [--on-conflict=left|right|fail]");
+            return false;
+        }
+        LibraryFileMerger.ConflictPolicy policy;
+        String policyName = options.getString("on-conflict", "fail");
+        try {
+            policy = LibraryFileMerger.ConflictPolicy.valueOf(
+                    "fail".equalsIgnoreCase(policyName) ? "FAIL" : "KEEP_" + policyName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Politica dei conflitti sconosciuta: " + policyName + " (valori: left, right, fail).");
+            return false;
+        }
+        LibraryFileMerger merger = new LibraryFileMerger(createFileStorageService(options), sortMemory(options), sortTempDirectory(options));
+        try {
+            MergeReport report;
+            if (merge) {
+                report = merger.merge(leftPath, rightPath, outputPath, policy);
+            } else if (outputPath != null) {
+                try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.UTF_8)) {
+                    report = merger.diff(leftPath, rightPath, line -> {
+                        try {
+                            writer.write(line);
+                            writer.newLine();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            } else {
+                report = merger.diff(leftPath, rightPath, System.out::println);
+            }
+            System.out.println(report.describe());
+            return true;
+        } catch (LibraryException | IOException | UncheckedIOException e) {
+            ConsoleLogger.getInstance().logError("Confronto di " + leftPath + " e " + rightPath + " non riuscito.", e);
+            System.err.println("ERRORE: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Libri tenuti in memoria dagli ordinamenti esterni ({@code --sort-memory=libri}).
+     */
+    private static int sortMemory(AppOptions options) {
+        return Math.max(1, options.getInt("sort-memory", ExternalSorter.DEFAULT_MAX_ELEMENTS_IN_MEMORY));
+    }
+
+    /**
+     * Directory dei file temporanei degli ordinamenti esterni ({@code --sort-temp-dir=<directory>}),
+     * o null per quella di sistema.
+     */
+    private static Path sortTempDirectory(AppOptions options) {
+        String directory = options.getString("sort-temp-dir", null);
+        return directory != null ? Paths.get(directory) : null;
+    }
+}
@@ -0,0 +1,396 @@
+package com.msan.libmanagementcli.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * B+tree su {@link PageFile} con chiavi e valori binari, ordinati per confronto dei byte senza segno.
+ * <p>
+ * Ogni nodo occupa una pagina. Le foglie contengono le coppie chiave/valore e sono collegate tra loro
+ * in ordine di chiave, per le scansioni ordinate; i nodi interni contengono le chiavi separatrici.
+ * La radice è registrata nell'intestazione del file, nello slot indicato alla creazione, così più alberi
+ * possono condividere lo stesso file.
+ * <p>
+ * Le rimozioni non ribilanciano l'albero: le foglie possono restare semivuote fino alla successiva
+ * riscrittura completa del file. È lo stesso compromesso di molti motori di database, dato che
+ * i cataloghi crescono molto più spesso di quanto si riducano.
+ */
+final class BPlusTree {
+
+    /** Risultato della visita di una coppia durante una scansione. */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * @return false per interrompere la scansione.
+         */
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NODE_HEADER_SIZE = 9; // tipo, numero di chiavi, foglia successiva / primo figlio
+    private static final int NO_PAGE = 0;
+
+    private final PageFile file;
+    private final int rootSlot;
+    /** Dimensione massima di chiave più valore, perché ogni pagina possa contenerne almeno quattro. */
+    private final int maxEntrySize;
+
+    /**
+     * Nodo decodificato da una pagina. Per le foglie {@code children} è vuota e {@code next}
+     * è la foglia successiva; per i nodi interni {@code values} è vuota.
+     */
+    private static final class Node {
+        private final boolean leaf;
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<byte[]> values = new ArrayList<>();
+        private final List<Integer> children = new ArrayList<>();
+        private int next = NO_PAGE;
+
+        private Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        private int encodedSize() {
+            int size = NODE_HEADER_SIZE;
+            for (int i = 0; i < keys.size(); i++) {
+                size += leaf ? 4 + keys.get(i).length + values.get(i).length : 6 + keys.get(i).length;
+            }
+            return size;
+        }
+    }
+
+    /** Separatore e nuova pagina prodotti dalla divisione di un nodo. */
+    private static final class Split {
+        private final byte[] separator;
+        private final int rightPage;
+
+        private Split(byte[] separator, int rightPage) {
+            this.separator = separator;
+            this.rightPage = rightPage;
+        }
+    }
+
+    BPlusTree(PageFile file, int rootSlot) {
+        this.file = file;
+        this.rootSlot = rootSlot;
+        this.maxEntrySize = (file.getPageSize() - NODE_HEADER_SIZE) / 4 - 6;
+    }
+
+    int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Cerca il valore associato a una chiave.
+     * @return Il valore, o null se la chiave non è presente.
+     */
+    byte[] get(byte[] key) throws IOException {
+        int pageId = file.getRoot(rootSlot);
+        if (pageId == NO_PAGE) {
+            return null;
+        }
+        byte[] page = file.read(descend(pageId, key, null));
+        // Ricerca direttamente sui byte della foglia, senza decodificarla.
+        int count = readInt(page, 1);
+        int position = NODE_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            int keyLength = readShort(page, position);
+            int comparison = Arrays.compareUnsigned(page, position + 2, position + 2 + keyLength, key, 0, key.length);
+            position += 2 + keyLength;
+            int valueLength = readShort(page, position);
+            if (comparison == 0) {
+                return Arrays.copyOfRange(page, position + 2, position + 2 + valueLength);
+            }
+            if (comparison > 0) {
+                return null;
+            }
+            position += 2 + valueLength;
+        }
+        return null;
+    }
+
+    /**
+     * Inserisce o sostituisce il valore associato a una chiave.
+     * @return Il valore precedente, o null se la chiave era nuova.
+     */
+    byte[] put(byte[] key, byte[] value) throws IOException {
+        if (key.length + value.length > maxEntrySize) {
+            throw new IllegalArgumentException("Voce troppo grande per una pagina: " + (key.length + value.length)
+                    + " byte (massimo " + maxEntrySize + ").");
+        }
+        int root = file.getRoot(rootSlot);
+        if (root == NO_PAGE) {
+            root = file.allocate();
+            store(root, new Node(true));
+            file.setRoot(rootSlot, root);
+        }
+        List<Integer> path = new ArrayList<>();
+        int leafId = descend(root, key, path);
+        Node leaf = load(leafId);
+        byte[] previous = null;
+        int position = search(leaf.keys, key);
+        if (position >= 0) {
+            previous = leaf.values.set(position, value);
+        } else {
+            leaf.keys.add(-position - 1, key);
+            leaf.values.add(-position - 1, value);
+        }
+        Split split = storeOrSplit(leafId, leaf);
+        // Risale il percorso solo finché i nodi si dividono.
+        for (int level = path.size() - 1; level >= 0 && split != null; level--) {
+            int parentId = path.get(level);
+            Node parent = load(parentId);
+            int index = childIndex(parent, key);
+            parent.keys.add(index, split.separator);
+            parent.children.add(index + 1, split.rightPage);
+            split = storeOrSplit(parentId, parent);
+        }
+        if (split != null) {
+            Node newRoot = new Node(false);
+            newRoot.children.add(root);
+            newRoot.keys.add(split.separator);
+            newRoot.children.add(split.rightPage);
+            int newRootId = file.allocate();
+            store(newRootId, newRoot);
+            file.setRoot(rootSlot, newRootId);
+        }
+        return previous;
+    }
+
+    /**
+     * Rimuove una chiave.
+     * @return Il valore rimosso, o null se la chiave non era presente.
+     */
+    byte[] remove(byte[] key) throws IOException {
+        int pageId = file.getRoot(rootSlot);
+        if (pageId == NO_PAGE) {
+            return null;
+        }
+        pageId = descend(pageId, key, null);
+        Node node = load(pageId);
+        int position = search(node.keys, key);
+        if (position < 0) {
+            return null;
+        }
+        node.keys.remove(position);
+        byte[] removed = node.values.remove(position);
+        store(pageId, node);
+        return removed;
+    }
+
+    /**
+     * Visita in ordine di chiave tutte le coppie, partendo dalla foglia più a sinistra.
+     * Tiene in memoria una sola foglia alla volta.
+     */
+    void scan(EntryVisitor visitor) throws IOException {
+        int pageId = file.getRoot(rootSlot);
+        if (pageId == NO_PAGE) {
+            return;
+        }
+        Node node = load(pageId);
+        while (!node.leaf) {
+            pageId = node.children.get(0);
+            node = load(pageId);
+        }
+        while (true) {
+            for (int i = 0; i < node.keys.size(); i++) {
+                if (!visitor.visit(node.keys.get(i), node.values.get(i))) {
+                    return;
+                }
+            }
+            if (node.next == NO_PAGE) {
+                return;
+            }
+            node = load(node.next);
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    /**
+     * Scende dalla pagina indicata fino alla foglia che può contenere la chiave, confrontando
+     * le chiavi direttamente sui byte dei nodi interni senza decodificarli.
+     * @param path Se non nullo, riceve le pagine dei nodi interni attraversati, dalla radice in giù.
+     * @return La pagina della foglia.
+     */
+    private int descend(int pageId, byte[] key, List<Integer> path) throws IOException {
+        byte[] page = file.read(pageId);
+        while (page[0] == INTERNAL) {
+            if (path != null) {
+                path.add(pageId);
+            }
+            int count = readInt(page, 1);
+            int child = readInt(page, 5);
+            int position = NODE_HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                int keyLength = readShort(page, position);
+                if (Arrays.compareUnsigned(page, position + 2, position + 2 + keyLength, key, 0, key.length) > 0) {
+                    break;
+                }
+                position += 2 + keyLength;
+                child = readInt(page, position);
+                position += 4;
+            }
+            pageId = child;
+            page = file.read(pageId);
+        }
+        if (page[0] != LEAF) {
+            throw new IOException("Pagina " + pageId + " non valida (tipo " + page[0] + ").");
+        }
+        return pageId;
+    }
+
+    /**
+     * Scrive il nodo se sta in una pagina, altrimenti lo divide.
+     * @return La divisione da propagare al genitore, o null.
+     */
+    private Split storeOrSplit(int pageId, Node node) throws IOException {
+        if (node.encodedSize() <= file.getPageSize()) {
+            store(pageId, node);
+            return null;
+        }
+        return split(pageId, node);
+    }
+
+    /**
+     * Divide un nodo troppo grande a metà dei byte occupati.
+     */
+    private Split split(int pageId, Node node) throws IOException {
+        int half = node.encodedSize() / 2;
+        int size = NODE_HEADER_SIZE;
+        int middle = 0;
+        while (middle < node.keys.size() - 1 && size < half) {
+            size += node.leaf ? 4 + node.keys.get(middle).length + node.values.get(middle).length
+                    : 6 + node.keys.get(middle).length;
+            middle++;
+        }
+        middle = Math.max(1, middle);
+
+        Node right = new Node(node.leaf);
+        byte[] separator;
+        if (node.leaf) {
+            right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+            right.values.addAll(node.values.subList(middle, node.values.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.values.subList(middle, node.values.size()).clear();
+            separator = right.keys.get(0);
+        } else {
+            // La chiave centrale sale al genitore e non resta in nessuno dei due nodi.
+            separator = node.keys.get(middle);
+            right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+            right.children.addAll(node.children.subList(middle + 1, node.children.size()));
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.children.subList(middle + 1, node.children.size()).clear();
+        }
+        int rightPage = file.allocate();
+        if (node.leaf) {
+            right.next = node.next;
+            node.next = rightPage;
+        }
+        store(rightPage, right);
+        store(pageId, node);
+        return new Split(separator, rightPage);
+    }
+
+    /**
+     * Indice del figlio che può contenere la chiave: il numero di separatori minori o uguali alla chiave.
+     */
+    private static int childIndex(Node node, byte[] key) {
+        int low = 0;
+        int high = node.keys.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(node.keys.get(mid), key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Ricerca binaria della chiave, con la stessa convenzione di {@link java.util.Collections#binarySearch}.
+     */
+    private static int search(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(keys.get(mid), key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private Node load(int pageId) throws IOException {
+        ByteBuffer page = ByteBuffer.wrap(file.read(pageId));
+        byte type = page.get();
+        if (type != LEAF && type != INTERNAL) {
+            throw new IOException("Pagina " + pageId + " non valida (tipo " + type + ").");
+        }
+        Node node = new Node(type == LEAF);
+        int count = page.getInt();
+        int link = page.getInt();
+        if (node.leaf) {
+            node.next = link;
+            for (int i = 0; i < count; i++) {
+                node.keys.add(readBytes(page));
+                node.values.add(readBytes(page));
+            }
+        } else {
+            node.children.add(link);
+            for (int i = 0; i < count; i++) {
+                node.keys.add(readBytes(page));
+                node.children.add(page.getInt());
+            }
+        }
+        return node;
+    }
+
+    private void store(int pageId, Node node) throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(file.getPageSize());
+        page.put(node.leaf ? LEAF : INTERNAL);
+        page.putInt(node.keys.size());
+        page.putInt(node.leaf ? node.next : node.children.get(0));
+        for (int i = 0; i < node.keys.size(); i++) {
+            writeBytes(page, node.keys.get(i));
+            if (node.leaf) {
+                writeBytes(page, node.values.get(i));
+            } else {
+                page.putInt(node.children.get(i + 1));
+            }
+        }
+        file.write(pageId, page.array());
+    }
+
+    private static int readInt(byte[] page, int position) {
+        return ((page[position] & 0xff) << 24) | ((page[position + 1] & 0xff) << 16)
+                | ((page[position + 2] & 0xff) << 8) | (page[position + 3] & 0xff);
+    }
+
+    private static int readShort(byte[] page, int position) {
+        return ((page[position] & 0xff) << 8) | (page[position + 1] & 0xff);
+    }
+
+    private static byte[] readBytes(ByteBuffer page) {
+        byte[] bytes = new byte[Short.toUnsignedInt(page.getShort())];
+        page.get(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(ByteBuffer page, byte[] bytes) {
+        page.putShort((short) bytes.length);
+        page.put(bytes);
+    }
+}
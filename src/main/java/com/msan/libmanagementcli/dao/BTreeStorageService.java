@@ -0,0 +1,365 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Implementazione di {@link StorageService} su un file a pagine che contiene tre B+tree:
+ * quello principale per ISBN, con i dati dei libri, e due secondari per titolo e autore.
+ * <p>
+ * Le pagine lette passano da una cache LRU di dimensione fissa, quindi la memoria usata non dipende
+ * dalla dimensione del catalogo: ricerche per ISBN e scansioni ordinate funzionano anche su file
+ * molto più grandi dell'heap. Il salvataggio completo costruisce un nuovo file e lo rinomina sul
+ * precedente; il salvataggio delle sole modifiche ({@link DeltaStorageService}) aggiorna le pagine sul posto,
+ * protetto dal double-write buffer di {@link PageFile}.
+ * <p>
+ * I file restano aperti tra una chiamata e l'altra per sfruttare la cache; {@link #close()} li chiude.
+ */
+public class BTreeStorageService implements DeltaStorageService, OrderedStorageService, AutoCloseable {
+
+    /** Dimensione di default delle pagine, in byte. */
+    public static final int DEFAULT_PAGE_SIZE = 8192;
+    /**
+     * Dimensione minima delle pagine, in byte. Ogni libro (ISBN più riga CSV, in UTF-8) deve stare in circa
+     * un quarto di pagina meno 8 byte: circa 1000 byte con il minimo, circa 2000 con il default.
+     */
+    public static final int MIN_PAGE_SIZE = PageFile.MIN_PAGE_SIZE;
+    /** Numero di default di pagine in cache (8 MB con le pagine di default). */
+    public static final int DEFAULT_CACHE_PAGES = 1024;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private static final int ISBN_TREE = 0;
+    private static final int TITLE_TREE = 1;
+    private static final int AUTHOR_TREE = 2;
+    /** Separa il testo normalizzato dall'ISBN nelle chiavi degli alberi secondari. */
+    private static final byte KEY_SEPARATOR = 0;
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final int pageSize;
+    private final int cachePages;
+    private final Map<Path, PageFile> openFiles = new HashMap<>();
+
+    /**
+     * Crea il servizio con pagine e cache di dimensione di default.
+     */
+    public BTreeStorageService() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_CACHE_PAGES);
+    }
+
+    /**
+     * Crea il servizio.
+     * @param pageSize Dimensione delle pagine dei file nuovi, in byte (almeno {@link #MIN_PAGE_SIZE}).
+     * @param cachePages Numero massimo di pagine tenute in cache per ogni file aperto.
+     * @throws IllegalArgumentException se i parametri non sono validi.
+     */
+    public BTreeStorageService(int pageSize, int cachePages) {
+        if (pageSize < MIN_PAGE_SIZE || cachePages <= 0) {
+            throw new IllegalArgumentException("La dimensione delle pagine deve essere almeno " + MIN_PAGE_SIZE
+                    + " byte e la cache positiva.");
+        }
+        this.pageSize = pageSize;
+        this.cachePages = cachePages;
+    }
+
+    // --- Metodi di StorageService ---
+
+    @Override
+    public void saveBooks(List<Book> books, String filePath) throws LibraryException {
+        saveBooks(books.iterator(), filePath);
+    }
+
+    /**
+     * Costruisce un nuovo file con tutti i libri e lo sostituisce in modo atomico al precedente.
+     */
+    @Override
+    public synchronized void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
+        logger.logInfo("Salvataggio completo dell'archivio B+tree: " + filePath);
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path tempFile = null;
+        try {
+            closeFile(target);
+            tempFile = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+            Files.delete(tempFile); // Il file a pagine viene creato vuoto dall'apertura.
+            long written = 0;
+            try (PageFile file = PageFile.open(tempFile, pageSize, cachePages, true)) {
+                while (books.hasNext()) {
+                    Book book = books.next();
+                    if (book != null && putBook(file, book)) {
+                        written++;
+                    }
+                }
+                file.flush(true);
+            }
+            Files.deleteIfExists(PageFile.doubleWritePathFor(target));
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.logInfo("Salvataggio completato: " + written + " libri scritti.");
+        } catch (IOException e) {
+            logger.logError("Impossibile salvare l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante il salvataggio su file: " + filePath, e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.logWarning("Impossibile eliminare il file temporaneo: " + tempFile);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Book> loadBooks(String filePath) throws LibraryException {
+        List<Book> loadedBooks = new ArrayList<>();
+        loadBooks(filePath, loadedBooks::add);
+        return loadedBooks;
+    }
+
+    /**
+     * Passa al consumer tutti i libri in ordine di ISBN.
+     */
+    @Override
+    public void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            logger.logWarning("File non trovato: " + filePath + ". Si parte con una libreria vuota.");
+            return;
+        }
+        scan(filePath, Order.ISBN, sink);
+    }
+
+    // --- Metodi di DeltaStorageService ---
+
+    /**
+     * Applica le modifiche sul posto e le rende persistenti con un solo flush.
+     */
+    @Override
+    public synchronized void saveChanges(List<Book> changedBooks, Set<String> removedIsbns, String filePath)
+            throws LibraryException {
+        try {
+            PageFile file = openFile(filePath);
+            for (String isbn : removedIsbns) {
+                removeBook(file, isbn);
+            }
+            for (Book book : changedBooks) {
+                putBook(file, book);
+            }
+            file.flush(true);
+            logger.logInfo("Modifiche salvate sull'archivio " + filePath + ": " + changedBooks.size()
+                    + " libri aggiunti/modificati, " + removedIsbns.size() + " rimossi.");
+        } catch (IOException e) {
+            closeQuietly(Paths.get(filePath).toAbsolutePath());
+            logger.logError("Impossibile aggiornare l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante il salvataggio delle modifiche su: " + filePath, e);
+        }
+    }
+
+    // --- Metodi di OrderedStorageService ---
+
+    @Override
+    public synchronized Optional<Book> findBook(String filePath, String isbn) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return Optional.empty();
+        }
+        try {
+            byte[] record = new BPlusTree(openFile(filePath), ISBN_TREE).get(isbn.getBytes(StandardCharsets.UTF_8));
+            return record == null ? Optional.empty() : Optional.of(decode(record));
+        } catch (IOException e) {
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+    }
+
+    /**
+     * Scansiona l'albero richiesto; per titolo e autore ogni voce viene completata con una ricerca per ISBN.
+     * Le voci non decodificabili vengono saltate con un avviso.
+     */
+    @Override
+    public synchronized void scan(String filePath, Order order, Consumer<? super Book> sink) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return;
+        }
+        try {
+            PageFile file = openFile(filePath);
+            BPlusTree primary = new BPlusTree(file, ISBN_TREE);
+            if (order == Order.ISBN) {
+                primary.scan((key, record) -> emit(record, sink));
+            } else {
+                BPlusTree secondary = new BPlusTree(file, order == Order.TITLE ? TITLE_TREE : AUTHOR_TREE);
+                secondary.scan((key, ignored) -> emit(primary.get(isbnOf(key)), sink));
+            }
+        } catch (IOException e) {
+            logger.logError("Impossibile leggere l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+    }
+
+    @Override
+    public synchronized long count(String filePath) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return 0;
+        }
+        try {
+            return openFile(filePath).getCounter();
+        } catch (IOException e) {
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+    }
+
+    /**
+     * Chiude tutti i file aperti.
+     */
+    @Override
+    public synchronized void close() {
+        for (Path path : new ArrayList<>(openFiles.keySet())) {
+            closeQuietly(path);
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    private PageFile openFile(String filePath) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        PageFile file = openFiles.get(path);
+        if (file == null) {
+            file = PageFile.open(path, pageSize, cachePages, false);
+            openFiles.put(path, file);
+        }
+        return file;
+    }
+
+    private void closeFile(Path path) throws IOException {
+        PageFile file = openFiles.remove(path);
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private void closeQuietly(Path path) {
+        try {
+            closeFile(path);
+        } catch (IOException e) {
+            logger.logWarning("Impossibile chiudere l'archivio: " + path);
+        }
+    }
+
+    /**
+     * Inserisce o sostituisce un libro in tutti e tre gli alberi.
+     * @return true se il libro era nuovo.
+     */
+    private static boolean putBook(PageFile file, Book book) throws IOException {
+        BPlusTree primary = new BPlusTree(file, ISBN_TREE);
+        byte[] key = book.getIsbn().getBytes(StandardCharsets.UTF_8);
+        byte[] record = book.toCsvString().getBytes(StandardCharsets.UTF_8);
+        byte[] titleKey = secondaryKey(book.getTitle(), key);
+        byte[] authorKey = secondaryKey(book.getAuthor(), key);
+        int maxEntrySize = primary.getMaxEntrySize();
+        if (key.length + record.length > maxEntrySize || titleKey.length > maxEntrySize || authorKey.length > maxEntrySize) {
+            throw new IOException("Libro troppo grande per una pagina dell'archivio (ISBN " + book.getIsbn() + ").");
+        }
+
+        byte[] previous = primary.put(key, record);
+        if (previous != null) {
+            removeSecondaryKeys(file, previous, key);
+        } else {
+            file.setCounter(file.getCounter() + 1);
+        }
+        new BPlusTree(file, TITLE_TREE).put(titleKey, NO_VALUE);
+        new BPlusTree(file, AUTHOR_TREE).put(authorKey, NO_VALUE);
+        return previous == null;
+    }
+
+    private static void removeBook(PageFile file, String isbn) throws IOException {
+        byte[] key = isbn.getBytes(StandardCharsets.UTF_8);
+        byte[] previous = new BPlusTree(file, ISBN_TREE).remove(key);
+        if (previous != null) {
+            removeSecondaryKeys(file, previous, key);
+            file.setCounter(file.getCounter() - 1);
+        }
+    }
+
+    private static void removeSecondaryKeys(PageFile file, byte[] record, byte[] key) throws IOException {
+        try {
+            Book previous = decode(record);
+            new BPlusTree(file, TITLE_TREE).remove(secondaryKey(previous.getTitle(), key));
+            new BPlusTree(file, AUTHOR_TREE).remove(secondaryKey(previous.getAuthor(), key));
+        } catch (InvalidBookDataException e) {
+            logger.logWarning("Voce precedente non leggibile per l'ISBN " + new String(key, StandardCharsets.UTF_8)
+                    + ": indici secondari non aggiornati.");
+        }
+    }
+
+    /**
+     * Chiave secondaria: testo normalizzato, separatore, ISBN. L'ISBN rende unica la chiave
+     * e ordina tra loro i libri con lo stesso titolo o autore.
+     */
+    private static byte[] secondaryKey(String text, byte[] isbn) {
+        byte[] folded = fold(text).getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[folded.length + 1 + isbn.length];
+        System.arraycopy(folded, 0, key, 0, folded.length);
+        key[folded.length] = KEY_SEPARATOR;
+        System.arraycopy(isbn, 0, key, folded.length + 1, isbn.length);
+        return key;
+    }
+
+    private static byte[] isbnOf(byte[] secondaryKey) {
+        int separator = secondaryKey.length - 1;
+        while (separator >= 0 && secondaryKey[separator] != KEY_SEPARATOR) {
+            separator--;
+        }
+        byte[] isbn = new byte[secondaryKey.length - separator - 1];
+        System.arraycopy(secondaryKey, separator + 1, isbn, 0, isbn.length);
+        return isbn;
+    }
+
+    /**
+     * Normalizza il testo carattere per carattere come {@link String#CASE_INSENSITIVE_ORDER},
+     * così l'ordine delle chiavi coincide con quello delle strategie di ordinamento.
+     */
+    private static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    private static boolean emit(byte[] record, Consumer<? super Book> sink) {
+        if (record == null) {
+            return true;
+        }
+        try {
+            sink.accept(decode(record));
+        } catch (InvalidBookDataException e) {
+            logger.logWarning("Voce dell'archivio saltata (dati non validi): " + e.getMessage());
+        }
+        return true;
+    }
+
+    private static Book decode(byte[] record) throws InvalidBookDataException {
+        return Book.fromCsvString(new String(record, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,96 @@
+package com.msan.libmanagementcli.dao;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Filtro di Bloom sulle chiavi testuali: risponde "forse presente" o "sicuramente assente".
+ * Con 10 bit per chiave e 7 funzioni di hash la probabilità di falso positivo è circa dell'1%.
+ * Le funzioni di hash sono ricavate da due hash a 64 bit con la tecnica del double hashing.
+ */
+final class BloomFilter {
+
+    /** Bit per chiave usati da {@link #forExpectedKeys(int)}. */
+    static final int BITS_PER_KEY = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] bits;
+    private final int hashFunctions;
+
+    private BloomFilter(long[] bits, int hashFunctions) {
+        this.bits = bits;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Crea un filtro vuoto dimensionato per il numero di chiavi previsto.
+     */
+    static BloomFilter forExpectedKeys(int expectedKeys) {
+        long bitCount = Math.max(64L, (long) expectedKeys * BITS_PER_KEY);
+        return new BloomFilter(new long[(int) ((bitCount + 63) / 64)], HASH_FUNCTIONS);
+    }
+
+    void add(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false se la chiave non è stata sicuramente aggiunta, true se potrebbe esserlo.
+     */
+    boolean mightContain(String key) {
+        long hash1 = hash(key, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(hashFunctions);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(DataInput in) throws IOException {
+        int hashFunctions = in.readInt();
+        int words = in.readInt();
+        if (hashFunctions <= 0 || words <= 0) {
+            throw new IOException("Filtro di Bloom non valido.");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashFunctions);
+    }
+
+    /**
+     * Hash FNV-1a a 64 bit dei byte UTF-8 della chiave, rimescolato con il seme indicato.
+     */
+    private static long hash(String key, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,247 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.utils.ExternalSorter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Indice ISBN → posizione in byte della riga del libro nel file dati, salvato in un file
+ * accanto a quello dei dati ({@code <file>.idx}).
+ * <p>
+ * Formato: una riga {@code <ISBN>,<posizione>} per libro, ordinate per ISBN, seguite dalla riga di controllo
+ * {@code #index2,<voci>,<dimensione file dati>,<crc32 del file dati>}. L'indice è valido solo se dimensione
+ * e checksum del file dati corrispondono a quelli attuali: un indice rimasto indietro (es. crash tra la
+ * rinomina del file dati e quella dell'indice) viene quindi scartato.
+ * <p>
+ * L'indice non viene letto in memoria: il file viene mappato e ogni ricerca è una ricerca binaria sulle righe,
+ * quindi l'apertura legge solo la riga di controllo. Una voce danneggiata viene segnalata alla ricerca.
+ * Gli indici nel formato precedente (non ordinati, riga {@code #index,}) vengono ignorati.
+ */
+public final class BookOffsetIndex {
+
+    /** Suffisso del file di indice, aggiunto al percorso del file dati. */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    private static final String FOOTER_PREFIX = "#index2,";
+    private static final char DELIMITER = ',';
+
+    /** Contenuto del file di indice, voci e riga di controllo. */
+    private final ByteBuffer entries;
+    /** Posizione della riga di controllo, cioè fine delle voci. */
+    private final int entriesEnd;
+    private final int size;
+
+    private BookOffsetIndex(ByteBuffer entries, int entriesEnd, int size) {
+        this.entries = entries;
+        this.entriesEnd = entriesEnd;
+        this.size = size;
+    }
+
+    /**
+     * Restituisce la posizione della riga del libro con l'ISBN indicato.
+     * Se l'ISBN compare più volte vale la prima riga del file dati, come nel caricamento completo.
+     * @param isbn L'ISBN cercato.
+     * @return La posizione in byte, o null se l'ISBN non è nel file.
+     * @throws LibraryException se la voce trovata è danneggiata.
+     */
+    public Long getOffset(String isbn) throws LibraryException {
+        // Ricerca della prima voce con ISBN >= a quello cercato; low è sempre l'inizio di una riga.
+        int low = 0;
+        int high = entriesEnd;
+        while (low < high) {
+            int lineStart = lineStartBefore(low + (high - low) / 2, low);
+            int lineEnd = lineEnd(lineStart);
+            if (keyOf(lineStart, lineEnd).compareTo(isbn) < 0) {
+                low = lineEnd + 1;
+            } else {
+                high = lineStart;
+            }
+        }
+        if (low >= entriesEnd) {
+            return null;
+        }
+        int lineEnd = lineEnd(low);
+        String line = decode(low, lineEnd);
+        int separator = line.lastIndexOf(DELIMITER);
+        if (!line.substring(0, Math.max(0, separator)).equals(isbn)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(line.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new LibraryException("Voce dell'indice danneggiata per l'ISBN " + isbn + ".", e);
+        }
+    }
+
+    /**
+     * Indica se il file contiene un libro con l'ISBN indicato.
+     * @throws LibraryException se la voce trovata è danneggiata.
+     */
+    public boolean contains(String isbn) throws LibraryException {
+        return getOffset(isbn) != null;
+    }
+
+    /**
+     * Restituisce il numero di libri indicizzati.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il percorso del file di indice associato a un file dati.
+     * @param filePath Il percorso del file dati.
+     * @return Il percorso dell'indice.
+     */
+    public static Path indexPathFor(String filePath) {
+        return Paths.get(filePath + INDEX_SUFFIX);
+    }
+
+    /**
+     * Mappa e valida un file di indice, leggendone solo la riga di controllo.
+     * @param indexPath Il file di indice.
+     * @param dataSize La dimensione attuale del file dati.
+     * @param dataChecksum Il checksum dichiarato nella riga di controllo del file dati.
+     * @return L'indice, o vuoto se non valido per il file dati (o troppo grande per essere mappato).
+     * @throws IOException se il file di indice non è leggibile.
+     */
+    static Optional<BookOffsetIndex> read(Path indexPath, long dataSize, long dataChecksum) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize == 0 || fileSize > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize); // Resta valida dopo la chiusura.
+        }
+        int end = buffer.limit();
+        if (buffer.get(end - 1) != '\n') {
+            return Optional.empty(); // Riga di controllo mancante o troncata.
+        }
+        int footerStart = end - 1;
+        while (footerStart > 0 && buffer.get(footerStart - 1) != '\n') {
+            footerStart--;
+        }
+        BookOffsetIndex index = new BookOffsetIndex(buffer, footerStart, 0);
+        String footer = index.decode(footerStart, end - 1);
+        if (!footer.startsWith(FOOTER_PREFIX)) {
+            return Optional.empty();
+        }
+        String[] parts = footer.substring(FOOTER_PREFIX.length()).split(",");
+        try {
+            boolean valid = parts.length == 3
+                    && Long.parseLong(parts[1]) == dataSize
+                    && Long.parseLong(parts[2], 16) == dataChecksum;
+            int entries = valid ? Integer.parseInt(parts[0]) : -1;
+            return entries >= 0 ? Optional.of(new BookOffsetIndex(buffer, footerStart, entries)) : Optional.empty();
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    /** Inizio della riga che contiene la posizione indicata, senza scendere sotto {@code floor}. */
+    private int lineStartBefore(int position, int floor) {
+        while (position > floor && entries.get(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    /** Posizione del ritorno a capo che chiude la riga. */
+    private int lineEnd(int lineStart) {
+        int position = lineStart;
+        while (position < entriesEnd && entries.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private String keyOf(int lineStart, int lineEnd) {
+        String line = decode(lineStart, lineEnd);
+        int separator = line.lastIndexOf(DELIMITER);
+        return separator < 0 ? line : line.substring(0, separator);
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = entries.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Confronta due voci per ISBN, senza estrarre le sottostringhe.
+     */
+    private static int compareEntries(String first, String second) {
+        int firstLength = first.lastIndexOf(DELIMITER);
+        int secondLength = second.lastIndexOf(DELIMITER);
+        int common = Math.min(firstLength, secondLength);
+        for (int i = 0; i < common; i++) {
+            int difference = first.charAt(i) - second.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Scrittura in streaming di un file di indice, in parallelo a quella del file dati.
+     * Le voci vengono ordinate per ISBN con un {@link ExternalSorter}, quindi la memoria usata
+     * non dipende dal numero di libri.
+     */
+    static final class IndexWriter implements Closeable {
+        private final Path indexPath;
+        private final ExternalSorter<String> sorter;
+
+        IndexWriter(Path indexPath) {
+            this.indexPath = indexPath;
+            this.sorter = ExternalSorter.ofLines(BookOffsetIndex::compareEntries,
+                    ExternalSorter.DEFAULT_MAX_ELEMENTS_IN_MEMORY, indexPath.toAbsolutePath().getParent());
+        }
+
+        void add(String isbn, long offset) throws IOException {
+            sorter.add(isbn + DELIMITER + offset);
+        }
+
+        /**
+         * Scrive le voci ordinate e la riga di controllo con i dati del file appena scritto.
+         */
+        void finish(long dataSize, long dataChecksum) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8)) {
+                Iterator<String> lines = sorter.sortedIterator();
+                while (lines.hasNext()) {
+                    writer.write(lines.next());
+                    writer.write('\n');
+                }
+                writer.write(FOOTER_PREFIX + sorter.getElementCount() + DELIMITER + dataSize
+                        + DELIMITER + Long.toHexString(dataChecksum));
+                writer.write('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void close() {
+            sorter.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.Iterator;
+
+/**
+ * Estensione di {@link MutationJournal} per gli storage che accettano checkpoint scritti a partire
+ * da un'istantanea in memoria, senza bloccare le modifiche durante la scrittura.
+ * <p>
+ * Un checkpoint avviene in due fasi: {@link #beginCheckpoint} chiude il journal corrente (le modifiche
+ * successive finiscono in uno nuovo) e va chiamato nello stesso istante in cui si cattura l'istantanea;
+ * {@link #completeCheckpoint} scrive l'istantanea come nuova base ed elimina il journal chiuso.
+ * Al caricamento vengono riapplicati soltanto i journal successivi all'ultimo checkpoint completato.
+ */
+public interface CheckpointingJournal extends MutationJournal {
+
+    /**
+     * Restituisce il numero di record del journal corrente, cioè le modifiche da riapplicare
+     * oltre a quelle dell'eventuale checkpoint in corso.
+     *
+     * @param filePath Il percorso del file dati.
+     * @return Il numero di record nel journal corrente.
+     * @throws LibraryException Se il journal non è leggibile.
+     */
+    int getJournalSize(String filePath) throws LibraryException;
+
+    /**
+     * Chiude il journal corrente: da questo momento le modifiche vengono registrate in un nuovo journal.
+     *
+     * @param filePath Il percorso del file dati.
+     * @return Il riferimento da passare a {@link #completeCheckpoint}.
+     * @throws LibraryException Se il journal non può essere chiuso.
+     */
+    long beginCheckpoint(String filePath) throws LibraryException;
+
+    /**
+     * Scrive la nuova base ed elimina il journal chiuso da {@link #beginCheckpoint}.
+     * Il checkpoint viene scartato se nel frattempo la base è stata riscritta da un salvataggio completo.
+     *
+     * @param filePath Il percorso del file dati.
+     * @param checkpoint Il riferimento restituito da {@link #beginCheckpoint}.
+     * @param books I libri dell'istantanea catturata insieme a {@link #beginCheckpoint}.
+     * @return true se il checkpoint è stato scritto, false se è stato scartato.
+     * @throws LibraryException Se la scrittura fallisce; i journal restano e verranno riapplicati.
+     */
+    boolean completeCheckpoint(String filePath, long checkpoint, Iterator<? extends Book> books) throws LibraryException;
+}
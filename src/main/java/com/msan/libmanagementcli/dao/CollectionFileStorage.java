@@ -0,0 +1,230 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.BookCollection;
+import com.msan.libmanagementcli.model.LibraryItem;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Persistenza su file della gerarchia delle {@link BookCollection}.
+ * <p>
+ * I libri restano nel file della libreria: qui ogni collezione è salvata con il suo nome e i libri
+ * contenuti sono indicati solo dall'ISBN. Il file elenca l'albero in pre-ordine, una riga per
+ * elemento con la sua profondità:
+ * <pre>
+ * #collezioni,1
+ * C,0,Narrativa
+ * C,1,Gialli
+ * B,2,9788845292613
+ * B,1,9788804668237
+ * </pre>
+ * Nei nomi i caratteri {@code \}, a capo e ritorno carrello sono scritti come {@code \\}, {@code \n}
+ * e {@code \r}. Scrittura e lettura non sono ricorsive; il salvataggio è atomico (file temporaneo
+ * rinominato sulla destinazione).
+ */
+public class CollectionFileStorage {
+
+    /** Intestazione della prima riga del file, con la versione del formato. */
+    static final String HEADER = "#collezioni,1";
+    /** Suffisso del file delle collezioni salvato accanto a quello dei libri. */
+    public static final String COLLECTIONS_SUFFIX = ".collezioni";
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    /**
+     * Salva le collezioni indicate, con tutti i loro discendenti.
+     * @param roots Le collezioni di primo livello.
+     * @param filePath Il file di destinazione.
+     * @throws LibraryException se la scrittura fallisce.
+     */
+    public void saveCollections(List<BookCollection> roots, String filePath) throws LibraryException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+            int lines = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (BookCollection root : roots) {
+                    lines += writeTree(root, writer);
+                }
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.logInfo("Collezioni salvate su " + filePath + ": " + lines + " elementi.");
+        } catch (IOException e) {
+            logger.logError("Impossibile salvare le collezioni su " + filePath, e);
+            throw new LibraryException("Errore durante il salvataggio delle collezioni su " + filePath, e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.logWarning("Impossibile eliminare il file temporaneo: " + tempFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce il percorso del file delle collezioni associato a un file dei libri.
+     * @param filePath Il percorso del file dei libri.
+     * @return Il percorso del file delle collezioni.
+     */
+    public static String collectionsPathFor(String filePath) {
+        return filePath + COLLECTIONS_SUFFIX;
+    }
+
+    /**
+     * Carica le collezioni da un file scritto da {@link #saveCollections}.
+     * I libri il cui ISBN non viene risolto sono saltati con un avviso.
+     * @param filePath Il file da leggere.
+     * @param booksByIsbn Restituisce il libro con l'ISBN indicato, o null se non esiste.
+     * @return Le collezioni di primo livello, nell'ordine del file.
+     * @throws LibraryException se il file non è leggibile o non è nel formato atteso.
+     */
+    public List<BookCollection> loadCollections(String filePath, Function<String, Book> booksByIsbn) throws LibraryException {
+        List<BookCollection> roots = new ArrayList<>();
+        // Collezioni aperte lungo il percorso corrente: la posizione nello stack è la profondità.
+        Deque<BookCollection> open = new ArrayDeque<>();
+        int lineNumber = 0;
+        int missing = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            lineNumber++;
+            if (!HEADER.equals(line)) {
+                throw new LibraryException("Il file " + filePath + " non è un file di collezioni valido.");
+            }
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(",", 3);
+                int depth = parts.length == 3 ? parseDepth(parts[1]) : -1;
+                if (depth < 0 || depth > open.size()) {
+                    throw malformed(filePath, lineNumber, line);
+                }
+                while (open.size() > depth) {
+                    open.pop();
+                }
+                if ("C".equals(parts[0])) {
+                    BookCollection collection = new BookCollection(unescape(parts[2]));
+                    if (open.isEmpty()) {
+                        roots.add(collection);
+                    } else {
+                        open.peek().addItem(collection);
+                    }
+                    open.push(collection);
+                } else if ("B".equals(parts[0]) && depth > 0) {
+                    Book book = booksByIsbn.apply(parts[2]);
+                    if (book != null) {
+                        open.peek().addItem(book);
+                    } else {
+                        missing++;
+                    }
+                } else {
+                    throw malformed(filePath, lineNumber, line);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.logError("Impossibile caricare le collezioni da " + filePath, e);
+            throw new LibraryException("Errore durante il caricamento delle collezioni da " + filePath + ": " + e.getMessage(), e);
+        }
+        if (missing > 0) {
+            logger.logWarning(missing + " libri delle collezioni in " + filePath + " non sono presenti nella libreria.");
+        }
+        return roots;
+    }
+
+    // --- Logica Interna Privata ---
+
+    /** Scrive una collezione e i suoi discendenti in pre-ordine, con uno stack di iteratori. */
+    private static int writeTree(BookCollection root, BufferedWriter writer) throws IOException {
+        writeLine(writer, "C", 0, escape(root.getTitle()));
+        int lines = 1;
+        Deque<Iterator<LibraryItem>> stack = new ArrayDeque<>();
+        stack.push(root.getItems().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<LibraryItem> level = stack.peek();
+            if (!level.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            LibraryItem item = level.next();
+            int depth = stack.size();
+            if (item instanceof BookCollection) {
+                writeLine(writer, "C", depth, escape(item.getTitle()));
+                stack.push(((BookCollection) item).getItems().iterator());
+                lines++;
+            } else if (item.getIsbn() != null) {
+                writeLine(writer, "B", depth, item.getIsbn());
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static void writeLine(BufferedWriter writer, String type, int depth, String value) throws IOException {
+        writer.write(type);
+        writer.write(',');
+        writer.write(Integer.toString(depth));
+        writer.write(',');
+        writer.write(value);
+        writer.newLine();
+    }
+
+    private static int parseDepth(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static LibraryException malformed(String filePath, int lineNumber, String line) {
+        return new LibraryException("Riga " + lineNumber + " non valida nel file di collezioni " + filePath + ": '" + line + "'");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estensione di {@link StorageService} per gli storage capaci di scrivere solo una parte del catalogo.
+ * Il {@code LibraryService} la utilizza quando il file di destinazione è già allineato con l'ultimo
+ * caricamento o salvataggio, passando soltanto i libri modificati e gli ISBN rimossi.
+ */
+public interface DeltaStorageService extends StorageService {
+
+    /**
+     * Applica al file le modifiche avvenute dopo l'ultimo caricamento o salvataggio.
+     *
+     * @param changedBooks I libri aggiunti o modificati, con i dati correnti.
+     * @param removedIsbns Gli ISBN dei libri non più presenti.
+     * @param filePath Il percorso del file di destinazione.
+     * @throws LibraryException Se il salvataggio fallisce.
+     */
+    void saveChanges(List<Book> changedBooks, Set<String> removedIsbns, String filePath) throws LibraryException;
+}
@@ -5,77 +5,581 @@ import com.msan.libmanagementcli.exceptions.LibraryException;
 import com.msan.libmanagementcli.model.Book;
 import com.msan.libmanagementcli.utils.ConsoleLogger;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Implementazione di {@link StorageService} per la persistenza su file CSV.
  * Utilizza i metodi {@code toCsvString} e {@code Book.fromCsvString} per la conversione.
+ * <p>
+ * Il salvataggio è atomico: i dati vengono scritti in un file temporaneo nella stessa directory,
+ * sincronizzati su disco secondo la {@link FsyncPolicy} scelta e infine rinominati sul file
+ * di destinazione, che quindi contiene sempre o la versione precedente o quella nuova.
+ * Il file inizia con una riga di intestazione ({@code #format,2}) e in coda viene scritta una riga di
+ * controllo ({@code #checksum,<righe>,<crc32>}) che permette al caricamento di riconoscere file troncati
+ * o corrotti: un file con l'intestazione ma senza riga di controllo è troncato. Solo i file senza
+ * intestazione, scritti dalle versioni precedenti, vengono accettati senza riga di controllo.
+ * <p>
+ * I file con estensione {@code .gz} (o tutti, se richiesto dalle {@link CompressionOptions}) vengono
+ * scritti compressi in formato GZIP; il checksum si riferisce sempre al contenuto non compresso.
+ * Al caricamento la compressione viene riconosciuta dall'intestazione del file, non dall'estensione.
+ * Sia la scrittura che la lettura avvengono in streaming, senza mai decomprimere il file in memoria.
+ * <p>
+ * Per i file non compressi il salvataggio scrive anche un {@link BookOffsetIndex} ({@code <file>.idx}),
+ * che permette di leggere un singolo libro senza scorrere l'intero file.
  */
-public class FileStorageService implements StorageService {
+public class FileStorageService implements IndexedStorageService {
+
+    /**
+     * Politica di sincronizzazione su disco (fsync) durante il salvataggio.
+     */
+    public enum FsyncPolicy {
+        /** Nessuna sincronizzazione: i dati restano nella cache del sistema operativo. */
+        NONE,
+        /** Una sincronizzazione al termine del salvataggio, prima della rinomina. */
+        ON_SAVE,
+        /** Una sincronizzazione ogni blocco di righe, più quella finale. */
+        PER_BATCH
+    }
+
+    /** Numero di righe di default tra due sincronizzazioni con {@link FsyncPolicy#PER_BATCH}. */
+    public static final int DEFAULT_FSYNC_BATCH_SIZE = 1000;
+    /** Estensione che attiva la compressione GZIP (es. {@code libreria.csv.gz}). */
+    public static final String GZIP_EXTENSION = ".gz";
+    /** Livello di compressione di default: un buon compromesso tra velocità e dimensione. */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    /** Dimensione di default dei buffer di lettura e scrittura, in byte. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** Prefisso della riga di controllo scritta in coda al file. */
+    static final String CHECKSUM_PREFIX = "#checksum,";
+    /** Intestazione dei file con riga di controllo obbligatoria. */
+    static final String FORMAT_HEADER = "#format,2";
 
     private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    /** Codifica usata per i file CSV (la stessa di FileReader/FileWriter). */
+    private static final Charset FILE_CHARSET = Charset.defaultCharset();
+    /** Byte occupati dal separatore di riga scritto da {@link BufferedWriter#newLine()}. */
+    private static final int LINE_SEPARATOR_BYTES = System.lineSeparator().getBytes(FILE_CHARSET).length;
+    /** Byte letti dalla fine del file per trovare la riga di controllo. */
+    private static final int FOOTER_TAIL_BYTES = 256;
+
+    /**
+     * Opzioni di compressione: quando comprimere, con quale livello e con quali buffer.
+     */
+    public static final class CompressionOptions {
+
+        /** Compressione solo per i file {@code .gz}, con livello e buffer di default. */
+        public static final CompressionOptions DEFAULT =
+                new CompressionOptions(false, DEFAULT_COMPRESSION_LEVEL, DEFAULT_BUFFER_SIZE);
+
+        private final boolean alwaysCompress;
+        private final int level;
+        private final int bufferSize;
+
+        /**
+         * Crea le opzioni di compressione.
+         * @param alwaysCompress Se true comprime qualunque file, altrimenti solo quelli {@code .gz}.
+         * @param level Livello di compressione, da {@link Deflater#BEST_SPEED} a {@link Deflater#BEST_COMPRESSION}.
+         * @param bufferSize Dimensione in byte dei buffer di lettura e scrittura.
+         * @throws IllegalArgumentException se il livello non è valido o il buffer non è positivo.
+         */
+        public CompressionOptions(boolean alwaysCompress, int level, int bufferSize) {
+            if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Il livello di compressione deve essere compreso tra "
+                        + Deflater.BEST_SPEED + " e " + Deflater.BEST_COMPRESSION + ".");
+            }
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("La dimensione del buffer deve essere positiva.");
+            }
+            this.alwaysCompress = alwaysCompress;
+            this.level = level;
+            this.bufferSize = bufferSize;
+        }
+
+        public boolean isAlwaysCompress() {
+            return alwaysCompress;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+    }
+
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncBatchSize;
+    private final CompressionOptions compressionOptions;
+
+    /**
+     * Crea il servizio con sincronizzazione al termine di ogni salvataggio.
+     */
+    public FileStorageService() {
+        this(FsyncPolicy.ON_SAVE, DEFAULT_FSYNC_BATCH_SIZE);
+    }
+
+    /**
+     * Crea il servizio con la politica di sincronizzazione indicata.
+     * @param fsyncPolicy La politica di sincronizzazione su disco.
+     * @param fsyncBatchSize Righe tra due sincronizzazioni (usato solo con {@link FsyncPolicy#PER_BATCH}).
+     * @throws IllegalArgumentException se la politica è nulla o il blocco non è positivo.
+     */
+    public FileStorageService(FsyncPolicy fsyncPolicy, int fsyncBatchSize) {
+        this(fsyncPolicy, fsyncBatchSize, CompressionOptions.DEFAULT);
+    }
+
+    /**
+     * Crea il servizio con la politica di sincronizzazione e le opzioni di compressione indicate.
+     * @param fsyncPolicy La politica di sincronizzazione su disco.
+     * @param fsyncBatchSize Righe tra due sincronizzazioni (usato solo con {@link FsyncPolicy#PER_BATCH}).
+     * @param compressionOptions Le opzioni di compressione.
+     * @throws IllegalArgumentException se un parametro è nullo o il blocco non è positivo.
+     */
+    public FileStorageService(FsyncPolicy fsyncPolicy, int fsyncBatchSize, CompressionOptions compressionOptions) {
+        if (fsyncPolicy == null) {
+            throw new IllegalArgumentException("La politica di sincronizzazione non può essere nulla.");
+        }
+        if (fsyncBatchSize <= 0) {
+            throw new IllegalArgumentException("La dimensione del blocco di sincronizzazione deve essere positiva.");
+        }
+        this.fsyncPolicy = fsyncPolicy;
+        if (compressionOptions == null) {
+            throw new IllegalArgumentException("Le opzioni di compressione non possono essere nulle.");
+        }
+        this.fsyncBatchSize = fsyncBatchSize;
+        this.compressionOptions = compressionOptions;
+    }
+
+    /**
+     * Restituisce la politica di sincronizzazione configurata.
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Restituisce le opzioni di compressione configurate.
+     */
+    public CompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    /**
+     * Indica se un file verrà scritto compresso.
+     * @param filePath Il percorso del file.
+     * @return true se il file ha estensione {@code .gz} o la compressione è sempre attiva.
+     */
+    public boolean isCompressed(String filePath) {
+        return compressionOptions.isAlwaysCompress() || filePath.toLowerCase().endsWith(GZIP_EXTENSION);
+    }
 
     @Override
     public void saveBooks(List<Book> books, String filePath) throws LibraryException {
+        saveBooks(books.iterator(), filePath);
+    }
+
+    /**
+     * Salva i libri in streaming: ogni libro viene scritto appena letto dall'iteratore.
+     */
+    @Override
+    public void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
         logger.logInfo("Tentativo di salvataggio su file: " + filePath);
-        
-        // Uso try-with-resources per la gestione automatica del writer.
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            for (Book book : books) {
-                if (book != null) {
-                    writer.println(book.toCsvString());
-                }
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path indexPath = BookOffsetIndex.indexPathFor(target.toString());
+        boolean compressed = isCompressed(filePath);
+        Path tempFile = null;
+        Path tempIndex = null;
+
+        try {
+            tempFile = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+            if (!compressed) {
+                tempIndex = Files.createTempFile(target.getParent(), indexPath.getFileName() + ".", ".tmp");
+            }
+            int written = writeBooks(books, tempFile, compressed, tempIndex);
+            moveAtomically(tempFile, target);
+            // L'indice viene rinominato dopo i dati: se manca il secondo passo resta un indice
+            // non allineato, che al caricamento viene riconosciuto e ignorato.
+            if (tempIndex != null && written > 0) {
+                moveAtomically(tempIndex, indexPath);
+            } else {
+                Files.deleteIfExists(indexPath);
             }
-            logger.logInfo("Salvataggio completato: " + books.size() + " libri scritti.");
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                syncDirectory(target.getParent());
+            }
+            logger.logInfo("Salvataggio completato: " + written + " libri scritti.");
         } catch (IOException e) {
             // Incapsula l'eccezione I/O in un'eccezione custom.
             logger.logError("Impossibile salvare su file: " + filePath, e);
             throw new LibraryException("Errore durante il salvataggio su file: " + filePath, e);
+        } finally {
+            deleteQuietly(tempFile);
+            deleteQuietly(tempIndex);
         }
     }
 
     @Override
     public List<Book> loadBooks(String filePath) throws LibraryException {
-        logger.logInfo("Tentativo di caricamento da file: " + filePath);
         List<Book> loadedBooks = new ArrayList<>();
+        loadBooks(filePath, loadedBooks::add);
+        return loadedBooks;
+    }
+
+    /**
+     * Carica i libri in streaming: ogni riga valida viene passata al consumer appena letta.
+     * La riga di controllo viene verificata a fine file, quindi un file corrotto viene segnalato
+     * dopo che il consumer ha già ricevuto i libri letti.
+     */
+    @Override
+    public void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        logger.logInfo("Tentativo di caricamento da file: " + filePath);
         File file = new File(filePath);
 
-        // Se il file non esiste, restituisce una lista vuota come da contratto.
+        // Se il file non esiste, non viene letto nessun libro (libreria vuota) come da contratto.
         if (!file.exists()) {
             logger.logWarning("File non trovato: " + filePath + ". Si parte con una libreria vuota.");
-            return loadedBooks;
+            return;
         }
 
         // Legge il file riga per riga, gestendo eventuali errori.
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        try (BufferedReader reader = openReader(file)) {
             String currentLine;
             int lineNumber = 0;
+            int loadedCount = 0;
+            CRC32 checksum = new CRC32();
+            String footer = null;
+            boolean hasHeader = false;
             while ((currentLine = reader.readLine()) != null) {
+                if (lineNumber == 0 && !hasHeader && currentLine.equals(FORMAT_HEADER)) {
+                    hasHeader = true;
+                    continue;
+                }
+                if (footer != null) {
+                    if (!currentLine.trim().isEmpty()) {
+                        throw new LibraryException("File corrotto: dati presenti dopo la riga di controllo in " + filePath);
+                    }
+                    continue;
+                }
+                if (currentLine.startsWith(CHECKSUM_PREFIX)) {
+                    footer = currentLine;
+                    continue;
+                }
                 lineNumber++;
+                updateChecksum(checksum, currentLine);
                 if (currentLine.trim().isEmpty()) {
                     continue; // Salta le righe vuote.
                 }
 
                 try {
-                    loadedBooks.add(Book.fromCsvString(currentLine));
+                    sink.accept(Book.fromCsvString(currentLine));
+                    loadedCount++;
                 } catch (InvalidBookDataException e) {
                     // Logga un avviso per righe malformate e continua con il resto del file.
                     logger.logWarning("Riga " + lineNumber + " saltata (dati non validi): '" + currentLine + "'. Errore: " + e.getMessage());
                 }
             }
-            logger.logInfo("Caricamento completato: " + loadedBooks.size() + " libri letti.");
+            if (footer != null) {
+                verifyFooter(footer, lineNumber, checksum, filePath);
+            } else if (hasHeader) {
+                throw new LibraryException("File troncato (riga di controllo mancante): " + filePath);
+            } else if (lineNumber > 0) {
+                logger.logDebug("Nessuna riga di controllo in " + filePath + " (file in formato precedente).");
+            }
+            logger.logInfo("Caricamento completato: " + loadedCount + " libri letti.");
         } catch (IOException e) {
             // Incapsula l'eccezione I/O in un'eccezione custom.
             logger.logError("Impossibile caricare da file: " + filePath, e);
             throw new LibraryException("Errore durante il caricamento da file: " + filePath, e);
         }
-        return loadedBooks;
     }
-}
\ No newline at end of file
+
+    // --- Metodi di IndexedStorageService ---
+
+    /**
+     * Legge l'indice del file, verificandone il checksum e l'allineamento con la riga di controllo del file dati.
+     */
+    @Override
+    public Optional<BookOffsetIndex> loadIndex(String filePath) throws LibraryException {
+        Path dataPath = Paths.get(filePath);
+        Path indexPath = BookOffsetIndex.indexPathFor(filePath);
+        if (!Files.exists(dataPath) || !Files.exists(indexPath)) {
+            return Optional.empty();
+        }
+        try {
+            Long dataChecksum = readFooterChecksum(dataPath);
+            Optional<BookOffsetIndex> index = dataChecksum == null
+                    ? Optional.empty()
+                    : BookOffsetIndex.read(indexPath, Files.size(dataPath), dataChecksum);
+            if (index.isPresent()) {
+                logger.logInfo("Indice caricato: " + index.get().size() + " libri indicizzati in " + indexPath);
+            } else {
+                logger.logWarning("Indice non valido o non aggiornato, verrà ignorato: " + indexPath);
+            }
+            return index;
+        } catch (IOException e) {
+            logger.logError("Impossibile leggere l'indice di: " + filePath, e);
+            throw new LibraryException("Errore durante la lettura dell'indice di: " + filePath, e);
+        }
+    }
+
+    /**
+     * Legge la sola riga che inizia alla posizione indicata.
+     */
+    @Override
+    public Book readBookAt(String filePath, long offset) throws LibraryException {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            file.seek(offset);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            byte[] buffer = new byte[256];
+            int read;
+            boolean endOfLine = false;
+            while (!endOfLine && (read = file.read(buffer)) > 0) {
+                int length = read;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        length = i;
+                        endOfLine = true;
+                        break;
+                    }
+                }
+                line.write(buffer, 0, length);
+            }
+            String csvLine = line.toString(FILE_CHARSET);
+            if (csvLine.endsWith("\r")) {
+                csvLine = csvLine.substring(0, csvLine.length() - 1);
+            }
+            return Book.fromCsvString(csvLine);
+        } catch (IOException e) {
+            logger.logError("Impossibile leggere il libro alla posizione " + offset + " di: " + filePath, e);
+            throw new LibraryException("Errore durante la lettura da file: " + filePath, e);
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    /**
+     * Scrive i libri e la riga di controllo nel file temporaneo, sincronizzando secondo la politica.
+     * Una lista vuota produce un file vuoto, senza intestazione né riga di controllo.
+     * Se {@code tempIndex} non è nullo vi scrive in parallelo l'indice delle posizioni (solo file non compressi).
+     * @return Il numero di libri scritti.
+     */
+    private int writeBooks(Iterator<? extends Book> books, Path tempFile, boolean compressed, Path tempIndex)
+            throws IOException {
+        int bufferSize = compressionOptions.getBufferSize();
+        try (FileOutputStream out = new FileOutputStream(tempFile.toFile());
+             OutputStream stream = compressed ? openGzip(out) : out;
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, FILE_CHARSET), bufferSize);
+             BookOffsetIndex.IndexWriter index = tempIndex != null ? new BookOffsetIndex.IndexWriter(tempIndex) : null) {
+            CRC32 checksum = new CRC32();
+            int written = 0;
+            long offset = 0;
+            while (books.hasNext()) {
+                Book book = books.next();
+                if (book == null) {
+                    continue;
+                }
+                if (written == 0) {
+                    writer.write(FORMAT_HEADER);
+                    writer.newLine();
+                    offset += FORMAT_HEADER.getBytes(FILE_CHARSET).length + LINE_SEPARATOR_BYTES;
+                }
+                String line = book.toCsvString();
+                if (index != null) {
+                    index.add(book.getIsbn(), offset);
+                    offset += line.getBytes(FILE_CHARSET).length + LINE_SEPARATOR_BYTES;
+                }
+                writer.write(line);
+                writer.newLine();
+                updateChecksum(checksum, line);
+                written++;
+                if (fsyncPolicy == FsyncPolicy.PER_BATCH && written % fsyncBatchSize == 0) {
+                    writer.flush(); // Con GZIP esegue un SYNC_FLUSH del compressore.
+                    out.getChannel().force(false);
+                }
+            }
+            if (written > 0) {
+                writer.write(CHECKSUM_PREFIX + written + "," + Long.toHexString(checksum.getValue()));
+                writer.newLine();
+            }
+            writer.flush();
+            if (stream instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) stream).finish();
+            }
+            if (index != null && written > 0) {
+                // L'indice non viene sincronizzato: se si perde viene scartato e il file letto per intero.
+                index.finish(out.getChannel().position(), checksum.getValue());
+            }
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                out.getChannel().force(true);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Apre lo stream GZIP con il livello configurato. Il SYNC_FLUSH a ogni flush serve solo
+     * per sincronizzare a blocchi, perché peggiora il rapporto di compressione.
+     */
+    private GZIPOutputStream openGzip(OutputStream out) throws IOException {
+        boolean syncFlush = fsyncPolicy == FsyncPolicy.PER_BATCH;
+        int level = compressionOptions.getLevel();
+        return new GZIPOutputStream(out, compressionOptions.getBufferSize(), syncFlush) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Apre il file in lettura, decomprimendolo in streaming se inizia con l'intestazione GZIP.
+     */
+    private BufferedReader openReader(File file) throws IOException {
+        return openReader(file.toPath(), compressionOptions.getBufferSize());
+    }
+
+    /**
+     * Apre un file della libreria in lettura, con la codifica dei file CSV, decomprimendolo in streaming
+     * se inizia con l'intestazione GZIP: lo usano anche gli altri lettori dei file della libreria
+     * (es. l'importazione in blocco), così leggono i file compressi come {@link #loadBooks}.
+     * @param path Il file.
+     * @param bufferSize La dimensione dei buffer di lettura e decompressione, in byte.
+     * @return Il lettore, da chiudere.
+     * @throws IOException se il file non esiste o non può essere aperto.
+     */
+    public static BufferedReader openReader(Path path, int bufferSize) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), bufferSize);
+        try {
+            if (hasGzipHeader(in)) {
+                in = new GZIPInputStream(in, bufferSize);
+            }
+            return new BufferedReader(new InputStreamReader(in, FILE_CHARSET), bufferSize);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Controlla i primi due byte dello stream senza consumarli.
+     */
+    private static boolean hasGzipHeader(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /**
+     * Legge il checksum dalla riga di controllo in coda al file, leggendo solo gli ultimi byte.
+     * @return Il checksum dichiarato, o null se il file non ha una riga di controllo valida.
+     */
+    private static Long readFooterChecksum(Path dataPath) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(dataPath.toFile(), "r")) {
+            int tailLength = (int) Math.min(file.length(), FOOTER_TAIL_BYTES);
+            byte[] tail = new byte[tailLength];
+            file.seek(file.length() - tailLength);
+            file.readFully(tail);
+            String text = new String(tail, FILE_CHARSET).trim();
+            String lastLine = text.substring(text.lastIndexOf('\n') + 1).trim();
+            if (!lastLine.startsWith(CHECKSUM_PREFIX)) {
+                return null;
+            }
+            String[] parts = lastLine.substring(CHECKSUM_PREFIX.length()).split(",");
+            try {
+                return parts.length == 2 ? Long.parseLong(parts[1].trim(), 16) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Confronta la riga di controllo con le righe effettivamente lette.
+     */
+    private static void verifyFooter(String footer, int lineCount, CRC32 checksum, String filePath) throws LibraryException {
+        String[] parts = footer.substring(CHECKSUM_PREFIX.length()).split(",");
+        try {
+            if (parts.length != 2
+                    || Integer.parseInt(parts[0].trim()) != lineCount
+                    || Long.parseLong(parts[1].trim(), 16) != checksum.getValue()) {
+                throw new LibraryException("File corrotto o troncato (checksum non corrispondente): " + filePath);
+            }
+        } catch (NumberFormatException e) {
+            throw new LibraryException("Riga di controllo non valida in: " + filePath, e);
+        }
+    }
+
+    /**
+     * Aggiorna il checksum con una riga, indipendentemente dal separatore di riga della piattaforma.
+     */
+    private static void updateChecksum(CRC32 checksum, String line) {
+        checksum.update(line.getBytes(StandardCharsets.UTF_8));
+        checksum.update('\n');
+    }
+
+    /**
+     * Rinomina il file temporaneo sulla destinazione, in modo atomico se il file system lo consente.
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.logWarning("Rinomina atomica non supportata per " + target + ". Si usa una rinomina semplice.");
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Sincronizza la directory per rendere persistente la rinomina. Non tutti i sistemi
+     * operativi lo consentono (es. Windows): in quel caso l'errore viene ignorato.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.logDebug("Sincronizzazione della directory non supportata: " + directory);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.logWarning("Impossibile eliminare il file temporaneo: " + file);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.Optional;
+
+/**
+ * Estensione di {@link StorageService} per gli storage che mantengono un indice ISBN → posizione
+ * accanto al file dati. Il {@code LibraryService} la utilizza nel caricamento differito per leggere
+ * solo i libri richiesti, senza costruire l'intero catalogo all'apertura.
+ */
+public interface IndexedStorageService extends StorageService {
+
+    /**
+     * Legge l'indice del file, se esiste ed è coerente con il file dati.
+     *
+     * @param filePath Il percorso del file dati.
+     * @return L'indice, o vuoto se assente, corrotto o non allineato al file dati.
+     * @throws LibraryException Se l'indice esiste ma non è leggibile.
+     */
+    Optional<BookOffsetIndex> loadIndex(String filePath) throws LibraryException;
+
+    /**
+     * Legge un singolo libro alla posizione indicata dall'indice.
+     *
+     * @param filePath Il percorso del file dati.
+     * @param offset La posizione in byte della riga del libro.
+     * @return Il libro letto.
+     * @throws LibraryException Se la lettura fallisce o la riga non contiene un libro valido.
+     */
+    Book readBookAt(String filePath, long offset) throws LibraryException;
+}
@@ -0,0 +1,556 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Implementazione di {@link StorageService} con journal append-only.
+ * <p>
+ * Il file dati (la "base") viene scritto per intero solo da {@link #saveBooks}; ogni singola
+ * modifica viene invece accodata come record compatto in un file di journal accanto al file dati
+ * ({@code <file>.journal}), con un costo indipendente dalla dimensione del catalogo.
+ * Il caricamento legge la base e riapplica il journal. Quando il journal supera la soglia
+ * di compattazione, base e journal vengono fusi in una nuova base e il journal viene azzerato.
+ * <p>
+ * Formato dei record (uno per riga, preceduto dal CRC32 del record in 8 cifre esadecimali e una virgola):
+ * <ul>
+ *   <li>{@code A,<riga CSV del libro>} aggiunta</li>
+ *   <li>{@code R,<ISBN>} rimozione</li>
+ *   <li>{@code U,<vecchio ISBN>,<riga CSV del libro>} aggiornamento</li>
+ * </ul>
+ * Ogni record imposta lo stato finale della chiave a cui si riferisce, quindi riapplicare
+ * un journal già incluso nella base (es. crash tra scrittura della base e azzeramento del journal)
+ * produce lo stesso risultato.
+ * <p>
+ * Un crash durante la scrittura può lasciare l'ultima riga a metà: il checksum la riconosce anche quando
+ * ha ancora abbastanza campi per sembrare un libro. La riapplicazione si ferma al primo record senza
+ * fine riga o con checksum errato, e prima di accodare nuovi record (o di spostare il journal per un
+ * checkpoint) il file viene troncato dopo l'ultimo record valido, così il record successivo non viene
+ * attaccato alla riga troncata. I journal scritti senza checksum dalle versioni precedenti vengono
+ * ancora letti, fermandosi al primo record che non si riesce a interpretare.
+ * <p>
+ * Oltre alla compattazione sincrona, il servizio accetta checkpoint ({@link CheckpointingJournal}):
+ * il journal corrente diventa {@code <file>.journal.prev} e la nuova base viene scritta da un'istantanea
+ * in memoria mentre le modifiche continuano sul nuovo journal. Il caricamento riapplica
+ * {@code .journal.prev} (se il checkpoint non è terminato) e poi {@code .journal}.
+ * <p>
+ * Il journal di ogni file resta aperto tra un record e l'altro. Con la sincronizzazione per record
+ * (default) ogni record viene forzato su disco prima di considerare registrata la modifica, così
+ * sopravvive anche a un crash del sistema operativo; senza, i record restano nella cache del sistema
+ * operativo fino alla sua scrittura. {@link #close()} chiude i journal aperti.
+ */
+public class JournaledStorageService implements StorageService, CheckpointingJournal, AutoCloseable {
+
+    /** Suffisso del file di journal, aggiunto al percorso del file dati. */
+    public static final String JOURNAL_SUFFIX = ".journal";
+    /** Suffisso del journal chiuso da un checkpoint non ancora completato. */
+    public static final String PREVIOUS_JOURNAL_SUFFIX = JOURNAL_SUFFIX + ".prev";
+    /** Numero di record di default oltre il quale il journal viene compattato nella base. */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private static final String RECORD_DELIMITER = ",";
+    private static final String ADD_RECORD = "A";
+    private static final String REMOVE_RECORD = "R";
+    private static final String UPDATE_RECORD = "U";
+    /** Cifre esadecimali del CRC32 che precede ogni record. */
+    private static final int CRC_DIGITS = 8;
+
+    private final StorageService baseStorage;
+    private final int compactionThreshold;
+    /** Se true ogni record viene forzato su disco (fsync) appena scritto. */
+    private final boolean syncEachRecord;
+    /** Journal aperti in scrittura, per file dati; chiusi prima di spostarli o eliminarli. */
+    private final Map<String, FileChannel> journalChannels = new HashMap<>();
+    /** Numero di record presenti nel journal di ciascun file dati. */
+    private final Map<String, Integer> journalSizes = new HashMap<>();
+    /**
+     * Lock della scrittura della base, preso prima di quello dell'istanza: un checkpoint scrive la base
+     * tenendo solo questo lock, così le modifiche possono continuare ad accodarsi al journal.
+     */
+    private final Object baseLock = new Object();
+    /** Incrementato a ogni salvataggio completo: invalida i checkpoint iniziati prima. */
+    private long baseEpoch;
+
+    /**
+     * Crea un servizio con journal sopra un {@link FileStorageService} e soglia di default.
+     */
+    public JournaledStorageService() {
+        this(new FileStorageService(), DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Crea un servizio con journal che sincronizza su disco ogni record.
+     * @param baseStorage Lo storage usato per leggere e scrivere la base.
+     * @param compactionThreshold Numero di record del journal che fa scattare la compattazione.
+     * @throws IllegalArgumentException se lo storage è nullo o la soglia non è positiva.
+     */
+    public JournaledStorageService(StorageService baseStorage, int compactionThreshold) {
+        this(baseStorage, compactionThreshold, true);
+    }
+
+    /**
+     * Crea un servizio con journal.
+     * @param baseStorage Lo storage usato per leggere e scrivere la base.
+     * @param compactionThreshold Numero di record del journal che fa scattare la compattazione.
+     * @param syncEachRecord true per forzare su disco ogni record (durabile anche a un crash del sistema),
+     *                       false per lasciare la scrittura al sistema operativo (più veloce).
+     * @throws IllegalArgumentException se lo storage è nullo o la soglia non è positiva.
+     */
+    public JournaledStorageService(StorageService baseStorage, int compactionThreshold, boolean syncEachRecord) {
+        if (baseStorage == null) {
+            throw new IllegalArgumentException("Lo storage di base non può essere nullo.");
+        }
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("La soglia di compattazione deve essere positiva.");
+        }
+        this.baseStorage = baseStorage;
+        this.compactionThreshold = compactionThreshold;
+        this.syncEachRecord = syncEachRecord;
+    }
+
+    /** Indica se ogni record viene forzato su disco appena scritto. */
+    public boolean isSyncEachRecord() {
+        return syncEachRecord;
+    }
+
+    // --- Metodi di StorageService ---
+
+    /**
+     * Scrive una nuova base completa e azzera il journal del file.
+     */
+    @Override
+    public void saveBooks(List<Book> books, String filePath) throws LibraryException {
+        saveBooks(books.iterator(), filePath);
+    }
+
+    /**
+     * Scrive una nuova base completa in streaming e azzera il journal del file.
+     */
+    @Override
+    public void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
+        synchronized (baseLock) {
+            synchronized (this) {
+                // Prima la base, poi il journal: un crash nel mezzo lascia un journal già incluso nella base,
+                // che al caricamento successivo viene riapplicato senza effetti.
+                baseStorage.saveBooks(books, filePath);
+                baseEpoch++;
+                try {
+                    closeJournal(filePath);
+                    Files.deleteIfExists(previousJournalPathFor(filePath));
+                    Files.deleteIfExists(journalPathFor(filePath));
+                    journalSizes.put(filePath, 0);
+                } catch (IOException e) {
+                    logger.logError("Impossibile azzerare il journal di: " + filePath, e);
+                    throw new LibraryException("Errore durante l'azzeramento del journal di: " + filePath, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carica la base e vi riapplica, in ordine, i record del journal.
+     */
+    @Override
+    public List<Book> loadBooks(String filePath) throws LibraryException {
+        List<Book> loadedBooks = new ArrayList<>();
+        loadBooks(filePath, loadedBooks::add);
+        return loadedBooks;
+    }
+
+    /**
+     * Carica la base e vi riapplica i journal, poi passa i libri risultanti al consumer.
+     * Il catalogo intermedio indicizzato per ISBN è necessario per applicare rimozioni e aggiornamenti.
+     * Il tempo di ripristino (lettura della base e riapplicazione) viene riportato nel log.
+     */
+    @Override
+    public synchronized void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        long start = System.nanoTime();
+        Map<String, Book> catalog = new LinkedHashMap<>();
+        baseStorage.loadBooks(filePath, book -> catalog.put(book.getIsbn(), book));
+        long baseLoaded = System.nanoTime();
+
+        int previousReplayed = replay(previousJournalPathFor(filePath), filePath, catalog);
+        int replayed = replay(journalPathFor(filePath), filePath, catalog);
+        long end = System.nanoTime();
+        journalSizes.put(filePath, replayed);
+        logger.logInfo("Ripristino di " + filePath + " completato in " + (end - start) / 1_000_000 + " ms: base letta in "
+                + (baseLoaded - start) / 1_000_000 + " ms, " + (previousReplayed + replayed)
+                + " modifiche del journal riapplicate in " + (end - baseLoaded) / 1_000_000 + " ms.");
+        catalog.values().forEach(sink);
+    }
+
+    // --- Metodi di MutationJournal ---
+
+    @Override
+    public void recordAdd(String filePath, Book book) throws LibraryException {
+        append(filePath, ADD_RECORD + RECORD_DELIMITER + book.toCsvString());
+    }
+
+    @Override
+    public void recordRemove(String filePath, String isbn) throws LibraryException {
+        append(filePath, REMOVE_RECORD + RECORD_DELIMITER + isbn);
+    }
+
+    @Override
+    public void recordUpdate(String filePath, String oldIsbn, Book book) throws LibraryException {
+        append(filePath, UPDATE_RECORD + RECORD_DELIMITER + oldIsbn + RECORD_DELIMITER + book.toCsvString());
+    }
+
+    // --- Metodi di CheckpointingJournal ---
+
+    /**
+     * Sposta il journal corrente in {@code .journal.prev}; se un checkpoint precedente non è terminato,
+     * il journal corrente viene accodato a quello già chiuso.
+     */
+    @Override
+    public synchronized long beginCheckpoint(String filePath) throws LibraryException {
+        Path journalPath = journalPathFor(filePath);
+        Path previousPath = previousJournalPathFor(filePath);
+        try {
+            closeJournal(filePath);
+            // Le code troncate vanno tolte prima di unire i due file, o fermerebbero la riapplicazione a metà.
+            repairTail(journalPath);
+            repairTail(previousPath);
+            if (Files.exists(journalPath)) {
+                if (Files.exists(previousPath)) {
+                    // Un crash a metà lascia record in entrambi i journal: riapplicarli due volte è innocuo.
+                    Files.write(previousPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+                    Files.delete(journalPath);
+                } else {
+                    Files.move(journalPath, previousPath);
+                }
+            }
+            journalSizes.put(filePath, 0);
+            return baseEpoch;
+        } catch (IOException e) {
+            logger.logError("Impossibile chiudere il journal di: " + filePath, e);
+            throw new LibraryException("Errore durante l'avvio del checkpoint di: " + filePath, e);
+        }
+    }
+
+    /**
+     * Scrive la base tenendo solo il lock della base: le modifiche concorrenti continuano sul journal corrente.
+     */
+    @Override
+    public boolean completeCheckpoint(String filePath, long checkpoint, Iterator<? extends Book> books)
+            throws LibraryException {
+        synchronized (baseLock) {
+            synchronized (this) {
+                if (checkpoint != baseEpoch) {
+                    logger.logInfo("Checkpoint di " + filePath + " scartato: la base è stata riscritta nel frattempo.");
+                    return false;
+                }
+            }
+            baseStorage.saveBooks(books, filePath);
+            synchronized (this) {
+                baseEpoch++;
+                try {
+                    Files.deleteIfExists(previousJournalPathFor(filePath));
+                } catch (IOException e) {
+                    // Il journal chiuso è già incluso nella base: verrà riapplicato senza effetti.
+                    logger.logWarning("Impossibile eliminare il journal chiuso di: " + filePath);
+                }
+            }
+            return true;
+        }
+    }
+
+    // --- Compattazione ---
+
+    /**
+     * Fonde base e journal in una nuova base, azzerando il journal.
+     * @param filePath Il percorso del file dati.
+     * @throws LibraryException se la lettura o la scrittura falliscono.
+     */
+    public void compact(String filePath) throws LibraryException {
+        synchronized (baseLock) {
+            synchronized (this) {
+                logger.logInfo("Compattazione del journal di: " + filePath);
+                saveBooks(loadBooks(filePath).iterator(), filePath);
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di record attualmente presenti nel journal del file
+     * (esclusi quelli di un checkpoint in corso).
+     * @param filePath Il percorso del file dati.
+     * @return Il numero di record nel journal.
+     * @throws LibraryException se il journal esiste ma non è leggibile.
+     */
+    @Override
+    public synchronized int getJournalSize(String filePath) throws LibraryException {
+        Integer size = journalSizes.get(filePath);
+        if (size == null) {
+            size = countRecords(journalPathFor(filePath));
+            journalSizes.put(filePath, size);
+        }
+        return size;
+    }
+
+    /**
+     * Chiude i journal aperti in scrittura. I record già scritti restano nei file.
+     */
+    @Override
+    public synchronized void close() {
+        for (String filePath : new ArrayList<>(journalChannels.keySet())) {
+            try {
+                closeJournal(filePath);
+            } catch (IOException e) {
+                logger.logWarning("Impossibile chiudere il journal di: " + filePath);
+            }
+        }
+    }
+
+    /**
+     * Restituisce il percorso del file di journal associato a un file dati.
+     * @param filePath Il percorso del file dati.
+     * @return Il percorso del journal.
+     */
+    public static Path journalPathFor(String filePath) {
+        return Paths.get(filePath + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Restituisce il percorso del journal chiuso da un checkpoint non ancora completato.
+     * @param filePath Il percorso del file dati.
+     * @return Il percorso del journal chiuso.
+     */
+    public static Path previousJournalPathFor(String filePath) {
+        return Paths.get(filePath + PREVIOUS_JOURNAL_SUFFIX);
+    }
+
+    // --- Logica Interna Privata ---
+
+    /**
+     * Riapplica al catalogo i record validi di un journal, se esiste, e tronca l'eventuale coda non valida.
+     * @return Il numero di record riapplicati.
+     */
+    private static int replay(Path journalPath, String filePath, Map<String, Book> catalog) throws LibraryException {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        try {
+            int[] replayed = new int[1];
+            long validBytes = readValidRecords(journalPath, record -> {
+                applyRecord(record, catalog);
+                replayed[0]++;
+            });
+            truncateAfter(journalPath, validBytes);
+            return replayed[0];
+        } catch (IOException e) {
+            logger.logError("Impossibile leggere il journal di: " + filePath, e);
+            throw new LibraryException("Errore durante la lettura del journal di: " + filePath, e);
+        }
+    }
+
+    /** Riceve i record validi letti da {@link #readValidRecords}; un'eccezione rende il record non valido. */
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(String record) throws InvalidBookDataException;
+    }
+
+    /**
+     * Legge i record del journal in ordine, passando al consumer quelli completi e integri, e si ferma
+     * al primo che non lo è (tipicamente l'ultimo, troncato da un crash durante la scrittura).
+     * @return Il numero di byte, dall'inizio del file, occupati dai record validi.
+     */
+    private static long readValidRecords(Path journalPath, RecordConsumer consumer) throws IOException {
+        long validBytes = 0;
+        long position = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(journalPath))) {
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String text = line.toString(StandardCharsets.UTF_8.name());
+                line.reset();
+                if (text.endsWith("\r")) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                if (!text.trim().isEmpty()) {
+                    String record = verifiedRecord(text);
+                    if (record == null) {
+                        break;
+                    }
+                    try {
+                        consumer.accept(record);
+                    } catch (InvalidBookDataException e) {
+                        logger.logWarning("Record di journal non valido: '" + record + "'. Errore: " + e.getMessage());
+                        break;
+                    }
+                }
+                validBytes = position;
+            }
+        }
+        if (validBytes < position) {
+            logger.logWarning("Journal " + journalPath + ": " + (position - validBytes)
+                    + " byte dopo l'ultimo record valido ignorati (scrittura interrotta).");
+        }
+        return validBytes;
+    }
+
+    /**
+     * Toglie dalla riga il CRC32 e lo verifica.
+     * @return Il record, o null se il checksum non corrisponde. Le righe senza checksum (formato precedente)
+     *         vengono restituite così come sono.
+     */
+    private static String verifiedRecord(String line) {
+        int comma = line.indexOf(RECORD_DELIMITER);
+        if (comma != CRC_DIGITS) {
+            return line;
+        }
+        String record = line.substring(comma + 1);
+        try {
+            return Long.parseLong(line.substring(0, comma), 16) == crcOf(record) ? record : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crcOf(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Tronca il journal dopo l'ultimo record valido, così i prossimi record non si attaccano a una riga troncata.
+     * @return Il numero di record validi.
+     */
+    private static int repairTail(Path journalPath) throws IOException {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        Map<String, Book> scratch = new HashMap<>();
+        int[] count = new int[1];
+        long validBytes = readValidRecords(journalPath, record -> {
+            applyRecord(record, scratch); // Stesso criterio di validità della riapplicazione.
+            count[0]++;
+        });
+        truncateAfter(journalPath, validBytes);
+        return count[0];
+    }
+
+    private static void truncateAfter(Path journalPath, long validBytes) throws IOException {
+        if (Files.size(journalPath) > validBytes) {
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+        }
+    }
+
+    private void append(String filePath, String record) throws LibraryException {
+        int size;
+        synchronized (this) {
+            size = getJournalSize(filePath);
+            try {
+                FileChannel channel = journalChannels.get(filePath);
+                if (channel == null) {
+                    repairTail(journalPathFor(filePath));
+                    channel = FileChannel.open(journalPathFor(filePath), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    journalChannels.put(filePath, channel);
+                }
+                String line = String.format("%08x", crcOf(record)) + RECORD_DELIMITER + record + System.lineSeparator();
+                ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (syncEachRecord) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                try {
+                    closeJournal(filePath); // Il prossimo record riaprirà il journal.
+                } catch (IOException closeError) {
+                    e.addSuppressed(closeError);
+                }
+                logger.logError("Impossibile scrivere sul journal di: " + filePath, e);
+                throw new LibraryException("Errore durante la scrittura del journal di: " + filePath, e);
+            }
+            journalSizes.put(filePath, size + 1);
+        }
+        // Fuori dal lock dell'istanza, per rispettare l'ordine baseLock -> istanza.
+        if (size + 1 >= compactionThreshold) {
+            compact(filePath);
+        }
+    }
+
+    /** Chiude il journal del file, se aperto in scrittura, prima di spostarlo o eliminarlo. */
+    private void closeJournal(String filePath) throws IOException {
+        FileChannel channel = journalChannels.remove(filePath);
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private int countRecords(Path journalPath) throws LibraryException {
+        try {
+            return repairTail(journalPath);
+        } catch (IOException e) {
+            throw new LibraryException("Errore durante la lettura del journal: " + journalPath, e);
+        }
+    }
+
+    /**
+     * Applica un singolo record del journal al catalogo indicizzato per ISBN.
+     */
+    private static void applyRecord(String record, Map<String, Book> catalog) throws InvalidBookDataException {
+        String[] parts = record.split(RECORD_DELIMITER, 2);
+        if (parts.length < 2) {
+            throw new InvalidBookDataException("Record di journal incompleto.");
+        }
+        switch (parts[0]) {
+            case ADD_RECORD: {
+                Book book = Book.fromCsvString(parts[1]);
+                catalog.put(book.getIsbn(), book);
+                break;
+            }
+            case REMOVE_RECORD:
+                catalog.remove(parts[1].trim());
+                break;
+            case UPDATE_RECORD: {
+                String[] updateParts = parts[1].split(RECORD_DELIMITER, 2);
+                if (updateParts.length < 2) {
+                    throw new InvalidBookDataException("Record di aggiornamento incompleto.");
+                }
+                Book book = Book.fromCsvString(updateParts[1]);
+                catalog.remove(updateParts[0].trim());
+                catalog.put(book.getIsbn(), book);
+                break;
+            }
+            default:
+                throw new InvalidBookDataException("Tipo di record sconosciuto: " + parts[0]);
+        }
+    }
+}
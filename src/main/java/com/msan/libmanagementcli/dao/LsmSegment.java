@@ -0,0 +1,332 @@
+package com.msan.libmanagementcli.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Segmento immutabile di un {@link LsmTree}: voci ordinate per ISBN, scritte una sola volta.
+ * <p>
+ * Formato: intestazione (identificativo, numero di voci), le voci in ordine
+ * ({@code tipo, ISBN, [riga CSV]}), poi un indice sparso (una chiave ogni {@value #INDEX_INTERVAL} voci
+ * con la sua posizione) e il {@link BloomFilter} delle chiavi; in coda la posizione dell'indice
+ * e di nuovo l'identificativo. Indice e filtro restano in memoria: una ricerca puntuale legge
+ * al più un blocco di voci, e nessuno se il filtro esclude la chiave.
+ */
+final class LsmSegment implements Closeable {
+
+    /** Voce di un segmento o della memtable: un libro (riga CSV) o una cancellazione. */
+    static final class Entry {
+        private final String isbn;
+        private final String csv;
+
+        Entry(String isbn, String csv) {
+            this.isbn = isbn;
+            this.csv = csv;
+        }
+
+        static Entry tombstone(String isbn) {
+            return new Entry(isbn, null);
+        }
+
+        String getIsbn() {
+            return isbn;
+        }
+
+        /** @return La riga CSV del libro, o null per una cancellazione. */
+        String getCsv() {
+            return csv;
+        }
+
+        boolean isTombstone() {
+            return csv == null;
+        }
+    }
+
+    private static final int MAGIC = 0x4C534D31; // "LSM1"
+    private static final int INDEX_INTERVAL = 32;
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+    private static final int TRAILER_SIZE = 12; // posizione dell'indice (long) + identificativo (int)
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int entryCount;
+    private final List<String> indexKeys;
+    private final long[] indexOffsets;
+    /** Posizione di fine delle voci (inizio dell'indice). */
+    private final long dataEnd;
+    private final BloomFilter bloomFilter;
+    /** Compattazioni che leggono il segmento fuori dal lock dell'albero. */
+    private int readers;
+    /** True se il segmento non è più nel manifest: il file viene eliminato quando non ha più lettori. */
+    private boolean obsolete;
+
+    private LsmSegment(Path path, FileChannel channel, int entryCount, List<String> indexKeys, long[] indexOffsets,
+                       long dataEnd, BloomFilter bloomFilter) {
+        this.path = path;
+        this.channel = channel;
+        this.entryCount = entryCount;
+        this.indexKeys = indexKeys;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Scrive un nuovo segmento con le voci indicate, che devono essere in ordine di ISBN e senza ripetizioni,
+     * e lo apre in lettura.
+     * @param expectedEntries Stima del numero di voci, per dimensionare il filtro di Bloom.
+     */
+    static LsmSegment write(Path path, Iterator<Entry> entries, int expectedEntries, boolean sync) throws IOException {
+        BloomFilter bloomFilter = BloomFilter.forExpectedKeys(expectedEntries);
+        List<String> indexKeys = new ArrayList<>();
+        List<Long> indexOffsets = new ArrayList<>();
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), 64 * 1024));
+            data.writeInt(MAGIC);
+            data.writeInt(0); // Numero di voci, riscritto alla fine.
+            int count = 0;
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                if (count % INDEX_INTERVAL == 0) {
+                    indexKeys.add(entry.isbn);
+                    indexOffsets.add((long) data.size());
+                }
+                bloomFilter.add(entry.isbn);
+                data.writeByte(entry.isTombstone() ? DELETE : PUT);
+                data.writeUTF(entry.isbn);
+                if (!entry.isTombstone()) {
+                    data.writeUTF(entry.csv);
+                }
+                count++;
+            }
+            long indexPosition = data.size();
+            data.writeInt(indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                data.writeUTF(indexKeys.get(i));
+                data.writeLong(indexOffsets.get(i));
+            }
+            bloomFilter.writeTo(data);
+            data.writeLong(indexPosition);
+            data.writeInt(MAGIC);
+            data.flush();
+            out.write(ByteBuffer.allocate(4).putInt(0, count), 4);
+            if (sync) {
+                out.force(true);
+            }
+        }
+        return open(path);
+    }
+
+    /**
+     * Apre un segmento esistente, caricando in memoria indice sparso e filtro di Bloom.
+     */
+    static LsmSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            if (size < 8 + TRAILER_SIZE || channel.read(header, 0) != 8 || channel.read(trailer, size - TRAILER_SIZE) != TRAILER_SIZE
+                    || header.getInt(0) != MAGIC || trailer.getInt(8) != MAGIC) {
+                throw new IOException("Segmento non valido o incompleto: " + path);
+            }
+            int entryCount = header.getInt(4);
+            long indexPosition = trailer.getLong(0);
+            ByteBuffer footer = ByteBuffer.allocate((int) (size - TRAILER_SIZE - indexPosition));
+            readFully(channel, footer, indexPosition);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+            int indexSize = in.readInt();
+            List<String> indexKeys = new ArrayList<>(indexSize);
+            long[] indexOffsets = new long[indexSize];
+            for (int i = 0; i < indexSize; i++) {
+                indexKeys.add(in.readUTF());
+                indexOffsets[i] = in.readLong();
+            }
+            BloomFilter bloomFilter = BloomFilter.readFrom(in);
+            return new LsmSegment(path, channel, entryCount, indexKeys, indexOffsets, indexPosition, bloomFilter);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    long getSizeOnDisk() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Indica se il filtro di Bloom ammette la chiave; se false, {@link #get} restituirebbe null.
+     */
+    boolean mightContain(String isbn) {
+        return bloomFilter.mightContain(isbn);
+    }
+
+    /**
+     * Cerca la voce di un ISBN leggendo il solo blocco indicato dall'indice sparso.
+     * @return La voce (eventualmente una cancellazione), o null se il segmento non contiene l'ISBN.
+     */
+    Entry get(String isbn) throws IOException {
+        if (!bloomFilter.mightContain(isbn)) {
+            return null;
+        }
+        int block = Collections.binarySearch(indexKeys, isbn);
+        if (block < 0) {
+            block = -block - 2; // Blocco che inizia con l'ultima chiave minore dell'ISBN.
+            if (block < 0) {
+                return null;
+            }
+        }
+        long start = indexOffsets[block];
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        readFully(channel, buffer, start);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        int remaining = Math.min(INDEX_INTERVAL, entryCount - block * INDEX_INTERVAL);
+        for (int i = 0; i < remaining; i++) {
+            Entry entry = readEntry(in);
+            int comparison = entry.isbn.compareTo(isbn);
+            if (comparison == 0) {
+                return entry;
+            }
+            if (comparison > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Restituisce un iteratore in ordine di ISBN che legge il file in streaming.
+     * Il file viene chiuso a fine lettura, o con {@link EntryIterator#close()} se la lettura si interrompe prima.
+     * Gli errori di lettura vengono propagati come {@link UncheckedIOException}.
+     */
+    EntryIterator iterator() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ)), 64 * 1024));
+        try {
+            in.skipBytes(8);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new EntryIterator(in);
+    }
+
+    /**
+     * Registra una lettura fuori dal lock dell'albero: finché non viene chiamato {@link #release()}
+     * il file non viene eliminato, anche se il segmento esce dal manifest.
+     */
+    synchronized void retain() {
+        readers++;
+    }
+
+    /**
+     * Termina una lettura registrata con {@link #retain()}, eliminando il file se il segmento è stato scartato.
+     */
+    synchronized void release() throws IOException {
+        readers--;
+        if (readers == 0 && obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Chiude il segmento uscito dal manifest ed elimina il file, subito o al termine delle letture in corso.
+     */
+    synchronized void discard() throws IOException {
+        obsolete = true;
+        channel.close();
+        if (readers == 0) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Iteratore in streaming sulle voci del segmento, con il proprio file aperto.
+     */
+    final class EntryIterator implements Iterator<Entry>, Closeable {
+        private final DataInputStream in;
+        private int read;
+
+        private EntryIterator(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (read < entryCount) {
+                return true;
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                read++;
+                return readEntry(in);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Errore di lettura del segmento " + path, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nessuna azione: lo stream era in sola lettura.
+            }
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String isbn = in.readUTF();
+        return type == DELETE ? Entry.tombstone(isbn) : new Entry(isbn, in.readUTF());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fine del file inattesa.");
+            }
+        }
+    }
+}
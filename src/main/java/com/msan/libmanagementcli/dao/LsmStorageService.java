@@ -0,0 +1,309 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.dao.LsmSegment.Entry;
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Implementazione di {@link StorageService} basata su un albero LSM ({@link LsmTree}).
+ * <p>
+ * Il percorso passato ai metodi indica una directory che contiene log, segmenti e manifest.
+ * Aggiunte, modifiche e rimozioni ({@link MutationJournal}) costano una riga di log e un inserimento
+ * nella memtable, indipendentemente dalla dimensione del catalogo; le rimozioni diventano voci di
+ * cancellazione. La scrittura dei segmenti avviene quando la memtable raggiunge la soglia, la loro
+ * fusione in background. Le ricerche per ISBN consultano i soli segmenti ammessi dal filtro di Bloom.
+ * <p>
+ * I segmenti sono ordinati solo per ISBN: le scansioni per titolo e autore leggono l'intero catalogo
+ * e lo ordinano in memoria. Gli archivi restano aperti tra una chiamata e l'altra; {@link #close()} li chiude.
+ */
+public class LsmStorageService implements MutationJournal, DeltaStorageService, OrderedStorageService, AutoCloseable {
+
+    /** Numero di default di voci della memtable oltre il quale viene scritto un segmento. */
+    public static final int DEFAULT_MEMTABLE_LIMIT = 10_000;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private final int memtableLimit;
+    private final Map<Path, LsmTree> openTrees = new HashMap<>();
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Crea il servizio con la soglia della memtable di default.
+     */
+    public LsmStorageService() {
+        this(DEFAULT_MEMTABLE_LIMIT);
+    }
+
+    /**
+     * Crea il servizio.
+     * @param memtableLimit Numero di voci della memtable oltre il quale viene scritto un segmento.
+     * @throws IllegalArgumentException se la soglia non è positiva.
+     */
+    public LsmStorageService(int memtableLimit) {
+        if (memtableLimit <= 0) {
+            throw new IllegalArgumentException("La soglia della memtable deve essere positiva.");
+        }
+        this.memtableLimit = memtableLimit;
+    }
+
+    // --- Metodi di StorageService ---
+
+    @Override
+    public void saveBooks(List<Book> books, String filePath) throws LibraryException {
+        saveBooks(books.iterator(), filePath);
+    }
+
+    /**
+     * Sostituisce il contenuto dell'archivio con i libri forniti, scrivendo nuovi segmenti.
+     */
+    @Override
+    public synchronized void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
+        logger.logInfo("Salvataggio completo dell'archivio LSM: " + filePath);
+        Iterator<Entry> entries = new Iterator<Entry>() {
+            private Book next = advance();
+
+            private Book advance() {
+                while (books.hasNext()) {
+                    Book book = books.next();
+                    if (book != null) {
+                        return book;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = toEntry(next);
+                next = advance();
+                return entry;
+            }
+        };
+        try {
+            long written = openTree(filePath).replaceAll(entries);
+            logger.logInfo("Salvataggio completato: " + written + " libri scritti.");
+        } catch (IOException e) {
+            logger.logError("Impossibile salvare l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante il salvataggio su file: " + filePath, e);
+        }
+    }
+
+    @Override
+    public List<Book> loadBooks(String filePath) throws LibraryException {
+        List<Book> loadedBooks = new ArrayList<>();
+        loadBooks(filePath, loadedBooks::add);
+        return loadedBooks;
+    }
+
+    /**
+     * Passa al consumer tutti i libri in ordine di ISBN.
+     */
+    @Override
+    public void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            logger.logWarning("File non trovato: " + filePath + ". Si parte con una libreria vuota.");
+            return;
+        }
+        scan(filePath, Order.ISBN, sink);
+    }
+
+    // --- Metodi di DeltaStorageService ---
+
+    /**
+     * Applica le modifiche con una sola scrittura del log.
+     */
+    @Override
+    public synchronized void saveChanges(List<Book> changedBooks, Set<String> removedIsbns, String filePath)
+            throws LibraryException {
+        List<Entry> entries = new ArrayList<>();
+        for (String isbn : removedIsbns) {
+            entries.add(Entry.tombstone(isbn));
+        }
+        for (Book book : changedBooks) {
+            entries.add(toEntry(book));
+        }
+        apply(filePath, entries);
+        logger.logInfo("Modifiche salvate sull'archivio " + filePath + ": " + changedBooks.size()
+                + " libri aggiunti/modificati, " + removedIsbns.size() + " rimossi.");
+    }
+
+    // --- Metodi di MutationJournal ---
+
+    @Override
+    public synchronized void recordAdd(String filePath, Book book) throws LibraryException {
+        apply(filePath, Collections.singletonList(toEntry(book)));
+    }
+
+    @Override
+    public synchronized void recordRemove(String filePath, String isbn) throws LibraryException {
+        apply(filePath, Collections.singletonList(Entry.tombstone(isbn)));
+    }
+
+    /**
+     * Registra l'aggiornamento; se l'ISBN è cambiato, il vecchio riceve una voce di cancellazione.
+     */
+    @Override
+    public synchronized void recordUpdate(String filePath, String oldIsbn, Book book) throws LibraryException {
+        List<Entry> entries = new ArrayList<>();
+        if (oldIsbn != null && !oldIsbn.equals(book.getIsbn())) {
+            entries.add(Entry.tombstone(oldIsbn));
+        }
+        entries.add(toEntry(book));
+        apply(filePath, entries);
+    }
+
+    // --- Metodi di OrderedStorageService ---
+
+    @Override
+    public synchronized Optional<Book> findBook(String filePath, String isbn) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return Optional.empty();
+        }
+        try {
+            Entry entry = openTree(filePath).get(isbn);
+            return entry == null || entry.isTombstone() ? Optional.empty() : Optional.of(Book.fromCsvString(entry.getCsv()));
+        } catch (IOException | InvalidBookDataException e) {
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+    }
+
+    /**
+     * Scansiona l'archivio per ISBN; per titolo e autore raccoglie i libri e li ordina in memoria.
+     * Le voci non decodificabili vengono saltate con un avviso.
+     */
+    @Override
+    public synchronized void scan(String filePath, Order order, Consumer<? super Book> sink) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return;
+        }
+        List<Book> collected = order == Order.ISBN ? null : new ArrayList<>();
+        Consumer<? super Book> target = collected == null ? sink : collected::add;
+        try {
+            openTree(filePath).forEach(entry -> {
+                try {
+                    target.accept(Book.fromCsvString(entry.getCsv()));
+                } catch (InvalidBookDataException e) {
+                    logger.logWarning("Voce dell'archivio saltata (dati non validi): " + e.getMessage());
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            logger.logError("Impossibile leggere l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+        if (collected != null) {
+            Comparator<Book> comparator = order == Order.TITLE
+                    ? Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER)
+                    : Comparator.comparing(Book::getAuthor, String.CASE_INSENSITIVE_ORDER);
+            collected.sort(comparator.thenComparing(Book::getIsbn));
+            collected.forEach(sink);
+        }
+    }
+
+    @Override
+    public synchronized long count(String filePath) throws LibraryException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return 0;
+        }
+        long[] count = new long[1];
+        try {
+            openTree(filePath).forEach(entry -> count[0]++);
+        } catch (IOException | RuntimeException e) {
+            throw new LibraryException("Errore durante la lettura dell'archivio: " + filePath, e);
+        }
+        return count[0];
+    }
+
+    /**
+     * Restituisce il numero di segmenti dell'archivio, utile per osservare scritture e compattazioni.
+     * @throws LibraryException Se l'archivio non può essere aperto.
+     */
+    public synchronized int getSegmentCount(String filePath) throws LibraryException {
+        try {
+            return openTree(filePath).getSegmentCount();
+        } catch (IOException e) {
+            throw new LibraryException("Errore durante l'apertura dell'archivio: " + filePath, e);
+        }
+    }
+
+    /**
+     * Attende la fine della compattazione in corso e chiude tutti gli archivi aperti.
+     */
+    @Override
+    public synchronized void close() {
+        compactionExecutor.shutdown();
+        try {
+            compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Map.Entry<Path, LsmTree> tree : openTrees.entrySet()) {
+            try {
+                tree.getValue().close();
+            } catch (IOException e) {
+                logger.logWarning("Impossibile chiudere l'archivio: " + tree.getKey());
+            }
+        }
+        openTrees.clear();
+    }
+
+    // --- Logica Interna Privata ---
+
+    private LsmTree openTree(String filePath) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        LsmTree tree = openTrees.get(path);
+        if (tree == null) {
+            if (Files.exists(path) && !Files.isDirectory(path)) {
+                throw new IOException("L'archivio LSM deve essere una directory: " + filePath);
+            }
+            tree = LsmTree.open(path, memtableLimit, compactionExecutor);
+            openTrees.put(path, tree);
+        }
+        return tree;
+    }
+
+    private void apply(String filePath, List<Entry> entries) throws LibraryException {
+        try {
+            openTree(filePath).apply(entries);
+        } catch (IOException e) {
+            logger.logError("Impossibile aggiornare l'archivio: " + filePath, e);
+            throw new LibraryException("Errore durante il salvataggio delle modifiche su: " + filePath, e);
+        }
+    }
+
+    private static Entry toEntry(Book book) {
+        return new Entry(book.getIsbn(), book.toCsvString());
+    }
+}
@@ -0,0 +1,687 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.dao.LsmSegment.Entry;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Albero LSM su una directory: memtable ordinata in memoria, log delle scritture e segmenti immutabili.
+ * <p>
+ * Ogni scrittura viene accodata al log ({@code wal-<n>.log}), forzata su disco, e inserita nella memtable; al raggiungimento
+ * della soglia la memtable diventa un nuovo {@link LsmSegment} e il log riparte da zero. Le cancellazioni
+ * sono voci "tombstone" che nascondono le versioni più vecchie finché una compattazione non le elimina.
+ * Ogni riga del log è preceduta dal CRC32 del record: all'apertura il log viene riapplicato fino al primo
+ * record incompleto o danneggiato e troncato in quel punto, così una scrittura interrotta da un crash non
+ * entra nella memtable e la scrittura successiva non si attacca alla riga troncata.
+ * Il file {@code MANIFEST}, sostituito in modo atomico, elenca il log corrente e i segmenti dal più vecchio
+ * al più recente: i file non elencati sono residui di operazioni interrotte e vengono eliminati all'apertura.
+ * <p>
+ * La compattazione è size-tiered: quando almeno {@value #MIN_COMPACTION_WINDOW} segmenti consecutivi
+ * hanno dimensioni simili vengono fusi in uno solo, in background e senza bloccare letture e scritture.
+ * I segmenti letti da una compattazione vengono eliminati solo al termine della lettura, anche se nel frattempo
+ * il contenuto è stato sostituito.
+ */
+final class LsmTree implements Closeable {
+
+    static final String MANIFEST_NAME = "MANIFEST";
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".sst";
+    private static final String PUT_RECORD = "P";
+    private static final String DELETE_RECORD = "D";
+    /** Cifre esadecimali del CRC32 che precede ogni record del log. */
+    private static final int CRC_DIGITS = 8;
+    private static final int MIN_COMPACTION_WINDOW = 4;
+    private static final int MAX_COMPACTION_WINDOW = 32;
+    /** Rapporto massimo tra le dimensioni di due segmenti dello stesso livello. */
+    private static final double SIZE_RATIO = 2.0;
+
+    private final Path directory;
+    private final int memtableLimit;
+    private final Executor compactionExecutor;
+
+    private TreeMap<String, Entry> memtable = new TreeMap<>();
+    /** Segmenti dal più vecchio al più recente. */
+    private List<LsmSegment> segments = new ArrayList<>();
+    private long walSequence;
+    private FileChannel wal;
+    private long nextSequence;
+    private boolean compactionRunning;
+    private boolean closed;
+
+    private LsmTree(Path directory, int memtableLimit, Executor compactionExecutor) {
+        this.directory = directory;
+        this.memtableLimit = memtableLimit;
+        this.compactionExecutor = compactionExecutor;
+    }
+
+    /**
+     * Apre (o crea) l'albero nella directory indicata, riapplicando il log delle scritture non ancora
+     * trasferite in un segmento.
+     * @param memtableLimit Numero di voci della memtable oltre il quale viene scritto un segmento.
+     * @param compactionExecutor Esecutore delle compattazioni in background.
+     */
+    static LsmTree open(Path directory, int memtableLimit, Executor compactionExecutor) throws IOException {
+        Files.createDirectories(directory);
+        LsmTree tree = new LsmTree(directory, memtableLimit, compactionExecutor);
+        try {
+            tree.recover();
+        } catch (IOException | RuntimeException e) {
+            tree.close();
+            throw e;
+        }
+        return tree;
+    }
+
+    // --- Letture ---
+
+    /**
+     * Cerca l'ultima versione di un ISBN: prima nella memtable, poi nei segmenti dal più recente,
+     * saltando quelli il cui filtro di Bloom esclude la chiave.
+     * @return La voce trovata (eventualmente una cancellazione), o null.
+     */
+    synchronized Entry get(String isbn) throws IOException {
+        Entry entry = memtable.get(isbn);
+        for (int i = segments.size() - 1; entry == null && i >= 0; i--) {
+            entry = segments.get(i).get(isbn);
+        }
+        return entry;
+    }
+
+    /**
+     * Passa al consumer l'ultima versione di ogni libro presente, in ordine di ISBN.
+     */
+    synchronized void forEach(Consumer<Entry> sink) throws IOException {
+        try (MergeIterator merged = merge(segments, memtable.values().iterator(), true)) {
+            while (merged.hasNext()) {
+                sink.accept(merged.next());
+            }
+        }
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    // --- Scritture ---
+
+    /**
+     * Registra un gruppo di voci (libri o cancellazioni) con una sola scrittura del log,
+     * forzata su disco prima di aggiornare la memtable.
+     */
+    synchronized void apply(List<Entry> entries) throws IOException {
+        ensureOpen();
+        StringBuilder records = new StringBuilder();
+        for (Entry entry : entries) {
+            String record = entry.isTombstone() ? DELETE_RECORD + "," + entry.getIsbn() : PUT_RECORD + "," + entry.getCsv();
+            records.append(String.format("%08x", crcOf(record))).append(',').append(record)
+                    .append(System.lineSeparator());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+        wal.force(false);
+        for (Entry entry : entries) {
+            memtable.put(entry.getIsbn(), entry);
+        }
+        if (memtable.size() >= memtableLimit) {
+            flushMemtable();
+        }
+    }
+
+    /**
+     * Sostituisce l'intero contenuto con le voci fornite, scrivendo nuovi segmenti ordinati
+     * a blocchi della dimensione della memtable; a parità di ISBN vale l'ultima voce.
+     * Il passaggio al nuovo contenuto avviene con la sostituzione del manifest.
+     * @return Il numero di voci scritte.
+     */
+    synchronized long replaceAll(Iterator<Entry> entries) throws IOException {
+        ensureOpen();
+        List<LsmSegment> written = new ArrayList<>();
+        long count = 0;
+        try {
+            TreeMap<String, Entry> chunk = new TreeMap<>();
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                chunk.put(entry.getIsbn(), entry);
+                if (chunk.size() >= memtableLimit) {
+                    count += chunk.size();
+                    written.add(writeSegment(chunk.values().iterator(), chunk.size()));
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count += chunk.size();
+                written.add(writeSegment(chunk.values().iterator(), chunk.size()));
+            }
+        } catch (IOException | RuntimeException e) {
+            discard(written);
+            throw e;
+        }
+
+        List<LsmSegment> previous = segments;
+        try {
+            switchTo(written);
+        } catch (IOException e) {
+            discard(written);
+            throw e;
+        }
+        memtable = new TreeMap<>();
+        discard(previous);
+        scheduleCompaction();
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (wal != null) {
+            wal.close();
+            wal = null;
+        }
+        for (LsmSegment segment : segments) {
+            segment.close();
+        }
+        segments = new ArrayList<>();
+    }
+
+    // --- Logica Interna Privata ---
+
+    /**
+     * Legge il manifest, apre i segmenti, elimina i file orfani e riapplica il log corrente.
+     * La riapplicazione si ferma al primo record non valido (es. l'ultimo, troncato da un crash)
+     * e il log viene troncato dopo l'ultimo record valido prima di essere riaperto in accodamento.
+     */
+    private void recover() throws IOException {
+        Path manifest = directory.resolve(MANIFEST_NAME);
+        Set<String> referenced = new HashSet<>();
+        referenced.add(MANIFEST_NAME);
+        String walName = null;
+        if (Files.exists(manifest)) {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(",", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+                if (parts[0].equals("wal")) {
+                    walName = parts[1];
+                } else if (parts[0].equals("segment")) {
+                    segments.add(LsmSegment.open(directory.resolve(parts[1])));
+                }
+                referenced.add(parts[1]);
+                nextSequence = Math.max(nextSequence, sequenceOf(parts[1]) + 1);
+            }
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!referenced.contains(name) && (name.startsWith(WAL_PREFIX) || name.startsWith(SEGMENT_PREFIX)
+                        || name.startsWith(MANIFEST_NAME + "."))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        if (walName == null) {
+            switchTo(new ArrayList<>());
+            return;
+        }
+        Path walPath = directory.resolve(walName);
+        int replayed = 0;
+        if (Files.exists(walPath)) {
+            long validBytes = 0;
+            long position = 0;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(walPath))) {
+                int b;
+                while ((b = in.read()) != -1) {
+                    position++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    String text = line.toString(StandardCharsets.UTF_8.name());
+                    line.reset();
+                    Entry entry = parseRecord(text.endsWith("\r") ? text.substring(0, text.length() - 1) : text);
+                    if (entry == null) {
+                        break;
+                    }
+                    memtable.put(entry.getIsbn(), entry);
+                    replayed++;
+                    validBytes = position;
+                }
+            }
+            if (validBytes < position) {
+                logger.logWarning("Archivio LSM " + directory + ": " + (position - validBytes)
+                        + " byte dopo l'ultimo record valido del log scartati (scrittura interrotta).");
+                try (FileChannel channel = FileChannel.open(walPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(validBytes);
+                    channel.force(true);
+                }
+            }
+        }
+        walSequence = sequenceOf(walName);
+        wal = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (replayed > 0) {
+            logger.logInfo("Archivio LSM " + directory + ": " + replayed + " scritture riapplicate dal log.");
+        }
+        if (memtable.size() >= memtableLimit) {
+            flushMemtable();
+        }
+    }
+
+    /**
+     * Interpreta una riga completa del log.
+     * Le righe senza checksum, scritte dalle versioni precedenti, vengono interpretate così come sono.
+     * @return La voce, o null se il checksum non corrisponde o il record non è valido.
+     */
+    private static Entry parseRecord(String line) {
+        long crc;
+        try {
+            crc = line.length() > CRC_DIGITS && line.charAt(CRC_DIGITS) == ','
+                    ? Long.parseLong(line.substring(0, CRC_DIGITS), 16) : -1;
+        } catch (NumberFormatException e) {
+            crc = -1;
+        }
+        if (crc < 0) {
+            return parsePayload(line);
+        }
+        String record = line.substring(CRC_DIGITS + 1);
+        return crc == crcOf(record) ? parsePayload(record) : null;
+    }
+
+    private static Entry parsePayload(String line) {
+        int comma = line.indexOf(',');
+        if (comma <= 0 || comma == line.length() - 1) {
+            return null;
+        }
+        String type = line.substring(0, comma);
+        String payload = line.substring(comma + 1);
+        if (type.equals(DELETE_RECORD)) {
+            return Entry.tombstone(payload);
+        }
+        if (type.equals(PUT_RECORD)) {
+            int isbnEnd = payload.indexOf(',');
+            return isbnEnd > 0 ? new Entry(payload.substring(0, isbnEnd), payload) : null;
+        }
+        return null;
+    }
+
+    private static long crcOf(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Scrive la memtable in un nuovo segmento e fa ripartire il log.
+     */
+    private void flushMemtable() throws IOException {
+        if (memtable.isEmpty()) {
+            return;
+        }
+        LsmSegment segment = writeSegment(memtable.values().iterator(), memtable.size());
+        List<LsmSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        try {
+            switchTo(updated);
+        } catch (IOException e) {
+            discard(Collections.singletonList(segment));
+            throw e;
+        }
+        memtable = new TreeMap<>();
+        scheduleCompaction();
+    }
+
+    /**
+     * Crea un nuovo log vuoto e scrive il manifest con i segmenti indicati; poi elimina il log precedente.
+     */
+    private void switchTo(List<LsmSegment> newSegments) throws IOException {
+        long newWalSequence = nextSequence++;
+        Path newWalPath = directory.resolve(WAL_PREFIX + newWalSequence + WAL_SUFFIX);
+        FileChannel newWal = FileChannel.open(newWalPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            writeManifest(newWalPath.getFileName().toString(), newSegments);
+        } catch (IOException e) {
+            newWal.close();
+            Files.deleteIfExists(newWalPath);
+            throw e;
+        }
+        if (wal != null) {
+            wal.close();
+            Files.deleteIfExists(directory.resolve(WAL_PREFIX + walSequence + WAL_SUFFIX));
+        }
+        wal = newWal;
+        walSequence = newWalSequence;
+        segments = newSegments;
+    }
+
+    private void writeManifest(String walName, List<LsmSegment> newSegments) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("wal," + walName);
+        for (LsmSegment segment : newSegments) {
+            lines.add("segment," + segment.getPath().getFileName());
+        }
+        Path manifest = directory.resolve(MANIFEST_NAME);
+        Path tempFile = directory.resolve(MANIFEST_NAME + ".tmp");
+        Files.write(tempFile, lines, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, manifest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private LsmSegment writeSegment(Iterator<Entry> entries, int expectedEntries) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + (nextSequence++) + SEGMENT_SUFFIX);
+        try {
+            return LsmSegment.write(path, entries, expectedEntries, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    private static void discard(List<LsmSegment> obsolete) {
+        for (LsmSegment segment : obsolete) {
+            try {
+                segment.discard();
+            } catch (IOException e) {
+                logger.logWarning("Impossibile eliminare il segmento: " + segment.getPath());
+            }
+        }
+    }
+
+    private static void release(List<LsmSegment> window) {
+        for (LsmSegment segment : window) {
+            try {
+                segment.release();
+            } catch (IOException e) {
+                logger.logWarning("Impossibile eliminare il segmento: " + segment.getPath());
+            }
+        }
+    }
+
+    /**
+     * Apre la fusione dei segmenti indicati, più eventualmente la memtable come sorgente più recente.
+     * Se l'apertura di un segmento fallisce, quelli già aperti vengono chiusi.
+     */
+    private static MergeIterator merge(List<LsmSegment> sources, Iterator<Entry> newest, boolean dropTombstones)
+            throws IOException {
+        List<Iterator<Entry>> iterators = new ArrayList<>();
+        try {
+            for (LsmSegment segment : sources) {
+                iterators.add(segment.iterator());
+            }
+            if (newest != null) {
+                iterators.add(newest);
+            }
+            return new MergeIterator(iterators, dropTombstones);
+        } catch (IOException | RuntimeException e) {
+            MergeIterator.closeAll(iterators);
+            throw e;
+        }
+    }
+
+    /**
+     * Avvia una compattazione in background se ce n'è una da fare e nessun'altra è in corso.
+     */
+    private void scheduleCompaction() {
+        if (compactionRunning || closed || selectWindow() == null) {
+            return;
+        }
+        compactionRunning = true;
+        compactionExecutor.execute(this::compact);
+    }
+
+    /**
+     * Cerca la prima sequenza di segmenti consecutivi di dimensioni simili abbastanza lunga da compattare.
+     * @return Gli estremi {@code [da, a)} nella lista dei segmenti, o null.
+     */
+    private int[] selectWindow() {
+        int start = 0;
+        while (start < segments.size()) {
+            long min = segments.get(start).getEntryCount();
+            long max = min;
+            int end = start + 1;
+            while (end < segments.size() && end - start < MAX_COMPACTION_WINDOW) {
+                long size = segments.get(end).getEntryCount();
+                if (Math.max(max, size) > SIZE_RATIO * Math.max(1, Math.min(min, size))) {
+                    break;
+                }
+                min = Math.min(min, size);
+                max = Math.max(max, size);
+                end++;
+            }
+            if (end - start >= MIN_COMPACTION_WINDOW) {
+                return new int[] {start, end};
+            }
+            start++;
+        }
+        return null;
+    }
+
+    /**
+     * Fonde i segmenti scelti senza tenere il lock, poi li sostituisce con il risultato se nel frattempo
+     * non sono cambiati. Le cancellazioni vengono eliminate solo se il gruppo comprende il segmento
+     * più vecchio, perché altrimenti nasconderebbero ancora versioni precedenti. I segmenti letti restano
+     * su disco fino al termine della fusione, anche se {@link #replaceAll} li scarta nel frattempo.
+     */
+    private void compact() {
+        while (true) {
+            List<LsmSegment> window;
+            boolean includesOldest;
+            Path outputPath;
+            synchronized (this) {
+                int[] range = closed ? null : selectWindow();
+                if (range == null) {
+                    compactionRunning = false;
+                    return;
+                }
+                window = new ArrayList<>(segments.subList(range[0], range[1]));
+                includesOldest = range[0] == 0;
+                outputPath = directory.resolve(SEGMENT_PREFIX + (nextSequence++) + SEGMENT_SUFFIX);
+                for (LsmSegment segment : window) {
+                    segment.retain();
+                }
+            }
+
+            LsmSegment output;
+            try (MergeIterator merged = merge(window, null, includesOldest)) {
+                int expectedEntries = 0;
+                for (LsmSegment segment : window) {
+                    expectedEntries += segment.getEntryCount();
+                }
+                output = LsmSegment.write(outputPath, merged, expectedEntries, true);
+            } catch (IOException | RuntimeException e) {
+                logger.logError("Compattazione dell'archivio LSM " + directory + " non riuscita.", e);
+                deleteQuietly(outputPath);
+                synchronized (this) {
+                    compactionRunning = false;
+                }
+                return;
+            } finally {
+                release(window);
+            }
+
+            synchronized (this) {
+                int start = segments.indexOf(window.get(0));
+                if (closed || start < 0 || start + window.size() > segments.size()
+                        || !segments.subList(start, start + window.size()).equals(window)) {
+                    discard(Collections.singletonList(output)); // Il contenuto è stato sostituito nel frattempo.
+                    continue;
+                }
+                List<LsmSegment> updated = new ArrayList<>(segments.subList(0, start));
+                if (output.getEntryCount() > 0) {
+                    updated.add(output);
+                }
+                updated.addAll(segments.subList(start + window.size(), segments.size()));
+                try {
+                    writeManifest(WAL_PREFIX + walSequence + WAL_SUFFIX, updated);
+                } catch (IOException e) {
+                    logger.logError("Impossibile aggiornare il manifest dell'archivio LSM " + directory + ".", e);
+                    discard(Collections.singletonList(output));
+                    compactionRunning = false;
+                    return;
+                }
+                segments = updated;
+                if (output.getEntryCount() == 0) {
+                    discard(Collections.singletonList(output));
+                }
+                discard(window);
+                logger.logInfo("Archivio LSM " + directory + ": compattati " + window.size() + " segmenti in uno ("
+                        + output.getEntryCount() + " voci).");
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Archivio LSM già chiuso: " + directory);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.logWarning("Impossibile eliminare il file: " + path);
+        }
+    }
+
+    private static long sequenceOf(String fileName) {
+        String digits = fileName.replaceAll("\\D", "");
+        try {
+            return digits.isEmpty() ? 0 : Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Fusione a k vie di sorgenti ordinate per ISBN. A parità di ISBN vince la sorgente più recente
+     * (quella con indice più alto); le cancellazioni vengono restituite o scartate a seconda del parametro.
+     * La chiusura chiude le sorgenti che leggono da file.
+     */
+    private static final class MergeIterator implements Iterator<Entry>, Closeable {
+
+        private static final class Cursor {
+            final Iterator<Entry> source;
+            final int rank;
+            Entry current;
+
+            Cursor(Iterator<Entry> source, int rank) {
+                this.source = source;
+                this.rank = rank;
+            }
+
+            boolean advance() {
+                current = source.hasNext() ? source.next() : null;
+                return current != null;
+            }
+        }
+
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(
+                Comparator.comparing((Cursor cursor) -> cursor.current.getIsbn())
+                        .thenComparing(cursor -> -cursor.rank));
+        private final List<Iterator<Entry>> sources;
+        private final boolean dropTombstones;
+        private Entry next;
+
+        MergeIterator(List<Iterator<Entry>> sources, boolean dropTombstones) {
+            this.sources = sources;
+            this.dropTombstones = dropTombstones;
+            for (int i = 0; i < sources.size(); i++) {
+                Cursor cursor = new Cursor(sources.get(i), i);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            next = computeNext();
+        }
+
+        @Override
+        public void close() {
+            closeAll(sources);
+        }
+
+        static void closeAll(List<Iterator<Entry>> sources) {
+            for (Iterator<Entry> source : sources) {
+                if (source instanceof LsmSegment.EntryIterator) {
+                    ((LsmSegment.EntryIterator) source).close();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry result = next;
+            next = computeNext();
+            return result;
+        }
+
+        private Entry computeNext() {
+            while (!queue.isEmpty()) {
+                Cursor newest = queue.poll();
+                Entry entry = newest.current;
+                if (newest.advance()) {
+                    queue.add(newest);
+                }
+                while (!queue.isEmpty() && queue.peek().current.getIsbn().equals(entry.getIsbn())) {
+                    Cursor older = queue.poll();
+                    if (older.advance()) {
+                        queue.add(older);
+                    }
+                }
+                if (!(dropTombstones && entry.isTombstone())) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+    }
+}
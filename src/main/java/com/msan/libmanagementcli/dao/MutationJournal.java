@@ -0,0 +1,40 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+/**
+ * Interfaccia opzionale per gli storage capaci di persistere le singole modifiche
+ * alla libreria, senza dover riscrivere l'intero catalogo a ogni salvataggio.
+ * Il {@code LibraryService} la utilizza se lo {@link StorageService} configurato la implementa.
+ */
+public interface MutationJournal {
+
+    /**
+     * Registra l'aggiunta di un libro.
+     *
+     * @param filePath Il percorso del file dati a cui si riferisce la modifica.
+     * @param book Il libro aggiunto.
+     * @throws LibraryException Se la scrittura della modifica fallisce.
+     */
+    void recordAdd(String filePath, Book book) throws LibraryException;
+
+    /**
+     * Registra la rimozione di un libro.
+     *
+     * @param filePath Il percorso del file dati a cui si riferisce la modifica.
+     * @param isbn L'ISBN del libro rimosso.
+     * @throws LibraryException Se la scrittura della modifica fallisce.
+     */
+    void recordRemove(String filePath, String isbn) throws LibraryException;
+
+    /**
+     * Registra l'aggiornamento di un libro (eventualmente con cambio di ISBN).
+     *
+     * @param filePath Il percorso del file dati a cui si riferisce la modifica.
+     * @param oldIsbn L'ISBN del libro prima dell'aggiornamento.
+     * @param book Il libro con i dati aggiornati.
+     * @throws LibraryException Se la scrittura della modifica fallisce.
+     */
+    void recordUpdate(String filePath, String oldIsbn, Book book) throws LibraryException;
+}
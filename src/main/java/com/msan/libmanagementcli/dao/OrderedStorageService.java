@@ -0,0 +1,56 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Estensione di {@link StorageService} per gli storage che mantengono il catalogo su disco già ordinato,
+ * e che quindi possono rispondere a ricerche puntuali e scansioni ordinate senza caricarlo in memoria.
+ * Il {@code LibraryService} la utilizza nel caricamento differito.
+ */
+public interface OrderedStorageService extends StorageService {
+
+    /**
+     * Ordinamenti disponibili per le scansioni.
+     */
+    enum Order {
+        /** Per ISBN. */
+        ISBN,
+        /** Per titolo, senza distinzione tra maiuscole e minuscole. */
+        TITLE,
+        /** Per autore, senza distinzione tra maiuscole e minuscole. */
+        AUTHOR
+    }
+
+    /**
+     * Cerca un singolo libro per ISBN.
+     *
+     * @param filePath Il percorso del file dati.
+     * @param isbn L'ISBN cercato.
+     * @return Il libro, o vuoto se non presente (anche se il file non esiste).
+     * @throws LibraryException Se la lettura fallisce.
+     */
+    Optional<Book> findBook(String filePath, String isbn) throws LibraryException;
+
+    /**
+     * Passa al consumer tutti i libri nell'ordine richiesto, uno alla volta.
+     *
+     * @param filePath Il percorso del file dati.
+     * @param order L'ordinamento della scansione.
+     * @param sink Il consumer che riceve i libri.
+     * @throws LibraryException Se la lettura fallisce.
+     */
+    void scan(String filePath, Order order, Consumer<? super Book> sink) throws LibraryException;
+
+    /**
+     * Restituisce il numero di libri presenti nel file.
+     *
+     * @param filePath Il percorso del file dati.
+     * @return Il numero di libri, 0 se il file non esiste.
+     * @throws LibraryException Se la lettura fallisce.
+     */
+    long count(String filePath) throws LibraryException;
+}
@@ -0,0 +1,439 @@
+package com.msan.libmanagementcli.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * File suddiviso in pagine di dimensione fissa, con una cache LRU di capacità limitata.
+ * <p>
+ * La pagina 0 è l'intestazione: identificativo del formato, dimensione delle pagine, numero di pagine,
+ * le radici degli alberi memorizzati e un contatore libero per chi usa il file.
+ * <p>
+ * Le pagine modificate restano in cache finché non viene chiamato {@link #flush(boolean)}, che le scrive
+ * prima in un file di appoggio ({@code <file>.dwb}, double-write buffer) e solo dopo al loro posto:
+ * se la scrittura viene interrotta, all'apertura successiva le pagine vengono ricopiate dal file di appoggio
+ * (se completo) oppure il file resta com'era prima del flush. In modalità {@code writeThrough}, pensata per
+ * costruire un file nuovo poi rinominato, le pagine modificate vengono scritte direttamente quando escono dalla cache.
+ * <p>
+ * Altrimenti le pagine modificate che escono dalla cache prima del flush vengono scritte in un file di scarico
+ * ({@code <file>.spill}) e rilette da lì: la cache resta entro la capacità senza toccare il file principale,
+ * che cambia solo al flush. Il file di scarico non serve al ripristino e viene eliminato all'apertura.
+ */
+final class PageFile implements Closeable {
+
+    /** Numero di radici memorizzabili nell'intestazione. */
+    static final int ROOT_SLOTS = 4;
+    /** Suffisso del file di appoggio per le scritture. */
+    static final String DOUBLE_WRITE_SUFFIX = ".dwb";
+    /** Suffisso del file di scarico delle pagine modificate uscite dalla cache. */
+    static final String SPILL_SUFFIX = ".spill";
+
+    private static final int MAGIC = 0x4C424254; // "LBBT"
+    private static final int VERSION = 1;
+    private static final int HEADER_PAGE = 0;
+    /**
+     * Dimensione minima delle pagine dei file nuovi. Un B+tree vuole almeno quattro voci per pagina,
+     * quindi una voce (es. ISBN più riga CSV) può occupare circa un quarto di pagina: con 4096 byte
+     * sono circa 1000 byte, abbastanza per i libri con titoli e autori lunghi.
+     */
+    static final int MIN_PAGE_SIZE = 4096;
+    /** Byte letti per l'intestazione: la dimensione delle pagine degli archivi creati con minimi più bassi. */
+    private static final int HEADER_BYTES = 512;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int cacheCapacity;
+    private final boolean writeThrough;
+    /** Cache delle pagine in ordine di accesso (la prima è la meno usata di recente). */
+    private final LinkedHashMap<Integer, CachedPage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    /** Pagine modificate uscite dalla cache prima del flush, con la loro posizione nel file di scarico. */
+    private final Map<Integer, Long> spilled = new HashMap<>();
+    private FileChannel spillChannel;
+
+    private int pageCount;
+    private final int[] roots = new int[ROOT_SLOTS];
+    private long counter;
+    private boolean headerDirty;
+    private long cacheHits;
+    private long cacheMisses;
+
+    private static final class CachedPage {
+        private final byte[] data;
+        private boolean dirty;
+
+        private CachedPage(byte[] data, boolean dirty) {
+            this.data = data;
+            this.dirty = dirty;
+        }
+    }
+
+    private PageFile(Path path, FileChannel channel, int pageSize, int cacheCapacity, boolean writeThrough) {
+        this.path = path;
+        this.channel = channel;
+        this.pageSize = pageSize;
+        this.cacheCapacity = cacheCapacity;
+        this.writeThrough = writeThrough;
+    }
+
+    /**
+     * Apre un file a pagine, creandolo se non esiste. Per un file esistente la dimensione
+     * delle pagine è quella registrata nell'intestazione.
+     * @param path Il percorso del file.
+     * @param pageSize La dimensione delle pagine per un file nuovo.
+     * @param cacheCapacity Il numero massimo di pagine tenute in cache.
+     * @param writeThrough Se true le pagine modificate possono essere scritte appena escono dalla cache.
+     * @return Il file aperto.
+     * @throws IOException se il file non è leggibile o non è un file a pagine valido.
+     */
+    static PageFile open(Path path, int pageSize, int cacheCapacity, boolean writeThrough) throws IOException {
+        if (pageSize < MIN_PAGE_SIZE || cacheCapacity <= 0) {
+            throw new IllegalArgumentException("Dimensione delle pagine o capacità della cache non valide.");
+        }
+        recoverDoubleWriteBuffer(path);
+        Files.deleteIfExists(spillPathFor(path));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                PageFile file = new PageFile(path, channel, pageSize, cacheCapacity, writeThrough);
+                file.pageCount = 1;
+                file.headerDirty = true;
+                return file;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 16 + ROOT_SLOTS * 4 + 8 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Il file non è un archivio a pagine valido: " + path);
+            }
+            PageFile file = new PageFile(path, channel, header.getInt(), cacheCapacity, writeThrough);
+            file.pageCount = header.getInt();
+            for (int i = 0; i < ROOT_SLOTS; i++) {
+                file.roots[i] = header.getInt();
+            }
+            file.counter = header.getLong();
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getRoot(int slot) {
+        return roots[slot];
+    }
+
+    void setRoot(int slot, int pageId) {
+        roots[slot] = pageId;
+        headerDirty = true;
+    }
+
+    long getCounter() {
+        return counter;
+    }
+
+    void setCounter(long counter) {
+        this.counter = counter;
+        headerDirty = true;
+    }
+
+    long getCacheHits() {
+        return cacheHits;
+    }
+
+    long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Riserva una nuova pagina in fondo al file.
+     * @return L'identificativo della pagina.
+     */
+    int allocate() throws IOException {
+        int pageId = pageCount++;
+        headerDirty = true;
+        put(pageId, new CachedPage(new byte[pageSize], true));
+        return pageId;
+    }
+
+    /**
+     * Legge una pagina, dalla cache o dal disco. L'array restituito non va modificato:
+     * per cambiare una pagina si usa {@link #write(int, byte[])}.
+     */
+    byte[] read(int pageId) throws IOException {
+        CachedPage page = cache.get(pageId);
+        if (page != null) {
+            cacheHits++;
+            return page.data;
+        }
+        cacheMisses++;
+        if (pageId <= HEADER_PAGE || pageId >= pageCount) {
+            throw new IOException("Pagina inesistente: " + pageId);
+        }
+        Long spillPosition = spilled.get(pageId);
+        if (spillPosition != null) {
+            byte[] data = readSpilled(spillPosition);
+            put(pageId, new CachedPage(data, true));
+            return data;
+        }
+        byte[] data = new byte[pageSize];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = (long) pageId * pageSize;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break; // Pagina riservata ma mai scritta: resta a zero.
+            }
+        }
+        put(pageId, new CachedPage(data, false));
+        return data;
+    }
+
+    /**
+     * Sostituisce il contenuto di una pagina. La scrittura su disco avviene al flush
+     * (o all'uscita dalla cache in modalità writeThrough).
+     */
+    void write(int pageId, byte[] data) throws IOException {
+        if (data.length != pageSize) {
+            throw new IllegalArgumentException("Dimensione della pagina non valida: " + data.length);
+        }
+        put(pageId, new CachedPage(data, true));
+    }
+
+    /**
+     * Scrive su disco tutte le pagine modificate e l'intestazione.
+     * @param sync Se true forza la scrittura fisica (fsync) prima di considerare concluso il flush.
+     */
+    void flush(boolean sync) throws IOException {
+        SortedSet<Integer> dirtyPages = new TreeSet<>(spilled.keySet());
+        for (Map.Entry<Integer, CachedPage> entry : cache.entrySet()) {
+            if (entry.getValue().dirty) {
+                dirtyPages.add(entry.getKey());
+            }
+        }
+        if (dirtyPages.isEmpty() && !headerDirty) {
+            return;
+        }
+        dirtyPages.add(HEADER_PAGE);
+
+        Path doubleWritePath = doubleWritePathFor(path);
+        if (!writeThrough) {
+            writeDoubleWriteBuffer(doubleWritePath, dirtyPages);
+        }
+        for (int pageId : dirtyPages) {
+            writeToDisk(pageId, dirtyPage(pageId));
+        }
+        if (sync) {
+            channel.force(true);
+        }
+        Files.deleteIfExists(doubleWritePath);
+        for (CachedPage page : cache.values()) {
+            page.dirty = false;
+        }
+        headerDirty = false;
+        closeSpill();
+        evict();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeSpill();
+        } finally {
+            channel.close();
+        }
+    }
+
+    static Path doubleWritePathFor(Path path) {
+        return Paths.get(path + DOUBLE_WRITE_SUFFIX);
+    }
+
+    static Path spillPathFor(Path path) {
+        return Paths.get(path + SPILL_SUFFIX);
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void put(int pageId, CachedPage page) throws IOException {
+        cache.put(pageId, page);
+        evict();
+    }
+
+    /**
+     * Riporta la cache entro la capacità, togliendo prima le pagine usate meno di recente.
+     * Le pagine modificate vengono scritte al loro posto in modalità writeThrough, altrimenti nel file di scarico.
+     */
+    private void evict() throws IOException {
+        Iterator<Map.Entry<Integer, CachedPage>> iterator = cache.entrySet().iterator();
+        int excess = cache.size() - cacheCapacity;
+        while (excess > 0 && iterator.hasNext()) {
+            Map.Entry<Integer, CachedPage> eldest = iterator.next();
+            if (eldest.getValue().dirty) {
+                if (writeThrough) {
+                    writeToDisk(eldest.getKey(), eldest.getValue().data);
+                } else {
+                    spill(eldest.getKey(), eldest.getValue().data);
+                }
+            }
+            iterator.remove();
+            excess--;
+        }
+    }
+
+    /**
+     * Scrive una pagina modificata nel file di scarico, riusando la sua posizione se c'era già.
+     */
+    private void spill(int pageId, byte[] data) throws IOException {
+        if (spillChannel == null) {
+            spillChannel = FileChannel.open(spillPathFor(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        Long position = spilled.get(pageId);
+        if (position == null) {
+            position = (long) spilled.size() * pageSize;
+            spilled.put(pageId, position);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            spillChannel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private byte[] readSpilled(long position) throws IOException {
+        byte[] data = new byte[pageSize];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (spillChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("File di scarico troncato: " + spillPathFor(path));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Contenuto da scrivere al flush per una pagina modificata: dalla cache, dal file di scarico
+     * o, per la pagina 0, l'intestazione attuale. Non altera la cache.
+     */
+    private byte[] dirtyPage(int pageId) throws IOException {
+        if (pageId == HEADER_PAGE) {
+            return encodeHeader();
+        }
+        CachedPage page = cache.get(pageId);
+        return page != null && page.dirty ? page.data : readSpilled(spilled.get(pageId));
+    }
+
+    /**
+     * Chiude ed elimina il file di scarico, dopo un flush o alla chiusura.
+     */
+    private void closeSpill() throws IOException {
+        spilled.clear();
+        if (spillChannel != null) {
+            spillChannel.close();
+            spillChannel = null;
+            Files.deleteIfExists(spillPathFor(path));
+        }
+    }
+
+    private void writeToDisk(int pageId, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = (long) pageId * pageSize;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private byte[] encodeHeader() {
+        ByteBuffer header = ByteBuffer.allocate(pageSize);
+        header.putInt(MAGIC).putInt(VERSION).putInt(pageSize).putInt(pageCount);
+        for (int root : roots) {
+            header.putInt(root);
+        }
+        header.putLong(counter);
+        return header.array();
+    }
+
+    /**
+     * Scrive le pagine nel file di appoggio: numero di pagine, dimensione, poi (id, contenuto)
+     * per ognuna e infine il CRC32 di tutto il resto.
+     */
+    private void writeDoubleWriteBuffer(Path doubleWritePath, SortedSet<Integer> pages) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel out = FileChannel.open(doubleWritePath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer prefix = ByteBuffer.allocate(8).putInt(pages.size()).putInt(pageSize);
+            writeFully(out, prefix, checksum);
+            for (int pageId : pages) {
+                writeFully(out, ByteBuffer.allocate(4).putInt(pageId), checksum);
+                writeFully(out, ByteBuffer.wrap(dirtyPage(pageId)).position(pageSize), checksum);
+            }
+            ByteBuffer crc = ByteBuffer.allocate(8).putLong(checksum.getValue());
+            crc.flip();
+            while (crc.hasRemaining()) {
+                out.write(crc);
+            }
+            out.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Se un flush precedente è stato interrotto dopo aver completato il file di appoggio,
+     * ne ricopia le pagine nel file; un file di appoggio incompleto viene scartato.
+     */
+    private static void recoverDoubleWriteBuffer(Path path) throws IOException {
+        Path doubleWritePath = doubleWritePathFor(path);
+        if (!Files.exists(doubleWritePath)) {
+            return;
+        }
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(doubleWritePath));
+        if (content.remaining() >= 16) {
+            int count = content.getInt();
+            int size = content.getInt();
+            long expectedLength = 8L + (long) count * (4 + size) + 8;
+            if (count > 0 && size >= HEADER_BYTES && expectedLength == content.capacity()) {
+                CRC32 checksum = new CRC32();
+                checksum.update(content.array(), 0, content.capacity() - 8);
+                if (checksum.getValue() == content.getLong(content.capacity() - 8)) {
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                        for (int i = 0; i < count; i++) {
+                            int pageId = content.getInt();
+                            ByteBuffer page = content.slice();
+                            page.limit(size);
+                            content.position(content.position() + size);
+                            long position = (long) pageId * size;
+                            while (page.hasRemaining()) {
+                                channel.write(page, position + page.position());
+                            }
+                        }
+                        channel.force(true);
+                    }
+                }
+            }
+        }
+        Files.delete(doubleWritePath);
+    }
+}
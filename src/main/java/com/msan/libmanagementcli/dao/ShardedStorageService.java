@@ -0,0 +1,439 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Implementazione di {@link StorageService} che divide la libreria in più file CSV (shard).
+ * <p>
+ * Il percorso passato ai metodi indica una directory con un file {@code MANIFEST} e N file
+ * {@code shard-<i>-of-<N>-g<G>.csv}; ogni libro sta nello shard {@code hash(ISBN) mod N}. Ogni shard viene
+ * letto e scritto da un {@link FileStorageService}, quindi mantiene riga di controllo, scrittura atomica
+ * e compressione. Caricamento e salvataggio elaborano gli shard in parallelo; il salvataggio delle sole
+ * modifiche ({@link DeltaStorageService}) riscrive soltanto gli shard che contengono libri modificati o rimossi.
+ * <p>
+ * Gli shard non vengono mai riscritti al loro posto: ogni salvataggio scrive gli shard nuovi con una nuova
+ * generazione {@code G} accanto ai vecchi, poi sostituisce in modo atomico il manifest, che elenca i file
+ * di ogni shard, e solo allora elimina i file non più elencati. Se la scrittura di uno shard fallisce, o il
+ * programma si interrompe prima della sostituzione del manifest, l'archivio resta quello precedente per intero;
+ * i file rimasti a metà vengono eliminati al salvataggio successivo. Il salvataggio completo usa il numero
+ * di shard configurato, e {@link #reshard(String, int)} usa lo stesso meccanismo per cambiarlo.
+ * Gli archivi con il manifest senza elenco dei file usano i nomi {@code shard-<i>-of-<N>.csv}.
+ */
+public class ShardedStorageService implements DeltaStorageService, AutoCloseable {
+
+    /** Numero di default di shard. */
+    public static final int DEFAULT_SHARD_COUNT = 8;
+    /** Nome del manifest nella directory dell'archivio. */
+    public static final String MANIFEST_NAME = "MANIFEST";
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private static final String SHARD_PREFIX = "shard-";
+    private static final String SHARD_SUFFIX = ".csv";
+    private static final String SHARDS_KEY = "shards=";
+    private static final String GENERATION_KEY = "generation=";
+    private static final String SHARD_KEY = "shard=";
+
+    /** Contenuto del manifest: generazione dell'ultimo salvataggio e file di ogni shard. */
+    private static final class Manifest {
+        private final long generation;
+        private final List<String> shardFiles;
+
+        private Manifest(long generation, List<String> shardFiles) {
+            this.generation = generation;
+            this.shardFiles = shardFiles;
+        }
+
+        private int count() {
+            return shardFiles.size();
+        }
+    }
+
+    private final FileStorageService shardStorage;
+    private final int shardCount;
+    private final ExecutorService executor;
+
+    /**
+     * Crea il servizio con il numero di shard di default e un {@link FileStorageService} di default.
+     */
+    public ShardedStorageService() {
+        this(new FileStorageService(), DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Crea il servizio.
+     * @param shardStorage Lo storage usato per leggere e scrivere i singoli shard.
+     * @param shardCount Numero di shard dei nuovi archivi e dei salvataggi completi.
+     * @throws IllegalArgumentException se lo storage è nullo o il numero di shard non è positivo.
+     */
+    public ShardedStorageService(FileStorageService shardStorage, int shardCount) {
+        if (shardStorage == null) {
+            throw new IllegalArgumentException("Lo storage degli shard non può essere nullo.");
+        }
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Il numero di shard deve essere positivo.");
+        }
+        this.shardStorage = shardStorage;
+        this.shardCount = shardCount;
+        int threads = Math.min(shardCount, Runtime.getRuntime().availableProcessors());
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "shard-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // --- Metodi di StorageService ---
+
+    @Override
+    public void saveBooks(List<Book> books, String filePath) throws LibraryException {
+        saveBooks(books.iterator(), filePath);
+    }
+
+    /**
+     * Distribuisce i libri tra gli shard e li scrive in parallelo, poi aggiorna il manifest.
+     */
+    @Override
+    public synchronized void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
+        writeAll(books, filePath, shardCount);
+    }
+
+    @Override
+    public List<Book> loadBooks(String filePath) throws LibraryException {
+        List<Book> loadedBooks = new ArrayList<>();
+        loadBooks(filePath, loadedBooks::add);
+        return loadedBooks;
+    }
+
+    /**
+     * Legge gli shard in parallelo e passa i libri al consumer, uno shard dopo l'altro, sul thread chiamante.
+     */
+    @Override
+    public synchronized void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        Manifest manifest = readManifest(filePath);
+        if (manifest == null) {
+            logger.logWarning("Archivio non trovato: " + filePath + ". Si parte con una libreria vuota.");
+            return;
+        }
+        int count = manifest.count();
+        List<Callable<List<Book>>> tasks = new ArrayList<>();
+        for (String shardFile : manifest.shardFiles) {
+            String shardPath = Paths.get(filePath, shardFile).toString();
+            tasks.add(() -> shardStorage.loadBooks(shardPath));
+        }
+        int loaded = 0;
+        for (List<Book> shardBooks : runAll(tasks, filePath)) {
+            shardBooks.forEach(sink);
+            loaded += shardBooks.size();
+        }
+        logger.logInfo("Caricamento completato: " + loaded + " libri da " + count + " shard.");
+    }
+
+    // --- Metodi di DeltaStorageService ---
+
+    /**
+     * Scrive in parallelo una nuova versione dei soli shard che contengono libri modificati o rimossi,
+     * poi la rende valida con la sostituzione del manifest.
+     */
+    @Override
+    public synchronized void saveChanges(List<Book> changedBooks, Set<String> removedIsbns, String filePath)
+            throws LibraryException {
+        Manifest manifest = readManifest(filePath);
+        if (manifest == null) {
+            // Archivio nuovo: tutti gli shard sono vuoti, basta un salvataggio completo dei libri aggiunti.
+            writeAll(changedBooks.iterator(), filePath, shardCount);
+            return;
+        }
+        int count = manifest.count();
+        long generation = manifest.generation + 1;
+        Map<Integer, List<Book>> changedByShard = new LinkedHashMap<>();
+        Map<Integer, Set<String>> removedByShard = new LinkedHashMap<>();
+        for (Book book : changedBooks) {
+            changedByShard.computeIfAbsent(shardOf(book.getIsbn(), count), shard -> new ArrayList<>()).add(book);
+        }
+        for (String isbn : removedIsbns) {
+            removedByShard.computeIfAbsent(shardOf(isbn, count), shard -> new HashSet<>()).add(isbn);
+        }
+        Set<Integer> touched = new HashSet<>(changedByShard.keySet());
+        touched.addAll(removedByShard.keySet());
+
+        List<String> shardFiles = new ArrayList<>(manifest.shardFiles);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int shard : touched) {
+            String oldPath = Paths.get(filePath, manifest.shardFiles.get(shard)).toString();
+            String newFile = shardFileName(shard, count, generation);
+            String newPath = Paths.get(filePath, newFile).toString();
+            shardFiles.set(shard, newFile);
+            List<Book> changed = changedByShard.getOrDefault(shard, new ArrayList<>());
+            Set<String> removed = removedByShard.getOrDefault(shard, new HashSet<>());
+            tasks.add(() -> {
+                Map<String, Book> catalog = new LinkedHashMap<>();
+                shardStorage.loadBooks(oldPath, book -> catalog.put(book.getIsbn(), book));
+                removed.forEach(catalog::remove);
+                changed.forEach(book -> catalog.put(book.getIsbn(), book));
+                shardStorage.saveBooks(catalog.values().iterator(), newPath);
+                return catalog.size();
+            });
+        }
+        commit(filePath, tasks, new Manifest(generation, shardFiles));
+        logger.logInfo("Modifiche salvate sull'archivio " + filePath + ": " + touched.size() + " shard su " + count
+                + " riscritti.");
+    }
+
+    // --- Ripartizione ---
+
+    /**
+     * Cambia il numero di shard di un archivio esistente, riscrivendo tutti i libri.
+     * @param filePath La directory dell'archivio.
+     * @param newShardCount Il nuovo numero di shard.
+     * @return Il numero di libri riscritti.
+     * @throws LibraryException se la lettura o la scrittura falliscono.
+     * @throws IllegalArgumentException se il numero di shard non è positivo.
+     */
+    public synchronized int reshard(String filePath, int newShardCount) throws LibraryException {
+        if (newShardCount <= 0) {
+            throw new IllegalArgumentException("Il numero di shard deve essere positivo.");
+        }
+        int previousCount = readShardCount(filePath);
+        List<Book> books = loadBooks(filePath);
+        writeAll(books.iterator(), filePath, newShardCount);
+        logger.logInfo("Archivio " + filePath + " ripartito da " + previousCount + " a " + newShardCount + " shard.");
+        return books.size();
+    }
+
+    /**
+     * Restituisce il numero di shard registrato nel manifest dell'archivio.
+     * @param filePath La directory dell'archivio.
+     * @return Il numero di shard, o 0 se l'archivio non esiste.
+     * @throws LibraryException se il manifest non è leggibile o non è valido.
+     */
+    public int readShardCount(String filePath) throws LibraryException {
+        Manifest manifest = readManifest(filePath);
+        return manifest == null ? 0 : manifest.count();
+    }
+
+    /**
+     * Restituisce lo shard di un ISBN. Usa {@link String#hashCode()}, stabile tra esecuzioni e versioni di Java.
+     */
+    static int shardOf(String isbn, int count) {
+        return Math.floorMod(isbn.hashCode(), count);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void writeAll(Iterator<? extends Book> books, String filePath, int count) throws LibraryException {
+        logger.logInfo("Salvataggio di " + filePath + " su " + count + " shard.");
+        Manifest previous;
+        try {
+            Files.createDirectories(Paths.get(filePath));
+            previous = readManifest(filePath);
+        } catch (IOException e) {
+            throw new LibraryException("Impossibile creare la directory dell'archivio: " + filePath, e);
+        }
+        long generation = previous == null ? 1 : previous.generation + 1;
+        List<List<Book>> partitions = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            partitions.add(new ArrayList<>());
+        }
+        while (books.hasNext()) {
+            Book book = books.next();
+            if (book != null) {
+                partitions.get(shardOf(book.getIsbn(), count)).add(book);
+            }
+        }
+        List<String> shardFiles = new ArrayList<>();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            String shardFile = shardFileName(shard, count, generation);
+            String shardPath = Paths.get(filePath, shardFile).toString();
+            shardFiles.add(shardFile);
+            List<Book> partition = partitions.get(shard);
+            tasks.add(() -> {
+                shardStorage.saveBooks(partition, shardPath);
+                return partition.size();
+            });
+        }
+        commit(filePath, tasks, new Manifest(generation, shardFiles));
+    }
+
+    /**
+     * Scrive i nuovi shard e li rende validi sostituendo il manifest; poi elimina i file non più elencati.
+     * Se una scrittura fallisce i nuovi file vengono eliminati e il manifest resta quello precedente.
+     */
+    private void commit(String filePath, List<Callable<Integer>> tasks, Manifest manifest) throws LibraryException {
+        try {
+            runAll(tasks, filePath);
+            writeManifest(filePath, manifest);
+        } catch (LibraryException e) {
+            deleteUnreferencedShards(filePath, readManifestQuietly(filePath));
+            throw e;
+        }
+        deleteUnreferencedShards(filePath, manifest);
+    }
+
+    /**
+     * Legge il manifest dell'archivio.
+     * @return Il manifest, o null se l'archivio non esiste.
+     * @throws LibraryException se il manifest non è leggibile o non è valido.
+     */
+    private static Manifest readManifest(String filePath) throws LibraryException {
+        Path manifest = Paths.get(filePath, MANIFEST_NAME);
+        if (!Files.exists(manifest)) {
+            return null;
+        }
+        int count = 0;
+        long generation = 0;
+        List<String> shardFiles = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (line.startsWith(SHARDS_KEY)) {
+                    count = Integer.parseInt(line.substring(SHARDS_KEY.length()).trim());
+                } else if (line.startsWith(GENERATION_KEY)) {
+                    generation = Long.parseLong(line.substring(GENERATION_KEY.length()).trim());
+                } else if (line.startsWith(SHARD_KEY)) {
+                    shardFiles.add(line.substring(SHARD_KEY.length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new LibraryException("Manifest dell'archivio non leggibile: " + manifest, e);
+        }
+        if (count <= 0 || (!shardFiles.isEmpty() && shardFiles.size() != count)) {
+            throw new LibraryException("Manifest dell'archivio non valido: " + manifest);
+        }
+        if (shardFiles.isEmpty()) {
+            for (int shard = 0; shard < count; shard++) {
+                shardFiles.add(shardFileName(shard, count, 0)); // Manifest senza elenco dei file.
+            }
+        }
+        return new Manifest(generation, shardFiles);
+    }
+
+    private static Manifest readManifestQuietly(String filePath) {
+        try {
+            return readManifest(filePath);
+        } catch (LibraryException e) {
+            return null;
+        }
+    }
+
+    private static void writeManifest(String filePath, Manifest content) throws LibraryException {
+        Path manifest = Paths.get(filePath, MANIFEST_NAME);
+        Path tempFile = Paths.get(filePath, MANIFEST_NAME + ".tmp");
+        List<String> lines = new ArrayList<>(Arrays.asList("version=2", SHARDS_KEY + content.count(),
+                "hash=isbn-string-hashcode", GENERATION_KEY + content.generation));
+        for (String shardFile : content.shardFiles) {
+            lines.add(SHARD_KEY + shardFile);
+        }
+        try {
+            Files.createDirectories(manifest.getParent());
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            try {
+                Files.move(tempFile, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, manifest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new LibraryException("Impossibile scrivere il manifest dell'archivio: " + manifest, e);
+        }
+    }
+
+    /**
+     * Elimina i file degli shard (con i loro indici) non elencati nel manifest indicato.
+     * Senza manifest non elimina nulla.
+     */
+    private static void deleteUnreferencedShards(String filePath, Manifest manifest) {
+        if (manifest == null) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>(manifest.shardFiles);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(filePath), SHARD_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int suffixEnd = name.indexOf(SHARD_SUFFIX);
+                String dataFile = suffixEnd < 0 ? name : name.substring(0, suffixEnd + SHARD_SUFFIX.length());
+                if (!referenced.contains(dataFile)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.logWarning("Impossibile eliminare i vecchi shard di: " + filePath);
+        }
+    }
+
+    /**
+     * Nome del file di uno shard; la generazione 0 indica i nomi degli archivi senza elenco dei file.
+     */
+    private static String shardFileName(int shard, int count, long generation) {
+        return generation == 0
+                ? String.format("%s%03d-of-%d%s", SHARD_PREFIX, shard, count, SHARD_SUFFIX)
+                : String.format("%s%03d-of-%d-g%d%s", SHARD_PREFIX, shard, count, generation, SHARD_SUFFIX);
+    }
+
+    /**
+     * Esegue le operazioni sugli shard in parallelo e ne restituisce i risultati nell'ordine delle operazioni.
+     * Il primo errore viene rilanciato dopo aver atteso tutte le operazioni.
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks, String filePath) throws LibraryException {
+        List<T> results = new ArrayList<>();
+        LibraryException failure = null;
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof LibraryException ? (LibraryException) e.getCause()
+                                : new LibraryException("Errore durante l'accesso agli shard di: " + filePath, e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibraryException("Operazione sugli shard interrotta: " + filePath, e);
+        }
+        if (failure != null) {
+            logger.logError("Errore durante l'accesso agli shard di: " + filePath, failure);
+            throw failure;
+        }
+        return results;
+    }
+}
@@ -3,7 +3,10 @@ package com.msan.libmanagementcli.dao;
 import com.msan.libmanagementcli.model.Book;
 import com.msan.libmanagementcli.exceptions.LibraryException;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interfaccia che definisce il contratto per i servizi di persistenza dei dati.
@@ -28,4 +31,34 @@ public interface StorageService {
      * @throws LibraryException Se il caricamento fallisce.
      */
     List<Book> loadBooks(String filePath) throws LibraryException;
-}
\ No newline at end of file
+
+    /**
+     * Salva i libri forniti da un iteratore, senza richiedere una lista già costruita.
+     * L'implementazione di default raccoglie i libri in una lista: gli storage che scrivono
+     * in streaming dovrebbero sovrascriverla.
+     *
+     * @param books L'iteratore dei libri da salvare.
+     * @param filePath Il percorso del file di destinazione.
+     * @throws LibraryException Se il salvataggio fallisce.
+     */
+    default void saveBooks(Iterator<? extends Book> books, String filePath) throws LibraryException {
+        List<Book> bookList = new ArrayList<>();
+        books.forEachRemaining(bookList::add);
+        saveBooks(bookList, filePath);
+    }
+
+    /**
+     * Carica i libri passandoli uno alla volta a un consumer, senza costruire una lista intermedia.
+     * In caso di errore il consumer potrebbe aver già ricevuto parte dei libri.
+     * L'implementazione di default passa per {@link #loadBooks(String)}.
+     *
+     * @param filePath Il percorso del file da cui leggere.
+     * @param sink Il consumer che riceve ogni libro letto.
+     * @throws LibraryException Se il caricamento fallisce.
+     */
+    default void loadBooks(String filePath, Consumer<? super Book> sink) throws LibraryException {
+        for (Book book : loadBooks(filePath)) {
+            sink.accept(book);
+        }
+    }
+}
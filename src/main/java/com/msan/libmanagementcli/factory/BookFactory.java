@@ -3,6 +3,7 @@ package com.msan.libmanagementcli.factory;
 import com.msan.libmanagementcli.model.Book;
 import com.msan.libmanagementcli.model.BookCollection;
 import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.utils.StringPool;
 
 /**
  * Fornisce metodi statici per la creazione di oggetti del modello.
@@ -13,6 +14,8 @@ public class BookFactory {
     /**
      * Crea una nuova istanza di {@link Book} dopo aver validato i campi essenziali.
      * Utilizza il pattern Builder per la costruzione dell'oggetto.
+     * Autore e genere vengono sostituiti con l'istanza canonica del rispettivo {@link StringPool},
+     * così i valori ripetuti tra i libri occupano memoria una sola volta.
      *
      * @param isbn L'ISBN del libro (obbligatorio).
      * @param title Il titolo del libro (obbligatorio).
@@ -37,9 +40,9 @@ public class BookFactory {
         }
 
         // Creazione tramite Builder
-        return new Book.BookBuilder(isbn.trim(), title.trim(), author.trim())
+        return new Book.BookBuilder(isbn.trim(), title.trim(), StringPool.authors().canonical(author.trim()))
                 .publicationYear(publicationYear)
-                .genre(genre)
+                .genre(genre != null ? StringPool.genres().canonical(genre.trim()) : null)
                 .build();
     }
 
@@ -7,15 +7,22 @@ import java.util.Objects;
 /**
  * Rappresenta un libro singolo, l'elemento base della libreria.
  * Implementa l'interfaccia LibraryItem e usa il pattern Builder per l'istanziazione.
+ * <p>
+ * Il libro è immutabile: per modificarlo se ne crea uno nuovo con il {@link BookBuilder}, che
+ * sostituisce il precedente nella libreria. Così un riferimento ottenuto dal servizio resta valido
+ * senza lock e l'hash, basato sull'ISBN, viene calcolato una sola volta alla costruzione.
  */
-public class Book implements LibraryItem {
+public final class Book implements LibraryItem {
 
     // --- Campi ---
-    private String isbn;
-    private String title;
-    private String author;
-    private int publicationYear;
-    private String genre;
+    private final String isbn;
+    private final String title;
+    private final String author;
+    private final int publicationYear;
+    private final String genre;
+    private final int hash;
+    /** Forma di ricerca (in minuscolo) del titolo, calcolata al primo uso. */
+    private String searchTitle;
 
     /** Delimitatore per la conversione da/a CSV. */
     private static final String CSV_DELIMITER = ",";
@@ -29,6 +36,7 @@ public class Book implements LibraryItem {
         this.author = builder.author;
         this.publicationYear = builder.publicationYear;
         this.genre = builder.genre;
+        this.hash = Objects.hashCode(builder.isbn);
     }
 
     // --- Metodi dell'interfaccia LibraryItem ---
@@ -57,28 +65,27 @@ public class Book implements LibraryItem {
         return author;
     }
 
-    // --- Getters e Setters ---
+    // --- Getters ---
 
-    public void setTitle(String title) {
-        this.title = (title != null ? title.trim() : null);
-    }
-    public void setAuthor(String author) {
-        this.author = (author != null ? author.trim() : null);
-    }
-    public void setIsbn(String isbn) {
-        this.isbn = (isbn != null ? isbn.trim() : null);
-    }
     public int getPublicationYear() {
         return publicationYear;
     }
-    public void setPublicationYear(int publicationYear) {
-        this.publicationYear = publicationYear;
-    }
     public String getGenre() {
         return genre;
     }
-    public void setGenre(String genre) {
-        this.genre = (genre != null ? genre.trim() : null);
+
+    /**
+     * Restituisce il titolo in minuscolo, usato dalle ricerche senza distinzione tra maiuscole e minuscole.
+     * @return Il titolo normalizzato, o una stringa vuota se il titolo è null.
+     */
+    public String getSearchTitle() {
+        // Più thread possono calcolarlo insieme: il risultato è lo stesso e String è immutabile.
+        String value = searchTitle;
+        if (value == null) {
+            value = title != null ? title.toLowerCase() : "";
+            searchTitle = value;
+        }
+        return value;
     }
 
     // --- Metodi per Conversione CSV ---
@@ -100,6 +107,8 @@ public class Book implements LibraryItem {
 
     /**
      * Crea un oggetto Book da una stringa in formato CSV.
+     * La creazione passa per {@link BookFactory#createBook}, quindi autore e genere
+     * condividono le istanze canoniche dei libri già letti.
      * @param csvLine La riga CSV da cui effettuare il parsing.
      * @return Una nuova istanza di {@link Book}.
      * @throws InvalidBookDataException se la riga non è valida.
@@ -147,12 +156,12 @@ public class Book implements LibraryItem {
         if (o == null || getClass() != o.getClass()) return false;
         Book book = (Book) o;
         // L'uguaglianza si basa sull'ISBN come chiave univoca.
-        return Objects.equals(getIsbn(), book.getIsbn());
+        return hash == book.hash && Objects.equals(isbn, book.isbn);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getIsbn());
+        return hash;
     }
 
     @Override
@@ -1,21 +1,43 @@
 package com.msan.libmanagementcli.model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Rappresenta una collezione di {@link LibraryItem} (pattern Composite).
  * Permette di raggruppare libri e altre collezioni in una struttura gerarchica.
- * In questa versione, le collezioni sono usate solo per raggruppamenti in memoria.
+ * <p>
+ * Ogni collezione conosce la collezione che la contiene e mantiene il numero di libri dell'intero
+ * sottoalbero, aggiornato lungo gli antenati a ogni {@link #addItem}/{@link #removeItem}: contare i
+ * libri sotto uno scaffale non richiede di visitarlo. Una collezione può stare in una sola collezione
+ * e non può contenere sé stessa; un libro può invece comparire in più collezioni.
+ * Le visite in profondità ({@link #createDeepIterator()}, {@link #bookSpliterator()}) usano uno
+ * stack esplicito, quindi funzionano anche con alberi molto profondi. La classe non è sicura per
+ * l'uso da più thread e l'albero non va modificato durante una visita.
+ * <p>
+ * A una collezione radice si può collegare un {@link CollectionMembershipIndex}, che le modifiche
+ * a qualunque collezione dell'albero mantengono aggiornato.
  */
 public class BookCollection implements LibraryItem {
 
     // --- Campi ---
     private String collectionName;
     private List<LibraryItem> items;
+    /** Collezione che contiene questa, o null se è una radice. */
+    private BookCollection parent;
+    /** Numero di libri nel sottoalbero (un libro presente in più punti viene contato ogni volta). */
+    private long bookCount;
+    /** Indice inverso collegato all'albero; valorizzato solo sulla radice. */
+    private CollectionMembershipIndex membershipIndex;
 
     // --- Costruttore ---
     /**
@@ -36,19 +58,147 @@ public class BookCollection implements LibraryItem {
     /**
      * Aggiunge un {@link LibraryItem} a questa collezione. Ignora gli item nulli.
      * @param item L'elemento da aggiungere.
+     * @throws IllegalArgumentException se l'item è una collezione già contenuta altrove,
+     *                                  oppure questa collezione o un suo antenato.
      */
     public void addItem(LibraryItem item) {
-        if (item != null) {
-            this.items.add(item);
+        if (item == null) {
+            return;
+        }
+        if (item instanceof BookCollection) {
+            BookCollection child = (BookCollection) item;
+            if (child.parent != null) {
+                throw new IllegalArgumentException("La collezione '" + child.getTitle() + "' è già contenuta in '"
+                        + child.parent.getTitle() + "'.");
+            }
+            for (BookCollection ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor == child) {
+                    throw new IllegalArgumentException("La collezione '" + child.getTitle() + "' non può contenere sé stessa.");
+                }
+            }
+            // Un albero che aveva un proprio indice entra in quello della nuova radice.
+            if (child.membershipIndex != null) {
+                child.indexSubtree(child.membershipIndex, false);
+                child.membershipIndex = null;
+            }
+            child.parent = this;
+        }
+        this.items.add(item);
+        propagateBookCount(bookCountOf(item));
+        CollectionMembershipIndex index = treeMembershipIndex();
+        if (index != null) {
+            if (item instanceof BookCollection) {
+                ((BookCollection) item).indexSubtree(index, true);
+            } else if (item instanceof Book && item.getIsbn() != null) {
+                index.add(item.getIsbn(), this);
+            }
         }
     }
 
     /**
-     * Rimuove un {@link LibraryItem} da questa collezione.
+     * Rimuove un {@link LibraryItem} da questa collezione (la prima occorrenza uguale, se presente).
      * @param item L'elemento da rimuovere.
      */
     public void removeItem(LibraryItem item) {
-        this.items.remove(item);
+        int index = this.items.indexOf(item);
+        if (index < 0) {
+            return;
+        }
+        LibraryItem removed = this.items.remove(index);
+        CollectionMembershipIndex membership = treeMembershipIndex();
+        if (membership != null) {
+            if (removed instanceof BookCollection) {
+                ((BookCollection) removed).indexSubtree(membership, false);
+            } else if (removed instanceof Book && removed.getIsbn() != null) {
+                membership.remove(removed.getIsbn(), this);
+            }
+        }
+        if (removed instanceof BookCollection) {
+            ((BookCollection) removed).parent = null;
+        }
+        propagateBookCount(-bookCountOf(removed));
+    }
+
+    /**
+     * Sostituisce con un altro libro tutte le occorrenze dirette di un libro (uguale per ISBN),
+     * ad esempio con la nuova versione dopo un aggiornamento. I conteggi non cambiano.
+     * @param oldBook Il libro da sostituire.
+     * @param newBook Il libro che prende il suo posto.
+     * @return Il numero di occorrenze sostituite.
+     */
+    public int replaceBook(Book oldBook, Book newBook) {
+        if (oldBook == null || newBook == null) {
+            throw new IllegalArgumentException("I libri da sostituire non possono essere null.");
+        }
+        CollectionMembershipIndex index = treeMembershipIndex();
+        int replaced = 0;
+        for (int i = 0; i < this.items.size(); i++) {
+            if (oldBook.equals(this.items.get(i))) {
+                LibraryItem previous = this.items.set(i, newBook);
+                if (index != null) {
+                    index.remove(previous.getIsbn(), this);
+                    index.add(newBook.getIsbn(), this);
+                }
+                replaced++;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Rimuove tutte le occorrenze dirette del libro con l'ISBN indicato.
+     * @param isbn L'ISBN del libro.
+     * @return Il numero di occorrenze rimosse.
+     */
+    public int removeBook(String isbn) {
+        int removed = 0;
+        for (int i = this.items.size() - 1; i >= 0; i--) {
+            LibraryItem item = this.items.get(i);
+            if (item instanceof Book && isbn.equals(item.getIsbn())) {
+                removeItem(item);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Collega un indice inverso a questo albero, registrando tutti i libri già contenuti;
+     * l'eventuale indice precedente viene scollegato.
+     * @param index L'indice da collegare, o null per scollegare quello attuale.
+     * @throws IllegalStateException se la collezione non è una radice.
+     */
+    public void attachMembershipIndex(CollectionMembershipIndex index) {
+        if (this.parent != null) {
+            throw new IllegalStateException("L'indice si collega solo a una collezione radice, non a '" + getTitle() + "'.");
+        }
+        if (this.membershipIndex == index) {
+            return;
+        }
+        if (this.membershipIndex != null) {
+            indexSubtree(this.membershipIndex, false);
+        }
+        this.membershipIndex = index;
+        if (index != null) {
+            indexSubtree(index, true);
+        }
+    }
+
+    /**
+     * Restituisce la collezione che contiene questa.
+     * @return La collezione padre, o null se questa è una radice.
+     */
+    public BookCollection getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Restituisce il numero di libri nell'intero sottoalbero, senza visitarlo.
+     * Un libro presente in più sotto-collezioni viene contato una volta per ciascuna.
+     * @return Il numero di libri contenuti, direttamente o nelle sotto-collezioni.
+     */
+    public long getBookCount() {
+        return this.bookCount;
     }
 
     /**
@@ -67,14 +217,25 @@ public class BookCollection implements LibraryItem {
     }
 
     /**
-     * Mostra il nome della collezione e ricorsivamente i suoi contenuti.
+     * Mostra il nome della collezione e tutto il sottoalbero, indentato per livello.
+     * La visita usa {@link #createDeepIterator()}, quindi non è ricorsiva.
      * @param indent Stringa di indentazione per la visualizzazione gerarchica.
      */
     @Override
     public void display(String indent) {
-        System.out.println(indent + "Collezione: " + collectionName + " (" + items.size() + " elementi)");
-        for (LibraryItem item : items) {
-            item.display(indent + "  ");
+        displayHeader(indent);
+        DeepIterator iterator = new DeepIterator(this.items);
+        while (iterator.hasNext()) {
+            LibraryItem item = iterator.next();
+            StringBuilder itemIndent = new StringBuilder(indent);
+            for (int level = 0; level < iterator.depth(); level++) {
+                itemIndent.append("  ");
+            }
+            if (item instanceof BookCollection) {
+                ((BookCollection) item).displayHeader(itemIndent.toString());
+            } else {
+                item.display(itemIndent.toString());
+            }
         }
     }
 
@@ -99,6 +260,211 @@ public class BookCollection implements LibraryItem {
         return new DirectChildrenIterator(this.items);
     }
 
+    /**
+     * Crea un iteratore che visita in profondità tutto il sottoalbero (libri e collezioni), in pre-ordine:
+     * ogni collezione precede i propri elementi. La visita non è ricorsiva.
+     * @return Un iteratore su tutti i discendenti di questa collezione.
+     */
+    public Iterator<LibraryItem> createDeepIterator() {
+        return new DeepIterator(this.items);
+    }
+
+    /**
+     * Crea uno {@link Spliterator} sui libri dell'intero sottoalbero, nello stesso ordine di
+     * {@link #createDeepIterator()}. Si divide per sotto-collezioni, scendendo nell'albero quando
+     * resta un solo ramo, e conosce la dimensione esatta di ogni parte grazie ai conteggi in cache:
+     * è adatto agli stream paralleli.
+     * @return Lo spliterator sui libri contenuti.
+     */
+    public Spliterator<Book> bookSpliterator() {
+        return new DeepBookSpliterator(this.items, 0, this.items.size(), this.bookCount);
+    }
+
+    /**
+     * Restituisce uno stream sequenziale sui libri dell'intero sottoalbero;
+     * con {@link Stream#parallel()} le parti vengono elaborate in parallelo.
+     * @return Lo stream dei libri contenuti.
+     */
+    public Stream<Book> books() {
+        return StreamSupport.stream(bookSpliterator(), false);
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void displayHeader(String indent) {
+        System.out.println(indent + "Collezione: " + collectionName + " (" + items.size() + " elementi)");
+    }
+
+    private static long bookCountOf(LibraryItem item) {
+        if (item instanceof Book) {
+            return 1;
+        }
+        return item instanceof BookCollection ? ((BookCollection) item).bookCount : 0;
+    }
+
+    /** Indice collegato alla radice dell'albero, o null. */
+    private CollectionMembershipIndex treeMembershipIndex() {
+        BookCollection root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root.membershipIndex;
+    }
+
+    /** Registra (o cancella) nell'indice i libri di questa collezione e di tutte le sotto-collezioni. */
+    private void indexSubtree(CollectionMembershipIndex index, boolean add) {
+        Deque<BookCollection> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            BookCollection collection = pending.pop();
+            for (LibraryItem item : collection.items) {
+                if (item instanceof BookCollection) {
+                    pending.push((BookCollection) item);
+                } else if (item instanceof Book && item.getIsbn() != null) {
+                    if (add) {
+                        index.add(item.getIsbn(), collection);
+                    } else {
+                        index.remove(item.getIsbn(), collection);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Aggiorna il conteggio di questa collezione e di tutti i suoi antenati. */
+    private void propagateBookCount(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (BookCollection ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.bookCount += delta;
+        }
+    }
+
+    /**
+     * Visita in pre-ordine con uno stack di iteratori, uno per livello aperto.
+     */
+    private static class DeepIterator implements Iterator<LibraryItem> {
+        private final Deque<Iterator<LibraryItem>> stack = new ArrayDeque<>();
+        /** Livello dell'ultimo elemento restituito: 1 per i figli diretti. */
+        private int depth;
+
+        DeepIterator(List<LibraryItem> items) {
+            this.stack.push(items.iterator());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!stack.isEmpty() && !stack.peek().hasNext()) {
+                stack.pop();
+            }
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public LibraryItem next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Non ci sono più elementi nella collezione.");
+            }
+            depth = stack.size();
+            LibraryItem item = stack.peek().next();
+            if (item instanceof BookCollection) {
+                stack.push(((BookCollection) item).items.iterator());
+            }
+            return item;
+        }
+
+        int depth() {
+            return depth;
+        }
+    }
+
+    /**
+     * Spliterator sui libri di un intervallo di elementi di una collezione, comprese le sotto-collezioni.
+     * La divisione spezza l'intervallo a metà; se resta un solo elemento ed è una collezione,
+     * l'intervallo diventa quello dei suoi elementi.
+     */
+    private static class DeepBookSpliterator implements Spliterator<Book> {
+        private List<LibraryItem> items;
+        private int index;
+        private int fence;
+        /** Visita della sotto-collezione in corso, o null se si sta scorrendo l'intervallo. */
+        private DeepIterator current;
+        private long remaining;
+
+        DeepBookSpliterator(List<LibraryItem> items, int index, int fence, long remaining) {
+            this.items = items;
+            this.index = index;
+            this.fence = fence;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Book> action) {
+            while (true) {
+                if (current != null) {
+                    while (current.hasNext()) {
+                        LibraryItem item = current.next();
+                        if (item instanceof Book) {
+                            remaining--;
+                            action.accept((Book) item);
+                            return true;
+                        }
+                    }
+                    current = null;
+                }
+                if (index >= fence) {
+                    return false;
+                }
+                LibraryItem item = items.get(index++);
+                if (item instanceof Book) {
+                    remaining--;
+                    action.accept((Book) item);
+                    return true;
+                }
+                if (item instanceof BookCollection) {
+                    current = new DeepIterator(((BookCollection) item).items);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<Book> trySplit() {
+            if (current != null) {
+                return null;
+            }
+            // Un solo ramo rimasto: si scende nella collezione, che ha gli stessi libri.
+            while (fence - index == 1 && items.get(index) instanceof BookCollection) {
+                List<LibraryItem> children = ((BookCollection) items.get(index)).items;
+                items = children;
+                index = 0;
+                fence = children.size();
+            }
+            if (fence - index < 2) {
+                return null;
+            }
+            int mid = (index + fence) >>> 1;
+            long prefixCount = 0;
+            for (int i = index; i < mid; i++) {
+                prefixCount += bookCountOf(items.get(i));
+            }
+            DeepBookSpliterator prefix = new DeepBookSpliterator(items, index, mid, prefixCount);
+            index = mid;
+            remaining -= prefixCount;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | SIZED | SUBSIZED;
+        }
+    }
+
     /**
      * Iteratore privato che scorre i figli diretti della collezione.
      */
@@ -0,0 +1,80 @@
+package com.msan.libmanagementcli.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indice inverso ISBN → collezioni che contengono direttamente il libro.
+ * <p>
+ * Viene collegato alle collezioni radice con {@link BookCollection#attachMembershipIndex} e da quel
+ * momento è aggiornato da {@link BookCollection#addItem}/{@link BookCollection#removeItem} in tutto
+ * l'albero: sapere dove si trova un libro non richiede di visitare le collezioni.
+ * Un libro presente più volte nella stessa collezione vi compare una volta per occorrenza.
+ * Non è sicuro per l'uso da più thread.
+ */
+public class CollectionMembershipIndex {
+
+    private final Map<String, List<BookCollection>> collectionsByIsbn = new HashMap<>();
+
+    /**
+     * Restituisce le collezioni che contengono direttamente il libro con l'ISBN indicato.
+     * @param isbn L'ISBN del libro.
+     * @return Le collezioni distinte, nell'ordine in cui il libro vi è stato aggiunto (lista non modificabile).
+     */
+    public List<BookCollection> getCollections(String isbn) {
+        List<BookCollection> occurrences = collectionsByIsbn.get(isbn);
+        if (occurrences == null) {
+            return Collections.emptyList();
+        }
+        if (occurrences.size() == 1) {
+            return Collections.singletonList(occurrences.get(0));
+        }
+        Set<BookCollection> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<BookCollection> distinct = new ArrayList<>(occurrences.size());
+        for (BookCollection collection : occurrences) {
+            if (seen.add(collection)) {
+                distinct.add(collection);
+            }
+        }
+        return Collections.unmodifiableList(distinct);
+    }
+
+    /**
+     * Indica se il libro con l'ISBN indicato è contenuto in almeno una collezione.
+     */
+    public boolean isInAnyCollection(String isbn) {
+        return collectionsByIsbn.containsKey(isbn);
+    }
+
+    /** Numero di libri distinti (per ISBN) contenuti in almeno una collezione. */
+    public int size() {
+        return collectionsByIsbn.size();
+    }
+
+    // --- Aggiornamento da BookCollection ---
+
+    void add(String isbn, BookCollection collection) {
+        collectionsByIsbn.computeIfAbsent(isbn, key -> new ArrayList<>(1)).add(collection);
+    }
+
+    void remove(String isbn, BookCollection collection) {
+        List<BookCollection> occurrences = collectionsByIsbn.get(isbn);
+        if (occurrences == null) {
+            return;
+        }
+        for (int i = occurrences.size() - 1; i >= 0; i--) {
+            if (occurrences.get(i) == collection) {
+                occurrences.remove(i);
+                break;
+            }
+        }
+        if (occurrences.isEmpty()) {
+            collectionsByIsbn.remove(isbn);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Importa in blocco un file CSV nella libreria tramite una pipeline a stadi:
+ * <ol>
+ *   <li>un lettore che legge il file a blocchi di righe, anche compresso in GZIP come i file della libreria;</li>
+ *   <li>N worker che convertono e validano le righe con {@link Book#fromCsvString(String)};</li>
+ *   <li>un unico inseritore (il thread chiamante) che aggiunge i libri con {@link LibraryService#addBooks}.</li>
+ * </ol>
+ * Gli stadi comunicano tramite code limitate: se un consumatore è più lento, il produttore si blocca
+ * invece di accumulare il file in memoria. L'inserimento a blocchi riduce il costo di lock e
+ * notifiche del {@link LibraryService} rispetto all'aggiunta di un libro alla volta.
+ * <p>
+ * L'ordine di inserimento segue quello di completamento dei worker, non quello del file.
+ * Le righe non valide vengono scartate e contate; i libri con ISBN già presente vengono contati come duplicati.
+ */
+public class BulkImportPipeline {
+
+    /** Numero di righe per blocco di default. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /** Numero massimo di blocchi in attesa tra due stadi di default. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    private static final String COMMENT_PREFIX = "#";
+
+    /** Segnale di fine righe: uno per ogni worker, confrontato per identità. */
+    private static final LineBatch END_OF_LINES = new LineBatch(0, Collections.emptyList());
+    /** Segnale di fine libri: uno da ogni worker, confrontato per identità. */
+    private static final List<Book> END_OF_BOOKS = Collections.emptyList();
+
+    /**
+     * Conversione di una riga in libro, eseguita dai worker.
+     */
+    @FunctionalInterface
+    interface LineParser {
+        Book parse(String line) throws InvalidBookDataException;
+    }
+
+    private final LibraryService libraryService;
+    private final LineParser parser;
+    private final int parserThreads;
+    private final int batchSize;
+    private final int queueCapacity;
+
+    /**
+     * Crea una pipeline con un worker per ogni processore disponibile (meno uno per il lettore)
+     * e dimensioni di default.
+     * @param libraryService Il servizio in cui importare i libri.
+     */
+    public BulkImportPipeline(LibraryService libraryService) {
+        this(libraryService, Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Crea una pipeline di importazione.
+     * @param libraryService Il servizio in cui importare i libri.
+     * @param parserThreads Numero di worker di conversione e validazione.
+     * @param batchSize Numero di righe per blocco.
+     * @param queueCapacity Numero massimo di blocchi in attesa tra due stadi.
+     * @throws IllegalArgumentException se il servizio è nullo o un parametro non è positivo.
+     */
+    public BulkImportPipeline(LibraryService libraryService, int parserThreads, int batchSize, int queueCapacity) {
+        this(libraryService, parserThreads, batchSize, queueCapacity, Book::fromCsvString);
+    }
+
+    BulkImportPipeline(LibraryService libraryService, int parserThreads, int batchSize, int queueCapacity,
+                       LineParser parser) {
+        if (libraryService == null || parser == null) {
+            throw new IllegalArgumentException("LibraryService non può essere nullo.");
+        }
+        if (parserThreads <= 0 || batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Thread, dimensione dei blocchi e capacità delle code devono essere positivi.");
+        }
+        this.libraryService = libraryService;
+        this.parser = parser;
+        this.parserThreads = parserThreads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Importa i libri contenuti in un file CSV, aggiungendoli alla libreria corrente.
+     * In caso di errore di lettura o di conversione i libri già inseriti restano nella libreria.
+     * @param filePath Il percorso del file da importare.
+     * @return Il resoconto dell'importazione.
+     * @throws LibraryException se il file non esiste, non è leggibile, la conversione di una riga fallisce
+     *                          in modo imprevisto o l'importazione viene interrotta.
+     */
+    public ImportReport importFile(String filePath) throws LibraryException {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new LibraryException("Il percorso del file da importare non può essere nullo o vuoto.");
+        }
+        long start = System.nanoTime();
+        BlockingQueue<LineBatch> lineQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Book>> bookQueue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicLong rowsRead = new AtomicLong();
+        AtomicLong rejectedRows = new AtomicLong();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parserThreads + 1, task -> {
+            Thread thread = new Thread(task, "bulk-import-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long imported = 0;
+        long duplicates = 0;
+        try {
+            executor.execute(() -> readLines(filePath, lineQueue, failure));
+            for (int i = 0; i < parserThreads; i++) {
+                executor.execute(() -> parseLines(lineQueue, bookQueue, rowsRead, rejectedRows, failure));
+            }
+
+            // Stadio di inserimento: un solo thread, blocchi interi per ogni chiamata al servizio.
+            int finishedParsers = 0;
+            while (finishedParsers < parserThreads) {
+                List<Book> books = bookQueue.take();
+                if (books == END_OF_BOOKS) {
+                    finishedParsers++;
+                } else if (failure.get() == null) {
+                    int added = libraryService.addBooks(books);
+                    imported += added;
+                    duplicates += books.size() - added;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LibraryException("Importazione da " + filePath + " interrotta.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Exception error = failure.get();
+        if (error instanceof NoSuchFileException) {
+            throw new LibraryException("File da importare non trovato: " + filePath, error);
+        } else if (error instanceof IOException) {
+            throw new LibraryException("Errore durante la lettura del file da importare: " + filePath, error);
+        } else if (error != null) {
+            throw new LibraryException("Errore durante la conversione delle righe del file da importare: " + filePath, error);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        ImportReport report = new ImportReport(filePath, rowsRead.get(), imported, rejectedRows.get(), duplicates, elapsedMillis);
+        logger.logInfo(report.describe());
+        return report;
+    }
+
+    // --- Stadi della Pipeline ---
+
+    /**
+     * Stadio di lettura: accoda le righe a blocchi, poi un segnale di fine per ogni worker.
+     * Il segnale viene inviato anche in caso di errore, così che gli stadi successivi terminino.
+     */
+    private void readLines(String filePath, BlockingQueue<LineBatch> lineQueue, AtomicReference<Exception> failure) {
+        try {
+            try (BufferedReader reader = FileStorageService.openReader(Paths.get(filePath), FileStorageService.DEFAULT_BUFFER_SIZE)) {
+                List<String> lines = new ArrayList<>(batchSize);
+                long firstLine = 1;
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    lines.add(line);
+                    if (lines.size() == batchSize) {
+                        lineQueue.put(new LineBatch(firstLine, lines));
+                        lines = new ArrayList<>(batchSize);
+                        firstLine = lineNumber + 1;
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    lineQueue.put(new LineBatch(firstLine, lines));
+                }
+            } catch (IOException e) {
+                logger.logError("Impossibile leggere il file da importare: " + filePath, e);
+                failure.compareAndSet(null, e);
+            }
+            for (int i = 0; i < parserThreads; i++) {
+                lineQueue.put(END_OF_LINES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stadio di conversione: trasforma ogni blocco di righe in un blocco di libri validi.
+     * Un errore imprevisto viene registrato in {@code failure}; il segnale di fine viene inviato
+     * comunque, così che l'inseritore non resti in attesa di un worker terminato.
+     */
+    private void parseLines(BlockingQueue<LineBatch> lineQueue, BlockingQueue<List<Book>> bookQueue,
+                            AtomicLong rowsRead, AtomicLong rejectedRows, AtomicReference<Exception> failure) {
+        try {
+            LineBatch batch;
+            while ((batch = lineQueue.take()) != END_OF_LINES) {
+                List<Book> books = new ArrayList<>(batch.lines.size());
+                long lineNumber = batch.firstLine;
+                for (String line : batch.lines) {
+                    if (!line.trim().isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+                        rowsRead.incrementAndGet();
+                        try {
+                            books.add(parser.parse(line));
+                        } catch (InvalidBookDataException e) {
+                            rejectedRows.incrementAndGet();
+                            logger.logWarning("Riga " + lineNumber + " scartata: '" + line + "'. Errore: " + e.getMessage());
+                        }
+                    }
+                    lineNumber++;
+                }
+                if (!books.isEmpty()) {
+                    bookQueue.put(books);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.logError("Conversione delle righe interrotta da un errore imprevisto.", e);
+            failure.compareAndSet(null, e);
+        } finally {
+            try {
+                bookQueue.put(END_OF_BOOKS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Blocco di righe consecutive del file, con il numero della prima riga per i messaggi di errore.
+     */
+    private static final class LineBatch {
+        private final long firstLine;
+        private final List<String> lines;
+
+        private LineBatch(long firstLine, List<String> lines) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+}
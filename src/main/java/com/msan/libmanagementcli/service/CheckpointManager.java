@@ -0,0 +1,167 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoint periodici della libreria in memoria, per limitare il tempo di ripristino all'avvio.
+ * <p>
+ * Con uno storage che registra le modifiche in un journal, l'avvio deve riapplicare tutte le modifiche
+ * successive all'ultima base scritta. Il gestore scrive una nuova base (checkpoint) quando il journal
+ * raggiunge {@code maxJournalRecords} record e comunque ogni {@code intervalMillis}, se ci sono modifiche:
+ * il ripristino legge l'ultimo checkpoint e riapplica al più circa {@code maxJournalRecords} record,
+ * indipendentemente dalla dimensione del catalogo.
+ * <p>
+ * L'istantanea viene catturata sotto il lock del servizio ma scritta su un thread dedicato, senza
+ * bloccare le modifiche, che nel frattempo continuano sul nuovo journal.
+ */
+public class CheckpointManager implements LibraryChangeListener, AutoCloseable {
+
+    /** Numero di default di record del journal che fa scattare un checkpoint. */
+    public static final int DEFAULT_MAX_JOURNAL_RECORDS = 500;
+    /** Intervallo di default tra due checkpoint periodici, in millisecondi. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 60_000;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final LibraryService libraryService;
+    private final int maxJournalRecords;
+    private final long intervalMillis;
+    private final ScheduledExecutorService executor;
+
+    // --- Stato protetto dal lock dell'istanza ---
+    private boolean checkPending;
+    private long completedCheckpoints;
+    private boolean closed;
+
+    /**
+     * Crea il gestore con soglia e intervallo di default.
+     * @param libraryService Il servizio di cui scrivere i checkpoint.
+     */
+    public CheckpointManager(LibraryService libraryService) {
+        this(libraryService, DEFAULT_MAX_JOURNAL_RECORDS, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Crea il gestore.
+     * @param libraryService Il servizio di cui scrivere i checkpoint.
+     * @param maxJournalRecords Record del journal oltre i quali viene scritto un checkpoint.
+     * @param intervalMillis Intervallo tra due checkpoint periodici.
+     * @throws IllegalArgumentException se il servizio è nullo o i parametri non sono positivi.
+     */
+    public CheckpointManager(LibraryService libraryService, int maxJournalRecords, long intervalMillis) {
+        if (libraryService == null) {
+            throw new IllegalArgumentException("LibraryService non può essere nullo.");
+        }
+        if (maxJournalRecords <= 0 || intervalMillis <= 0) {
+            throw new IllegalArgumentException("Soglia del journal e intervallo dei checkpoint devono essere positivi.");
+        }
+        this.libraryService = libraryService;
+        this.maxJournalRecords = maxJournalRecords;
+        this.intervalMillis = intervalMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Inizia ad osservare il servizio e avvia i checkpoint periodici.
+     */
+    public void start() {
+        libraryService.addChangeListener(this);
+        executor.scheduleWithFixedDelay(() -> checkpoint(1), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        logger.logInfo("Checkpoint attivi (ogni " + maxJournalRecords + " modifiche o " + intervalMillis + " ms).");
+    }
+
+    /**
+     * Pianifica il controllo della lunghezza del journal; più modifiche ravvicinate producono un solo controllo.
+     */
+    @Override
+    public synchronized void onLibraryChanged(long generation) {
+        if (closed || checkPending) {
+            return;
+        }
+        checkPending = true;
+        executor.execute(() -> {
+            synchronized (this) {
+                checkPending = false;
+            }
+            checkpoint(maxJournalRecords);
+        });
+    }
+
+    /**
+     * Scrive subito, sul thread chiamante, un checkpoint se il journal contiene modifiche.
+     * @return true se il checkpoint è stato scritto o non serviva.
+     */
+    public boolean checkpointNow() {
+        return checkpoint(1);
+    }
+
+    /**
+     * Smette di osservare il servizio e ferma il thread di background, attendendo il checkpoint in corso.
+     * Le modifiche non incluse in un checkpoint restano nel journal.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        libraryService.removeChangeListener(this);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.logWarning("Il checkpoint in corso non è terminato entro " + SHUTDOWN_TIMEOUT_SECONDS + " secondi.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.logInfo("Checkpoint terminati: " + completedCheckpoints + " scritti.");
+    }
+
+    /** Numero di checkpoint scritti su disco. */
+    public synchronized long getCompletedCheckpoints() {
+        return completedCheckpoints;
+    }
+
+    // --- Logica Interna Privata ---
+
+    private boolean checkpoint(int minJournalRecords) {
+        Optional<LibraryService.SaveSnapshot> snapshot;
+        try {
+            snapshot = libraryService.beginCheckpoint(minJournalRecords);
+        } catch (LibraryException e) {
+            logger.logError("Impossibile avviare il checkpoint.", e);
+            return false;
+        }
+        if (!snapshot.isPresent()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            if (libraryService.writeCheckpoint(snapshot.get())) {
+                synchronized (this) {
+                    completedCheckpoints++;
+                }
+                logger.logInfo("Checkpoint di " + snapshot.get().getFilePath() + " scritto: " + snapshot.get().size()
+                        + " libri in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            }
+            return true;
+        } catch (LibraryException e) {
+            // I journal restano su disco: il ripristino resta corretto, solo più lungo.
+            logger.logError("Checkpoint di " + snapshot.get().getFilePath() + " fallito.", e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.LibraryItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia per colonne (struct-of-arrays) dei libri della libreria, usata da {@link LibraryService}
+ * per ricerche e aggregazioni su tutto il catalogo.
+ * <p>
+ * Invece di scorrere una lista di oggetti {@link Book} sparsi nell'heap, le scansioni leggono array
+ * primitivi contigui: anni in un {@code int[]}, autori e generi codificati con un dizionario
+ * (un {@code int[]} di identificativi più l'elenco dei valori distinti) e i titoli, già in minuscolo,
+ * concatenati in blocchi di {@code char[]} con la posizione di ciascuno. Gli autori vengono portati
+ * in minuscolo una volta per valore del dizionario. I filtri su autore e genere vengono valutati
+ * una volta per valore del dizionario e poi applicati con un semplice confronto di interi.
+ * <p>
+ * La copia viene aggiornata a ogni modifica, come {@link PhoneticAuthorIndex}: un libro nuovo diventa
+ * una riga in fondo, un libro modificato riscrive la propria riga (il nuovo titolo viene accodato ai blocchi)
+ * e uno rimosso lascia una riga vuota. Quando le righe vuote o i titoli non più usati superano quelli vivi,
+ * la copia viene compattata. Le righe seguono quindi l'ordine della libreria e i libri trovati vengono
+ * ricostruiti dalle colonne. Non è sicura per l'uso da più thread.
+ */
+final class ColumnarCatalog {
+
+    /** Identificativo usato per i valori null di autore e genere. */
+    static final int NO_VALUE = -1;
+
+    private static final int INITIAL_ROWS = 16;
+    /** Dimensione di un blocco di titoli; un titolo più lungo occupa un blocco tutto suo. */
+    private static final int TITLE_BLOCK_CHARS = 1 << 20;
+
+    /** Righe occupate, comprese quelle vuote. */
+    private int rowCount;
+    private int removedRows;
+    /** ISBN per riga; null per le righe dei libri rimossi. */
+    private String[] isbns = new String[INITIAL_ROWS];
+    private String[] titles = new String[INITIAL_ROWS];
+    private int[] years = new int[INITIAL_ROWS];
+    private int[] authorIds = new int[INITIAL_ROWS];
+    private int[] genreIds = new int[INITIAL_ROWS];
+    /** Posizione del titolo in minuscolo: indice del blocco nei 32 bit alti, inizio nel blocco in quelli bassi. */
+    private long[] titleStarts = new long[INITIAL_ROWS];
+    private int[] titleLengths = new int[INITIAL_ROWS];
+
+    private final Map<String, Integer> rowByIsbn = new HashMap<>();
+    private final List<char[]> titleBlocks = new ArrayList<>();
+    private int lastBlockUsed;
+    /** Caratteri dei titoli delle righe vive e di quelli non più usati, in long per cataloghi molto grandi. */
+    private long liveTitleChars;
+    private long unusedTitleChars;
+
+    private final Map<String, Integer> authorDictionary = new HashMap<>();
+    private final List<String> authors = new ArrayList<>();
+    /** Autori distinti, nella forma di ricerca in minuscolo. */
+    private final List<String> searchAuthors = new ArrayList<>();
+    private final Map<String, Integer> genreDictionary = new HashMap<>();
+    private final List<String> genres = new ArrayList<>();
+
+    /**
+     * Costruisce la copia per colonne dei libri presenti tra gli elementi indicati.
+     * @param items Gli elementi della libreria; quelli che non sono libri vengono ignorati.
+     * @return La copia per colonne.
+     */
+    static ColumnarCatalog build(List<? extends LibraryItem> items) {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        for (LibraryItem item : items) {
+            if (item instanceof Book) {
+                catalog.put((Book) item);
+            }
+        }
+        return catalog;
+    }
+
+    /** Numero di libri nella copia. */
+    int size() {
+        return rowCount - removedRows;
+    }
+
+    /**
+     * Aggiunge il libro in fondo, o riscrive la riga del libro con lo stesso ISBN.
+     * @param book Il libro.
+     */
+    void put(Book book) {
+        Integer row = rowByIsbn.get(book.getIsbn());
+        if (row == null) {
+            ensureCapacity(rowCount + 1);
+            row = rowCount++;
+            rowByIsbn.put(book.getIsbn(), row);
+        } else {
+            unusedTitleChars += titleLengths[row];
+            liveTitleChars -= titleLengths[row];
+        }
+        writeRow(row, book);
+        compactIfWasteful();
+    }
+
+    /**
+     * Sostituisce il libro con ISBN {@code oldIsbn} con una nuova versione con ISBN diverso, nella stessa riga.
+     * @param oldIsbn L'ISBN precedente.
+     * @param book La nuova versione del libro.
+     */
+    void replace(String oldIsbn, Book book) {
+        Integer row = rowByIsbn.get(oldIsbn);
+        if (row == null || rowByIsbn.containsKey(book.getIsbn())) {
+            remove(oldIsbn);
+            put(book);
+            return;
+        }
+        rowByIsbn.remove(oldIsbn);
+        rowByIsbn.put(book.getIsbn(), row);
+        put(book);
+    }
+
+    /**
+     * Toglie dalla copia il libro con l'ISBN indicato, se presente, lasciando la riga vuota.
+     * @param isbn L'ISBN del libro.
+     */
+    void remove(String isbn) {
+        Integer row = rowByIsbn.remove(isbn);
+        if (row == null) {
+            return;
+        }
+        isbns[row] = null;
+        titles[row] = null;
+        unusedTitleChars += titleLengths[row];
+        liveTitleChars -= titleLengths[row];
+        removedRows++;
+        compactIfWasteful();
+    }
+
+    /**
+     * Trova i libri il cui titolo contiene il testo indicato, senza distinzione tra maiuscole e minuscole.
+     * @param query Il testo da cercare (non vuoto).
+     * @return I libri trovati, nell'ordine della libreria.
+     */
+    List<Book> findByTitle(String query) {
+        char[] needle = query.toLowerCase().toCharArray();
+        List<Book> result = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            long start = titleStarts[row];
+            int from = (int) start;
+            if (isbns[row] != null
+                    && contains(titleBlocks.get((int) (start >>> 32)), from, from + titleLengths[row], needle)) {
+                result.add(bookAt(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Trova i libri il cui autore contiene il testo indicato, senza distinzione tra maiuscole e minuscole.
+     * @param query Il testo da cercare (non vuoto).
+     * @return I libri trovati, nell'ordine della libreria.
+     */
+    List<Book> findByAuthor(String query) {
+        String lowerQuery = query.toLowerCase();
+        boolean[] matching = new boolean[searchAuthors.size()];
+        boolean any = false;
+        for (int id = 0; id < matching.length; id++) {
+            matching[id] = searchAuthors.get(id).contains(lowerQuery);
+            any |= matching[id];
+        }
+        List<Book> result = new ArrayList<>();
+        if (!any) {
+            return result;
+        }
+        for (int row = 0; row < rowCount; row++) {
+            int id = authorIds[row];
+            if (id != NO_VALUE && matching[id] && isbns[row] != null) {
+                result.add(bookAt(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Trova i libri pubblicati tra due anni, estremi inclusi.
+     * @return I libri trovati, nell'ordine della libreria.
+     */
+    List<Book> findByYearRange(int fromYear, int toYear) {
+        List<Book> result = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            int year = years[row];
+            if (year >= fromYear && year <= toYear && isbns[row] != null) {
+                result.add(bookAt(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Conta i libri per genere. I libri senza genere non vengono contati.
+     * @return Il numero di libri per genere, in ordine di prima comparsa del genere.
+     */
+    Map<String, Integer> countByGenre() {
+        int[] counts = new int[genres.size()];
+        for (int row = 0; row < rowCount; row++) {
+            int id = genreIds[row];
+            if (id != NO_VALUE && isbns[row] != null) {
+                counts[id]++;
+            }
+        }
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                result.put(genres.get(id), counts[id]);
+            }
+        }
+        return result;
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void writeRow(int row, Book book) {
+        isbns[row] = book.getIsbn();
+        titles[row] = book.getTitle();
+        years[row] = book.getPublicationYear();
+        authorIds[row] = encode(authorDictionary, authors, book.getAuthor());
+        if (authorIds[row] == searchAuthors.size()) {
+            searchAuthors.add(book.getAuthor().toLowerCase());
+        }
+        genreIds[row] = encode(genreDictionary, genres, book.getGenre());
+        String title = book.getSearchTitle();
+        titleStarts[row] = appendTitle(title);
+        titleLengths[row] = title.length();
+        liveTitleChars += title.length();
+    }
+
+    /** Ricostruisce il libro della riga dai valori delle colonne. */
+    private Book bookAt(int row) {
+        int authorId = authorIds[row];
+        int genreId = genreIds[row];
+        return new Book.BookBuilder(isbns[row], titles[row], authorId == NO_VALUE ? null : authors.get(authorId))
+                .publicationYear(years[row])
+                .genre(genreId == NO_VALUE ? null : genres.get(genreId))
+                .build();
+    }
+
+    /** Accoda il titolo ai blocchi e ne restituisce la posizione. */
+    private long appendTitle(String title) {
+        int length = title.length();
+        int lastBlock = titleBlocks.size() - 1;
+        if (lastBlock < 0 || titleBlocks.get(lastBlock).length - lastBlockUsed < length) {
+            titleBlocks.add(new char[Math.max(TITLE_BLOCK_CHARS, length)]);
+            lastBlock++;
+            lastBlockUsed = 0;
+        }
+        title.getChars(0, length, titleBlocks.get(lastBlock), lastBlockUsed);
+        long start = ((long) lastBlock << 32) | lastBlockUsed;
+        lastBlockUsed += length;
+        return start;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= isbns.length) {
+            return;
+        }
+        int capacity = Math.max(rows, isbns.length + (isbns.length >> 1));
+        isbns = Arrays.copyOf(isbns, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        years = Arrays.copyOf(years, capacity);
+        authorIds = Arrays.copyOf(authorIds, capacity);
+        genreIds = Arrays.copyOf(genreIds, capacity);
+        titleStarts = Arrays.copyOf(titleStarts, capacity);
+        titleLengths = Arrays.copyOf(titleLengths, capacity);
+    }
+
+    /**
+     * Riscrive la copia con le sole righe vive quando le righe vuote sono più di quelle vive o i titoli
+     * non più usati occupano più di quelli vivi: il costo resta ammortizzato sulle modifiche che lo hanno causato.
+     * Anche i dizionari ripartono, senza i valori che nessun libro usa più.
+     */
+    private void compactIfWasteful() {
+        if (rowCount < INITIAL_ROWS
+                || (removedRows <= rowCount - removedRows && unusedTitleChars <= liveTitleChars + TITLE_BLOCK_CHARS)) {
+            return;
+        }
+        List<Book> live = new ArrayList<>(size());
+        for (int row = 0; row < rowCount; row++) {
+            if (isbns[row] != null) {
+                live.add(bookAt(row));
+            }
+        }
+        rowCount = 0;
+        removedRows = 0;
+        Arrays.fill(isbns, null);
+        Arrays.fill(titles, null);
+        rowByIsbn.clear();
+        titleBlocks.clear();
+        lastBlockUsed = 0;
+        liveTitleChars = 0;
+        unusedTitleChars = 0;
+        authorDictionary.clear();
+        authors.clear();
+        searchAuthors.clear();
+        genreDictionary.clear();
+        genres.clear();
+        for (Book book : live) {
+            rowByIsbn.put(book.getIsbn(), rowCount);
+            writeRow(rowCount++, book);
+        }
+    }
+
+    private static int encode(Map<String, Integer> dictionary, List<String> values, String value) {
+        if (value == null) {
+            return NO_VALUE;
+        }
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = values.size();
+            dictionary.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * Ricerca ingenua di {@code needle} in {@code chars[from, to)}: i titoli sono brevi,
+     * quindi conta soprattutto evitare salti in memoria.
+     */
+    private static boolean contains(char[] chars, int from, int to, char[] needle) {
+        int last = to - needle.length;
+        char first = needle[0];
+        for (int i = from; i <= last; i++) {
+            if (chars[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && chars[i + j] == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
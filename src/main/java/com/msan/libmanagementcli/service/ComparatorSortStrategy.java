@@ -0,0 +1,33 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Strategia di ordinamento descritta da un {@link Comparator}: lo stesso ordine può essere usato
+ * anche dove i libri non stanno tutti in memoria (ad esempio l'esportazione ordinata).
+ */
+@FunctionalInterface
+public interface ComparatorSortStrategy extends SortStrategy {
+
+    /**
+     * Restituisce il comparatore che definisce l'ordine della strategia.
+     *
+     * @return Il comparatore dei libri.
+     */
+    Comparator<Book> getComparator();
+
+    /**
+     * Ordina la lista di libri fornita con {@link #getComparator()}, modificandola direttamente (in-place).
+     *
+     * @param books La lista di {@link Book} da ordinare.
+     */
+    @Override
+    default void sort(List<Book> books) {
+        if (books == null) {
+            return;
+        }
+        books.sort(getComparator());
+    }
+}
@@ -0,0 +1,75 @@
+package com.msan.libmanagementcli.service;
+
+/**
+ * Resoconto di un'importazione in blocco: righe lette, libri importati, righe scartate
+ * e throughput ottenuto.
+ */
+public class ImportReport {
+
+    private final String filePath;
+    private final long rowsRead;
+    private final long importedBooks;
+    private final long rejectedRows;
+    private final long duplicateBooks;
+    private final long elapsedMillis;
+
+    ImportReport(String filePath, long rowsRead, long importedBooks, long rejectedRows, long duplicateBooks,
+                 long elapsedMillis) {
+        this.filePath = filePath;
+        this.rowsRead = rowsRead;
+        this.importedBooks = importedBooks;
+        this.rejectedRows = rejectedRows;
+        this.duplicateBooks = duplicateBooks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /** Numero di righe dati lette (escluse righe vuote e di commento). */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /** Numero di libri effettivamente aggiunti alla libreria. */
+    public long getImportedBooks() {
+        return importedBooks;
+    }
+
+    /** Numero di righe scartate perché malformate o con dati non validi. */
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    /** Numero di libri validi scartati perché il loro ISBN era già presente. */
+    public long getDuplicateBooks() {
+        return duplicateBooks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Restituisce il throughput dell'importazione.
+     * @return Le righe lette al secondo.
+     */
+    public double getRowsPerSecond() {
+        return rowsRead * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    /**
+     * Restituisce una descrizione leggibile dell'importazione, adatta alla CLI.
+     * @return La descrizione del resoconto.
+     */
+    public String describe() {
+        return String.format("Importati %d libri da %s: %d righe lette, %d scartate, %d duplicati (%d ms, %.0f righe/s).",
+                importedBooks, filePath, rowsRead, rejectedRows, duplicateBooks, elapsedMillis, getRowsPerSecond());
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport [" + describe() + "]";
+    }
+}
@@ -0,0 +1,193 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Indice dei libri per ISBN usato da {@link LibraryService}, senza allocazioni nelle ricerche.
+ * <p>
+ * Gli ISBN-10 e ISBN-13 composti da sole cifre (l'ISBN-10 anche con la X di controllo finale)
+ * vengono convertiti in una chiave {@code long} ({@link #packIsbn}) e cercati in una
+ * {@link LongIntHashMap} che restituisce la posizione del libro in un array: né la conversione
+ * né la ricerca creano oggetti. Gli altri identificativi (con trattini, spazi o lettere) restano
+ * in una {@link HashMap} di stringhe. La conversione è biunivoca, quindi due ISBN sono uguali
+ * come stringhe se e solo se hanno la stessa chiave. Non è sicuro per l'uso da più thread.
+ */
+final class IsbnIndex {
+
+    /** Valore di {@link #packIsbn} per gli identificativi che non si possono convertire. */
+    static final long NOT_PACKABLE = -1L;
+
+    private static final int NO_SLOT = -1;
+    /** Bit che distingue gli ISBN-13 dagli ISBN-10 con lo stesso valore numerico. */
+    private static final long ISBN13_FLAG = 1L << 62;
+    /** Bit che segna gli ISBN-10 con la X come cifra di controllo. */
+    private static final long CHECK_X_FLAG = 1L << 61;
+
+    private final LongIntHashMap slotsByKey;
+    private Book[] books;
+    /** Slot liberati dalle rimozioni, riusati dagli inserimenti successivi. */
+    private int[] freeSlots = new int[8];
+    private int freeCount;
+    private int used;
+    private final Map<String, Book> otherIsbns = new HashMap<>();
+
+    /** Crea un indice vuoto. */
+    IsbnIndex() {
+        this(0);
+    }
+
+    /**
+     * Crea un indice vuoto dimensionato per il numero di libri indicato.
+     * @param expectedSize Numero di libri previsti.
+     */
+    IsbnIndex(int expectedSize) {
+        this.slotsByKey = new LongIntHashMap(expectedSize);
+        this.books = new Book[Math.max(expectedSize, 16)];
+    }
+
+    /**
+     * Restituisce il libro con l'ISBN indicato.
+     * @param isbn L'ISBN (può essere null).
+     * @return Il libro, o null se non è presente.
+     */
+    Book get(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        long key = packIsbn(isbn);
+        if (key == NOT_PACKABLE) {
+            return otherIsbns.get(isbn);
+        }
+        int slot = slotsByKey.get(key, NO_SLOT);
+        return slot == NO_SLOT ? null : books[slot];
+    }
+
+    /** Indica se è presente un libro con l'ISBN indicato. */
+    boolean containsKey(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        long key = packIsbn(isbn);
+        return key == NOT_PACKABLE ? otherIsbns.containsKey(isbn) : slotsByKey.containsKey(key);
+    }
+
+    /**
+     * Associa il libro all'ISBN indicato, sostituendo quello eventualmente presente.
+     * @param isbn L'ISBN (non null).
+     * @param book Il libro.
+     */
+    void put(String isbn, Book book) {
+        long key = packIsbn(isbn);
+        if (key == NOT_PACKABLE) {
+            otherIsbns.put(isbn, book);
+            return;
+        }
+        int slot = slotsByKey.get(key, NO_SLOT);
+        if (slot == NO_SLOT) {
+            slot = takeSlot();
+            slotsByKey.put(key, slot);
+        }
+        books[slot] = book;
+    }
+
+    /**
+     * Associa il libro all'ISBN indicato solo se non è già presente un altro libro.
+     * @return true se il libro è stato aggiunto.
+     */
+    boolean putIfAbsent(String isbn, Book book) {
+        if (containsKey(isbn)) {
+            return false;
+        }
+        put(isbn, book);
+        return true;
+    }
+
+    /**
+     * Rimuove il libro con l'ISBN indicato, se presente.
+     * @return true se il libro era presente.
+     */
+    boolean remove(String isbn) {
+        if (isbn == null) {
+            return false;
+        }
+        long key = packIsbn(isbn);
+        if (key == NOT_PACKABLE) {
+            return otherIsbns.remove(isbn) != null;
+        }
+        int slot = slotsByKey.get(key, NO_SLOT);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        slotsByKey.remove(key);
+        books[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /** Numero di libri indicizzati. */
+    int size() {
+        return slotsByKey.size() + otherIsbns.size();
+    }
+
+    /**
+     * Passa al consumer ogni libro indicizzato, in ordine non specificato.
+     * Il consumer non deve modificare l'indice.
+     */
+    void forEach(Consumer<Book> action) {
+        for (int slot = 0; slot < used; slot++) {
+            if (books[slot] != null) {
+                action.accept(books[slot]);
+            }
+        }
+        otherIsbns.values().forEach(action);
+    }
+
+    /**
+     * Converte un ISBN-10 o ISBN-13 di sole cifre in una chiave numerica, senza creare oggetti.
+     * Il valore delle cifre occupa i bit bassi; un bit distingue gli ISBN-13 e uno la X finale
+     * degli ISBN-10, così la conversione resta biunivoca (es. "0123456789" e "0000123456789").
+     * @param isbn L'identificativo, esattamente come è memorizzato nel libro.
+     * @return La chiave, o {@link #NOT_PACKABLE} se l'identificativo non è un ISBN di sole cifre.
+     */
+    static long packIsbn(String isbn) {
+        int length = isbn.length();
+        if (length != 10 && length != 13) {
+            return NOT_PACKABLE;
+        }
+        long value = 0;
+        long flags = length == 13 ? ISBN13_FLAG : 0;
+        for (int i = 0; i < length; i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+            } else if (c == 'X' && length == 10 && i == 9) {
+                value = value * 10;
+                flags |= CHECK_X_FLAG;
+            } else {
+                return NOT_PACKABLE;
+            }
+        }
+        return value | flags;
+    }
+
+    // --- Logica Interna Privata ---
+
+    private int takeSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (used == books.length) {
+            books = Arrays.copyOf(books, books.length * 2);
+        }
+        return used++;
+    }
+}
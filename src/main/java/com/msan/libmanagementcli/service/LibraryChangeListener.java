@@ -0,0 +1,16 @@
+package com.msan.libmanagementcli.service;
+
+/**
+ * Osservatore delle modifiche ai libri gestiti dal {@link LibraryService} (pattern Observer).
+ * Viene notificato dopo ogni aggiunta, rimozione o aggiornamento, con il lock del servizio
+ * ancora acquisito: le implementazioni devono quindi essere rapide e non bloccanti.
+ */
+@FunctionalInterface
+public interface LibraryChangeListener {
+
+    /**
+     * Chiamato dopo ogni modifica ai libri.
+     * @param generation La generazione della libreria dopo la modifica.
+     */
+    void onLibraryChanged(long generation);
+}
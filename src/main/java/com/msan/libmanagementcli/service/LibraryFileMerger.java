@@ -0,0 +1,297 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.dao.StorageService;
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+import com.msan.libmanagementcli.utils.ExternalSorter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Confronta e fonde due file della libreria per ISBN in memoria limitata.
+ * <p>
+ * Entrambi i file vengono letti in streaming e ordinati per ISBN con un {@link ExternalSorter};
+ * le due sequenze ordinate vengono poi scorse in parallelo (merge join), quindi in memoria
+ * restano al più {@code maxBooksInMemory} righe per file, qualunque sia la dimensione dei file.
+ * Se un file contiene più volte lo stesso ISBN vale la prima occorrenza, come al caricamento.
+ */
+public class LibraryFileMerger {
+
+    /**
+     * Cosa fare quando lo stesso ISBN ha dati diversi nei due file.
+     */
+    public enum ConflictPolicy {
+        /** Mantiene il libro del primo file. */
+        KEEP_LEFT,
+        /** Mantiene il libro del secondo file. */
+        KEEP_RIGHT,
+        /** Interrompe la fusione senza scrivere il file risultante. */
+        FAIL
+    }
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    /** Ordine per ISBN: il primo campo della riga CSV. */
+    private static final Comparator<String> BY_ISBN = Comparator.comparing(LibraryFileMerger::isbnOf);
+
+    private final StorageService storageService;
+    private final int maxBooksInMemory;
+    private final Path tempDirectory;
+
+    /**
+     * Crea il servizio di confronto.
+     * @param storageService Lo storage con cui leggere e scrivere i file.
+     * @param maxBooksInMemory Libri di ciascun file tenuti in memoria durante l'ordinamento.
+     * @param tempDirectory Directory dei file temporanei, o null per quella di sistema.
+     * @throws IllegalArgumentException se lo storage è null o il limite non è positivo.
+     */
+    public LibraryFileMerger(StorageService storageService, int maxBooksInMemory, Path tempDirectory) {
+        if (storageService == null || maxBooksInMemory <= 0) {
+            throw new IllegalArgumentException("Storage e limite di memoria del confronto devono essere validi.");
+        }
+        this.storageService = storageService;
+        this.maxBooksInMemory = maxBooksInMemory;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Confronta due file e passa ogni differenza al consumer, in ordine di ISBN:
+     * {@code + <csv>} per i libri aggiunti, {@code - <csv>} per quelli rimossi e
+     * {@code ~ <csv primo file> -> <csv secondo file>} per quelli modificati.
+     * @param leftPath Il file di riferimento.
+     * @param rightPath Il file da confrontare con il primo.
+     * @param differences Il consumer che riceve le righe del confronto.
+     * @return Il resoconto del confronto.
+     * @throws LibraryException se la lettura di un file o l'ordinamento falliscono.
+     */
+    public MergeReport diff(String leftPath, String rightPath, Consumer<String> differences) throws LibraryException {
+        long start = System.nanoTime();
+        try (ExternalSorter<String> left = sort(leftPath); ExternalSorter<String> right = sort(rightPath)) {
+            MergeJoin join = new MergeJoin(left.sortedIterator(), right.sortedIterator());
+            while (join.advance()) {
+                if (join.leftLine == null) {
+                    differences.accept("+ " + join.rightLine);
+                } else if (join.rightLine == null) {
+                    differences.accept("- " + join.leftLine);
+                } else if (!join.leftLine.equals(join.rightLine)) {
+                    differences.accept("~ " + join.leftLine + " -> " + join.rightLine);
+                }
+            }
+            return report(leftPath, rightPath, join, left.getRunCount() + right.getRunCount(), start);
+        } catch (IOException | UncheckedIOException e) {
+            throw sortFailure(leftPath, rightPath, e);
+        }
+    }
+
+    /**
+     * Fonde due file in un terzo, in ordine di ISBN: i libri presenti in un solo file vengono
+     * mantenuti, quelli presenti in entrambi con dati diversi seguono la politica indicata.
+     * Il file risultante può coincidere con uno dei due di partenza.
+     * @param leftPath Il primo file.
+     * @param rightPath Il secondo file.
+     * @param outputPath Il file risultante.
+     * @param policy La politica per gli ISBN in conflitto.
+     * @return Il resoconto del confronto tra i due file.
+     * @throws LibraryException se la lettura o la scrittura falliscono, o se c'è un conflitto con {@link ConflictPolicy#FAIL}.
+     */
+    public MergeReport merge(String leftPath, String rightPath, String outputPath, ConflictPolicy policy) throws LibraryException {
+        if (policy == null) {
+            throw new IllegalArgumentException("La politica dei conflitti non può essere null.");
+        }
+        long start = System.nanoTime();
+        try (ExternalSorter<String> left = sort(leftPath); ExternalSorter<String> right = sort(rightPath)) {
+            MergeJoin join = new MergeJoin(left.sortedIterator(), right.sortedIterator());
+            storageService.saveBooks(new MergedBooks(join, policy), outputPath);
+            MergeReport report = report(leftPath, rightPath, join, left.getRunCount() + right.getRunCount(), start);
+            logger.logInfo("Fusione scritta su " + outputPath + ". " + report.describe());
+            return report;
+        } catch (MergeAbortedException e) {
+            throw e.getCause();
+        } catch (IOException | UncheckedIOException e) {
+            throw sortFailure(leftPath, rightPath, e);
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    /**
+     * Legge un file in streaming e ne ordina le righe per ISBN.
+     */
+    private ExternalSorter<String> sort(String filePath) throws LibraryException, IOException {
+        ExternalSorter<String> sorter = ExternalSorter.ofLines(BY_ISBN, maxBooksInMemory, tempDirectory);
+        try {
+            storageService.loadBooks(filePath, book -> {
+                try {
+                    sorter.add(book.toCsvString());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (LibraryException | RuntimeException e) {
+            sorter.close();
+            throw e;
+        }
+        return sorter;
+    }
+
+    private static MergeReport report(String leftPath, String rightPath, MergeJoin join, int runs, long start) {
+        return new MergeReport(leftPath, rightPath, join.added, join.removed, join.changed, join.unchanged,
+                runs, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static LibraryException sortFailure(String leftPath, String rightPath, Exception e) {
+        logger.logError("Ordinamento esterno di " + leftPath + " e " + rightPath + " non riuscito.", e);
+        return new LibraryException("Errore durante l'ordinamento dei file da confrontare: " + e.getMessage(), e);
+    }
+
+    private static String isbnOf(String csvLine) {
+        int separator = csvLine.indexOf(',');
+        return separator < 0 ? csvLine : csvLine.substring(0, separator);
+    }
+
+    /**
+     * Scorre in parallelo due sequenze di righe ordinate per ISBN, una coppia per ISBN
+     * (con null dal lato in cui manca), contando le differenze.
+     */
+    private static final class MergeJoin {
+
+        private final Iterator<String> leftLines;
+        private final Iterator<String> rightLines;
+        private String nextLeft;
+        private String nextRight;
+        String leftLine;
+        String rightLine;
+        long added;
+        long removed;
+        long changed;
+        long unchanged;
+
+        MergeJoin(Iterator<String> leftLines, Iterator<String> rightLines) {
+            this.leftLines = leftLines;
+            this.rightLines = rightLines;
+            this.nextLeft = leftLines.hasNext() ? leftLines.next() : null;
+            this.nextRight = rightLines.hasNext() ? rightLines.next() : null;
+        }
+
+        /**
+         * Passa all'ISBN successivo.
+         * @return false se entrambe le sequenze sono terminate.
+         */
+        boolean advance() {
+            if (nextLeft == null && nextRight == null) {
+                leftLine = null;
+                rightLine = null;
+                return false;
+            }
+            int order = nextLeft == null ? 1 : nextRight == null ? -1 : isbnOf(nextLeft).compareTo(isbnOf(nextRight));
+            leftLine = order <= 0 ? nextLeft : null;
+            rightLine = order >= 0 ? nextRight : null;
+            if (leftLine != null) {
+                nextLeft = skipDuplicates(leftLines, leftLine);
+            }
+            if (rightLine != null) {
+                nextRight = skipDuplicates(rightLines, rightLine);
+            }
+            if (leftLine == null) {
+                added++;
+            } else if (rightLine == null) {
+                removed++;
+            } else if (leftLine.equals(rightLine)) {
+                unchanged++;
+            } else {
+                changed++;
+            }
+            return true;
+        }
+
+        /** Salta le occorrenze successive dello stesso ISBN: vale la prima. */
+        private static String skipDuplicates(Iterator<String> lines, String current) {
+            String isbn = isbnOf(current);
+            while (lines.hasNext()) {
+                String line = lines.next();
+                if (!isbnOf(line).equals(isbn)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Libri risultanti dalla fusione, prodotti su richiesta dello storage che li scrive.
+     */
+    private static final class MergedBooks implements Iterator<Book> {
+
+        private final MergeJoin join;
+        private final ConflictPolicy policy;
+        private boolean ready;
+        private boolean hasMore;
+
+        MergedBooks(MergeJoin join, ConflictPolicy policy) {
+            this.join = join;
+            this.policy = policy;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready) {
+                hasMore = join.advance();
+                ready = true;
+            }
+            return hasMore;
+        }
+
+        @Override
+        public Book next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            String line = chooseLine();
+            try {
+                return Book.fromCsvString(line);
+            } catch (InvalidBookDataException e) {
+                throw new MergeAbortedException(e);
+            }
+        }
+
+        private String chooseLine() {
+            if (join.leftLine == null || join.rightLine == null || join.leftLine.equals(join.rightLine)) {
+                return join.leftLine != null ? join.leftLine : join.rightLine;
+            }
+            switch (policy) {
+                case KEEP_LEFT:
+                    return join.leftLine;
+                case KEEP_RIGHT:
+                    return join.rightLine;
+                default:
+                    throw new MergeAbortedException(new LibraryException("Conflitto sull'ISBN " + isbnOf(join.leftLine)
+                            + ": '" + join.leftLine + "' e '" + join.rightLine + "'. Fusione annullata."));
+            }
+        }
+    }
+
+    /**
+     * Trasporta fuori dall'iteratore l'errore che interrompe la fusione.
+     */
+    private static final class MergeAbortedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        MergeAbortedException(LibraryException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized LibraryException getCause() {
+            return (LibraryException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Osserva il file corrente della libreria con un {@link WatchService} e, quando un altro programma
+ * lo modifica, applica in memoria solo le differenze ({@link LibraryService#reloadChanges(String)}).
+ * <p>
+ * Gli eventi ravvicinati (un editor che scrive il file in più passi, o un salvataggio con file temporaneo
+ * e rinomina) vengono raccolti in una sola ricarica dopo una breve attesa senza nuovi eventi.
+ * Anche i salvataggi dell'applicazione generano eventi: la ricarica successiva non trova differenze.
+ */
+public class LibraryFileWatcher implements AutoCloseable {
+
+    /** Attesa di default senza nuovi eventi prima della ricarica, in millisecondi. */
+    public static final long DEFAULT_QUIET_MILLIS = 300;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private final LibraryService libraryService;
+    private final long quietMillis;
+    /** Percorso così come usato dal servizio, per riconoscerlo come file corrente. */
+    private final String libraryPath;
+    private final Path filePath;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile long completedReloads;
+
+    /**
+     * Crea l'osservatore del file indicato, senza avviarlo.
+     * @param libraryService Il servizio in cui applicare le modifiche.
+     * @param filePath Il file da osservare.
+     * @param quietMillis Attesa senza nuovi eventi prima della ricarica.
+     * @throws IOException se il {@link WatchService} non può essere creato o la directory registrata.
+     * @throws IllegalArgumentException se un parametro non è valido.
+     */
+    public LibraryFileWatcher(LibraryService libraryService, String filePath, long quietMillis) throws IOException {
+        if (libraryService == null || filePath == null || filePath.trim().isEmpty() || quietMillis < 0) {
+            throw new IllegalArgumentException("Servizio, percorso e attesa dell'osservatore devono essere validi.");
+        }
+        this.libraryService = libraryService;
+        this.quietMillis = quietMillis;
+        this.libraryPath = filePath;
+        this.filePath = Paths.get(filePath).toAbsolutePath();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            this.filePath.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        this.thread = new Thread(this::watchLoop, "library-file-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Avvia l'osservazione su un thread dedicato.
+     */
+    public void start() {
+        thread.start();
+        logger.logInfo("Osservazione delle modifiche esterne attiva su: " + filePath);
+    }
+
+    /** Numero di ricariche eseguite dopo una modifica del file. */
+    public long getCompletedReloads() {
+        return completedReloads;
+    }
+
+    /**
+     * Ferma l'osservazione e attende la fine della ricarica in corso.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.logWarning("Impossibile chiudere il WatchService di: " + filePath);
+        }
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+                // Attende che il file smetta di cambiare prima di leggerlo.
+                WatchKey key;
+                while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Osservazione terminata da close().
+        }
+    }
+
+    /**
+     * Consuma gli eventi di una chiave.
+     * @return true se almeno un evento riguarda il file osservato.
+     */
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || filePath.getFileName().equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    private void reload() {
+        if (!filePath.toFile().exists() || !libraryPath.equals(libraryService.getCurrentFilePath())) {
+            // File rimosso o in fase di sostituzione (la ricarica avverrà all'evento di creazione),
+            // oppure la libreria gestisce ormai un altro file.
+            return;
+        }
+        try {
+            libraryService.reloadChanges(libraryPath);
+            completedReloads++;
+        } catch (LibraryException | RuntimeException e) {
+            logger.logError("Ricarica delle modifiche esterne non riuscita: " + filePath, e);
+        }
+    }
+}
@@ -1,23 +1,57 @@
 package com.msan.libmanagementcli.service;
 
+import com.msan.libmanagementcli.dao.BookOffsetIndex;
+import com.msan.libmanagementcli.dao.CheckpointingJournal;
+import com.msan.libmanagementcli.dao.CollectionFileStorage;
+import com.msan.libmanagementcli.dao.DeltaStorageService;
+import com.msan.libmanagementcli.dao.IndexedStorageService;
+import com.msan.libmanagementcli.dao.MutationJournal;
+import com.msan.libmanagementcli.dao.OrderedStorageService;
 import com.msan.libmanagementcli.dao.StorageService;
 import com.msan.libmanagementcli.exceptions.BookNotFoundException;
 import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
 import com.msan.libmanagementcli.exceptions.LibraryException;
 import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.BookCollection;
+import com.msan.libmanagementcli.model.CollectionMembershipIndex;
 import com.msan.libmanagementcli.model.LibraryItem;
 import com.msan.libmanagementcli.utils.ConsoleLogger;
+import com.msan.libmanagementcli.utils.PersistentHashMap;
+import com.msan.libmanagementcli.utils.PhoneticEncoder;
+import com.msan.libmanagementcli.utils.StringPool;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Servizio applicativo per la gestione della logica di business della libreria.
  * Implementa il pattern Singleton e gestisce la collezione di {@link LibraryItem}.
  * Utilizza {@link StorageService} per la persistenza e {@link SortStrategy} per l'ordinamento.
+ * <p>
+ * I metodi pubblici sono sincronizzati, così il servizio può essere usato anche da thread
+ * in background (es. {@link WriteBehindPersister}). La scrittura su disco di un salvataggio
+ * in background avviene fuori dal lock, su un'istantanea dei libri.
  */
 public class LibraryService {
 
@@ -27,15 +61,88 @@ public class LibraryService {
 
     // --- Campi d'Istanza ---
     private List<LibraryItem> items;
+    /** Indice dei libri per ISBN, allineato con {@link #items}, per ricerche e controlli di unicità in O(1) senza allocazioni. */
+    private IsbnIndex booksByIsbn;
     private final StorageService storageService;
+    /** Persistenza della gerarchia delle collezioni, separata dal file dei libri. */
+    private final CollectionFileStorage collectionStorage = new CollectionFileStorage();
+    /** Indice inverso ISBN → collezioni, collegato a tutte le collezioni di primo livello. */
+    private CollectionMembershipIndex membership = new CollectionMembershipIndex();
     private SortStrategy sortStrategy;
     private String currentFilePath;
 
+    // --- Caricamento Differito ---
+    /** Se true, {@link #loadLibrary} apre il file senza leggere i libri, se lo storage lo consente. */
+    private boolean lazyLoading;
+    /** True se il file corrente è aperto in modo differito e i libri non sono ancora tutti in memoria. */
+    private boolean lazyOpen;
+    /** Indice del file aperto in modo differito tramite {@link IndexedStorageService}; null altrimenti. */
+    private BookOffsetIndex lazyIndex;
+    /** Se true, {@link #loadLibrary} copia i libri fuori heap invece di creare gli oggetti in memoria. */
+    private boolean offHeap;
+    /** Copia fuori heap del file aperto con {@link #offHeap}; null altrimenti o dopo il trasferimento nell'heap. */
+    private OffHeapCatalog offHeapCatalog;
+
+    // --- Tracciamento delle Modifiche ---
+    /** Contatore delle modifiche ai libri, incrementato a ogni aggiunta, rimozione o aggiornamento. */
+    private long generation;
+    /** Valore di {@link #generation} allineato con il file {@link #syncedFilePath}. */
+    private long savedGeneration;
+    /** Percorso il cui contenuto su disco rispecchia la memoria a {@link #savedGeneration}; null se sconosciuto. */
+    private String syncedFilePath;
+    /** ISBN dei libri aggiunti o modificati dopo l'ultimo salvataggio o caricamento. */
+    private final Set<String> changedIsbns = new LinkedHashSet<>();
+    /** ISBN dei libri rimossi dopo l'ultimo salvataggio o caricamento. */
+    private final Set<String> removedIsbns = new LinkedHashSet<>();
+
+    // --- Coordinamento dei Salvataggi ---
+    /** Lock che serializza le scritture su disco; non viene mai richiesto il lock del servizio tenendo questo. */
+    private final Object saveLock = new Object();
+    /** Ultimo file scritto (o caricato) e relativa generazione, per non sovrascriverlo con dati più vecchi. */
+    private String lastWrittenPath;
+    private long lastWrittenGeneration = -1;
+    /** Data di modifica e dimensione di {@link #lastWrittenPath} subito dopo la scrittura; null se non è un file semplice. */
+    private FileTime lastWrittenModified;
+    private long lastWrittenSize = -1;
+
+    // --- Copia per Colonne ---
+    /** Copia per colonne usata da ricerche e aggregazioni; null finché non serve, poi aggiornata a ogni modifica dei libri. */
+    private ColumnarCatalog columnar;
+
+    // --- Ricerca per Rilevanza ---
+    /** Indice invertito per la ricerca per rilevanza; null finché non serve, poi aggiornato a ogni modifica dei libri. */
+    private RankedSearchIndex rankedIndex;
+
+    // --- Indice Fonetico ---
+    /** Indice fonetico degli autori; null finché non serve, poi aggiornato a ogni modifica dei libri. */
+    private PhoneticAuthorIndex phoneticAuthors;
+
+    // --- Storico delle Versioni ---
+    /** Numero predefinito di versioni del catalogo conservate. */
+    public static final int DEFAULT_MAX_VERSIONS = 32;
+    /**
+     * Catalogo persistente per ISBN, allineato con {@link #booksByIsbn}: ogni modifica produce una nuova
+     * mappa che condivide la struttura con la precedente. Null dopo un caricamento, finché non serve
+     * (prima modifica o consultazione dello storico), e finché i libri non sono tutti in memoria.
+     */
+    private PersistentHashMap<String, Book> catalog;
+    /** Descrizione e istante dell'ultimo caricamento, usati per la prima versione quando il catalogo viene costruito. */
+    private String loadDescription;
+    private Instant loadTime;
+    /** Versioni registrate, dalla più vecchia; al più {@link #maxVersions}. */
+    private final Deque<LibraryVersion> versions = new ArrayDeque<>();
+    private int maxVersions = DEFAULT_MAX_VERSIONS;
+
+    /** Osservatori notificati a ogni modifica dei libri. */
+    private final List<LibraryChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
     /**
      * Costruttore privato per implementare il pattern Singleton.
      */
     private LibraryService(StorageService storageService) {
         this.items = new ArrayList<>();
+        this.booksByIsbn = new IsbnIndex();
+        this.catalog = PersistentHashMap.empty();
         this.storageService = storageService;
         this.sortStrategy = new SortByTitleStrategy(); // Strategia di ordinamento di default
         logger.logInfo("LibraryService (Semplificato) inizializzato.");
@@ -68,7 +175,7 @@ public class LibraryService {
     /**
      * Imposta il percorso del file CSV predefinito.
      */
-    public void setCurrentFilePath(String filePath) {
+    public synchronized void setCurrentFilePath(String filePath) {
         this.currentFilePath = filePath;
         logger.logInfo("Percorso file corrente impostato a: " + (filePath != null ? filePath : "non impostato"));
     }
@@ -76,14 +183,14 @@ public class LibraryService {
     /**
      * Restituisce il percorso del file CSV predefinito.
      */
-    public String getCurrentFilePath() {
+    public synchronized String getCurrentFilePath() {
         return this.currentFilePath;
     }
 
     /**
      * Imposta la strategia di ordinamento per i libri.
      */
-    public void setSortStrategy(SortStrategy strategy) {
+    public synchronized void setSortStrategy(SortStrategy strategy) {
         this.sortStrategy = strategy;
         logger.logInfo("Strategia di ordinamento impostata a: " + (strategy != null ? strategy.getClass().getSimpleName() : "Nessuna"));
     }
@@ -91,14 +198,29 @@ public class LibraryService {
     /**
      * Restituisce la strategia di ordinamento attualmente configurata.
      */
-    public SortStrategy getSortStrategy() {
+    public synchronized SortStrategy getSortStrategy() {
         return this.sortStrategy;
     }
 
     /**
      * Restituisce una nuova lista di libri ordinati secondo la strategia corrente.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public List<Book> getSortedBooks() {
+    public synchronized List<Book> getSortedBooks() throws LibraryException {
+        Optional<List<Book>> scanned = scanInStorageOrder();
+        if (scanned.isPresent()) {
+            return scanned.get();
+        }
+        if (this.offHeapCatalog != null) {
+            // Copie temporanee dei libri: la copia fuori heap resta la sola copia permanente.
+            List<Book> books = new ArrayList<>(this.offHeapCatalog.size());
+            this.offHeapCatalog.forEach(view -> books.add(view.toBook()));
+            if (this.sortStrategy != null) {
+                this.sortStrategy.sort(books);
+            }
+            return books;
+        }
+        materialize();
         List<Book> booksToSort = this.items.stream()
             .filter(Book.class::isInstance)
             .map(Book.class::cast)
@@ -112,11 +234,36 @@ public class LibraryService {
     
     /**
      * Restituisce una vista non modificabile di tutti gli {@link LibraryItem} nella libreria.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public List<LibraryItem> getAllItems() {
+    public synchronized List<LibraryItem> getAllItems() throws LibraryException {
+        materialize();
         return Collections.unmodifiableList(new ArrayList<>(this.items));
     }
 
+    /**
+     * Passa ogni libro della libreria al consumer, nell'ordine di memorizzazione.
+     * Se la libreria è aperta in modo differito i libri vengono letti in streaming dal file,
+     * senza caricarli in memoria.
+     * @param sink Il consumer che riceve i libri.
+     * @throws LibraryException se la lettura dal file fallisce.
+     */
+    public synchronized void forEachBook(Consumer<? super Book> sink) throws LibraryException {
+        if (this.offHeapCatalog != null) {
+            this.offHeapCatalog.forEach(view -> sink.accept(view.toBook()));
+            return;
+        }
+        if (this.lazyOpen) {
+            storageService.loadBooks(this.currentFilePath, sink);
+            return;
+        }
+        for (LibraryItem item : this.items) {
+            if (item instanceof Book) {
+                sink.accept((Book) item);
+            }
+        }
+    }
+
     // --- Operazioni CRUD e Ricerca ---
 
     /**
@@ -124,42 +271,158 @@ public class LibraryService {
      * Per i {@link Book}, verifica l'unicità dell'ISBN.
      * @param item L'item da aggiungere.
      * @throws InvalidBookDataException se l'item o i suoi dati essenziali non sono validi.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public void addItem(LibraryItem item) throws InvalidBookDataException {
+    public synchronized void addItem(LibraryItem item) throws LibraryException {
         if (item == null) {
             throw new InvalidBookDataException("L'item da aggiungere non può essere nullo.");
         }
+        if (item instanceof Book && writesInPlace()) {
+            Book book = (Book) item;
+            if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+                throw new InvalidBookDataException("L'ISBN del libro non può essere nullo o vuoto.");
+            }
+            if (findBookByIsbn(book.getIsbn()).isPresent()) {
+                throw new InvalidBookDataException("Un libro con ISBN " + book.getIsbn() + " esiste già.");
+            }
+            writeInPlace(Collections.singletonList(book), Collections.emptySet(), "Aggiunto il libro " + book.getIsbn());
+            logger.logInfo("Item aggiunto: " + item.getTitle());
+            return;
+        }
+        if (item instanceof Book && this.offHeapCatalog != null) {
+            Book book = (Book) item;
+            if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+                throw new InvalidBookDataException("L'ISBN del libro non può essere nullo o vuoto.");
+            }
+            if (this.offHeapCatalog.contains(book.getIsbn())) {
+                throw new InvalidBookDataException("Un libro con ISBN " + book.getIsbn() + " esiste già.");
+            }
+            this.offHeapCatalog.put(book);
+            recordMutation((j, path) -> j.recordAdd(path, book), null, book.getIsbn());
+            notifyChanged("Aggiunto il libro " + book.getIsbn());
+            logger.logInfo("Item aggiunto: " + item.getTitle());
+            return;
+        }
+        materialize();
+        ensureCatalog();
         if (item instanceof Book) {
             Book book = (Book) item;
             if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
                 throw new InvalidBookDataException("L'ISBN del libro non può essere nullo o vuoto.");
             }
-            boolean exists = this.items.stream()
-                .filter(Book.class::isInstance)
-                .map(Book.class::cast)
-                .anyMatch(b -> book.getIsbn().equals(b.getIsbn()));
-            if (exists) {
+            if (this.booksByIsbn.containsKey(book.getIsbn())) {
                 throw new InvalidBookDataException("Un libro con ISBN " + book.getIsbn() + " esiste già.");
             }
         }
+        if (item instanceof BookCollection && ((BookCollection) item).getParent() != null) {
+            throw new InvalidBookDataException("La collezione " + item.getTitle() + " è già contenuta in un'altra collezione.");
+        }
         this.items.add(item);
+        if (item instanceof BookCollection) {
+            ((BookCollection) item).attachMembershipIndex(this.membership);
+        }
+        if (item instanceof Book) {
+            Book book = (Book) item;
+            this.booksByIsbn.put(book.getIsbn(), book);
+            recordMutation((j, path) -> j.recordAdd(path, book), null, book.getIsbn());
+            notifyChanged("Aggiunto il libro " + book.getIsbn());
+        }
         logger.logInfo("Item aggiunto: " + item.getTitle());
     }
 
+    /**
+     * Aggiunge in blocco un gruppo di libri, scartando quelli con ISBN già presente
+     * (nella libreria o in precedenza nello stesso gruppo). Pensato per le importazioni:
+     * gli osservatori vengono notificati una sola volta per l'intero gruppo.
+     * @param books I libri da aggiungere.
+     * @return Il numero di libri effettivamente aggiunti.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized int addBooks(Collection<Book> books) throws LibraryException {
+        if (writesInPlace()) {
+            Set<String> batchIsbns = new HashSet<>();
+            List<Book> toAdd = new ArrayList<>();
+            for (Book book : books) {
+                if (book != null && book.getIsbn() != null && !book.getIsbn().trim().isEmpty()
+                        && batchIsbns.add(book.getIsbn()) && !findBookByIsbn(book.getIsbn()).isPresent()) {
+                    toAdd.add(book);
+                }
+            }
+            if (!toAdd.isEmpty()) {
+                writeInPlace(toAdd, Collections.emptySet(), "Aggiunti " + toAdd.size() + " libri");
+                logger.logDebug("Aggiunti in blocco " + toAdd.size() + " libri.");
+            }
+            return toAdd.size();
+        }
+        if (this.offHeapCatalog == null) {
+            materialize();
+            ensureCatalog();
+        }
+        int added = 0;
+        for (Book book : books) {
+            if (book == null || book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+                continue;
+            }
+            if (this.offHeapCatalog != null) {
+                if (this.offHeapCatalog.contains(book.getIsbn())) {
+                    continue;
+                }
+                this.offHeapCatalog.put(book);
+            } else {
+                if (this.booksByIsbn.containsKey(book.getIsbn())) {
+                    continue;
+                }
+                this.items.add(book);
+                this.booksByIsbn.put(book.getIsbn(), book);
+            }
+            recordMutation((j, path) -> j.recordAdd(path, book), null, book.getIsbn());
+            added++;
+        }
+        if (added > 0) {
+            notifyChanged("Aggiunti " + added + " libri");
+            logger.logDebug("Aggiunti in blocco " + added + " libri.");
+        }
+        return added;
+    }
+
     /**
      * Rimuove un libro dalla libreria tramite il suo ISBN.
      * @param isbn L'ISBN del libro da rimuovere.
      * @throws InvalidBookDataException se l'ISBN fornito non è valido.
      * @throws BookNotFoundException se il libro non viene trovato.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public void removeItemByIsbn(String isbn) throws InvalidBookDataException, BookNotFoundException {
+    public synchronized void removeItemByIsbn(String isbn) throws LibraryException {
         if (isbn == null || isbn.trim().isEmpty()) {
             throw new InvalidBookDataException("L'ISBN per la rimozione non può essere nullo o vuoto.");
         }
+        if (writesInPlace()) {
+            if (!findBookByIsbn(isbn).isPresent()) {
+                throw new BookNotFoundException("Libro con ISBN " + isbn + " non trovato per la rimozione.");
+            }
+            writeInPlace(Collections.emptyList(), Collections.singleton(isbn), "Rimosso il libro " + isbn);
+            logger.logInfo("Libro rimosso con ISBN: " + isbn);
+            return;
+        }
+        if (this.offHeapCatalog != null) {
+            if (!this.offHeapCatalog.remove(isbn)) {
+                throw new BookNotFoundException("Libro con ISBN " + isbn + " non trovato per la rimozione.");
+            }
+            recordMutation((j, path) -> j.recordRemove(path, isbn), isbn, null);
+            notifyChanged("Rimosso il libro " + isbn);
+            logger.logInfo("Libro rimosso con ISBN: " + isbn);
+            return;
+        }
+        materialize();
+        ensureCatalog();
         boolean removed = this.items.removeIf(item -> 
             item instanceof Book && isbn.equals(((Book) item).getIsbn())
         );
         if (removed) {
+            this.booksByIsbn.remove(isbn);
+            removeFromCollections(isbn);
+            recordMutation((j, path) -> j.recordRemove(path, isbn), isbn, null);
+            notifyChanged("Rimosso il libro " + isbn);
             logger.logInfo("Libro rimosso con ISBN: " + isbn);
         } else {
             throw new BookNotFoundException("Libro con ISBN " + isbn + " non trovato per la rimozione.");
@@ -172,50 +435,107 @@ public class LibraryService {
      * @param updatedBookData Oggetto {@link Book} con i nuovi dati.
      * @throws InvalidBookDataException se i dati forniti non sono validi.
      * @throws BookNotFoundException se il libro con oldIsbn non viene trovato.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public void updateBook(String oldIsbn, Book updatedBookData) throws InvalidBookDataException, BookNotFoundException {
+    public synchronized void updateBook(String oldIsbn, Book updatedBookData) throws LibraryException {
         if (oldIsbn == null || oldIsbn.trim().isEmpty() || updatedBookData == null || 
             updatedBookData.getIsbn() == null || updatedBookData.getIsbn().trim().isEmpty()) {
             throw new InvalidBookDataException("Dati per l'aggiornamento non validi (ISBN o dati libro nulli/vuoti).");
         }
+        if (writesInPlace()) {
+            String newIsbn = updatedBookData.getIsbn();
+            if (!findBookByIsbn(oldIsbn).isPresent()) {
+                throw new BookNotFoundException("Libro con ISBN " + oldIsbn + " non trovato per l'aggiornamento.");
+            }
+            if (!oldIsbn.equals(newIsbn) && findBookByIsbn(newIsbn).isPresent()) {
+                throw new InvalidBookDataException("Impossibile aggiornare ISBN a " + newIsbn + " poiché è già utilizzato.");
+            }
+            writeInPlace(Collections.singletonList(updatedBookData),
+                    oldIsbn.equals(newIsbn) ? Collections.emptySet() : Collections.singleton(oldIsbn),
+                    "Aggiornato il libro " + newIsbn);
+            logger.logInfo("Libro aggiornato: ISBN " + newIsbn);
+            return;
+        }
+        if (this.offHeapCatalog != null) {
+            String newIsbn = updatedBookData.getIsbn();
+            if (!this.offHeapCatalog.contains(oldIsbn)) {
+                throw new BookNotFoundException("Libro con ISBN " + oldIsbn + " non trovato per l'aggiornamento.");
+            }
+            if (!oldIsbn.equals(newIsbn) && this.offHeapCatalog.contains(newIsbn)) {
+                throw new InvalidBookDataException("Impossibile aggiornare ISBN a " + newIsbn + " poiché è già utilizzato.");
+            }
+            if (!oldIsbn.equals(newIsbn)) {
+                this.offHeapCatalog.remove(oldIsbn);
+            }
+            this.offHeapCatalog.put(updatedBookData);
+            recordMutation((j, path) -> j.recordUpdate(path, oldIsbn, updatedBookData),
+                    oldIsbn.equals(newIsbn) ? null : oldIsbn, newIsbn);
+            notifyChanged("Aggiornato il libro " + newIsbn);
+            logger.logInfo("Libro aggiornato: ISBN " + newIsbn);
+            return;
+        }
+        materialize(); // Il libro da aggiornare deve essere quello in memoria, non una copia letta dal file.
+        ensureCatalog();
 
         Book bookToUpdate = findBookByIsbn(oldIsbn)
                 .orElseThrow(() -> new BookNotFoundException("Libro con ISBN " + oldIsbn + " non trovato per l'aggiornamento."));
 
         String newIsbn = updatedBookData.getIsbn();
         if (!oldIsbn.equals(newIsbn)) {
-            boolean newIsbnExistsForOtherBook = this.items.stream()
-                .filter(item -> item instanceof Book && !((Book) item).getIsbn().equals(oldIsbn))
-                .anyMatch(b -> newIsbn.equals(((Book)b).getIsbn()));
-            if (newIsbnExistsForOtherBook) {
+            if (this.booksByIsbn.containsKey(newIsbn)) {
                 throw new InvalidBookDataException("Impossibile aggiornare ISBN a " + newIsbn + " poiché è già utilizzato.");
             }
         }
         
-        bookToUpdate.setTitle(updatedBookData.getTitle());
-        bookToUpdate.setAuthor(updatedBookData.getAuthor());
-        bookToUpdate.setIsbn(newIsbn); 
-        bookToUpdate.setPublicationYear(updatedBookData.getPublicationYear());
-        bookToUpdate.setGenre(updatedBookData.getGenre());
+        // I libri sono immutabili: la nuova versione sostituisce la precedente nella lista e nell'indice,
+        // mentre chi ha ancora un riferimento a quella vecchia continua a vederla coerente.
+        this.items.replaceAll(item -> item == bookToUpdate ? updatedBookData : item);
+        this.booksByIsbn.remove(oldIsbn);
+        this.booksByIsbn.put(newIsbn, updatedBookData);
+        replaceInCollections(bookToUpdate, updatedBookData);
+        recordMutation((j, path) -> j.recordUpdate(path, oldIsbn, updatedBookData),
+                oldIsbn.equals(newIsbn) ? null : oldIsbn, newIsbn);
+        notifyChanged("Aggiornato il libro " + newIsbn);
 
         logger.logInfo("Libro aggiornato: ISBN " + newIsbn);
     }
 
     /**
      * Trova un libro tramite il suo ISBN.
+     * Se la libreria è aperta in modo differito, legge dal file solo la riga del libro richiesto.
      * @param isbn L'ISBN del libro da cercare.
      * @return Un {@link Optional} contenente il libro se trovato.
      * @throws InvalidBookDataException se l'ISBN fornito non è valido.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce
+     *                          anche con il caricamento completo.
      */
-    public Optional<Book> findBookByIsbn(String isbn) throws InvalidBookDataException {
+    public synchronized Optional<Book> findBookByIsbn(String isbn) throws LibraryException {
         if (isbn == null || isbn.trim().isEmpty()) {
             throw new InvalidBookDataException("L'ISBN per la ricerca non può essere nullo o vuoto.");
         }
-        return this.items.stream()
-            .filter(Book.class::isInstance)
-            .map(Book.class::cast)
-            .filter(book -> isbn.equals(book.getIsbn()))
-            .findFirst();
+        if (this.offHeapCatalog != null) {
+            return this.offHeapCatalog.find(isbn);
+        }
+        if (this.lazyOpen) {
+            try {
+                if (this.lazyIndex == null) {
+                    return ((OrderedStorageService) storageService).findBook(this.currentFilePath, isbn);
+                }
+                Long offset = this.lazyIndex.getOffset(isbn);
+                if (offset == null) {
+                    return Optional.empty();
+                }
+                Book book = ((IndexedStorageService) storageService).readBookAt(this.currentFilePath, offset);
+                if (isbn.equals(book.getIsbn())) {
+                    return Optional.of(book);
+                }
+                logger.logWarning("Indice non allineato al file " + this.currentFilePath + " per l'ISBN " + isbn + ".");
+            } catch (LibraryException e) {
+                logger.logWarning("Lettura differita fallita per l'ISBN " + isbn + ": " + e.getMessage());
+            }
+            materialize();
+        }
+        return Optional.ofNullable(this.booksByIsbn.get(isbn));
     }
 
     /**
@@ -223,17 +543,20 @@ public class LibraryService {
      * @param titleQuery La stringa da cercare.
      * @return Una lista di libri corrispondenti.
      * @throws InvalidBookDataException se il titolo fornito non è valido.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public List<Book> findBooksByTitle(String titleQuery) throws InvalidBookDataException {
+    public synchronized List<Book> findBooksByTitle(String titleQuery) throws LibraryException {
         if (titleQuery == null || titleQuery.trim().isEmpty()) {
             throw new InvalidBookDataException("Il titolo per la ricerca non può essere nullo o vuoto.");
         }
-        String lowerCaseQuery = titleQuery.toLowerCase();
-        return this.items.stream()
-            .filter(Book.class::isInstance)
-            .map(Book.class::cast)
-            .filter(book -> book.getTitle() != null && book.getTitle().toLowerCase().contains(lowerCaseQuery))
-            .collect(Collectors.toList());
+        if (this.offHeapCatalog != null) {
+            return this.offHeapCatalog.findByTitle(titleQuery);
+        }
+        if (this.lazyOpen) {
+            String lowerQuery = titleQuery.toLowerCase();
+            return scanMatching(book -> book.getSearchTitle().contains(lowerQuery));
+        }
+        return columnarCatalog().findByTitle(titleQuery);
     }
 
     /**
@@ -241,79 +564,1201 @@ public class LibraryService {
      * @param authorQuery La stringa da cercare.
      * @return Una lista di libri corrispondenti.
      * @throws InvalidBookDataException se l'autore fornito non è valido.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
      */
-    public List<Book> findBooksByAuthor(String authorQuery) throws InvalidBookDataException {
+    public synchronized List<Book> findBooksByAuthor(String authorQuery) throws LibraryException {
         if (authorQuery == null || authorQuery.trim().isEmpty()) {
             throw new InvalidBookDataException("L'autore per la ricerca non può essere nullo o vuoto.");
         }
-        String lowerCaseQuery = authorQuery.toLowerCase();
-        return this.items.stream()
-            .filter(Book.class::isInstance)
-            .map(Book.class::cast)
-            .filter(book -> book.getAuthor() != null && book.getAuthor().toLowerCase().contains(lowerCaseQuery))
-            .collect(Collectors.toList());
+        if (this.offHeapCatalog != null) {
+            return this.offHeapCatalog.findByAuthor(authorQuery);
+        }
+        if (this.lazyOpen) {
+            String lowerQuery = authorQuery.toLowerCase();
+            return scanMatching(book -> book.getAuthor() != null && book.getAuthor().toLowerCase().contains(lowerQuery));
+        }
+        return columnarCatalog().findByAuthor(authorQuery);
+    }
+
+    /**
+     * Cerca i libri più rilevanti per le parole indicate in titolo, autore e genere, con punteggio BM25
+     * e pesi per campo (il titolo conta più dell'autore, che conta più del genere). Basta che un libro
+     * contenga una delle parole; maiuscole e accenti sono ignorati. Solo i libri che possono entrare
+     * tra i primi risultati vengono valutati per intero. L'indice di ricerca viene costruito alla prima
+     * ricerca e poi aggiornato a ogni modifica. Con la libreria aperta in modo differito
+     * o fuori heap, i libri vengono prima caricati in memoria.
+     * @param query Le parole da cercare.
+     * @param maxResults Il numero massimo di risultati.
+     * @return I risultati dal più rilevante, a parità di punteggio nell'ordine della libreria.
+     * @throws InvalidBookDataException se la ricerca fornita non è valida.
+     * @throws IllegalArgumentException se il numero di risultati è minore di 1.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized List<ScoredBook> searchBooks(String query, int maxResults) throws LibraryException {
+        if (query == null || query.trim().isEmpty()) {
+            throw new InvalidBookDataException("Il testo per la ricerca non può essere nullo o vuoto.");
+        }
+        if (maxResults < 1) {
+            throw new IllegalArgumentException("Il numero di risultati deve essere almeno 1.");
+        }
+        materialize();
+        if (this.rankedIndex == null) {
+            long start = System.nanoTime();
+            this.rankedIndex = RankedSearchIndex.build(this.items);
+            logger.logDebug("Indice di ricerca costruito: " + this.rankedIndex.size() + " libri, "
+                    + this.rankedIndex.termCount() + " parole in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+        RankedSearchIndex.SearchResult result = this.rankedIndex.search(query, maxResults);
+        logger.logDebug("Ricerca per rilevanza '" + query + "': " + result.scoredCount() + " libri valutati.");
+        return result.books();
+    }
+
+    /**
+     * Trova i libri il cui autore suona come quello cercato (es. "Pirandelo" trova Pirandello,
+     * "Dostoyevsky" trova Dostoevskij): ogni parola della ricerca deve corrispondere foneticamente
+     * a una parola dell'autore. La risposta viene da un indice per codice fonetico, costruito alla
+     * prima ricerca e poi aggiornato a ogni modifica; con la copia fuori heap i libri vengono scorsi,
+     * confrontando i codici fonetici salvati con ogni libro.
+     * @param authorQuery Il nome da cercare.
+     * @return Una lista di libri corrispondenti, nell'ordine della libreria.
+     * @throws InvalidBookDataException se l'autore fornito non è valido.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized List<Book> findBooksByAuthorSound(String authorQuery) throws LibraryException {
+        if (authorQuery == null || authorQuery.trim().isEmpty()) {
+            throw new InvalidBookDataException("L'autore per la ricerca non può essere nullo o vuoto.");
+        }
+        if (this.offHeapCatalog != null) {
+            return this.offHeapCatalog.findByAuthorSound(PhoneticEncoder.encodeWords(authorQuery));
+        }
+        materialize();
+        if (this.phoneticAuthors == null) {
+            long start = System.nanoTime();
+            PhoneticAuthorIndex index = new PhoneticAuthorIndex();
+            for (LibraryItem item : this.items) {
+                if (item instanceof Book) {
+                    index.put((Book) item);
+                }
+            }
+            this.phoneticAuthors = index;
+            logger.logDebug("Indice fonetico degli autori costruito: " + index.size() + " libri in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+        return this.phoneticAuthors.find(authorQuery);
+    }
+
+    /**
+     * Trova i libri pubblicati in un intervallo di anni.
+     * @param fromYear Il primo anno (incluso).
+     * @param toYear L'ultimo anno (incluso).
+     * @return Una lista di libri corrispondenti, nell'ordine della libreria.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized List<Book> findBooksByYearRange(int fromYear, int toYear) throws LibraryException {
+        if (this.offHeapCatalog != null) {
+            return this.offHeapCatalog.findByYearRange(fromYear, toYear);
+        }
+        if (this.lazyOpen) {
+            return scanMatching(book -> book.getPublicationYear() >= fromYear && book.getPublicationYear() <= toYear);
+        }
+        return columnarCatalog().findByYearRange(fromYear, toYear);
+    }
+
+    /**
+     * Conta i libri per genere (i libri senza genere non vengono contati).
+     * @return Una mappa non modificabile genere → numero di libri.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized Map<String, Integer> countBooksByGenre() throws LibraryException {
+        if (this.offHeapCatalog != null) {
+            return Collections.unmodifiableMap(this.offHeapCatalog.countByGenre());
+        }
+        if (this.lazyOpen) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            forEachBook(book -> {
+                if (book.getGenre() != null) {
+                    counts.merge(book.getGenre(), 1, Integer::sum);
+                }
+            });
+            return Collections.unmodifiableMap(counts);
+        }
+        return Collections.unmodifiableMap(columnarCatalog().countByGenre());
+    }
+
+    /**
+     * Restituisce la copia per colonne della libreria, costruendola alla prima richiesta dopo un caricamento;
+     * in seguito viene aggiornata da {@link #updateDerivedIndexes}.
+     */
+    private ColumnarCatalog columnarCatalog() throws LibraryException {
+        materialize();
+        if (this.columnar == null) {
+            long start = System.nanoTime();
+            this.columnar = ColumnarCatalog.build(this.items);
+            logger.logDebug("Copia per colonne costruita: " + this.columnar.size() + " libri in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+        return this.columnar;
     }
 
     // --- Persistenza ---
 
     /**
      * Carica i libri dal file specificato. Sostituisce la collezione corrente.
+     * Con il caricamento differito attivo e un indice valido, i libri non vengono letti:
+     * le ricerche per ISBN leggono la singola riga e le altre operazioni caricano il file alla prima necessità.
      * @param filePath Il percorso del file.
      * @throws LibraryException se si verifica un errore durante il caricamento.
      */
-    public void loadLibrary(String filePath) throws LibraryException {
+    public synchronized void loadLibrary(String filePath) throws LibraryException {
         if (filePath == null || filePath.trim().isEmpty()) {
             throw new LibraryException("Il percorso del file per il caricamento non può essere nullo o vuoto.");
         }
         logger.logInfo("Caricamento libreria da: " + filePath);
+        long start = System.nanoTime();
+        // I dizionari di autori e generi ripartono con il nuovo file, senza i valori di quelli precedenti.
+        StringPool.authors().clear();
+        StringPool.genres().clear();
         try {
-            List<Book> loadedBooks = storageService.loadBooks(filePath); 
-            this.items.clear(); 
-            if (loadedBooks != null) { 
-                this.items.addAll(loadedBooks);
+            if (this.offHeap) {
+                OffHeapCatalog catalog = new OffHeapCatalog();
+                storageService.loadBooks(filePath, catalog::append);
+                openLazily(filePath, null);
+                this.offHeapCatalog = catalog;
+                logger.logInfo("Libreria copiata fuori heap. Libri: " + catalog.size() + ", memoria diretta: "
+                        + catalog.allocatedBytes() / (1024 * 1024) + " MB (in " + (System.nanoTime() - start) / 1_000_000 + " ms)");
+                return;
+            }
+            if (this.lazyLoading && storageService instanceof OrderedStorageService) {
+                openLazily(filePath, null);
+                logger.logInfo("Libreria aperta in modo differito. Libri nell'archivio: "
+                        + ((OrderedStorageService) storageService).count(filePath));
+                return;
             }
+            if (this.lazyLoading && storageService instanceof IndexedStorageService) {
+                Optional<BookOffsetIndex> index = ((IndexedStorageService) storageService).loadIndex(filePath);
+                if (index.isPresent()) {
+                    openLazily(filePath, index.get());
+                    logger.logInfo("Libreria aperta in modo differito. Libri indicizzati: " + this.lazyIndex.size());
+                    return;
+                }
+                logger.logInfo("Indice non disponibile per " + filePath + ": caricamento completo.");
+            }
+            // I libri vengono raccolti direttamente nella nuova lista, che sostituisce quella corrente
+            // solo a caricamento riuscito: nessuna lista intermedia restituita dallo storage.
+            List<LibraryItem> loadedItems = new ArrayList<>();
+            storageService.loadBooks(filePath, loadedItems::add);
+            this.items = loadedItems;
+            this.booksByIsbn = indexByIsbn(loadedItems);
+            this.membership = new CollectionMembershipIndex();
+            this.phoneticAuthors = null;
+            this.columnar = null;
+            this.rankedIndex = null;
+            resetVersions(filePath);
+            this.lazyOpen = false;
+            this.lazyIndex = null;
+            this.offHeapCatalog = null;
             this.currentFilePath = filePath;
-            logger.logInfo("Libreria caricata. Items: " + this.items.size());
+            synchronized (saveLock) {
+                markWritten(filePath, this.generation);
+            }
+            markSynced(filePath);
+            logger.logInfo("Libreria caricata. Items: " + this.items.size() + " (in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms)");
         } catch (LibraryException e) {
             logger.logError("Fallimento caricamento libreria da " + filePath, e);
             throw e; 
         }
     }
 
+    /**
+     * Ricarica in modo incrementale un file modificato da un altro programma: legge il file in streaming,
+     * lo confronta con la libreria in memoria e applica solo aggiunte, aggiornamenti e rimozioni.
+     * I libri invariati restano gli stessi oggetti, con i relativi indici.
+     * Se la memoria non è allineata con questo file, tutti i libri aggiunti, modificati o rimossi dall'ultimo
+     * salvataggio mantengono la versione in memoria. Se il file ha ancora data di modifica e dimensione
+     * dell'ultima scrittura o lettura, non viene letto. Se la libreria è aperta in modo differito viene
+     * semplicemente riaperta, senza leggere i libri.
+     * @param filePath Il percorso del file da ricaricare.
+     * @return Il resoconto delle differenze applicate.
+     * @throws LibraryException se il percorso non è valido o la lettura fallisce (la libreria resta invariata).
+     */
+    public synchronized ReloadReport reloadChanges(String filePath) throws LibraryException {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new LibraryException("Il percorso del file da ricaricare non può essere nullo o vuoto.");
+        }
+        long start = System.nanoTime();
+        if (filePath.equals(this.syncedFilePath) && isUnchangedSinceLastWrite(filePath)) {
+            logger.logInfo("Il file " + filePath + " non è cambiato dall'ultima scrittura: nessuna ricarica.");
+            return new ReloadReport(filePath, 0, 0, 0, 0, (System.nanoTime() - start) / 1_000_000);
+        }
+        if (this.lazyOpen) {
+            loadLibrary(filePath);
+            return new ReloadReport(filePath, 0, 0, 0, 0, (System.nanoTime() - start) / 1_000_000);
+        }
+        boolean wasSynced = !hasUnsavedChanges(filePath);
+        // Le modifiche non salvate su questo file hanno la precedenza, anche se il file non è quello allineato.
+        boolean protectChanges = !wasSynced;
+        Set<String> seen = new HashSet<>();
+        List<Book> added = new ArrayList<>();
+        List<Book> updated = new ArrayList<>();
+        int[] conflicts = new int[1];
+        storageService.loadBooks(filePath, book -> {
+            String isbn = book.getIsbn();
+            if (!seen.add(isbn)) {
+                return; // ISBN ripetuto nel file: vale il primo, come nel caricamento completo.
+            }
+            Book current = this.booksByIsbn.get(isbn);
+            boolean changedInFile = current == null || !current.toCsvString().equals(book.toCsvString());
+            if (changedInFile && protectChanges && (this.changedIsbns.contains(isbn) || this.removedIsbns.contains(isbn))) {
+                conflicts[0]++;
+            } else if (current == null) {
+                added.add(book);
+            } else if (changedInFile) {
+                updated.add(book);
+            }
+        });
+        Set<String> removed = new HashSet<>();
+        this.booksByIsbn.forEach(book -> {
+            String isbn = book.getIsbn();
+            if (!seen.contains(isbn)) {
+                if (protectChanges && this.changedIsbns.contains(isbn)) {
+                    conflicts[0]++;
+                } else {
+                    removed.add(isbn);
+                }
+            }
+        });
+
+        // Applicazione delle sole differenze, dopo la lettura completa del file.
+        if (!removed.isEmpty() || !updated.isEmpty() || !added.isEmpty()) {
+            ensureCatalog();
+        }
+        if (!removed.isEmpty()) {
+            this.items.removeIf(item -> item instanceof Book && removed.contains(((Book) item).getIsbn()));
+            for (String isbn : removed) {
+                this.booksByIsbn.remove(isbn);
+                removeFromCollections(isbn);
+                updateDerivedIndexes(isbn, null);
+            }
+        }
+        if (!updated.isEmpty()) {
+            // Le nuove versioni lette dal file sostituiscono quelle in memoria, in un solo passaggio sulla lista.
+            Map<Book, Book> replacements = new IdentityHashMap<>();
+            for (Book book : updated) {
+                Book current = this.booksByIsbn.get(book.getIsbn());
+                replacements.put(current, book);
+                this.booksByIsbn.put(book.getIsbn(), book);
+                replaceInCollections(current, book);
+                updateDerivedIndexes(null, book.getIsbn());
+            }
+            this.items.replaceAll(item -> replacements.containsKey(item) ? replacements.get(item) : item);
+        }
+        for (Book book : added) {
+            this.items.add(book);
+            this.booksByIsbn.put(book.getIsbn(), book);
+            updateDerivedIndexes(null, book.getIsbn());
+        }
+        ReloadReport report = new ReloadReport(filePath, added.size(), updated.size(), removed.size(), conflicts[0],
+                (System.nanoTime() - start) / 1_000_000);
+        if (report.hasChanges()) {
+            this.generation++;
+            if (wasSynced) {
+                // Le modifiche vengono dal file: memoria e file restano allineati.
+                synchronized (saveLock) {
+                    markWritten(filePath, this.generation);
+                }
+                markSynced(filePath);
+            }
+            notifyChanged("Ricaricato " + filePath);
+        }
+        logger.logInfo(report.describe());
+        return report;
+    }
+
     /**
      * Salva i libri nel file predefinito, se impostato.
+     * @return Il resoconto di cosa è stato scritto.
      * @throws LibraryException se il percorso non è impostato o errore di salvataggio.
      */
-    public void saveLibrary() throws LibraryException {
+    public synchronized SaveReport saveLibrary() throws LibraryException {
         if (this.currentFilePath == null || this.currentFilePath.trim().isEmpty()) {
             throw new LibraryException("Percorso del file per il salvataggio non impostato.");
         }
-        saveLibrary(this.currentFilePath);
+        return saveLibrary(this.currentFilePath);
     }
 
     /**
      * Salva i libri (solo {@link Book}) nel file specificato.
+     * Se il file è già allineato con la memoria la scrittura viene saltata; se lo storage
+     * supporta le scritture parziali ({@link DeltaStorageService}) riceve solo le modifiche.
      * @param filePath Il percorso del file.
+     * @return Il resoconto di cosa è stato scritto.
      * @throws LibraryException se il percorso è nullo/vuoto o errore di salvataggio.
      */
-    public void saveLibrary(String filePath) throws LibraryException {
+    public synchronized SaveReport saveLibrary(String filePath) throws LibraryException {
         if (filePath == null || filePath.trim().isEmpty()) {
             throw new LibraryException("Il percorso del file per il salvataggio non può essere nullo o vuoto.");
         }
-        
-        List<Book> booksToSave = this.items.stream()
-            .filter(Book.class::isInstance)
-            .map(Book.class::cast)
-            .collect(Collectors.toList());
 
-        logger.logInfo("Salvataggio di " + booksToSave.size() + " libri su: " + filePath);
+        if (!hasUnsavedChanges(filePath)) {
+            this.currentFilePath = filePath;
+            logger.logInfo("Nessuna modifica da salvare su: " + filePath);
+            return SaveReport.skipped(filePath);
+        }
+
+        if (this.offHeapCatalog == null) {
+            materialize();
+        }
         try {
-            storageService.saveBooks(booksToSave, filePath); 
-            this.currentFilePath = filePath; 
+            SaveReport report;
+            if (filePath.equals(this.syncedFilePath) && storageService instanceof DeltaStorageService) {
+                List<Book> changedBooks = this.offHeapCatalog != null ? changedBooks() : this.items.stream()
+                    .filter(Book.class::isInstance)
+                    .map(Book.class::cast)
+                    .filter(book -> changedIsbns.contains(book.getIsbn()))
+                    .collect(Collectors.toList());
+                logger.logInfo("Salvataggio incrementale su " + filePath + ": " + changedBooks.size()
+                        + " libri modificati, " + removedIsbns.size() + " rimossi.");
+                synchronized (saveLock) {
+                    ((DeltaStorageService) storageService).saveChanges(changedBooks, new LinkedHashSet<>(removedIsbns), filePath);
+                    markWritten(filePath, this.generation);
+                }
+                report = SaveReport.delta(filePath, changedBooks.size(), removedIsbns.size());
+            } else if (this.offHeapCatalog != null) {
+                // I libri vengono copiati dai record fuori heap uno alla volta, durante la scrittura.
+                int bookCount = this.offHeapCatalog.size();
+                logger.logInfo("Salvataggio di " + bookCount + " libri fuori heap su: " + filePath);
+                synchronized (saveLock) {
+                    storageService.saveBooks(this.offHeapCatalog.books(), filePath);
+                    markWritten(filePath, this.generation);
+                }
+                report = SaveReport.full(filePath, bookCount, changedIsbns.size(), removedIsbns.size());
+            } else {
+                // I libri vengono passati allo storage direttamente dalla lista, senza copiarla:
+                // le modifiche attendono la fine della scrittura (lock del servizio).
+                int bookCount = (int) this.items.stream().filter(Book.class::isInstance).count();
+                logger.logInfo("Salvataggio di " + bookCount + " libri su: " + filePath);
+                synchronized (saveLock) {
+                    storageService.saveBooks(this.items.stream()
+                        .filter(Book.class::isInstance)
+                        .map(Book.class::cast)
+                        .iterator(), filePath);
+                    markWritten(filePath, this.generation);
+                }
+                report = SaveReport.full(filePath, bookCount, changedIsbns.size(), removedIsbns.size());
+            }
+            this.currentFilePath = filePath;
+            markSynced(filePath);
             logger.logInfo("Libreria salvata con successo.");
+            return report;
         } catch (LibraryException e) {
             logger.logError("Fallimento salvataggio libreria su " + filePath, e);
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    // --- Collezioni ---
+
+    /**
+     * Salva la gerarchia delle collezioni di primo livello (con tutte le sotto-collezioni) nel file indicato.
+     * I libri vi compaiono solo come ISBN: vanno salvati anche con {@link #saveLibrary(String)}.
+     * @param filePath Il file delle collezioni.
+     * @return Il numero di collezioni di primo livello salvate.
+     * @throws LibraryException se il percorso non è valido o la scrittura fallisce.
+     */
+    public synchronized int saveCollections(String filePath) throws LibraryException {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new LibraryException("Il percorso del file delle collezioni non può essere nullo o vuoto.");
+        }
+        List<BookCollection> roots = getCollections();
+        collectionStorage.saveCollections(roots, filePath);
+        return roots.size();
+    }
+
+    /**
+     * Restituisce le collezioni di primo livello della libreria, nell'ordine di inserimento.
+     * @return Una nuova lista con le collezioni.
+     */
+    public synchronized List<BookCollection> getCollections() {
+        return this.items.stream()
+            .filter(BookCollection.class::isInstance)
+            .map(BookCollection.class::cast)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Carica la gerarchia delle collezioni dal file indicato, sostituendo le collezioni di primo livello
+     * presenti. I libri sono collegati per ISBN a quelli della libreria; quelli assenti vengono saltati.
+     * @param filePath Il file delle collezioni.
+     * @return Il numero di collezioni di primo livello caricate.
+     * @throws LibraryException se il percorso non è valido, la lettura fallisce o il formato non è valido
+     *                          (in questi casi le collezioni presenti restano invariate).
+     */
+    public synchronized int loadCollections(String filePath) throws LibraryException {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new LibraryException("Il percorso del file delle collezioni non può essere nullo o vuoto.");
+        }
+        materialize();
+        List<BookCollection> roots = collectionStorage.loadCollections(filePath, this.booksByIsbn::get);
+        for (LibraryItem item : this.items) {
+            if (item instanceof BookCollection) {
+                ((BookCollection) item).attachMembershipIndex(null);
+            }
+        }
+        this.items.removeIf(BookCollection.class::isInstance);
+        for (BookCollection root : roots) {
+            root.attachMembershipIndex(this.membership);
+        }
+        this.items.addAll(roots);
+        logger.logInfo("Caricate " + roots.size() + " collezioni da " + filePath + ".");
+        return roots.size();
+    }
+
+    /**
+     * Restituisce le collezioni (a qualunque livello) che contengono direttamente il libro indicato,
+     * usando l'indice inverso invece di visitare gli alberi.
+     * @param isbn L'ISBN del libro.
+     * @return Le collezioni che contengono il libro, o una lista vuota.
+     * @throws InvalidBookDataException se l'ISBN fornito non è valido.
+     */
+    public synchronized List<BookCollection> findCollectionsContaining(String isbn) throws InvalidBookDataException {
+        if (isbn == null || isbn.trim().isEmpty()) {
+            throw new InvalidBookDataException("L'ISBN per la ricerca nelle collezioni non può essere nullo o vuoto.");
+        }
+        return this.membership.getCollections(isbn);
+    }
+
+    /** Toglie il libro da tutte le collezioni che lo contengono. */
+    private void removeFromCollections(String isbn) {
+        for (BookCollection collection : this.membership.getCollections(isbn)) {
+            collection.removeBook(isbn);
+        }
+    }
+
+    /** Sostituisce il libro con la nuova versione in tutte le collezioni che lo contengono. */
+    private void replaceInCollections(Book oldBook, Book newBook) {
+        for (BookCollection collection : this.membership.getCollections(oldBook.getIsbn())) {
+            collection.replaceBook(oldBook, newBook);
+        }
+    }
+
+    // --- Storico delle Versioni ---
+
+    /**
+     * Restituisce le versioni del catalogo conservate, dalla più vecchia alla corrente.
+     * Lo storico riparte a ogni caricamento; se la libreria è aperta in modo differito è vuoto
+     * finché i libri non vengono letti per intero.
+     * @return Una nuova lista con le versioni.
+     */
+    public synchronized List<LibraryVersion> getVersions() {
+        ensureCatalog();
+        return new ArrayList<>(this.versions);
+    }
+
+    /**
+     * Restituisce la versione con la generazione indicata, se è ancora conservata.
+     * @param generation La generazione ({@link LibraryVersion#getGeneration()}).
+     * @return Un {@link Optional} con la versione, vuoto se non è (più) nello storico.
+     */
+    public synchronized Optional<LibraryVersion> getVersion(long generation) {
+        ensureCatalog();
+        return this.versions.stream().filter(version -> version.getGeneration() == generation).findFirst();
+    }
+
+    /**
+     * Restituisce la versione in vigore nell'istante indicato, cioè l'ultima registrata non dopo di esso.
+     * @param instant L'istante di interesse.
+     * @return Un {@link Optional} con la versione, vuoto se l'istante precede lo storico conservato.
+     */
+    public synchronized Optional<LibraryVersion> findVersionAt(Instant instant) {
+        ensureCatalog();
+        LibraryVersion found = null;
+        for (LibraryVersion version : this.versions) {
+            if (version.getTimestamp().isAfter(instant)) {
+                break;
+            }
+            found = version;
+        }
+        return Optional.ofNullable(found);
+    }
+
+    /**
+     * Imposta quante versioni conservare; quelle più vecchie oltre il limite vengono scartate subito.
+     * @param maxVersions Il numero massimo di versioni (almeno 1, la corrente).
+     * @throws IllegalArgumentException se il numero è minore di 1.
+     */
+    public synchronized void setMaxVersions(int maxVersions) {
+        if (maxVersions < 1) {
+            throw new IllegalArgumentException("Il numero di versioni da conservare deve essere almeno 1.");
+        }
+        this.maxVersions = maxVersions;
+        while (this.versions.size() > maxVersions) {
+            this.versions.removeFirst();
+        }
+    }
+
+    public synchronized int getMaxVersions() {
+        return this.maxVersions;
+    }
+
+    /**
+     * Esporta i libri di una versione nel file indicato, ordinati secondo la strategia corrente.
+     * Il file non viene considerato allineato con la libreria in memoria: se è il file corrente,
+     * il prossimo salvataggio lo riscriverà per intero.
+     * @param version La versione da esportare.
+     * @param filePath Il file di destinazione.
+     * @return Il numero di libri esportati.
+     * @throws LibraryException se il percorso non è valido o la scrittura fallisce.
+     */
+    public synchronized int exportVersion(LibraryVersion version, String filePath) throws LibraryException {
+        if (version == null || filePath == null || filePath.trim().isEmpty()) {
+            throw new LibraryException("Versione o percorso del file per l'esportazione non validi.");
+        }
+        List<Book> books = version.getBooks(this.sortStrategy);
+        synchronized (saveLock) {
+            storageService.saveBooks(books, filePath);
+            if (filePath.equals(this.lastWrittenPath)) {
+                markWritten(filePath, -1);
+            }
+        }
+        if (filePath.equals(this.syncedFilePath)) {
+            this.syncedFilePath = null;
+        }
+        logger.logInfo("Esportata la versione " + version.getGeneration() + " (" + books.size() + " libri) su " + filePath);
+        return books.size();
+    }
+
+    // --- Caricamento Differito ---
+
+    /**
+     * Attiva o disattiva il caricamento differito per i prossimi {@link #loadLibrary}.
+     * Ha effetto solo se lo storage implementa {@link OrderedStorageService} o {@link IndexedStorageService}.
+     * @param lazyLoading true per aprire i file senza caricarne i libri.
+     */
+    public synchronized void setLazyLoading(boolean lazyLoading) {
+        this.lazyLoading = lazyLoading;
+    }
+
+    public synchronized boolean isLazyLoading() {
+        return this.lazyLoading;
+    }
+
+    /**
+     * Attiva o disattiva la copia fuori heap per i prossimi {@link #loadLibrary}: i libri vengono
+     * tenuti in memoria diretta e letti in place da ricerche, elenchi ed esportazioni, così l'heap
+     * non cresce con il catalogo. Anche aggiunte, modifiche e rimozioni di libri restano fuori heap;
+     * la libreria viene trasferita nell'heap solo per le operazioni sulle collezioni e la ricerca per
+     * rilevanza. Ha la precedenza sul caricamento differito.
+     * @param offHeap true per copiare i libri fuori heap.
+     */
+    public synchronized void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    public synchronized boolean isOffHeap() {
+        return this.offHeap;
+    }
+
+    /**
+     * Indica se tutti i libri del file corrente sono in memoria.
+     * @return false se la libreria è aperta in modo differito e non è ancora stata letta per intero.
+     */
+    public synchronized boolean isFullyLoaded() {
+        return !this.lazyOpen;
+    }
+
+    /**
+     * Apre il file in modo differito: la memoria resta vuota ma il file è considerato allineato.
+     * @param index L'indice delle posizioni, o null se lo storage è un {@link OrderedStorageService}.
+     */
+    private void openLazily(String filePath, BookOffsetIndex index) {
+        this.items = new ArrayList<>();
+        this.booksByIsbn = new IsbnIndex();
+        this.membership = new CollectionMembershipIndex();
+        this.catalog = null;
+        this.versions.clear();
+        this.phoneticAuthors = null;
+        this.columnar = null;
+        this.rankedIndex = null;
+        this.lazyOpen = true;
+        this.lazyIndex = index;
+        this.offHeapCatalog = null;
+        this.currentFilePath = filePath;
+        synchronized (saveLock) {
+            markWritten(filePath, this.generation);
+        }
+        markSynced(filePath);
+    }
+
+    /**
+     * Restituisce la versione corrente dei libri aggiunti o modificati dopo l'ultimo salvataggio,
+     * dalla memoria o dalla copia fuori heap.
+     */
+    private List<Book> changedBooks() {
+        List<Book> changedBooks = new ArrayList<>(this.changedIsbns.size());
+        for (String isbn : this.changedIsbns) {
+            Book book = this.offHeapCatalog != null ? this.offHeapCatalog.find(isbn).orElse(null) : this.booksByIsbn.get(isbn);
+            if (book != null) {
+                changedBooks.add(book);
+            }
+        }
+        return changedBooks;
+    }
+
+    /**
+     * Con la libreria aperta in modo differito su uno storage ordinato e una strategia per titolo o autore,
+     * legge i libri già ordinati dallo storage invece di caricarli e ordinarli in memoria.
+     * @return I libri ordinati, o vuoto se la scansione non è applicabile o è fallita.
+     */
+    private Optional<List<Book>> scanInStorageOrder() {
+        if (!this.lazyOpen || this.offHeapCatalog != null || !(storageService instanceof OrderedStorageService)) {
+            return Optional.empty();
+        }
+        OrderedStorageService.Order order;
+        if (this.sortStrategy instanceof SortByTitleStrategy) {
+            order = OrderedStorageService.Order.TITLE;
+        } else if (this.sortStrategy instanceof SortByAuthorStrategy) {
+            order = OrderedStorageService.Order.AUTHOR;
+        } else {
+            return Optional.empty();
+        }
+        List<Book> books = new ArrayList<>();
+        try {
+            ((OrderedStorageService) storageService).scan(this.currentFilePath, order, books::add);
+            return Optional.of(books);
+        } catch (LibraryException e) {
+            logger.logWarning("Scansione ordinata fallita su " + this.currentFilePath + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Con la libreria aperta in modo differito, scorre i libri dallo storage (per ISBN se è uno storage
+     * ordinato, altrimenti nell'ordine del file) e tiene solo quelli che soddisfano il criterio,
+     * senza caricare la libreria in memoria.
+     */
+    private List<Book> scanMatching(Predicate<Book> filter) throws LibraryException {
+        List<Book> matching = new ArrayList<>();
+        Consumer<Book> sink = book -> {
+            if (filter.test(book)) {
+                matching.add(book);
+            }
+        };
+        if (storageService instanceof OrderedStorageService) {
+            ((OrderedStorageService) storageService).scan(this.currentFilePath, OrderedStorageService.Order.ISBN, sink);
+        } else {
+            storageService.loadBooks(this.currentFilePath, sink);
+        }
+        return matching;
+    }
+
+    /**
+     * Indica se le modifiche ai libri vanno scritte direttamente nell'archivio invece che in memoria:
+     * libreria aperta in modo differito su uno storage ordinato che accetta modifiche puntuali
+     * ({@link DeltaStorageService}) e allineata con il file.
+     */
+    private boolean writesInPlace() {
+        return this.lazyOpen && this.lazyIndex == null && this.offHeapCatalog == null
+                && storageService instanceof OrderedStorageService && storageService instanceof DeltaStorageService
+                && !hasUnsavedChanges(this.currentFilePath);
+    }
+
+    /**
+     * Scrive le modifiche direttamente nell'archivio aperto in modo differito: dopo la scrittura
+     * il file resta allineato con la libreria, che non viene caricata in memoria.
+     */
+    private void writeInPlace(List<Book> changedBooks, Set<String> removed, String description) throws LibraryException {
+        synchronized (saveLock) {
+            ((DeltaStorageService) storageService).saveChanges(changedBooks, removed, this.currentFilePath);
+            this.generation++;
+            markWritten(this.currentFilePath, this.generation);
+        }
+        markSynced(this.currentFilePath);
+        notifyChanged(description);
+    }
+
+    /**
+     * Legge per intero il file aperto in modo differito, o trasferisce nell'heap la copia fuori heap.
+     * Lo stato di salvataggio non cambia, perché la memoria rispecchia ancora esattamente il file.
+     * @throws LibraryException se il file non è più leggibile (la libreria resta aperta in modo differito).
+     */
+    private void materialize() throws LibraryException {
+        if (!this.lazyOpen) {
+            return;
+        }
+        List<LibraryItem> loadedItems = new ArrayList<>();
+        if (this.offHeapCatalog != null) {
+            logger.logInfo("Trasferimento nell'heap della libreria copiata fuori heap: " + this.currentFilePath);
+            this.offHeapCatalog.forEach(view -> loadedItems.add(view.toBook()));
+            this.offHeapCatalog.release();
+        } else {
+            logger.logInfo("Caricamento completo della libreria aperta in modo differito: " + this.currentFilePath);
+            try {
+                storageService.loadBooks(this.currentFilePath, loadedItems::add);
+            } catch (LibraryException e) {
+                logger.logError("Caricamento completo fallito per " + this.currentFilePath, e);
+                throw e;
+            }
+        }
+        this.items = loadedItems;
+        this.booksByIsbn = indexByIsbn(loadedItems);
+        this.phoneticAuthors = null;
+        this.columnar = null;
+        this.rankedIndex = null;
+        resetVersions(this.currentFilePath);
+        this.lazyOpen = false;
+        this.lazyIndex = null;
+        this.offHeapCatalog = null;
+    }
+
+    // --- Tracciamento delle Modifiche ---
+
+    /**
+     * Indica se ci sono modifiche non ancora salvate sul file corrente.
+     * @return true se il file corrente non rispecchia la libreria in memoria.
+     */
+    public synchronized boolean hasUnsavedChanges() {
+        return hasUnsavedChanges(this.currentFilePath);
+    }
+
+    /**
+     * Indica se il file specificato non rispecchia la libreria in memoria.
+     * @param filePath Il percorso del file da confrontare.
+     * @return true se un salvataggio su quel file scriverebbe qualcosa.
+     */
+    public synchronized boolean hasUnsavedChanges(String filePath) {
+        return filePath == null || !filePath.equals(this.syncedFilePath) || this.generation != this.savedGeneration;
+    }
+
+    /**
+     * Restituisce il contatore delle modifiche ai libri (generazione corrente).
+     * @return Il numero di modifiche effettuate dall'avvio.
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    // --- Salvataggio in Background ---
+
+    /**
+     * Istantanea immutabile dei libri da salvare, catturata in modo consistente: tutti i libri,
+     * oppure solo le modifiche rispetto al file se lo storage è un {@link DeltaStorageService}.
+     */
+    public static final class SaveSnapshot {
+        private final String filePath;
+        private final long generation;
+        /** Tutti i libri, o null per un'istantanea delle sole modifiche o di un checkpoint. */
+        private final List<Book> books;
+        /** Versione persistente del catalogo per un checkpoint, condivisa senza copia; null altrimenti. */
+        private final PersistentHashMap<String, Book> catalog;
+        /** Libri aggiunti o modificati e ISBN rimossi dopo {@link #baseGeneration}; null per un'istantanea completa. */
+        private final List<Book> changedBooks;
+        private final Set<String> removedIsbns;
+        /** Generazione del file a cui vanno applicate le modifiche. */
+        private final long baseGeneration;
+        /** Riferimento del checkpoint avviato sullo storage, o -1 per un normale salvataggio. */
+        private final long checkpoint;
+
+        private SaveSnapshot(String filePath, long generation, List<Book> books) {
+            this.filePath = filePath;
+            this.generation = generation;
+            this.books = books;
+            this.catalog = null;
+            this.changedBooks = null;
+            this.removedIsbns = null;
+            this.baseGeneration = -1;
+            this.checkpoint = -1;
+        }
+
+        private SaveSnapshot(String filePath, long generation, PersistentHashMap<String, Book> catalog, long checkpoint) {
+            this.filePath = filePath;
+            this.generation = generation;
+            this.books = null;
+            this.catalog = catalog;
+            this.changedBooks = null;
+            this.removedIsbns = null;
+            this.baseGeneration = -1;
+            this.checkpoint = checkpoint;
+        }
+
+        private SaveSnapshot(String filePath, long generation, long baseGeneration, List<Book> changedBooks,
+                             Set<String> removedIsbns) {
+            this.filePath = filePath;
+            this.generation = generation;
+            this.books = null;
+            this.catalog = null;
+            this.changedBooks = changedBooks;
+            this.removedIsbns = removedIsbns;
+            this.baseGeneration = baseGeneration;
+            this.checkpoint = -1;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        /** Numero di libri scritti dall'istantanea: tutti, o solo quelli modificati e rimossi. */
+        public int size() {
+            if (books != null) {
+                return books.size();
+            }
+            return catalog != null ? catalog.size() : changedBooks.size() + removedIsbns.size();
+        }
+
+        /** Indica se l'istantanea contiene solo le modifiche rispetto al file. */
+        public boolean isDelta() {
+            return changedBooks != null;
+        }
+    }
+
+    /**
+     * Cattura un'istantanea dei libri se il file corrente non è allineato con la memoria.
+     * I libri sono immutabili, quindi l'istantanea ne condivide le istanze: le modifiche successive
+     * sostituiscono i libri nella libreria senza alterare l'istantanea.
+     * Se il file corrente è quello allineato in precedenza e lo storage è un {@link DeltaStorageService},
+     * l'istantanea contiene solo i libri modificati e gli ISBN rimossi. Una libreria aperta in modo
+     * differito viene letta dal file per l'istantanea, senza trasferirla in memoria.
+     * @return L'istantanea da salvare, o vuoto se non c'è nulla da salvare.
+     * @throws LibraryException se la lettura della libreria aperta in modo differito fallisce.
+     */
+    public synchronized Optional<SaveSnapshot> captureSnapshot() throws LibraryException {
+        if (this.currentFilePath == null || this.currentFilePath.trim().isEmpty() || !hasUnsavedChanges()) {
+            return Optional.empty();
+        }
+        if (this.currentFilePath.equals(this.syncedFilePath) && storageService instanceof DeltaStorageService) {
+            List<Book> changedBooks = changedBooks();
+            return Optional.of(new SaveSnapshot(this.currentFilePath, this.generation, this.savedGeneration,
+                    Collections.unmodifiableList(changedBooks), Collections.unmodifiableSet(new LinkedHashSet<>(this.removedIsbns))));
+        }
+        List<Book> books = new ArrayList<>();
+        forEachBook(books::add);
+        return Optional.of(new SaveSnapshot(this.currentFilePath, this.generation, Collections.unmodifiableList(books)));
+    }
+
+    /**
+     * Scrive un'istantanea su disco senza tenere il lock del servizio: le modifiche concorrenti
+     * non attendono la scrittura. Un'istantanea più vecchia di quanto già scritto viene scartata.
+     * Un'istantanea delle sole modifiche viene applicata solo se il file è ancora almeno alla generazione
+     * da cui è stata calcolata; altrimenti viene catturata e scritta un'istantanea completa.
+     * @param snapshot L'istantanea catturata con {@link #captureSnapshot()}.
+     * @return Il resoconto del salvataggio.
+     * @throws LibraryException se la scrittura fallisce.
+     */
+    public SaveReport saveSnapshot(SaveSnapshot snapshot) throws LibraryException {
+        synchronized (saveLock) {
+            boolean sameFile = snapshot.filePath.equals(lastWrittenPath);
+            if (sameFile && snapshot.generation <= lastWrittenGeneration) {
+                return SaveReport.skipped(snapshot.filePath);
+            }
+            if (snapshot.isDelta() && sameFile && lastWrittenGeneration >= snapshot.baseGeneration) {
+                ((DeltaStorageService) storageService).saveChanges(snapshot.changedBooks, snapshot.removedIsbns, snapshot.filePath);
+                markWritten(snapshot.filePath, snapshot.generation);
+            } else if (!snapshot.isDelta()) {
+                storageService.saveBooks(snapshot.books, snapshot.filePath);
+                markWritten(snapshot.filePath, snapshot.generation);
+            } else {
+                snapshot = null; // Il file è stato riscritto da altri: le modifiche non bastano più.
+            }
+        }
+        if (snapshot == null) {
+            return saveFullSnapshot();
+        }
+        synchronized (this) {
+            if (this.generation == snapshot.generation) {
+                markSynced(snapshot.filePath);
+            } else if (!snapshot.filePath.equals(this.syncedFilePath) || this.savedGeneration < snapshot.generation) {
+                // Modifiche arrivate durante la scrittura: restano da salvare, l'elenco resta un soprainsieme valido.
+                this.syncedFilePath = snapshot.filePath;
+                this.savedGeneration = snapshot.generation;
+            }
+        }
+        logger.logDebug("Salvataggio in background completato: " + snapshot.size() + " libri (generazione "
+                + snapshot.generation + ") su " + snapshot.filePath);
+        return snapshot.isDelta()
+                ? SaveReport.delta(snapshot.filePath, snapshot.changedBooks.size(), snapshot.removedIsbns.size())
+                : SaveReport.full(snapshot.filePath, snapshot.size(), 0, 0);
+    }
+
+    /**
+     * Cattura e scrive un'istantanea completa, dopo che un'istantanea delle sole modifiche non era applicabile.
+     */
+    private SaveReport saveFullSnapshot() throws LibraryException {
+        Optional<SaveSnapshot> full;
+        synchronized (this) {
+            this.syncedFilePath = null; // Il file non è più la base delle modifiche registrate.
+            full = captureSnapshot();
+        }
+        return full.isPresent() ? saveSnapshot(full.get()) : SaveReport.skipped(this.getCurrentFilePath());
+    }
+
+    // --- Checkpoint ---
+
+    /**
+     * Avvia un checkpoint del file corrente: chiude il journal dello storage e cattura, nello stesso istante,
+     * un'istantanea dei libri. Richiede uno storage {@link CheckpointingJournal} e un file allineato
+     * con la memoria (tutte le modifiche già registrate nel journal).
+     * L'istantanea è la versione corrente del catalogo persistente, che le modifiche successive non alterano:
+     * sotto il lock non viene copiato nessun libro.
+     * @param minJournalRecords Numero minimo di record nel journal perché il checkpoint sia utile.
+     * @return L'istantanea da scrivere con {@link #writeCheckpoint}, o vuoto se non serve un checkpoint.
+     * @throws LibraryException se il journal non può essere chiuso.
+     */
+    public synchronized Optional<SaveSnapshot> beginCheckpoint(int minJournalRecords) throws LibraryException {
+        if (!(storageService instanceof CheckpointingJournal) || this.syncedFilePath == null
+                || this.generation != this.savedGeneration) {
+            return Optional.empty();
+        }
+        CheckpointingJournal journal = (CheckpointingJournal) storageService;
+        if (journal.getJournalSize(this.syncedFilePath) < Math.max(1, minJournalRecords)) {
+            return Optional.empty();
+        }
+        materialize();
+        ensureCatalog();
+        long checkpoint = journal.beginCheckpoint(this.syncedFilePath);
+        return Optional.of(new SaveSnapshot(this.syncedFilePath, this.generation, this.catalog, checkpoint));
+    }
+
+    /**
+     * Scrive il checkpoint senza tenere il lock del servizio: le modifiche concorrenti continuano
+     * a essere registrate nel journal. I libri sono scritti nell'ordine del catalogo persistente.
+     * @param snapshot L'istantanea restituita da {@link #beginCheckpoint}.
+     * @return true se il checkpoint è stato scritto, false se lo storage lo ha scartato.
+     * @throws LibraryException se la scrittura fallisce o l'istantanea non è un checkpoint.
+     */
+    public boolean writeCheckpoint(SaveSnapshot snapshot) throws LibraryException {
+        if (snapshot.checkpoint < 0 || !(storageService instanceof CheckpointingJournal)) {
+            throw new LibraryException("L'istantanea non appartiene a un checkpoint avviato con beginCheckpoint.");
+        }
+        List<Book> books = new ArrayList<>(snapshot.catalog.size());
+        snapshot.catalog.forEach((isbn, book) -> books.add(book));
+        return ((CheckpointingJournal) storageService).completeCheckpoint(snapshot.filePath, snapshot.checkpoint,
+                books.iterator());
+    }
+
+    // --- Osservatori ---
+
+    /**
+     * Registra un osservatore delle modifiche ai libri.
+     * @param listener L'osservatore da aggiungere (ignorato se nullo).
+     */
+    public void addChangeListener(LibraryChangeListener listener) {
+        if (listener != null) {
+            changeListeners.add(listener);
+        }
+    }
+
+    /**
+     * Rimuove un osservatore registrato in precedenza.
+     * @param listener L'osservatore da rimuovere.
+     */
+    public void removeChangeListener(LibraryChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Registra l'ultima scrittura su disco. Va chiamato tenendo {@link #saveLock}.
+     */
+    private void markWritten(String filePath, long generation) {
+        this.lastWrittenPath = filePath;
+        this.lastWrittenGeneration = generation;
+        this.lastWrittenModified = null;
+        this.lastWrittenSize = -1;
+        Path path = Paths.get(filePath);
+        if (!(storageService instanceof MutationJournal) && Files.isRegularFile(path)) {
+            // Con un journal le modifiche finiscono in un altro file: data e dimensione non bastano.
+            try {
+                this.lastWrittenModified = Files.getLastModifiedTime(path);
+                this.lastWrittenSize = Files.size(path);
+            } catch (IOException e) {
+                logger.logDebug("Impossibile leggere data e dimensione di " + filePath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Indica se il file è ancora esattamente quello dell'ultima scrittura o lettura registrata,
+     * confrontando data di modifica e dimensione.
+     */
+    private boolean isUnchangedSinceLastWrite(String filePath) {
+        synchronized (saveLock) {
+            if (!filePath.equals(this.lastWrittenPath) || this.lastWrittenModified == null) {
+                return false;
+            }
+            try {
+                Path path = Paths.get(filePath);
+                return this.lastWrittenModified.equals(Files.getLastModifiedTime(path))
+                        && this.lastWrittenSize == Files.size(path);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Registra il file come allineato con la memoria e azzera l'elenco delle modifiche.
+     */
+    private void markSynced(String filePath) {
+        this.syncedFilePath = filePath;
+        this.savedGeneration = this.generation;
+        this.changedIsbns.clear();
+        this.removedIsbns.clear();
+    }
+
+    /**
+     * Operazione da registrare sul journal dello storage.
+     */
+    @FunctionalInterface
+    private interface JournalOperation {
+        void apply(MutationJournal journal, String filePath) throws LibraryException;
+    }
+
+    /**
+     * Registra una modifica a un libro. Se lo storage supporta il journal e il file è allineato
+     * alla memoria, la modifica viene persistita subito; altrimenti resta tra quelle da salvare.
+     * In caso di errore del journal, il prossimo salvataggio sarà completo.
+     * @param operation L'operazione da registrare sul journal.
+     * @param removedIsbn L'ISBN che non esiste più (o null).
+     * @param changedIsbn L'ISBN aggiunto o modificato (o null).
+     */
+    private void recordMutation(JournalOperation operation, String removedIsbn, String changedIsbn) {
+        boolean wasSynced = this.syncedFilePath != null && this.generation == this.savedGeneration;
+        this.generation++;
+        if (removedIsbn != null) {
+            this.changedIsbns.remove(removedIsbn);
+            this.removedIsbns.add(removedIsbn);
+        }
+        if (changedIsbn != null) {
+            this.removedIsbns.remove(changedIsbn);
+            this.changedIsbns.add(changedIsbn);
+        }
+        updateDerivedIndexes(removedIsbn, changedIsbn);
+
+        if (wasSynced && storageService instanceof MutationJournal) {
+            try {
+                operation.apply((MutationJournal) storageService, this.syncedFilePath);
+                markSynced(this.syncedFilePath);
+            } catch (LibraryException e) {
+                logger.logError("Impossibile registrare la modifica sul journal di " + this.syncedFilePath
+                        + ". Il prossimo salvataggio riscriverà l'intero file.", e);
+                this.syncedFilePath = null;
+            }
+        }
+    }
+
+    /**
+     * Registra la nuova versione del catalogo e notifica gli osservatori dopo una o più modifiche
+     * registrate con {@link #recordMutation}.
+     * @param description La descrizione delle modifiche, conservata nella versione.
+     */
+    private void notifyChanged(String description) {
+        recordVersion(description);
+        for (LibraryChangeListener listener : changeListeners) {
+            listener.onLibraryChanged(this.generation);
+        }
+    }
+
+    /**
+     * Aggiorna il catalogo persistente, la copia per colonne, l'indice di ricerca e l'indice fonetico dopo una modifica
+     * già applicata a {@link #booksByIsbn}.
+     * @param removedIsbn L'ISBN che non esiste più (o null).
+     * @param changedIsbn L'ISBN aggiunto o modificato (o null).
+     */
+    private void updateDerivedIndexes(String removedIsbn, String changedIsbn) {
+        Book changedBook = changedIsbn != null ? this.booksByIsbn.get(changedIsbn) : null;
+        if (this.catalog != null) {
+            if (removedIsbn != null) {
+                this.catalog = this.catalog.minus(removedIsbn);
+            }
+            if (changedBook != null) {
+                this.catalog = this.catalog.plus(changedIsbn, changedBook);
+            }
+        }
+        if (this.columnar != null) {
+            if (removedIsbn != null && changedBook != null) {
+                // Cambio di ISBN: la nuova versione resta nella posizione della precedente.
+                this.columnar.replace(removedIsbn, changedBook);
+            } else if (removedIsbn != null) {
+                this.columnar.remove(removedIsbn);
+            } else if (changedBook != null) {
+                this.columnar.put(changedBook);
+            }
+        }
+        if (this.rankedIndex != null) {
+            if (removedIsbn != null && changedBook != null) {
+                this.rankedIndex.replace(removedIsbn, changedBook);
+            } else if (removedIsbn != null) {
+                this.rankedIndex.remove(removedIsbn);
+            } else if (changedBook != null) {
+                this.rankedIndex.put(changedBook);
+            }
+        }
+        if (this.phoneticAuthors != null) {
+            if (removedIsbn != null && changedBook != null) {
+                this.phoneticAuthors.replace(removedIsbn, changedBook);
+            } else if (removedIsbn != null) {
+                this.phoneticAuthors.remove(removedIsbn);
+            } else if (changedBook != null) {
+                this.phoneticAuthors.put(changedBook);
+            }
+        }
+    }
+
+    /**
+     * Conserva il catalogo corrente come nuova versione, scartando la più vecchia oltre il limite.
+     * Non copia nulla: la versione tiene solo un riferimento alla mappa persistente.
+     */
+    private void recordVersion(String description) {
+        if (this.catalog == null) {
+            return;
+        }
+        this.versions.addLast(new LibraryVersion(this.generation, Instant.now(), description, this.catalog));
+        while (this.versions.size() > this.maxVersions) {
+            this.versions.removeFirst();
+        }
+    }
+
+    /**
+     * Riparte con lo storico dopo un caricamento. Il catalogo persistente non viene costruito subito
+     * ma da {@link #ensureCatalog()}, così un caricamento consultato senza modifiche non lo paga.
+     */
+    private void resetVersions(String filePath) {
+        this.catalog = null;
+        this.versions.clear();
+        this.loadDescription = "Caricato " + filePath;
+        this.loadTime = Instant.now();
+    }
+
+    /**
+     * Costruisce il catalogo persistente dall'indice, se manca, e registra come prima versione quella
+     * caricata. Va chiamato prima di applicare una modifica e prima di consultare lo storico.
+     */
+    private void ensureCatalog() {
+        if (this.catalog != null || this.lazyOpen) {
+            return;
+        }
+        long start = System.nanoTime();
+        PersistentHashMap.Builder<String, Book> builder = PersistentHashMap.builder();
+        this.booksByIsbn.forEach(book -> builder.put(book.getIsbn(), book));
+        this.catalog = builder.build();
+        this.versions.addLast(new LibraryVersion(this.generation, this.loadTime, this.loadDescription, this.catalog));
+        logger.logDebug("Catalogo persistente costruito: " + this.catalog.size() + " libri in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Costruisce l'indice per ISBN; in caso di ISBN ripetuti nel file vale il primo libro.
+     */
+    private static IsbnIndex indexByIsbn(List<LibraryItem> loadedItems) {
+        IsbnIndex index = new IsbnIndex(loadedItems.size());
+        for (LibraryItem item : loadedItems) {
+            if (item instanceof Book) {
+                index.putIfAbsent(item.getIsbn(), (Book) item);
+            }
+        }
+        return index;
+    }
+}
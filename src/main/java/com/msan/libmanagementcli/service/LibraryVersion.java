@@ -0,0 +1,88 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.PersistentHashMap;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Versione immutabile del catalogo dei libri, registrata da {@link LibraryService} dopo ogni modifica.
+ * <p>
+ * I libri sono in una {@link PersistentHashMap} per ISBN che condivide con le versioni vicine tutti
+ * i nodi non toccati dalla modifica: registrare una versione costa un riferimento, non una copia.
+ * Ricerche ed elenchi su una versione non richiedono il lock del servizio e non vedono le modifiche
+ * successive. In caso di ISBN ripetuti nel file caricato, la versione contiene il primo libro.
+ */
+public final class LibraryVersion {
+
+    private final long generation;
+    private final Instant timestamp;
+    private final String description;
+    private final PersistentHashMap<String, Book> booksByIsbn;
+
+    LibraryVersion(long generation, Instant timestamp, String description, PersistentHashMap<String, Book> booksByIsbn) {
+        this.generation = generation;
+        this.timestamp = timestamp;
+        this.description = description;
+        this.booksByIsbn = booksByIsbn;
+    }
+
+    /** Generazione della libreria ({@link LibraryService#getGeneration()}) a cui corrisponde la versione. */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /** Istante in cui la versione è stata registrata. */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /** Descrizione della modifica che ha prodotto la versione (es. "Aggiunti 120 libri"). */
+    public String getDescription() {
+        return description;
+    }
+
+    /** Numero di libri nella versione. */
+    public int size() {
+        return booksByIsbn.size();
+    }
+
+    /**
+     * Trova un libro come era in questa versione.
+     * @param isbn L'ISBN del libro.
+     * @return Un {@link Optional} con il libro, vuoto se la versione non lo contiene.
+     */
+    public Optional<Book> findBookByIsbn(String isbn) {
+        return Optional.ofNullable(booksByIsbn.get(isbn));
+    }
+
+    /**
+     * Restituisce una nuova lista con i libri della versione.
+     * @param strategy La strategia di ordinamento, o null per un ordine non specificato.
+     * @return I libri della versione.
+     */
+    public List<Book> getBooks(SortStrategy strategy) {
+        List<Book> books = new ArrayList<>(booksByIsbn.size());
+        booksByIsbn.forEach((isbn, book) -> books.add(book));
+        if (strategy != null) {
+            strategy.sort(books);
+        }
+        return books;
+    }
+
+    /**
+     * Restituisce una descrizione leggibile della versione, adatta alla CLI.
+     * @return La descrizione della versione.
+     */
+    public String describe() {
+        return String.format("Versione %d del %s: %s (%d libri).", generation, timestamp, description, booksByIsbn.size());
+    }
+
+    @Override
+    public String toString() {
+        return "LibraryVersion [" + describe() + "]";
+    }
+}
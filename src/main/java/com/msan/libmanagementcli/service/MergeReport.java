@@ -0,0 +1,86 @@
+package com.msan.libmanagementcli.service;
+
+/**
+ * Resoconto del confronto (o della fusione) di due file della libreria, per ISBN:
+ * libri presenti solo nel secondo file, solo nel primo, diversi e identici.
+ */
+public class MergeReport {
+
+    private final String leftPath;
+    private final String rightPath;
+    private final long addedBooks;
+    private final long removedBooks;
+    private final long changedBooks;
+    private final long unchangedBooks;
+    private final int spilledRuns;
+    private final long elapsedMillis;
+
+    MergeReport(String leftPath, String rightPath, long addedBooks, long removedBooks, long changedBooks,
+                long unchangedBooks, int spilledRuns, long elapsedMillis) {
+        this.leftPath = leftPath;
+        this.rightPath = rightPath;
+        this.addedBooks = addedBooks;
+        this.removedBooks = removedBooks;
+        this.changedBooks = changedBooks;
+        this.unchangedBooks = unchangedBooks;
+        this.spilledRuns = spilledRuns;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getLeftPath() {
+        return leftPath;
+    }
+
+    public String getRightPath() {
+        return rightPath;
+    }
+
+    /** Numero di libri presenti solo nel secondo file. */
+    public long getAddedBooks() {
+        return addedBooks;
+    }
+
+    /** Numero di libri presenti solo nel primo file. */
+    public long getRemovedBooks() {
+        return removedBooks;
+    }
+
+    /** Numero di libri presenti in entrambi i file con dati diversi (i conflitti della fusione). */
+    public long getChangedBooks() {
+        return changedBooks;
+    }
+
+    public long getUnchangedBooks() {
+        return unchangedBooks;
+    }
+
+    /** Numero di run temporanei scritti su disco dall'ordinamento esterno dei due file. */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return true se i due file contengono gli stessi libri.
+     */
+    public boolean isIdentical() {
+        return addedBooks + removedBooks + changedBooks == 0;
+    }
+
+    /**
+     * Restituisce una descrizione leggibile del confronto, adatta alla CLI.
+     * @return La descrizione del resoconto.
+     */
+    public String describe() {
+        return String.format("Confronto %s -> %s: %d libri aggiunti, %d rimossi, %d modificati, %d invariati (%d run su disco, %d ms).",
+                leftPath, rightPath, addedBooks, removedBooks, changedBooks, unchangedBooks, spilledRuns, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "MergeReport [" + describe() + "]";
+    }
+}
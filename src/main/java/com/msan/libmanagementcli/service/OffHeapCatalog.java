@@ -0,0 +1,617 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.PhoneticEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Copia dei libri fuori dall'heap, in {@link ByteBuffer} diretti, per librerie da decine di milioni di libri.
+ * <p>
+ * Ogni libro è un record in un blocco di memoria diretta
+ * ({@code [stato][anno][isbn][titolo][autore][genere][titolo minuscolo][autore minuscolo][codici fonetici]},
+ * con le stringhe come lunghezza più caratteri UTF-16), e l'indice per ISBN è una tabella a indirizzamento aperto, anch'essa
+ * in memoria diretta. Nell'heap resta quindi un numero costante di oggetti, qualunque sia il numero di libri,
+ * e il garbage collector non deve più visitarli.
+ * <p>
+ * Le modifiche restano fuori heap: un libro nuovo o modificato diventa un record in coda e quello
+ * precedente viene marcato come rimosso, così un libro modificato passa in fondo alle scansioni.
+ * Quando i record rimossi occupano più di quelli vivi, i blocchi vengono compattati.
+ * <p>
+ * Le scansioni usano un {@link BookView} riutilizzabile (flyweight) che legge i campi direttamente
+ * dal buffer; gli oggetti {@link Book} vengono creati solo per i risultati. Titolo e autore sono salvati
+ * anche nella forma di ricerca ({@link String#toLowerCase()}, come {@link Book#getSearchTitle()}), quindi
+ * le ricerche senza distinzione tra maiuscole e minuscole danno gli stessi risultati della libreria nell'heap.
+ * Anche i codici fonetici delle parole dell'autore ({@link PhoneticEncoder}) sono calcolati una volta alla
+ * scrittura: la ricerca "suona come" resta una scansione, ma senza codificare né allocare per ogni libro.
+ * <p>
+ * Non è thread-safe: {@link LibraryService} lo usa solo tenendo il proprio lock.
+ */
+final class OffHeapCatalog {
+
+    /** Dimensione di default di un blocco di memoria diretta, in byte. */
+    static final int DEFAULT_CHUNK_BYTES = 16 * 1024 * 1024;
+    /** Capacità iniziale della tabella degli ISBN (potenza di due). */
+    private static final int INITIAL_TABLE_CAPACITY = 1024;
+    /** Capacità massima della tabella: 2^28 posizioni da 8 byte, il limite di un singolo buffer. */
+    private static final int MAX_TABLE_CAPACITY = 1 << 28;
+    private static final int NULL_STRING = -1;
+    private static final byte LIVE = 0;
+    private static final byte REMOVED = 1;
+
+    private final int chunkBytes;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    /** Byte occupati in ciascun blocco. */
+    private int[] usedBytes = new int[4];
+    private int size;
+    /** Byte dei record marcati come rimossi, recuperati dalla compattazione. */
+    private long removedBytes;
+    private long liveBytes;
+    /**
+     * Indice ISBN → indirizzo del record + 1 (0 = posizione libera). Una posizione che punta a un record
+     * rimosso resta occupata fino alla compattazione, così le catene di ricerca non si interrompono.
+     */
+    private LongBuffer table;
+    private int indexedBooks;
+
+    OffHeapCatalog() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    OffHeapCatalog(int chunkBytes) {
+        if (chunkBytes < 64) {
+            throw new IllegalArgumentException("I blocchi fuori heap devono essere di almeno 64 byte.");
+        }
+        this.chunkBytes = chunkBytes;
+        this.table = allocateTable(INITIAL_TABLE_CAPACITY);
+    }
+
+    /**
+     * Aggiunge un libro in coda. Se l'ISBN è già presente il libro resta nelle scansioni,
+     * ma la ricerca per ISBN continua a trovare il primo, come nel caricamento in memoria.
+     * @param book Il libro da copiare fuori heap.
+     */
+    void append(Book book) {
+        index(book.getIsbn(), write(book));
+    }
+
+    /**
+     * Aggiunge o sostituisce il libro con lo stesso ISBN: il nuovo record va in coda e quello
+     * precedente viene marcato come rimosso.
+     * @param book Il libro da copiare fuori heap.
+     */
+    void put(Book book) {
+        int slot = slotOf(book.getIsbn());
+        if (slot < 0) {
+            append(book);
+            return;
+        }
+        BookView view = new BookView();
+        view.moveTo(table.get(slot) - 1);
+        if (view.isLive()) {
+            view.markRemoved();
+        }
+        table.put(slot, write(book) + 1);
+        compactIfWasteful();
+    }
+
+    /**
+     * Marca come rimosso il libro con l'ISBN indicato.
+     * @return true se il libro era presente.
+     */
+    boolean remove(String isbn) {
+        int slot = slotOf(isbn);
+        if (slot < 0) {
+            return false;
+        }
+        BookView view = new BookView();
+        view.moveTo(table.get(slot) - 1);
+        if (!view.isLive()) {
+            return false;
+        }
+        view.markRemoved();
+        compactIfWasteful();
+        return true;
+    }
+
+    /** Indica se c'è un libro con l'ISBN indicato, senza crearne una copia. */
+    boolean contains(String isbn) {
+        int slot = slotOf(isbn);
+        if (slot < 0) {
+            return false;
+        }
+        BookView view = new BookView();
+        view.moveTo(table.get(slot) - 1);
+        return view.isLive();
+    }
+
+    /** Numero di libri copiati. */
+    int size() {
+        return size;
+    }
+
+    /** Byte di memoria diretta allocati per record e indice. */
+    long allocatedBytes() {
+        long bytes = (long) table.capacity() * Long.BYTES;
+        for (ByteBuffer chunk : chunks) {
+            bytes += chunk.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Cerca un libro per ISBN nella tabella fuori heap.
+     * @return Una copia del libro, o vuoto se assente.
+     */
+    Optional<Book> find(String isbn) {
+        int slot = slotOf(isbn);
+        if (slot < 0) {
+            return Optional.empty();
+        }
+        BookView view = new BookView();
+        view.moveTo(table.get(slot) - 1);
+        return view.isLive() ? Optional.of(view.toBook()) : Optional.empty();
+    }
+
+    /**
+     * Passa ogni record non rimosso al consumer, nell'ordine di inserimento, tramite la stessa vista
+     * riutilizzata: la vista è valida solo durante la chiamata.
+     */
+    void forEach(Consumer<? super BookView> action) {
+        BookView view = new BookView();
+        for (int chunkIndex = 0; chunkIndex < chunks.size(); chunkIndex++) {
+            int offset = 0;
+            while (offset < usedBytes[chunkIndex]) {
+                view.moveTo(((long) chunkIndex << 32) | offset);
+                if (view.isLive()) {
+                    action.accept(view);
+                }
+                offset = view.end;
+            }
+        }
+    }
+
+    /**
+     * Restituisce i libri nell'ordine di inserimento, creando una copia alla volta: pensato per salvare
+     * la libreria senza trasferirla nell'heap. Il catalogo non va modificato durante l'iterazione.
+     */
+    Iterator<Book> books() {
+        return new Iterator<Book>() {
+            private final BookView view = new BookView();
+            private int chunkIndex;
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                while (chunkIndex < chunks.size()) {
+                    if (offset >= usedBytes[chunkIndex]) {
+                        chunkIndex++;
+                        offset = 0;
+                        continue;
+                    }
+                    view.moveTo(((long) chunkIndex << 32) | offset);
+                    if (view.isLive()) {
+                        return true;
+                    }
+                    offset = view.end;
+                }
+                return false;
+            }
+
+            @Override
+            public Book next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                offset = view.end;
+                return view.toBook();
+            }
+        };
+    }
+
+    /** Libri il cui titolo contiene il testo, senza distinzione tra maiuscole e minuscole. */
+    List<Book> findByTitle(String query) {
+        char[] needle = query.toLowerCase().toCharArray();
+        List<Book> result = new ArrayList<>();
+        forEach(view -> {
+            if (view.contains(view.searchTitleAt, needle)) {
+                result.add(view.toBook());
+            }
+        });
+        return result;
+    }
+
+    /** Libri il cui autore contiene il testo, senza distinzione tra maiuscole e minuscole. */
+    List<Book> findByAuthor(String query) {
+        char[] needle = query.toLowerCase().toCharArray();
+        List<Book> result = new ArrayList<>();
+        forEach(view -> {
+            if (view.contains(view.searchAuthorAt, needle)) {
+                result.add(view.toBook());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Libri il cui autore ha, per ogni codice fonetico indicato, una parola con quel codice.
+     * @param codes I codici delle parole cercate ({@link PhoneticEncoder#encodeWords}).
+     */
+    List<Book> findByAuthorSound(List<String> codes) {
+        List<Book> result = new ArrayList<>();
+        if (codes.isEmpty()) {
+            return result;
+        }
+        char[][] needles = new char[codes.size()][];
+        for (int i = 0; i < needles.length; i++) {
+            needles[i] = (" " + codes.get(i) + " ").toCharArray();
+        }
+        forEach(view -> {
+            boolean matchesAll = true;
+            for (int i = 0; i < needles.length && matchesAll; i++) {
+                matchesAll = view.contains(view.authorCodesAt, needles[i]);
+            }
+            if (matchesAll) {
+                result.add(view.toBook());
+            }
+        });
+        return result;
+    }
+
+    /** Libri pubblicati tra due anni, estremi inclusi. */
+    List<Book> findByYearRange(int fromYear, int toYear) {
+        List<Book> result = new ArrayList<>();
+        forEach(view -> {
+            int year = view.getPublicationYear();
+            if (year >= fromYear && year <= toYear) {
+                result.add(view.toBook());
+            }
+        });
+        return result;
+    }
+
+    /** Numero di libri per genere, in ordine di prima comparsa (i libri senza genere non sono contati). */
+    Map<String, Integer> countByGenre() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        forEach(view -> {
+            String genre = view.getGenre();
+            if (genre != null) {
+                counts.merge(genre, 1, Integer::sum);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Rilascia i riferimenti ai buffer: la memoria diretta viene liberata dal garbage collector
+     * insieme ai piccoli oggetti {@link ByteBuffer} che la possiedono.
+     */
+    void release() {
+        chunks.clear();
+        usedBytes = new int[4];
+        size = 0;
+        removedBytes = 0;
+        liveBytes = 0;
+        indexedBooks = 0;
+        table = allocateTable(INITIAL_TABLE_CAPACITY);
+    }
+
+    // --- Logica Interna Privata ---
+
+    /** Scrive il record in coda all'ultimo blocco e ne restituisce l'indirizzo. */
+    private long write(Book book) {
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        String searchAuthor = author != null ? author.toLowerCase() : null;
+        String authorCodes = authorCodes(author);
+        int length = 5 + stringBytes(book.getIsbn()) + stringBytes(title) + stringBytes(author)
+                + stringBytes(book.getGenre()) + stringBytes(book.getSearchTitle()) + stringBytes(searchAuthor)
+                + stringBytes(authorCodes);
+        int chunkIndex = chunks.size() - 1;
+        if (chunkIndex < 0 || usedBytes[chunkIndex] + length > chunks.get(chunkIndex).capacity()) {
+            chunkIndex = newChunk(Math.max(chunkBytes, length));
+        }
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        int offset = usedBytes[chunkIndex];
+        chunk.put(offset, LIVE);
+        chunk.putInt(offset + 1, book.getPublicationYear());
+        int position = putString(chunk, offset + 5, book.getIsbn());
+        position = putString(chunk, position, title);
+        position = putString(chunk, position, author);
+        position = putString(chunk, position, book.getGenre());
+        position = putString(chunk, position, book.getSearchTitle());
+        position = putString(chunk, position, searchAuthor);
+        position = putString(chunk, position, authorCodes);
+        usedBytes[chunkIndex] = position;
+        size++;
+        liveBytes += length;
+        return ((long) chunkIndex << 32) | offset;
+    }
+
+    /** Posizione nella tabella del record (vivo o rimosso) con l'ISBN indicato, o -1. */
+    private int slotOf(String isbn) {
+        if (isbn == null) {
+            return -1;
+        }
+        BookView view = new BookView();
+        int mask = table.capacity() - 1;
+        for (int slot = mix(isbn.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            long entry = table.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            view.moveTo(entry - 1);
+            if (view.isbnEquals(isbn)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Riscrive i soli record vivi in nuovi blocchi, con una nuova tabella, quando i record rimossi
+     * occupano più di quelli vivi: il costo resta ammortizzato sulle modifiche che li hanno prodotti.
+     */
+    private void compactIfWasteful() {
+        if (removedBytes <= liveBytes || removedBytes < chunkBytes) {
+            return;
+        }
+        List<ByteBuffer> oldChunks = new ArrayList<>(chunks);
+        int[] oldUsed = usedBytes;
+        release();
+        BookView view = new BookView();
+        for (int chunkIndex = 0; chunkIndex < oldChunks.size(); chunkIndex++) {
+            ByteBuffer oldChunk = oldChunks.get(chunkIndex);
+            int offset = 0;
+            while (offset < oldUsed[chunkIndex]) {
+                view.moveTo(oldChunk, offset);
+                offset = view.end;
+                if (!view.isLive()) {
+                    continue;
+                }
+                int length = view.end - view.start;
+                int target = chunks.size() - 1;
+                if (target < 0 || usedBytes[target] + length > chunks.get(target).capacity()) {
+                    target = newChunk(Math.max(chunkBytes, length));
+                }
+                ByteBuffer source = oldChunk.duplicate();
+                source.limit(view.end).position(view.start);
+                ByteBuffer destination = chunks.get(target).duplicate();
+                destination.position(usedBytes[target]);
+                destination.put(source);
+                long address = ((long) target << 32) | usedBytes[target];
+                usedBytes[target] += length;
+                size++;
+                liveBytes += length;
+                index(view.getIsbn(), address);
+            }
+        }
+    }
+
+    private int newChunk(int capacity) {
+        chunks.add(ByteBuffer.allocateDirect(capacity));
+        if (chunks.size() > usedBytes.length) {
+            int[] grown = new int[usedBytes.length * 2];
+            System.arraycopy(usedBytes, 0, grown, 0, usedBytes.length);
+            usedBytes = grown;
+        }
+        return chunks.size() - 1;
+    }
+
+    /** Codici fonetici delle parole dell'autore, ognuno tra spazi (es. " PRNTL LK "), o null se non ce ne sono. */
+    private static String authorCodes(String author) {
+        List<String> codes = PhoneticEncoder.encodeWords(author);
+        return codes.isEmpty() ? null : " " + String.join(" ", codes) + " ";
+    }
+
+    private static int stringBytes(String value) {
+        return 4 + (value != null ? value.length() * 2 : 0);
+    }
+
+    private static int putString(ByteBuffer chunk, int position, String value) {
+        if (value == null) {
+            chunk.putInt(position, NULL_STRING);
+            return position + 4;
+        }
+        chunk.putInt(position, value.length());
+        position += 4;
+        for (int i = 0; i < value.length(); i++) {
+            chunk.putChar(position, value.charAt(i));
+            position += 2;
+        }
+        return position;
+    }
+
+    private void index(String isbn, long address) {
+        if (isbn == null) {
+            return;
+        }
+        if ((indexedBooks + 1) * 2L > table.capacity()) {
+            if (table.capacity() >= MAX_TABLE_CAPACITY) {
+                throw new IllegalStateException("Indice fuori heap pieno: troppi libri per una sola tabella.");
+            }
+            rehash(table.capacity() * 2);
+        }
+        BookView view = new BookView();
+        int mask = table.capacity() - 1;
+        for (int slot = mix(isbn.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            long entry = table.get(slot);
+            if (entry == 0) {
+                table.put(slot, address + 1);
+                indexedBooks++;
+                return;
+            }
+            view.moveTo(entry - 1);
+            if (view.isbnEquals(isbn)) {
+                return; // Vale il primo libro con questo ISBN.
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        LongBuffer old = table;
+        table = allocateTable(capacity);
+        int mask = capacity - 1;
+        BookView view = new BookView();
+        for (int i = 0; i < old.capacity(); i++) {
+            long entry = old.get(i);
+            if (entry == 0) {
+                continue;
+            }
+            view.moveTo(entry - 1);
+            int slot = mix(view.isbnHash()) & mask;
+            while (table.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.put(slot, entry);
+        }
+    }
+
+    private static LongBuffer allocateTable(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+    }
+
+    /** Distribuisce i bit alti dell'hash anche nelle posizioni basse usate dalla maschera. */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Vista riutilizzabile su un record: legge i campi direttamente dal buffer.
+     */
+    final class BookView {
+
+        private ByteBuffer chunk;
+        private int start;
+        private int isbnAt;
+        private int titleAt;
+        private int authorAt;
+        private int genreAt;
+        private int searchTitleAt;
+        private int searchAuthorAt;
+        private int authorCodesAt;
+        private int end;
+
+        private void moveTo(long address) {
+            moveTo(chunks.get((int) (address >>> 32)), (int) address);
+        }
+
+        private void moveTo(ByteBuffer recordChunk, int recordStart) {
+            chunk = recordChunk;
+            start = recordStart;
+            isbnAt = start + 5;
+            titleAt = skip(isbnAt);
+            authorAt = skip(titleAt);
+            genreAt = skip(authorAt);
+            searchTitleAt = skip(genreAt);
+            searchAuthorAt = skip(searchTitleAt);
+            authorCodesAt = skip(searchAuthorAt);
+            end = skip(authorCodesAt);
+        }
+
+        private boolean isLive() {
+            return chunk.get(start) == LIVE;
+        }
+
+        private void markRemoved() {
+            chunk.put(start, REMOVED);
+            size--;
+            liveBytes -= end - start;
+            removedBytes += end - start;
+        }
+
+        int getPublicationYear() {
+            return chunk.getInt(start + 1);
+        }
+
+        String getIsbn() {
+            return readString(isbnAt);
+        }
+
+        String getTitle() {
+            return readString(titleAt);
+        }
+
+        String getAuthor() {
+            return readString(authorAt);
+        }
+
+        String getGenre() {
+            return readString(genreAt);
+        }
+
+        /** Crea un {@link Book} con i campi del record. */
+        Book toBook() {
+            return new Book.BookBuilder(getIsbn(), getTitle(), getAuthor())
+                    .publicationYear(getPublicationYear()).genre(getGenre()).build();
+        }
+
+        private int skip(int position) {
+            int length = chunk.getInt(position);
+            return position + 4 + (length == NULL_STRING ? 0 : length * 2);
+        }
+
+        private String readString(int position) {
+            int length = chunk.getInt(position);
+            if (length == NULL_STRING) {
+                return null;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = chunk.getChar(position + 4 + i * 2);
+            }
+            return new String(chars);
+        }
+
+        private boolean isbnEquals(String isbn) {
+            int length = chunk.getInt(isbnAt);
+            if (length != isbn.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chunk.getChar(isbnAt + 4 + i * 2) != isbn.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Stesso valore di {@link String#hashCode()} dell'ISBN, calcolato sul buffer. */
+        private int isbnHash() {
+            int length = chunk.getInt(isbnAt);
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + chunk.getChar(isbnAt + 4 + i * 2);
+            }
+            return hash;
+        }
+
+        /** Ricerca di {@code needle} nella stringa del record, già nella forma di ricerca. */
+        private boolean contains(int position, char[] needle) {
+            int length = chunk.getInt(position);
+            if (length == NULL_STRING) {
+                return false;
+            }
+            int base = position + 4;
+            for (int i = 0; i <= length - needle.length; i++) {
+                int j = 0;
+                while (j < needle.length && chunk.getChar(base + (i + j) * 2) == needle[j]) {
+                    j++;
+                }
+                if (j == needle.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.PhoneticEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indice fonetico degli autori usato da {@link LibraryService}: codice fonetico di una parola
+ * dell'autore ({@link PhoneticEncoder}) → libri, per le ricerche "suona come" senza scorrere la libreria.
+ * <p>
+ * Ogni libro è indicizzato per ISBN sotto il codice di ciascuna parola del suo autore; per ogni ISBN
+ * l'indice ricorda i codici usati, così la rimozione non richiede il libro, e la posizione nella libreria,
+ * che un libro modificato conserva: i risultati tornano nell'ordine della libreria. Non è sicuro per l'uso
+ * da più thread.
+ */
+final class PhoneticAuthorIndex {
+
+    private final Map<String, Map<String, Book>> booksByCode = new HashMap<>();
+    private final Map<String, List<String>> codesByIsbn = new HashMap<>();
+    private final Map<String, Long> positionByIsbn = new HashMap<>();
+    private long nextPosition;
+
+    /**
+     * Indicizza il libro in fondo alla libreria, o sostituisce la versione con lo stesso ISBN
+     * mantenendone la posizione.
+     * @param book Il libro.
+     */
+    void put(Book book) {
+        Long position = positionByIsbn.get(book.getIsbn());
+        index(book, position != null ? position : nextPosition++);
+    }
+
+    /**
+     * Sostituisce il libro con ISBN {@code oldIsbn} con una nuova versione con ISBN diverso,
+     * nella stessa posizione della libreria.
+     * @param oldIsbn L'ISBN precedente.
+     * @param book La nuova versione del libro.
+     */
+    void replace(String oldIsbn, Book book) {
+        Long position = positionByIsbn.get(oldIsbn);
+        remove(oldIsbn);
+        index(book, position != null ? position : nextPosition++);
+    }
+
+    /**
+     * Toglie dall'indice il libro con l'ISBN indicato, se presente.
+     * @param isbn L'ISBN del libro.
+     */
+    void remove(String isbn) {
+        positionByIsbn.remove(isbn);
+        List<String> codes = codesByIsbn.remove(isbn);
+        if (codes == null) {
+            return;
+        }
+        for (String code : codes) {
+            Map<String, Book> books = booksByCode.get(code);
+            books.remove(isbn);
+            if (books.isEmpty()) {
+                booksByCode.remove(code);
+            }
+        }
+    }
+
+    /**
+     * Trova i libri il cui autore contiene, per ogni parola della ricerca, una parola che suona allo stesso modo.
+     * Parte dal codice con meno libri e verifica gli altri con una ricerca per ISBN.
+     * @param query Il nome cercato, es. "Dostoyevsky" o "Luigi Pirandelo".
+     * @return I libri trovati, nell'ordine della libreria.
+     */
+    List<Book> find(String query) {
+        List<String> codes = PhoneticEncoder.encodeWords(query);
+        if (codes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Book>> postings = new ArrayList<>(codes.size());
+        for (String code : codes) {
+            Map<String, Book> books = booksByCode.get(code);
+            if (books == null) {
+                return Collections.emptyList();
+            }
+            postings.add(books);
+        }
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        List<Book> result = new ArrayList<>();
+        for (Map.Entry<String, Book> entry : postings.get(0).entrySet()) {
+            boolean matchesAll = true;
+            for (int i = 1; i < postings.size() && matchesAll; i++) {
+                matchesAll = postings.get(i).containsKey(entry.getKey());
+            }
+            if (matchesAll) {
+                result.add(entry.getValue());
+            }
+        }
+        result.sort(Comparator.comparingLong(book -> positionByIsbn.get(book.getIsbn())));
+        return result;
+    }
+
+    /** Numero di libri indicizzati. */
+    int size() {
+        return codesByIsbn.size();
+    }
+
+    private void index(Book book, long position) {
+        remove(book.getIsbn());
+        positionByIsbn.put(book.getIsbn(), position);
+        List<String> codes = PhoneticEncoder.encodeWords(book.getAuthor());
+        if (codes.isEmpty()) {
+            return;
+        }
+        for (String code : codes) {
+            booksByCode.computeIfAbsent(code, key -> new LinkedHashMap<>()).put(book.getIsbn(), book);
+        }
+        codesByIsbn.put(book.getIsbn(), codes);
+    }
+}
@@ -0,0 +1,514 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.LibraryItem;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Indice invertito per la ricerca per rilevanza su titolo, autore e genere, usato da {@link LibraryService}.
+ * <p>
+ * Il punteggio è BM25 con pesi per campo (BM25F): per ogni parola le occorrenze nei tre campi,
+ * normalizzate sulla lunghezza del campo rispetto alla media, sono sommate con il peso del campo
+ * ({@link #TITLE_BOOST}, {@link #AUTHOR_BOOST}, {@link #GENRE_BOOST}) e poi saturate con {@link #K1}.
+ * Ogni parola ha la lista dei libri che la contengono, con le occorrenze per campo; il contributo
+ * della parola a ogni libro e il contributo massimo sono calcolati alla prima ricerca della parola
+ * e ricalcolati solo se nel frattempo la libreria è cambiata, perché dipendono dal numero di libri
+ * e dalle lunghezze medie dei campi.
+ * <p>
+ * La ricerca dei primi K usa WAND: le liste delle parole cercate vengono scorse insieme in ordine
+ * di libro e un libro viene valutato solo se la somma dei contributi massimi delle parole che
+ * potrebbero contenerlo supera il punteggio del K-esimo risultato trovato finora; gli altri vengono
+ * saltati con una ricerca binaria. Le parole molto comuni ("il", "di") hanno contributi bassi e
+ * smettono presto di far valutare libri.
+ * <p>
+ * Come {@link ColumnarCatalog}, il servizio lo aggiorna a ogni modifica senza ricostruirlo: un libro
+ * aggiunto va in fondo alle liste delle sue parole; un libro rimosso diventa una riga vuota, tolta
+ * dalle liste delle sue parole quando vengono ricalcolate; un libro modificato diventa una nuova riga
+ * in fondo che conserva la posizione nella libreria della precedente, usata a parità di punteggio.
+ * Quando le righe vuote superano quelle dei libri, l'indice viene compattato.
+ */
+final class RankedSearchIndex {
+
+    /** Saturazione delle occorrenze: oltre poche occorrenze il punteggio cresce poco. */
+    static final float K1 = 1.2f;
+    /** Peso della normalizzazione sulla lunghezza del campo (0 = nessuna, 1 = piena). */
+    static final float B = 0.75f;
+    static final float TITLE_BOOST = 2.0f;
+    static final float AUTHOR_BOOST = 1.5f;
+    static final float GENRE_BOOST = 0.5f;
+
+    private static final int FIELDS = 3;
+    private static final float[] BOOSTS = {TITLE_BOOST, AUTHOR_BOOST, GENRE_BOOST};
+    /** Occorrenze per campo impacchettate in un int, 10 bit per campo. */
+    private static final int TF_BITS = 10;
+    private static final int TF_MAX = (1 << TF_BITS) - 1;
+    private static final int INITIAL_ROWS = 1024;
+
+    /** Libro di ogni riga; null per le righe dei libri rimossi o sostituiti. */
+    private Book[] rows = new Book[INITIAL_ROWS];
+    /** Posizione nella libreria di ogni riga, per l'ordine a parità di punteggio. */
+    private long[] positions = new long[INITIAL_ROWS];
+    /** Numero di parole di ogni campo per riga. */
+    private int[][] lengths = new int[FIELDS][INITIAL_ROWS];
+    private int rowCount;
+    private int removedRows;
+    private long nextPosition;
+    private final long[] totalLengths = new long[FIELDS];
+    private final Map<String, Integer> rowByIsbn = new HashMap<>();
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    /**
+     * Vero se qualche riga è stata aggiunta per un libro modificato, fuori dall'ordine della libreria:
+     * a parità di punteggio un libro più avanti nelle liste può precedere quelli già trovati.
+     */
+    private boolean rowsOutOfOrder;
+    /** Cresce a ogni modifica: i contributi calcolati con una versione precedente vanno ricalcolati. */
+    private long version;
+
+    /**
+     * Libri che contengono una parola, in ordine crescente di riga, con le occorrenze per campo e,
+     * dopo {@link #ensureScored}, il contributo della parola al punteggio.
+     */
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] packedTf = new int[2];
+        int size;
+        float[] scores;
+        float maxScore;
+        /** Versione dell'indice con cui sono stati calcolati {@link #scores} e {@link #maxScore}. */
+        long scoredVersion = -1;
+
+        void add(int doc, int field) {
+            if (size == 0 || docs[size - 1] != doc) {
+                if (size == docs.length) {
+                    docs = Arrays.copyOf(docs, size * 2);
+                    packedTf = Arrays.copyOf(packedTf, size * 2);
+                }
+                docs[size] = doc;
+                packedTf[size] = 0;
+                size++;
+            }
+            int shift = field * TF_BITS;
+            if (((packedTf[size - 1] >>> shift) & TF_MAX) < TF_MAX) {
+                packedTf[size - 1] += 1 << shift;
+            }
+        }
+    }
+
+    /**
+     * Risultato di una ricerca: i libri trovati e quanti libri sono stati valutati per intero,
+     * per misurare l'effetto di WAND.
+     */
+    static final class SearchResult {
+        private final List<ScoredBook> books;
+        private final int scoredCount;
+
+        SearchResult(List<ScoredBook> books, int scoredCount) {
+            this.books = books;
+            this.scoredCount = scoredCount;
+        }
+
+        /** I risultati dal più rilevante; a parità di punteggio nell'ordine della libreria. */
+        List<ScoredBook> books() {
+            return books;
+        }
+
+        /** Libri valutati per intero. */
+        int scoredCount() {
+            return scoredCount;
+        }
+    }
+
+    /** Posizione in una lista durante la ricerca. */
+    private static final class Cursor {
+        final Postings postings;
+        int position;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        int doc() {
+            return position < postings.size ? postings.docs[position] : Integer.MAX_VALUE;
+        }
+
+        float score() {
+            return postings.scores[position];
+        }
+
+        /** Avanza al primo libro non inferiore a quello indicato. */
+        void advanceTo(int target) {
+            int index = Arrays.binarySearch(postings.docs, position, postings.size, target);
+            position = index >= 0 ? index : -index - 1;
+        }
+    }
+
+    private RankedSearchIndex() {
+    }
+
+    /**
+     * Costruisce l'indice dei libri presenti tra gli elementi indicati.
+     * @param items Gli elementi della libreria; quelli che non sono libri vengono ignorati.
+     * @return L'indice.
+     */
+    static RankedSearchIndex build(List<? extends LibraryItem> items) {
+        RankedSearchIndex index = new RankedSearchIndex();
+        for (LibraryItem item : items) {
+            if (item instanceof Book) {
+                index.append((Book) item, index.nextPosition++);
+            }
+        }
+        return index;
+    }
+
+    /** Numero di libri indicizzati. */
+    int size() {
+        return rowCount - removedRows;
+    }
+
+    /** Numero di parole distinte indicizzate. */
+    int termCount() {
+        return postingsByTerm.size();
+    }
+
+    /**
+     * Aggiunge il libro in fondo alla libreria, o sostituisce il libro con lo stesso ISBN
+     * mantenendone la posizione.
+     * @param book Il libro.
+     */
+    void put(Book book) {
+        Integer row = rowByIsbn.get(book.getIsbn());
+        if (row == null) {
+            append(book, nextPosition++);
+        } else {
+            long position = positions[row];
+            removeRow(row);
+            append(book, position);
+            rowsOutOfOrder = true;
+            compactIfWasteful();
+        }
+    }
+
+    /**
+     * Sostituisce il libro con ISBN {@code oldIsbn} con una nuova versione con ISBN diverso,
+     * nella stessa posizione della libreria.
+     * @param oldIsbn L'ISBN precedente.
+     * @param book La nuova versione del libro.
+     */
+    void replace(String oldIsbn, Book book) {
+        Integer row = rowByIsbn.get(oldIsbn);
+        if (row == null) {
+            put(book);
+            return;
+        }
+        long position = positions[row];
+        removeRow(row);
+        append(book, position);
+        rowsOutOfOrder = true;
+        compactIfWasteful();
+    }
+
+    /**
+     * Toglie dall'indice il libro con l'ISBN indicato, se presente, lasciando la riga vuota.
+     * @param isbn L'ISBN del libro.
+     */
+    void remove(String isbn) {
+        Integer row = rowByIsbn.get(isbn);
+        if (row != null) {
+            removeRow(row);
+            compactIfWasteful();
+        }
+    }
+
+    /**
+     * Restituisce i libri più rilevanti per la ricerca, valutando per intero solo quelli che possono
+     * entrare tra i primi K.
+     * @param query Le parole cercate; un libro ne deve contenere almeno una.
+     * @param maxResults Il numero massimo di risultati (K).
+     * @return I risultati, dal più rilevante, e il numero di libri valutati.
+     */
+    SearchResult search(String query, int maxResults) {
+        List<Cursor> cursors = new ArrayList<>();
+        for (Postings postings : postingsFor(query)) {
+            cursors.add(new Cursor(postings));
+        }
+        // Le somme seguono sempre l'ordine delle parole nella ricerca, come in searchExhaustive:
+        // con un ordine diverso gli arrotondamenti romperebbero le parità tra punteggi uguali.
+        List<Cursor> inQueryOrder = new ArrayList<>(cursors);
+        PriorityQueue<ScoredDoc> top = new PriorityQueue<>(maxResults + 1, ScoredDoc.WORST_FIRST);
+        int scored = 0;
+        Comparator<Cursor> byDoc = Comparator.comparingInt(Cursor::doc);
+        while (true) {
+            cursors.removeIf(cursor -> cursor.doc() == Integer.MAX_VALUE);
+            if (cursors.isEmpty()) {
+                break;
+            }
+            cursors.sort(byDoc);
+            float threshold = top.size() < maxResults ? 0 : top.peek().score;
+            // Perno: il primo libro in cui le parole fin qui potrebbero superare la soglia, o raggiungerla
+            // se le righe non sono nell'ordine della libreria e il libro può vincere la parità.
+            float upperBound = 0;
+            int pivot = -1;
+            for (int i = 0; i < cursors.size(); i++) {
+                upperBound += cursors.get(i).postings.maxScore;
+                if (upperBound > threshold || (rowsOutOfOrder && upperBound == threshold && top.size() == maxResults)) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break; // Nessun libro rimasto può entrare tra i primi K.
+            }
+            int pivotDoc = cursors.get(pivot).doc();
+            if (cursors.get(0).doc() == pivotDoc) {
+                float score = 0;
+                for (Cursor cursor : inQueryOrder) {
+                    if (cursor.doc() == pivotDoc) {
+                        score += cursor.score();
+                        cursor.position++;
+                    }
+                }
+                scored++;
+                offer(top, maxResults, new ScoredDoc(pivotDoc, positions[pivotDoc], score));
+            } else {
+                // I libri prima del perno contengono solo parole con contributi massimi sotto la soglia.
+                for (int i = 0; i < pivot; i++) {
+                    cursors.get(i).advanceTo(pivotDoc);
+                }
+            }
+        }
+        return new SearchResult(toResults(top), scored);
+    }
+
+    /**
+     * Come {@link #search}, ma valuta tutti i libri che contengono almeno una parola.
+     * Serve come riferimento per verificare WAND.
+     */
+    SearchResult searchExhaustive(String query, int maxResults) {
+        float[] scores = new float[rowCount];
+        boolean[] matched = new boolean[rowCount];
+        for (Postings postings : postingsFor(query)) {
+            for (int i = 0; i < postings.size; i++) {
+                scores[postings.docs[i]] += postings.scores[i];
+                matched[postings.docs[i]] = true;
+            }
+        }
+        PriorityQueue<ScoredDoc> top = new PriorityQueue<>(maxResults + 1, ScoredDoc.WORST_FIRST);
+        int scored = 0;
+        for (int doc = 0; doc < rowCount; doc++) {
+            if (matched[doc]) {
+                scored++;
+                offer(top, maxResults, new ScoredDoc(doc, positions[doc], scores[doc]));
+            }
+        }
+        return new SearchResult(toResults(top), scored);
+    }
+
+    /**
+     * Divide un testo in parole: minuscole, senza accenti, sequenze di lettere e cifre.
+     * Le singole lettere (es. l'articolo di "L'idiota" o le iniziali) vengono ignorate.
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start > 1 || Character.isDigit(normalized.charAt(start))) {
+                    terms.add(normalized.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    // --- Logica Interna Privata ---
+
+    /** Libro candidato con il suo punteggio. */
+    private static final class ScoredDoc {
+        /** Il peggiore in testa: punteggio più basso e, a parità, libro più avanti nella libreria. */
+        static final Comparator<ScoredDoc> WORST_FIRST = (a, b) ->
+                a.score != b.score ? Float.compare(a.score, b.score) : Long.compare(b.position, a.position);
+
+        final int doc;
+        final long position;
+        final float score;
+
+        ScoredDoc(int doc, long position, float score) {
+            this.doc = doc;
+            this.position = position;
+            this.score = score;
+        }
+    }
+
+    /** Aggiunge una riga in fondo per il libro, con la posizione indicata nella libreria. */
+    private void append(Book book, long position) {
+        if (rowCount == rows.length) {
+            int capacity = rows.length * 2;
+            rows = Arrays.copyOf(rows, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            for (int field = 0; field < FIELDS; field++) {
+                lengths[field] = Arrays.copyOf(lengths[field], capacity);
+            }
+        }
+        int doc = rowCount++;
+        rows[doc] = book;
+        positions[doc] = position;
+        rowByIsbn.put(book.getIsbn(), doc);
+        String[] fields = {book.getTitle(), book.getAuthor(), book.getGenre()};
+        for (int field = 0; field < FIELDS; field++) {
+            List<String> terms = tokenize(fields[field]);
+            lengths[field][doc] = terms.size();
+            totalLengths[field] += terms.size();
+            for (String term : terms) {
+                postingsByTerm.computeIfAbsent(term, key -> new Postings()).add(doc, field);
+            }
+        }
+        version++;
+    }
+
+    /** Svuota la riga: le liste che la contengono la scartano al prossimo ricalcolo. */
+    private void removeRow(int row) {
+        rowByIsbn.remove(rows[row].getIsbn());
+        rows[row] = null;
+        for (int field = 0; field < FIELDS; field++) {
+            totalLengths[field] -= lengths[field][row];
+            lengths[field][row] = 0;
+        }
+        removedRows++;
+        version++;
+    }
+
+    /**
+     * Ricostruisce l'indice con i soli libri presenti, nell'ordine della libreria, quando le righe
+     * vuote sono più di quelle dei libri: il costo resta ammortizzato sulle modifiche che lo hanno causato.
+     */
+    private void compactIfWasteful() {
+        if (rowCount < INITIAL_ROWS || removedRows <= rowCount - removedRows) {
+            return;
+        }
+        List<Integer> live = new ArrayList<>(size());
+        for (int row = 0; row < rowCount; row++) {
+            if (rows[row] != null) {
+                live.add(row);
+            }
+        }
+        live.sort(Comparator.comparingLong(row -> positions[row]));
+        Book[] books = new Book[live.size()];
+        for (int i = 0; i < books.length; i++) {
+            books[i] = rows[live.get(i)];
+        }
+        rows = new Book[Math.max(INITIAL_ROWS, books.length)];
+        positions = new long[rows.length];
+        lengths = new int[FIELDS][rows.length];
+        Arrays.fill(totalLengths, 0);
+        rowCount = 0;
+        removedRows = 0;
+        nextPosition = 0;
+        rowsOutOfOrder = false;
+        rowByIsbn.clear();
+        postingsByTerm.clear();
+        for (Book book : books) {
+            append(book, nextPosition++);
+        }
+    }
+
+    /** Liste delle parole distinte della ricerca presenti nell'indice, con i contributi aggiornati. */
+    private List<Postings> postingsFor(String query) {
+        List<Postings> found = new ArrayList<>();
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null && ensureScored(term, postings)) {
+                found.add(postings);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Se l'indice è cambiato dall'ultimo calcolo, toglie dalla lista le righe vuote e ricalcola
+     * i contributi della parola e il massimo.
+     * @return false se nessun libro contiene più la parola.
+     */
+    private boolean ensureScored(String term, Postings postings) {
+        if (postings.scoredVersion == version) {
+            return postings.size > 0;
+        }
+        int live = 0;
+        for (int i = 0; i < postings.size; i++) {
+            if (rows[postings.docs[i]] != null) {
+                postings.docs[live] = postings.docs[i];
+                postings.packedTf[live] = postings.packedTf[i];
+                live++;
+            }
+        }
+        postings.size = live;
+        if (live == 0) {
+            postingsByTerm.remove(term);
+            return false;
+        }
+        int books = size();
+        float[] averageLengths = new float[FIELDS];
+        for (int field = 0; field < FIELDS; field++) {
+            averageLengths[field] = Math.max(1f, (float) totalLengths[field] / books);
+        }
+        float idf = (float) Math.log(1 + (books - live + 0.5) / (live + 0.5));
+        if (postings.scores == null || postings.scores.length < live) {
+            postings.scores = new float[postings.docs.length];
+        }
+        float maxScore = 0;
+        for (int i = 0; i < live; i++) {
+            int doc = postings.docs[i];
+            float weight = 0;
+            for (int field = 0; field < FIELDS; field++) {
+                int tf = (postings.packedTf[i] >>> (field * TF_BITS)) & TF_MAX;
+                if (tf > 0) {
+                    float norm = 1 - B + B * lengths[field][doc] / averageLengths[field];
+                    weight += BOOSTS[field] * tf / norm;
+                }
+            }
+            postings.scores[i] = idf * weight * (K1 + 1) / (weight + K1);
+            maxScore = Math.max(maxScore, postings.scores[i]);
+        }
+        postings.maxScore = maxScore;
+        postings.scoredVersion = version;
+        return true;
+    }
+
+    private static void offer(PriorityQueue<ScoredDoc> top, int maxResults, ScoredDoc candidate) {
+        if (top.size() < maxResults) {
+            top.add(candidate);
+        } else if (ScoredDoc.WORST_FIRST.compare(candidate, top.peek()) > 0) {
+            top.poll();
+            top.add(candidate);
+        }
+    }
+
+    private List<ScoredBook> toResults(PriorityQueue<ScoredDoc> top) {
+        List<ScoredDoc> docs = new ArrayList<>(top);
+        docs.sort(ScoredDoc.WORST_FIRST.reversed());
+        List<ScoredBook> results = new ArrayList<>(docs.size());
+        for (ScoredDoc doc : docs) {
+            results.add(new ScoredBook(rows[doc.doc], doc.score));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,71 @@
+package com.msan.libmanagementcli.service;
+
+/**
+ * Resoconto di una ricarica incrementale: libri aggiunti, aggiornati e rimossi rispetto
+ * alla libreria in memoria, e libri lasciati invariati perché modificati anche in memoria.
+ */
+public class ReloadReport {
+
+    private final String filePath;
+    private final int addedBooks;
+    private final int updatedBooks;
+    private final int removedBooks;
+    private final int conflictingBooks;
+    private final long elapsedMillis;
+
+    ReloadReport(String filePath, int addedBooks, int updatedBooks, int removedBooks, int conflictingBooks,
+                 long elapsedMillis) {
+        this.filePath = filePath;
+        this.addedBooks = addedBooks;
+        this.updatedBooks = updatedBooks;
+        this.removedBooks = removedBooks;
+        this.conflictingBooks = conflictingBooks;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getAddedBooks() {
+        return addedBooks;
+    }
+
+    public int getUpdatedBooks() {
+        return updatedBooks;
+    }
+
+    public int getRemovedBooks() {
+        return removedBooks;
+    }
+
+    /** Numero di libri diversi nel file ma con modifiche non salvate in memoria, che hanno la precedenza. */
+    public int getConflictingBooks() {
+        return conflictingBooks;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return true se la ricarica ha modificato la libreria in memoria.
+     */
+    public boolean hasChanges() {
+        return addedBooks + updatedBooks + removedBooks > 0;
+    }
+
+    /**
+     * Restituisce una descrizione leggibile della ricarica, adatta alla CLI.
+     * @return La descrizione del resoconto.
+     */
+    public String describe() {
+        return String.format("Ricaricato %s: %d libri aggiunti, %d aggiornati, %d rimossi, %d modifiche locali mantenute (%d ms).",
+                filePath, addedBooks, updatedBooks, removedBooks, conflictingBooks, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "ReloadReport [" + describe() + "]";
+    }
+}
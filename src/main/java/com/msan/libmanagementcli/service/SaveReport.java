@@ -0,0 +1,91 @@
+package com.msan.libmanagementcli.service;
+
+/**
+ * Resoconto di un salvataggio della libreria: indica se e come il file è stato scritto
+ * e quante modifiche erano in attesa.
+ */
+public class SaveReport {
+
+    /**
+     * Modalità con cui è stato eseguito il salvataggio.
+     */
+    public enum Mode {
+        /** Nessuna scrittura: il file era già allineato con la memoria. */
+        SKIPPED,
+        /** Scrittura delle sole modifiche. */
+        DELTA,
+        /** Riscrittura completa del catalogo. */
+        FULL
+    }
+
+    private final String filePath;
+    private final Mode mode;
+    private final int writtenBooks;
+    private final int changedBooks;
+    private final int removedBooks;
+
+    private SaveReport(String filePath, Mode mode, int writtenBooks, int changedBooks, int removedBooks) {
+        this.filePath = filePath;
+        this.mode = mode;
+        this.writtenBooks = writtenBooks;
+        this.changedBooks = changedBooks;
+        this.removedBooks = removedBooks;
+    }
+
+    static SaveReport skipped(String filePath) {
+        return new SaveReport(filePath, Mode.SKIPPED, 0, 0, 0);
+    }
+
+    static SaveReport delta(String filePath, int changedBooks, int removedBooks) {
+        return new SaveReport(filePath, Mode.DELTA, changedBooks, changedBooks, removedBooks);
+    }
+
+    static SaveReport full(String filePath, int writtenBooks, int changedBooks, int removedBooks) {
+        return new SaveReport(filePath, Mode.FULL, writtenBooks, changedBooks, removedBooks);
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** Numero di libri effettivamente scritti sul file. */
+    public int getWrittenBooks() {
+        return writtenBooks;
+    }
+
+    /** Numero di libri aggiunti o modificati dall'ultimo salvataggio. */
+    public int getChangedBooks() {
+        return changedBooks;
+    }
+
+    /** Numero di libri rimossi dall'ultimo salvataggio. */
+    public int getRemovedBooks() {
+        return removedBooks;
+    }
+
+    /**
+     * Restituisce una descrizione leggibile del salvataggio, adatta alla CLI.
+     * @return La descrizione del resoconto.
+     */
+    public String describe() {
+        switch (mode) {
+            case SKIPPED:
+                return "Nessuna modifica da salvare su " + filePath + ".";
+            case DELTA:
+                return "Salvate solo le modifiche su " + filePath + ": " + changedBooks + " libri aggiunti/modificati, "
+                        + removedBooks + " rimossi.";
+            default:
+                return "Scritti " + writtenBooks + " libri su " + filePath + " (" + changedBooks
+                        + " aggiunti/modificati, " + removedBooks + " rimossi dall'ultimo salvataggio).";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SaveReport [" + mode + ", " + describe() + "]";
+    }
+}
@@ -0,0 +1,31 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+
+/**
+ * Risultato di una ricerca per rilevanza ({@link LibraryService#searchBooks}): il libro e il suo punteggio BM25.
+ */
+public final class ScoredBook {
+
+    private final Book book;
+    private final double score;
+
+    ScoredBook(Book book, double score) {
+        this.book = book;
+        this.score = score;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    /** Punteggio di rilevanza: più alto è, più il libro corrisponde alla ricerca. */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScoredBook [%s, %.3f]", book.getIsbn(), score);
+    }
+}
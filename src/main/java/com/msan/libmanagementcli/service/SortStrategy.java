@@ -16,4 +16,4 @@ public interface SortStrategy {
      * @param books La lista di {@link Book} da ordinare.
      */
     void sort(List<Book> books);
-}
\ No newline at end of file
+}
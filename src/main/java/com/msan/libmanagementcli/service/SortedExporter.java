@@ -0,0 +1,115 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.dao.StorageService;
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+import com.msan.libmanagementcli.utils.ExternalSorter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Esporta la libreria in un file ordinato secondo una {@link SortStrategy}, in memoria limitata.
+ * <p>
+ * A differenza di {@link LibraryService#getSortedBooks()}, che ordina tutti i libri in memoria,
+ * i libri vengono letti in streaming (anche da una libreria aperta in modo differito), ordinati
+ * a blocchi con un {@link ExternalSorter} che scrive i run in una directory configurabile,
+ * e scritti sul file di destinazione man mano che escono dalla fusione. Questo richiede una
+ * {@link ComparatorSortStrategy}; le altre strategie sanno solo ordinare una lista, quindi con loro
+ * i libri vengono raccolti e ordinati in memoria.
+ */
+public class SortedExporter {
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+
+    private final LibraryService libraryService;
+    private final StorageService targetStorage;
+    private final int maxBooksInMemory;
+    private final Path tempDirectory;
+
+    /**
+     * Crea l'esportatore verso file CSV, con il limite di memoria di default e i file temporanei di sistema.
+     * @param libraryService Il servizio della libreria da esportare.
+     */
+    public SortedExporter(LibraryService libraryService) {
+        this(libraryService, new FileStorageService(), ExternalSorter.DEFAULT_MAX_ELEMENTS_IN_MEMORY, null);
+    }
+
+    /**
+     * Crea l'esportatore.
+     * @param libraryService Il servizio della libreria da esportare.
+     * @param targetStorage Lo storage che scrive il file di destinazione.
+     * @param maxBooksInMemory Libri tenuti in memoria prima di scrivere un run su disco.
+     * @param tempDirectory Directory dei run temporanei, o null per quella di sistema.
+     * @throws IllegalArgumentException se un parametro non è valido.
+     */
+    public SortedExporter(LibraryService libraryService, StorageService targetStorage, int maxBooksInMemory, Path tempDirectory) {
+        if (libraryService == null || targetStorage == null || maxBooksInMemory <= 0) {
+            throw new IllegalArgumentException("Servizio, storage di destinazione e limite di memoria dell'esportazione devono essere validi.");
+        }
+        this.libraryService = libraryService;
+        this.targetStorage = targetStorage;
+        this.maxBooksInMemory = maxBooksInMemory;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Esporta i libri ordinati nel file indicato. A parità di chiave resta l'ordine della libreria.
+     * L'ordinamento avviene a blocchi su disco solo per una {@link ComparatorSortStrategy}.
+     * @param targetPath Il file di destinazione.
+     * @param strategy La strategia che definisce l'ordine.
+     * @return Il numero di libri esportati.
+     * @throws LibraryException se la lettura, l'ordinamento o la scrittura falliscono.
+     */
+    public long export(String targetPath, SortStrategy strategy) throws LibraryException {
+        if (strategy == null) {
+            throw new IllegalArgumentException("La strategia di ordinamento non può essere null.");
+        }
+        long start = System.nanoTime();
+        if (!(strategy instanceof ComparatorSortStrategy)) {
+            List<Book> books = new ArrayList<>();
+            libraryService.forEachBook(books::add);
+            strategy.sort(books);
+            targetStorage.saveBooks(books, targetPath);
+            logger.logInfo(String.format("Esportati %d libri ordinati in memoria in %s (%d ms).", books.size(),
+                    targetPath, (System.nanoTime() - start) / 1_000_000));
+            return books.size();
+        }
+        Comparator<Book> comparator = ((ComparatorSortStrategy) strategy).getComparator();
+        try (ExternalSorter<Book> sorter = new ExternalSorter<>(comparator, Book::toCsvString,
+                SortedExporter::decode, maxBooksInMemory, tempDirectory)) {
+            libraryService.forEachBook(book -> {
+                try {
+                    sorter.add(book);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            targetStorage.saveBooks(sorter.sortedIterator(), targetPath);
+            logger.logInfo(String.format("Esportati %d libri ordinati in %s (%d run su disco, %d ms).", sorter.getElementCount(),
+                    targetPath, sorter.getRunCount(), (System.nanoTime() - start) / 1_000_000));
+            return sorter.getElementCount();
+        } catch (IOException | UncheckedIOException e) {
+            logger.logError("Esportazione ordinata su " + targetPath + " non riuscita.", e);
+            throw new LibraryException("Errore durante l'ordinamento dei libri da esportare: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ricostruisce un libro da un run: le righe sono state scritte da {@link Book#toCsvString()}.
+     */
+    private static Book decode(String line) {
+        try {
+            return Book.fromCsvString(line);
+        } catch (InvalidBookDataException e) {
+            throw new UncheckedIOException(new IOException("Run temporaneo non valido: " + e.getMessage(), e));
+        }
+    }
+}
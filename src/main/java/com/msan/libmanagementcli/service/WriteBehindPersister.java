@@ -0,0 +1,205 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salvataggio automatico in background (write-behind) della libreria.
+ * <p>
+ * Dopo ogni modifica pianifica un salvataggio dopo una finestra di attesa ({@code debounce}):
+ * le modifiche che arrivano nel frattempo spostano il salvataggio in avanti e vengono raccolte
+ * in un'unica scrittura. Il ritardo non supera mai {@code maxStaleness} dalla prima modifica
+ * non salvata, così i dati su disco non restano indietro oltre quel limite.
+ * La scrittura avviene su un thread dedicato: chi modifica la libreria non attende mai il disco.
+ */
+public class WriteBehindPersister implements LibraryChangeListener, AutoCloseable {
+
+    /** Finestra di attesa di default dopo l'ultima modifica, in millisecondi. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+    /** Ritardo massimo di default dalla prima modifica non salvata, in millisecondi. */
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 5000;
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final LibraryService libraryService;
+    private final long debounceMillis;
+    private final long maxStalenessMillis;
+    private final ScheduledExecutorService executor;
+
+    // --- Stato protetto dal lock dell'istanza ---
+    private ScheduledFuture<?> pendingSave;
+    private long firstUnsavedChangeAt;
+    private long coalescedChanges;
+    private long completedSaves;
+    private boolean closed;
+
+    /**
+     * Crea il persister con i tempi di default.
+     * @param libraryService Il servizio da salvare.
+     */
+    public WriteBehindPersister(LibraryService libraryService) {
+        this(libraryService, DEFAULT_DEBOUNCE_MILLIS, DEFAULT_MAX_STALENESS_MILLIS);
+    }
+
+    /**
+     * Crea il persister.
+     * @param libraryService Il servizio da salvare.
+     * @param debounceMillis Attesa dopo l'ultima modifica prima di salvare.
+     * @param maxStalenessMillis Ritardo massimo dalla prima modifica non salvata.
+     * @throws IllegalArgumentException se il servizio è nullo o i tempi non sono validi.
+     */
+    public WriteBehindPersister(LibraryService libraryService, long debounceMillis, long maxStalenessMillis) {
+        if (libraryService == null) {
+            throw new IllegalArgumentException("LibraryService non può essere nullo.");
+        }
+        if (debounceMillis < 0 || maxStalenessMillis < debounceMillis) {
+            throw new IllegalArgumentException("Tempi non validi: serve 0 <= debounce <= maxStaleness.");
+        }
+        this.libraryService = libraryService;
+        this.debounceMillis = debounceMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Inizia ad osservare il servizio: da questo momento le modifiche vengono salvate automaticamente.
+     */
+    public void start() {
+        libraryService.addChangeListener(this);
+        logger.logInfo("Salvataggio automatico attivo (attesa " + debounceMillis + " ms, ritardo massimo "
+                + maxStalenessMillis + " ms).");
+    }
+
+    @Override
+    public synchronized void onLibraryChanged(long generation) {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (firstUnsavedChangeAt == 0) {
+            firstUnsavedChangeAt = now;
+        }
+        if (pendingSave != null && pendingSave.cancel(false)) {
+            coalescedChanges++;
+        }
+        long delay = Math.max(0, Math.min(debounceMillis, firstUnsavedChangeAt + maxStalenessMillis - now));
+        pendingSave = executor.schedule(this::runScheduledSave, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Salva subito, sul thread chiamante, le modifiche in sospeso.
+     * @return true se il salvataggio è riuscito o non c'era nulla da salvare.
+     */
+    public boolean flush() {
+        synchronized (this) {
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+                pendingSave = null;
+            }
+            firstUnsavedChangeAt = 0;
+        }
+        return saveNow();
+    }
+
+    /**
+     * Smette di osservare il servizio, salva le modifiche in sospeso e ferma il thread di background.
+     * Può essere chiamato più volte (es. a fine esecuzione e dallo shutdown hook).
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        libraryService.removeChangeListener(this);
+        flush();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.logWarning("Il salvataggio automatico non è terminato entro " + SHUTDOWN_TIMEOUT_SECONDS + " secondi.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.logInfo("Salvataggio automatico terminato: " + completedSaves + " salvataggi, "
+                + coalescedChanges + " modifiche accorpate.");
+    }
+
+    /** Numero di salvataggi effettivamente scritti su disco. */
+    public synchronized long getCompletedSaves() {
+        return completedSaves;
+    }
+
+    /** Numero di salvataggi pianificati e poi accorpati in uno successivo. */
+    public synchronized long getCoalescedChanges() {
+        return coalescedChanges;
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void runScheduledSave() {
+        synchronized (this) {
+            pendingSave = null;
+            firstUnsavedChangeAt = 0;
+        }
+        SaveOutcome outcome = save();
+        if (outcome == SaveOutcome.DONE) {
+            return;
+        }
+        synchronized (this) {
+            if (closed || pendingSave != null) {
+                return; // Già ripianificato da una modifica arrivata durante la scrittura.
+            }
+            // In caso di errore si riprova più tardi, senza inondare il log se l'errore persiste.
+            long delay = (outcome == SaveOutcome.FAILED) ? maxStalenessMillis : debounceMillis;
+            firstUnsavedChangeAt = System.currentTimeMillis();
+            pendingSave = executor.schedule(this::runScheduledSave, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean saveNow() {
+        return save() != SaveOutcome.FAILED;
+    }
+
+    /**
+     * Esito di un tentativo di salvataggio.
+     */
+    private enum SaveOutcome {
+        /** Salvato, oppure nulla da salvare. */
+        DONE,
+        /** Salvato, ma nel frattempo la libreria è cambiata. */
+        OUTDATED,
+        /** Scrittura fallita. */
+        FAILED
+    }
+
+    private SaveOutcome save() {
+        try {
+            Optional<LibraryService.SaveSnapshot> snapshot = libraryService.captureSnapshot();
+            if (!snapshot.isPresent()) {
+                return SaveOutcome.DONE;
+            }
+            libraryService.saveSnapshot(snapshot.get());
+            synchronized (this) {
+                completedSaves++;
+            }
+            return libraryService.getGeneration() == snapshot.get().getGeneration() ? SaveOutcome.DONE : SaveOutcome.OUTDATED;
+        } catch (LibraryException e) {
+            logger.logError("Salvataggio automatico fallito su " + libraryService.getCurrentFilePath(), e);
+            return SaveOutcome.FAILED;
+        }
+    }
+}
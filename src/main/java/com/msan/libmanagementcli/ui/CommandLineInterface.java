@@ -1,18 +1,29 @@
 package com.msan.libmanagementcli.ui;
 
+import com.msan.libmanagementcli.dao.CollectionFileStorage;
 import com.msan.libmanagementcli.exceptions.BookNotFoundException;
 import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
 import com.msan.libmanagementcli.exceptions.LibraryException;
 import com.msan.libmanagementcli.factory.BookFactory;
 import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.BookCollection;
+import com.msan.libmanagementcli.service.BulkImportPipeline;
+import com.msan.libmanagementcli.service.ImportReport;
+import com.msan.libmanagementcli.service.LibraryFileWatcher;
 import com.msan.libmanagementcli.service.LibraryService;
+import com.msan.libmanagementcli.service.LibraryVersion;
+import com.msan.libmanagementcli.service.SaveReport;
+import com.msan.libmanagementcli.service.ScoredBook;
 import com.msan.libmanagementcli.service.SortByAuthorStrategy;
+import com.msan.libmanagementcli.service.SortedExporter;
 import com.msan.libmanagementcli.service.SortStrategy;
 import com.msan.libmanagementcli.service.SortByTitleStrategy;
+import com.msan.libmanagementcli.service.WriteBehindPersister;
 import com.msan.libmanagementcli.utils.ConsoleLogger;
 import com.msan.libmanagementcli.utils.InputValidator;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList; 
 import java.util.List;
 import java.util.Optional;
@@ -24,22 +35,63 @@ import java.util.Scanner;
  */
 public class CommandLineInterface {
     private final LibraryService libraryService;
+    private final WriteBehindPersister persister;
+    private final boolean watchExternalChanges;
+    private final SortedExporter sortedExporter;
+    private LibraryFileWatcher fileWatcher;
     private final Scanner scanner;
     private static final ConsoleLogger logger = ConsoleLogger.getInstance();
 
     // Costanti per il percorso e il nome del file di default
     private static final String DEFAULT_DIRECTORY_NAME = "LeMieLibrerie";
     private static final String DEFAULT_FILENAME = "dati_libreria_default.csv";
+    /** Numero di risultati mostrati dalla ricerca per rilevanza. */
+    private static final int RANKED_RESULTS = 10;
 
     /**
      * Costruisce l'interfaccia a riga di comando.
      * @param libraryService Il servizio della libreria da utilizzare. Non può essere nullo.
      */
     public CommandLineInterface(LibraryService libraryService) {
+        this(libraryService, null);
+    }
+
+    /**
+     * Costruisce l'interfaccia a riga di comando con salvataggio automatico.
+     * @param libraryService Il servizio della libreria da utilizzare. Non può essere nullo.
+     * @param persister Il salvataggio automatico attivo, o null se disattivato.
+     */
+    public CommandLineInterface(LibraryService libraryService, WriteBehindPersister persister) {
+        this(libraryService, persister, false);
+    }
+
+    /**
+     * Costruisce l'interfaccia a riga di comando con salvataggio automatico e osservazione del file.
+     * @param libraryService Il servizio della libreria da utilizzare. Non può essere nullo.
+     * @param persister Il salvataggio automatico attivo, o null se disattivato.
+     * @param watchExternalChanges Se true, le modifiche al file corrente fatte da altri programmi
+     *                             vengono applicate automaticamente alla libreria.
+     */
+    public CommandLineInterface(LibraryService libraryService, WriteBehindPersister persister, boolean watchExternalChanges) {
+        this(libraryService, persister, watchExternalChanges, null);
+    }
+
+    /**
+     * Costruisce l'interfaccia a riga di comando specificando anche come esportare i libri ordinati.
+     * @param libraryService Il servizio della libreria da utilizzare. Non può essere nullo.
+     * @param persister Il salvataggio automatico attivo, o null se disattivato.
+     * @param watchExternalChanges Se true, le modifiche esterne al file corrente vengono applicate automaticamente.
+     * @param sortedExporter L'esportatore ordinato, o null per quello di default su file CSV.
+     */
+    public CommandLineInterface(LibraryService libraryService, WriteBehindPersister persister, boolean watchExternalChanges,
+                                SortedExporter sortedExporter) {
         if (libraryService == null) {
             throw new IllegalArgumentException("LibraryService non può essere nullo.");
         }
         this.libraryService = libraryService;
+        this.persister = persister;
+        this.watchExternalChanges = watchExternalChanges;
+        this.sortedExporter = sortedExporter != null ? sortedExporter : new SortedExporter(libraryService);
         this.scanner = new Scanner(System.in);
     }
 
@@ -79,10 +131,12 @@ public class CommandLineInterface {
         try {
             libraryService.loadLibrary(effectiveFilePath);
             System.out.println("Libreria gestita tramite: " + libraryService.getCurrentFilePath());
+            loadCollectionsAlongside(effectiveFilePath);
         } catch (LibraryException e) {
             System.err.println("AVVISO: Durante il tentativo di caricamento iniziale da '" + effectiveFilePath + "': " + e.getMessage());
             logger.logWarning("Impossibile caricare la libreria da " + effectiveFilePath + ". Si parte con una libreria vuota/nuova.", e);
         }
+        watchCurrentFile();
 
         boolean running = true;
         while (running) {
@@ -100,6 +154,10 @@ public class CommandLineInterface {
                     case "6": setSortStrategy(); break;
                     case "7": saveLibraryData(); break;
                     case "8": loadLibraryData(); break;
+                    case "9": importBooks(); break;
+                    case "10": exportSortedBooks(); break;
+                    case "11": browseVersions(); break;
+                    case "12": manageCollections(); break;
                     case "0": running = false; break;
                     default: System.out.println("Scelta non valida. Riprova.");
                 }
@@ -119,6 +177,7 @@ public class CommandLineInterface {
             }
         }
         
+        stopWatching();
         handleSaveOnExit();
         System.out.println("Uscita dal Sistema di Gestione Libreria. Arrivederci!");
         logger.logInfo("Interfaccia a riga di comando terminata.");
@@ -149,17 +208,33 @@ public class CommandLineInterface {
     
     /**
      * Chiede all'utente se vuole salvare la libreria prima di uscire,
-     * se un percorso file è attualmente impostato.
+     * se un percorso file è attualmente impostato e ci sono modifiche non salvate.
+     * Con il salvataggio automatico attivo salva direttamente le modifiche in sospeso.
      */
     private void handleSaveOnExit() {
         String currentPath = libraryService.getCurrentFilePath();
+        if (persister != null) {
+            // Con il salvataggio automatico attivo le modifiche vengono salvate senza chiedere.
+            if (persister.flush()) {
+                System.out.println("Modifiche salvate automaticamente su '" + currentPath + "'.");
+                saveCollectionsAlongside(currentPath);
+                return;
+            }
+            System.err.println("ATTENZIONE: Il salvataggio automatico non è riuscito.");
+        }
+        if (currentPath != null && !currentPath.isEmpty() && !libraryService.hasUnsavedChanges()) {
+            System.out.println("Nessuna modifica da salvare su '" + currentPath + "'.");
+            saveCollectionsAlongside(currentPath);
+            return;
+        }
         if (currentPath != null && !currentPath.isEmpty()) {
             System.out.print("Vuoi salvare le modifiche su '" + currentPath + "' prima di uscire? (si/no): ");
             if (scanner.nextLine().trim().equalsIgnoreCase("si")) {
                 try {
                     ensureDirectoryExistsForFile(currentPath); // Assicura che la dir esista anche qui
-                    libraryService.saveLibrary(); // Usa il currentFilePath impostato nel service
-                    System.out.println("Libreria salvata.");
+                    SaveReport report = libraryService.saveLibrary(); // Usa il currentFilePath impostato nel service
+                    System.out.println(report.describe());
+                    saveCollectionsAlongside(currentPath);
                 } catch (LibraryException e) {
                     System.err.println("ERRORE: Impossibile salvare la libreria prima di uscire: " + e.getMessage());
                 }
@@ -180,6 +255,10 @@ public class CommandLineInterface {
         System.out.println("6. Imposta Strategia di Ordinamento Libri");
         System.out.println("7. Salva Libreria su File");
         System.out.println("8. Carica Libreria da File");
+        System.out.println("9. Importa Libri da File (aggiunge alla libreria corrente)");
+        System.out.println("10. Esporta Libri Ordinati su File");
+        System.out.println("11. Versioni Precedenti (consulta o esporta)");
+        System.out.println("12. Collezioni (visualizza, salva o carica)");
         System.out.println("0. Esci");
         System.out.println("-------------------------------------");
     }
@@ -187,7 +266,7 @@ public class CommandLineInterface {
     /**
      * Gestisce l'aggiunta di un nuovo libro.
      */
-    private void addBook() throws InvalidBookDataException {
+    private void addBook() throws LibraryException {
         System.out.println("\n--- Aggiungi Nuovo Libro ---");
         System.out.print("Inserisci ISBN: ");
         String isbn = InputValidator.sanitizeString(scanner.nextLine());
@@ -220,7 +299,7 @@ public class CommandLineInterface {
     /**
      * Visualizza tutti i libri, ordinati secondo la strategia corrente.
      */
-    private void viewAllBooks() {
+    private void viewAllBooks() throws LibraryException {
         System.out.println("\n--- Tutti i Libri in Libreria ---");
         List<Book> books = libraryService.getSortedBooks(); 
         
@@ -249,9 +328,9 @@ public class CommandLineInterface {
     /**
      * Gestisce la ricerca di libri.
      */
-    private void findBook() throws InvalidBookDataException {
+    private void findBook() throws LibraryException {
         System.out.println("\n--- Trova Libro ---");
-        System.out.print("Cerca per (1-ISBN, 2-Titolo, 3-Autore): ");
+        System.out.print("Cerca per (1-ISBN, 2-Titolo, 3-Autore, 4-Autore che suona come, 5-Rilevanza su titolo/autore/genere): ");
         String criteriaChoice = InputValidator.sanitizeString(scanner.nextLine());
         
         List<Book> foundBooks = new ArrayList<>(); 
@@ -278,6 +357,25 @@ public class CommandLineInterface {
                 String authorQuery = InputValidator.sanitizeString(scanner.nextLine());
                 foundBooks = libraryService.findBooksByAuthor(authorQuery);
                 break;
+            case "4":
+                System.out.print("Inserisci il nome dell'autore come si pronuncia (es. Dostoyevsky): ");
+                String soundQuery = InputValidator.sanitizeString(scanner.nextLine());
+                foundBooks = libraryService.findBooksByAuthorSound(soundQuery);
+                break;
+            case "5":
+                System.out.print("Inserisci le parole da cercare: ");
+                String rankedQuery = InputValidator.sanitizeString(scanner.nextLine());
+                List<ScoredBook> ranked = libraryService.searchBooks(rankedQuery, RANKED_RESULTS);
+                if (ranked.isEmpty()) {
+                    System.out.println("Nessun libro trovato con i criteri specificati.");
+                    return;
+                }
+                System.out.println("Libri più rilevanti (" + ranked.size() + "):");
+                for (ScoredBook result : ranked) {
+                    System.out.printf("  [%.2f]%n", result.getScore());
+                    result.getBook().display("  ");
+                }
+                return;
             default:
                 System.out.println("Criterio di ricerca non valido.");
                 return;
@@ -288,7 +386,7 @@ public class CommandLineInterface {
             for (Book book : foundBooks) {
                 book.display("  ");
             }
-        } else if (criteriaChoice.equals("2") || criteriaChoice.equals("3")) { 
+        } else if (criteriaChoice.equals("2") || criteriaChoice.equals("3") || criteriaChoice.equals("4")) { 
             System.out.println("Nessun libro trovato con i criteri specificati.");
         }
     }
@@ -296,7 +394,7 @@ public class CommandLineInterface {
     /**
      * Gestisce la rimozione di un libro.
      */
-    private void removeBook() throws InvalidBookDataException, BookNotFoundException {
+    private void removeBook() throws LibraryException {
         System.out.println("\n--- Rimuovi Libro ---");
         System.out.print("Inserisci ISBN del libro da rimuovere: ");
         String isbn = InputValidator.sanitizeString(scanner.nextLine());
@@ -321,7 +419,7 @@ public class CommandLineInterface {
     /**
      * Gestisce l'aggiornamento di un libro esistente.
      */
-    private void updateBook() throws InvalidBookDataException, BookNotFoundException {
+    private void updateBook() throws LibraryException {
         System.out.println("\n--- Aggiorna Libro ---");
         System.out.print("Inserisci ISBN del libro da aggiornare: ");
         String oldIsbn = InputValidator.sanitizeString(scanner.nextLine());
@@ -422,8 +520,9 @@ public class CommandLineInterface {
         }
         
         ensureDirectoryExistsForFile(pathToSave);
-        libraryService.saveLibrary(pathToSave); 
-        System.out.println("Libreria salvata con successo su " + libraryService.getCurrentFilePath());
+        SaveReport report = libraryService.saveLibrary(pathToSave); 
+        System.out.println(report.describe());
+        saveCollectionsAlongside(pathToSave);
     }
 
     /**
@@ -455,5 +554,223 @@ public class CommandLineInterface {
                                             // Questo è più per coerenza se l'utente si aspetta che la dir venga creata.
         libraryService.loadLibrary(path);
         System.out.println("Libreria caricata/tentato caricamento da " + path);
+        loadCollectionsAlongside(path);
+        watchCurrentFile();
+    }
+
+    /**
+     * Dopo il caricamento dei libri, carica le collezioni dal file associato ({@code <file>.collezioni}), se esiste.
+     * Un errore viene segnalato senza annullare il caricamento dei libri.
+     * @param libraryPath Il percorso del file dei libri.
+     */
+    private void loadCollectionsAlongside(String libraryPath) {
+        String collectionsPath = CollectionFileStorage.collectionsPathFor(libraryPath);
+        if (!new File(collectionsPath).isFile()) {
+            return;
+        }
+        try {
+            int roots = libraryService.loadCollections(collectionsPath);
+            System.out.println("Collezioni caricate da " + collectionsPath + ": " + roots + ".");
+        } catch (LibraryException e) {
+            System.err.println("AVVISO: Impossibile caricare le collezioni da '" + collectionsPath + "': " + e.getMessage());
+            logger.logWarning("Collezioni non caricate da " + collectionsPath + ".", e);
+        }
+    }
+
+    /**
+     * Dopo il salvataggio dei libri, salva le collezioni nel file associato ({@code <file>.collezioni}),
+     * se la libreria ne contiene. Un errore viene segnalato senza annullare il salvataggio dei libri.
+     * @param libraryPath Il percorso del file dei libri.
+     */
+    private void saveCollectionsAlongside(String libraryPath) {
+        if (libraryPath == null || libraryPath.isEmpty() || libraryService.getCollections().isEmpty()) {
+            return;
+        }
+        String collectionsPath = CollectionFileStorage.collectionsPathFor(libraryPath);
+        try {
+            int roots = libraryService.saveCollections(collectionsPath);
+            System.out.println("Collezioni salvate in " + collectionsPath + ": " + roots + ".");
+        } catch (LibraryException e) {
+            System.err.println("ERRORE: Impossibile salvare le collezioni in '" + collectionsPath + "': " + e.getMessage());
+            logger.logError("Collezioni non salvate in " + collectionsPath + ".", e);
+        }
+    }
+
+    /**
+     * Mostra le collezioni della libreria e permette di salvarle o caricarle da un file scelto.
+     */
+    private void manageCollections() throws LibraryException {
+        System.out.println("\n--- Collezioni ---");
+        List<BookCollection> collections = libraryService.getCollections();
+        if (collections.isEmpty()) {
+            System.out.println("Nessuna collezione nella libreria.");
+        }
+        for (BookCollection collection : collections) {
+            collection.display("  ");
+        }
+        System.out.print("Operazione (1-Salva su File, 2-Carica da File, Invio per tornare al menu): ");
+        String operation = InputValidator.sanitizeString(scanner.nextLine());
+        if (!"1".equals(operation) && !"2".equals(operation)) {
+            return;
+        }
+        String currentPath = libraryService.getCurrentFilePath();
+        String defaultPath = currentPath != null && !currentPath.isEmpty()
+                ? CollectionFileStorage.collectionsPathFor(currentPath) : null;
+        System.out.print("Percorso del file delle collezioni" + (defaultPath != null ? " (Invio per usare '" + defaultPath + "')" : "") + ": ");
+        String path = InputValidator.sanitizeString(scanner.nextLine());
+        if (path == null || path.isEmpty()) {
+            path = defaultPath;
+        } else if (new File(path).getParent() == null) { // Solo nome file
+            path = DEFAULT_DIRECTORY_NAME + File.separator + path;
+        }
+        if (path == null) {
+            System.out.println("Operazione annullata: nessun percorso file fornito.");
+            return;
+        }
+        if ("1".equals(operation)) {
+            ensureDirectoryExistsForFile(path);
+            int roots = libraryService.saveCollections(path);
+            System.out.println("Salvate " + roots + " collezioni in " + path + ".");
+        } else {
+            int roots = libraryService.loadCollections(path);
+            System.out.println("Caricate " + roots + " collezioni da " + path + ".");
+        }
+    }
+
+    /**
+     * Se l'osservazione è attiva, (ri)avvia l'osservatore sul file corrente della libreria.
+     */
+    private void watchCurrentFile() {
+        if (!watchExternalChanges) {
+            return;
+        }
+        stopWatching();
+        String currentPath = libraryService.getCurrentFilePath();
+        if (currentPath == null || currentPath.isEmpty()) {
+            return;
+        }
+        try {
+            fileWatcher = new LibraryFileWatcher(libraryService, currentPath, LibraryFileWatcher.DEFAULT_QUIET_MILLIS);
+            fileWatcher.start();
+            System.out.println("Le modifiche esterne a '" + currentPath + "' verranno applicate automaticamente.");
+        } catch (IOException e) {
+            System.err.println("ATTENZIONE: Impossibile osservare il file '" + currentPath + "': " + e.getMessage());
+            logger.logWarning("Osservazione del file non disponibile: " + currentPath, e);
+        }
+    }
+
+    private void stopWatching() {
+        if (fileWatcher != null) {
+            fileWatcher.close();
+            fileWatcher = null;
+        }
+    }
+
+    /**
+     * Gestisce l'importazione in blocco di un file CSV nella libreria corrente.
+     */
+    private void importBooks() throws LibraryException {
+        System.out.println("\n--- Importa Libri da File ---");
+        System.out.print("Inserisci il percorso del file da importare: ");
+        String path = InputValidator.sanitizeString(scanner.nextLine());
+        if (path == null || path.isEmpty()) {
+            System.out.println("Importazione annullata: nessun percorso file fornito.");
+            return;
+        }
+
+        File providedFile = new File(path);
+        if (providedFile.getParent() == null) { // Solo nome file
+            path = DEFAULT_DIRECTORY_NAME + File.separator + path;
+            System.out.println("Nome file fornito. Si tenterà di importare da: " + path);
+        }
+
+        ImportReport report = new BulkImportPipeline(libraryService).importFile(path);
+        System.out.println(report.describe());
+    }
+
+    /**
+     * Esporta i libri in un file ordinato secondo la strategia corrente (per titolo se non impostata),
+     * senza dover caricare e ordinare in memoria l'intera libreria.
+     */
+    private void exportSortedBooks() throws LibraryException {
+        System.out.println("\n--- Esporta Libri Ordinati su File ---");
+        System.out.print("Inserisci il percorso del file di destinazione: ");
+        String path = InputValidator.sanitizeString(scanner.nextLine());
+        if (path == null || path.isEmpty()) {
+            System.out.println("Esportazione annullata: nessun percorso file fornito.");
+            return;
+        }
+
+        File providedFile = new File(path);
+        if (providedFile.getParent() == null) { // Solo nome file
+            path = DEFAULT_DIRECTORY_NAME + File.separator + path;
+            System.out.println("Nome file fornito. Verrà esportato in: " + path);
+        }
+
+        SortStrategy strategy = libraryService.getSortStrategy();
+        ensureDirectoryExistsForFile(path);
+        long exported = sortedExporter.export(path, strategy != null ? strategy : new SortByTitleStrategy());
+        System.out.println("Esportati " + exported + " libri ordinati in " + path + ".");
+    }
+
+    /**
+     * Elenca le versioni conservate della libreria e permette di cercare un libro
+     * o esportare i libri così come erano in una di esse.
+     */
+    private void browseVersions() throws LibraryException {
+        System.out.println("\n--- Versioni Precedenti ---");
+        List<LibraryVersion> versions = libraryService.getVersions();
+        if (versions.isEmpty()) {
+            System.out.println("Nessuna versione disponibile (la libreria non è ancora stata letta per intero).");
+            return;
+        }
+        for (LibraryVersion version : versions) {
+            System.out.println("  " + version.describe());
+        }
+        System.out.print("Inserisci il numero della versione: ");
+        String input = InputValidator.sanitizeString(scanner.nextLine());
+        Optional<LibraryVersion> selected;
+        try {
+            selected = libraryService.getVersion(Long.parseLong(input));
+        } catch (NumberFormatException e) {
+            selected = Optional.empty();
+        }
+        if (!selected.isPresent()) {
+            System.out.println("Versione non valida o non più conservata.");
+            return;
+        }
+        LibraryVersion version = selected.get();
+
+        System.out.print("Operazione (1-Cerca per ISBN, 2-Esporta su File): ");
+        switch (InputValidator.sanitizeString(scanner.nextLine())) {
+            case "1":
+                System.out.print("Inserisci ISBN da cercare: ");
+                String isbn = InputValidator.sanitizeString(scanner.nextLine());
+                Optional<Book> book = version.findBookByIsbn(isbn);
+                if (book.isPresent()) {
+                    System.out.println("Libro nella versione " + version.getGeneration() + ":");
+                    book.get().display("  ");
+                } else {
+                    System.out.println("Nessun libro con ISBN " + isbn + " nella versione " + version.getGeneration() + ".");
+                }
+                break;
+            case "2":
+                System.out.print("Inserisci il percorso del file di destinazione: ");
+                String path = InputValidator.sanitizeString(scanner.nextLine());
+                if (path == null || path.isEmpty()) {
+                    System.out.println("Esportazione annullata: nessun percorso file fornito.");
+                    return;
+                }
+                if (new File(path).getParent() == null) { // Solo nome file
+                    path = DEFAULT_DIRECTORY_NAME + File.separator + path;
+                    System.out.println("Nome file fornito. Verrà esportato in: " + path);
+                }
+                ensureDirectoryExistsForFile(path);
+                int exported = libraryService.exportVersion(version, path);
+                System.out.println("Esportati " + exported + " libri della versione " + version.getGeneration() + " in " + path + ".");
+                break;
+            default:
+                System.out.println("Operazione non valida.");
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.msan.libmanagementcli.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opzioni di avvio lette dalla riga di comando.
+ * Sono supportate le forme {@code --nome=valore} e {@code --nome} (flag senza valore).
+ */
+public class AppOptions {
+
+    private static final ConsoleLogger logger = ConsoleLogger.getInstance();
+    private static final String PREFIX = "--";
+
+    private final Map<String, String> values;
+
+    private AppOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Interpreta gli argomenti passati al programma. Gli argomenti non riconosciuti vengono ignorati.
+     * @param args Gli argomenti da riga di comando (può essere null).
+     * @return Le opzioni lette.
+     */
+    public static AppOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        if (args != null) {
+            for (String arg : args) {
+                if (arg == null || !arg.startsWith(PREFIX) || arg.length() == PREFIX.length()) {
+                    logger.logWarning("Argomento ignorato: " + arg);
+                    continue;
+                }
+                String option = arg.substring(PREFIX.length());
+                int separator = option.indexOf('=');
+                if (separator < 0) {
+                    values.put(option, "");
+                } else {
+                    values.put(option.substring(0, separator), option.substring(separator + 1));
+                }
+            }
+        }
+        return new AppOptions(values);
+    }
+
+    /**
+     * Verifica se un'opzione è stata specificata.
+     * @param name Il nome dell'opzione (senza "--").
+     * @return true se presente, anche senza valore.
+     */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Restituisce il valore testuale di un'opzione.
+     * @param name Il nome dell'opzione (senza "--").
+     * @param defaultValue Il valore da usare se l'opzione è assente o vuota.
+     * @return Il valore dell'opzione o il default.
+     */
+    public String getString(String name, String defaultValue) {
+        String value = values.get(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Restituisce il valore intero di un'opzione.
+     * @param name Il nome dell'opzione (senza "--").
+     * @param defaultValue Il valore da usare se l'opzione è assente o non numerica.
+     * @return Il valore dell'opzione o il default.
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.logWarning("Valore non numerico per --" + name + ": \"" + value + "\". Si usa " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Restituisce tutte le opzioni lette.
+     * @return Una mappa non modificabile nome → valore.
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(values);
+    }
+}
@@ -0,0 +1,289 @@
+package com.msan.libmanagementcli.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Ordinamento esterno: gli elementi vengono raccolti in memoria fino a un limite, ordinati e scritti
+ * su file temporanei (run), una riga di testo per elemento; alla lettura i run vengono fusi in streaming
+ * con una coda di priorità.
+ * <p>
+ * La memoria usata dipende solo dal limite di elementi e dal numero massimo di run fusi insieme,
+ * non dalla quantità di elementi ordinati: oltre quel numero i run vengono prima fusi a gruppi.
+ * L'ordinamento è stabile: elementi equivalenti per il comparatore escono nell'ordine di inserimento.
+ * Le righe prodotte dalla codifica non devono contenere separatori di riga.
+ *
+ * @param <T> Il tipo degli elementi ordinati.
+ */
+public class ExternalSorter<T> implements AutoCloseable {
+
+    /** Numero di default di elementi tenuti in memoria prima di scrivere un run. */
+    public static final int DEFAULT_MAX_ELEMENTS_IN_MEMORY = 100_000;
+    /** Numero massimo di run letti contemporaneamente in una fusione. */
+    static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private final Comparator<? super T> comparator;
+    private final Function<? super T, String> encoder;
+    private final Function<String, ? extends T> decoder;
+    private final int maxElementsInMemory;
+    private final int maxFanIn;
+    private final Path tempDirectory;
+    private final List<T> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private final List<BufferedReader> openReaders = new ArrayList<>();
+    private long elementCount;
+    private boolean sorted;
+
+    /**
+     * Crea un ordinatore esterno di righe di testo.
+     * @param comparator Il comparatore delle righe.
+     * @param maxElementsInMemory Righe tenute in memoria prima di scrivere un run.
+     * @param tempDirectory Directory dei file temporanei, o null per quella di sistema.
+     * @return L'ordinatore.
+     * @throws IllegalArgumentException se il comparatore è null o il limite non è positivo.
+     */
+    public static ExternalSorter<String> ofLines(Comparator<String> comparator, int maxElementsInMemory, Path tempDirectory) {
+        return new ExternalSorter<>(comparator, Function.identity(), Function.identity(), maxElementsInMemory, tempDirectory);
+    }
+
+    /**
+     * Crea un ordinatore esterno di elementi convertiti in righe di testo nei run.
+     * @param comparator Il comparatore degli elementi.
+     * @param encoder Converte un elemento nella riga scritta nel run.
+     * @param decoder Ricostruisce l'elemento dalla riga letta dal run.
+     * @param maxElementsInMemory Elementi tenuti in memoria prima di scrivere un run.
+     * @param tempDirectory Directory dei file temporanei, o null per quella di sistema.
+     * @throws IllegalArgumentException se un parametro è null o il limite non è positivo.
+     */
+    public ExternalSorter(Comparator<? super T> comparator, Function<? super T, String> encoder,
+                          Function<String, ? extends T> decoder, int maxElementsInMemory, Path tempDirectory) {
+        this(comparator, encoder, decoder, maxElementsInMemory, tempDirectory, DEFAULT_MAX_FAN_IN);
+    }
+
+    ExternalSorter(Comparator<? super T> comparator, Function<? super T, String> encoder,
+                   Function<String, ? extends T> decoder, int maxElementsInMemory, Path tempDirectory, int maxFanIn) {
+        if (comparator == null || encoder == null || decoder == null || maxElementsInMemory <= 0 || maxFanIn < 2) {
+            throw new IllegalArgumentException("Comparatore, codifica, limite di memoria e fan-in dell'ordinamento devono essere validi.");
+        }
+        this.comparator = comparator;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.maxElementsInMemory = maxElementsInMemory;
+        this.maxFanIn = maxFanIn;
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Aggiunge un elemento da ordinare, scrivendo un run su disco se il limite di memoria è raggiunto.
+     * @param element L'elemento (non null).
+     * @throws IOException se la scrittura del run fallisce.
+     * @throws IllegalStateException se l'ordinamento è già stato letto.
+     */
+    public void add(T element) throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("Impossibile aggiungere elementi dopo la lettura dell'ordinamento.");
+        }
+        buffer.add(element);
+        elementCount++;
+        if (buffer.size() >= maxElementsInMemory) {
+            spill();
+        }
+    }
+
+    /** Numero di elementi aggiunti. */
+    public long getElementCount() {
+        return elementCount;
+    }
+
+    /** Numero di run scritti su disco finora. */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Restituisce gli elementi ordinati. Può essere chiamato una sola volta; i file temporanei
+     * restano aperti fino a {@link #close()}.
+     * Gli errori di lettura durante l'iterazione sono segnalati con {@link UncheckedIOException}.
+     * @return Un iteratore sugli elementi in ordine.
+     * @throws IOException se la fusione preliminare dei run fallisce.
+     */
+    public Iterator<T> sortedIterator() throws IOException {
+        if (sorted) {
+            throw new IllegalStateException("L'ordinamento può essere letto una sola volta.");
+        }
+        sorted = true;
+        if (runs.isEmpty()) {
+            // Tutto è stato contenuto in memoria: nessun file temporaneo.
+            buffer.sort(comparator);
+            return buffer.iterator();
+        }
+        spill();
+        while (runs.size() > maxFanIn) {
+            mergePass();
+        }
+        return openMerge(runs);
+    }
+
+    /**
+     * Chiude i file aperti ed elimina i run temporanei.
+     */
+    @Override
+    public void close() {
+        for (BufferedReader reader : openReaders) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Il file viene comunque eliminato subito dopo.
+            }
+        }
+        openReaders.clear();
+        for (Path run : runs) {
+            deleteQuietly(run);
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort(comparator);
+        Path run = createRunFile();
+        try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+            for (T element : buffer) {
+                writer.write(encoder.apply(element));
+                writer.newLine();
+            }
+        }
+        runs.add(run);
+        buffer.clear();
+    }
+
+    /**
+     * Fonde i run a gruppi consecutivi di {@code maxFanIn}, mantenendone l'ordine per la stabilità.
+     */
+    private void mergePass() throws IOException {
+        List<Path> merged = new ArrayList<>();
+        try {
+            for (int start = 0; start < runs.size(); start += maxFanIn) {
+                List<Path> group = runs.subList(start, Math.min(runs.size(), start + maxFanIn));
+                Path run = createRunFile();
+                merged.add(run);
+                try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                    Iterator<T> elements = openMerge(group);
+                    while (elements.hasNext()) {
+                        writer.write(encoder.apply(elements.next()));
+                        writer.newLine();
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } finally {
+                    for (BufferedReader reader : openReaders) {
+                        reader.close();
+                    }
+                    openReaders.clear();
+                }
+            }
+        } catch (IOException e) {
+            // I run originali restano validi e verranno eliminati da close().
+            merged.forEach(ExternalSorter::deleteQuietly);
+            throw e;
+        }
+        for (Path run : runs) {
+            deleteQuietly(run);
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    private Iterator<T> openMerge(List<Path> group) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(Math.max(1, group.size()));
+        for (int i = 0; i < group.size(); i++) {
+            BufferedReader reader = Files.newBufferedReader(group.get(i), StandardCharsets.UTF_8);
+            openReaders.add(reader);
+            RunCursor cursor = new RunCursor(reader, i);
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                RunCursor cursor = queue.poll();
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+                T element = cursor.current;
+                try {
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return element;
+            }
+        };
+    }
+
+    private Path createRunFile() throws IOException {
+        return tempDirectory != null
+                ? Files.createTempFile(tempDirectory, "sort-run-", ".tmp")
+                : Files.createTempFile("sort-run-", ".tmp");
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Un file temporaneo rimasto non compromette il risultato.
+        }
+    }
+
+    /**
+     * Posizione di lettura in un run: a parità di elemento vince il run creato prima.
+     */
+    private final class RunCursor implements Comparable<RunCursor> {
+
+        private final BufferedReader reader;
+        private final int order;
+        private T current;
+
+        RunCursor(BufferedReader reader, int order) {
+            this.reader = reader;
+            this.order = order;
+        }
+
+        boolean advance() throws IOException {
+            String line = reader.readLine();
+            current = line != null ? decoder.apply(line) : null;
+            return line != null;
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            int result = comparator.compare(current, other.current);
+            return result != 0 ? result : Integer.compare(order, other.order);
+        }
+    }
+}
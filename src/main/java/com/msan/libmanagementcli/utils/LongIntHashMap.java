@@ -0,0 +1,220 @@
+package com.msan.libmanagementcli.utils;
+
+import java.util.Arrays;
+
+/**
+ * Mappa da chiavi {@code long} a valori {@code int} a indirizzamento aperto, senza oggetti per le voci.
+ * <p>
+ * Chiavi e valori stanno in due array primitivi paralleli: ricerche, inserimenti e rimozioni non
+ * creano oggetti (né boxing né nodi come in {@link java.util.HashMap}). Le collisioni si risolvono
+ * con scansione lineare; la rimozione sposta all'indietro le voci successive invece di lasciare
+ * marcatori, così la tabella non degrada dopo molte rimozioni. La capacità raddoppia oltre metà
+ * riempimento. Non è sicura per l'uso da più thread.
+ */
+public class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+    /** Chiave che segna gli slot liberi; la chiave 0 reale viene conservata a parte. */
+    private static final long FREE_KEY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /** Crea una mappa vuota con la capacità minima. */
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Crea una mappa vuota dimensionata per il numero di voci indicato.
+     * @param expectedSize Numero di voci previste.
+     * @throws IllegalArgumentException se il numero è negativo.
+     */
+    public LongIntHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Il numero di voci previste non può essere negativo.");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Restituisce il valore associato alla chiave.
+     * @param key La chiave.
+     * @param missingValue Il valore da restituire se la chiave non è presente.
+     * @return Il valore associato, o {@code missingValue}.
+     */
+    public int get(long key, int missingValue) {
+        if (key == FREE_KEY) {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == FREE_KEY) {
+                return missingValue;
+            }
+        }
+    }
+
+    /** Indica se la chiave è presente. */
+    public boolean containsKey(long key) {
+        if (key == FREE_KEY) {
+            return hasZeroKey;
+        }
+        for (int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return true;
+            }
+            if (current == FREE_KEY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Associa il valore alla chiave, sostituendo quello eventualmente presente.
+     * @param key La chiave.
+     * @param value Il valore.
+     */
+    public void put(long key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != FREE_KEY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Rimuove la chiave, se presente.
+     * @param key La chiave.
+     * @return true se la chiave era presente.
+     */
+    public boolean remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            size--;
+            return true;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == FREE_KEY) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    /** Numero di voci presenti. */
+    public int size() {
+        return size;
+    }
+
+    /** Rimuove tutte le voci, mantenendo la capacità. */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    // --- Logica Interna Privata ---
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            if (capacity >= 1 << 30) {
+                throw new IllegalStateException("Troppe voci per la mappa: " + expectedSize);
+            }
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private int slotOf(long key) {
+        // Rimescolamento dei bit (finalizzatore di MurmurHash3): chiavi consecutive finiscono in slot sparsi.
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > 1 << 30) {
+            throw new IllegalStateException("Troppe voci per la mappa: " + size);
+        }
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int slot = slotOf(key);
+                while (keys[slot] != FREE_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Libera lo slot indicato riportando indietro le voci successive della stessa sequenza,
+     * così ogni chiave resta raggiungibile dal suo slot naturale senza interruzioni.
+     */
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == FREE_KEY) {
+                keys[free] = FREE_KEY;
+                return;
+            }
+            int home = slotOf(key);
+            // La voce può occupare lo slot libero solo se questo non sta tra il suo slot naturale e la posizione attuale.
+            boolean movable = free <= slot ? (home <= free || home > slot) : (home <= free && home > slot);
+            if (movable) {
+                keys[free] = key;
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+    }
+}
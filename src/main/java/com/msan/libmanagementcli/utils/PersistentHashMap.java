@@ -0,0 +1,390 @@
+package com.msan.libmanagementcli.utils;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Mappa persistente (immutabile) basata su un hash array mapped trie (HAMT).
+ * <p>
+ * Ogni modifica ({@link #plus}, {@link #minus}) restituisce una nuova mappa e lascia invariata quella
+ * di partenza: le due versioni condividono tutti i nodi tranne quelli sul percorso della chiave
+ * modificata, al più sette array di 32 elementi. Tenere una versione precedente costa quindi solo
+ * un riferimento. Ogni livello del trie usa 5 bit dell'hash e una bitmap per allocare solo i figli
+ * presenti; le chiavi con lo stesso hash finiscono in un nodo di collisione.
+ * <p>
+ * Per costruire una mappa con molte chiavi si usa un {@link Builder}, che modifica sul posto i nodi
+ * creati da lui invece di copiarli a ogni inserimento. Chiavi e valori non possono essere null.
+ * La mappa è sicura per l'uso da più thread; il builder no.
+ *
+ * @param <K> Il tipo delle chiavi.
+ * @param <V> Il tipo dei valori.
+ */
+public final class PersistentHashMap<K, V> {
+
+    private static final Object[] NO_ENTRIES = new Object[0];
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** Restituisce la mappa vuota. */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /** Crea un builder vuoto. */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Restituisce il valore associato alla chiave.
+     * @param key La chiave.
+     * @return Il valore, o null se la chiave non è presente.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return root == null || key == null ? null : (V) root.get(0, hash(key), key);
+    }
+
+    /** Indica se la chiave è presente. */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Restituisce una mappa con la chiave associata al valore indicato.
+     * @return La nuova mappa, o questa se la chiave aveva già lo stesso valore.
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key, "La chiave non può essere null.");
+        Objects.requireNonNull(value, "Il valore non può essere null.");
+        boolean[] added = new boolean[1];
+        Node base = root != null ? root : new BitmapNode(null, 0, NO_ENTRIES);
+        Node newRoot = base.put(null, 0, hash(key), key, value, added);
+        return newRoot == root ? this : new PersistentHashMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Restituisce una mappa senza la chiave indicata.
+     * @return La nuova mappa, o questa se la chiave non era presente.
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node newRoot = root.remove(null, 0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        return newRoot == null ? empty() : new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    /** Numero di chiavi presenti. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Passa al consumer ogni coppia chiave-valore, in ordine non specificato.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (root != null) {
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Costruisce una mappa inserendo molte chiavi senza copiare i nodi a ogni inserimento.
+     * Dopo {@link #build()} il builder non è più utilizzabile.
+     */
+    public static final class Builder<K, V> {
+        /** Contrassegno dei nodi che il builder può modificare sul posto; null dopo la costruzione. */
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Builder() {
+        }
+
+        /**
+         * Associa il valore alla chiave, sostituendo quello eventualmente presente.
+         * @return Questo builder.
+         * @throws IllegalStateException se la mappa è già stata costruita.
+         */
+        public Builder<K, V> put(K key, V value) {
+            if (edit == null) {
+                throw new IllegalStateException("Il builder è già stato usato per costruire la mappa.");
+            }
+            Objects.requireNonNull(key, "La chiave non può essere null.");
+            Objects.requireNonNull(value, "Il valore non può essere null.");
+            boolean[] added = new boolean[1];
+            Node base = root != null ? root : new BitmapNode(edit, 0, NO_ENTRIES);
+            root = base.put(edit, 0, hash(key), key, value, added);
+            if (added[0]) {
+                size++;
+            }
+            return this;
+        }
+
+        /**
+         * Restituisce la mappa costruita. I nodi non verranno più modificati.
+         */
+        public PersistentHashMap<K, V> build() {
+            edit = null;
+            return size == 0 ? empty() : new PersistentHashMap<>(root, size);
+        }
+    }
+
+    // --- Nodi del Trie ---
+
+    private interface Node {
+        Object get(int shift, int hash, Object key);
+
+        /** Restituisce il nodo con la chiave inserita (questo stesso nodo se modificato sul posto o invariato). */
+        Node put(Object edit, int shift, int hash, Object key, Object value, boolean[] added);
+
+        /** Restituisce il nodo senza la chiave, null se resta vuoto, o questo se la chiave non c'era. */
+        Node remove(Object edit, int shift, int hash, Object key);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * Nodo con al più 32 figli: la bitmap indica quali posizioni sono occupate e l'array contiene,
+     * per ciascuna, una coppia chiave-valore oppure (chiave null) un nodo figlio.
+     */
+    private static final class BitmapNode implements Node {
+        private final Object edit;
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        public Object get(int shift, int hash, Object key) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object storedKey = array[index];
+            Object storedValue = array[index + 1];
+            if (storedKey == null) {
+                return ((Node) storedValue).get(shift + 5, hash, key);
+            }
+            return key.equals(storedKey) ? storedValue : null;
+        }
+
+        @Override
+        public Node put(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bitFor(hash, shift);
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) != 0) {
+                Object storedKey = array[index];
+                Object storedValue = array[index + 1];
+                if (storedKey == null) {
+                    Node child = ((Node) storedValue).put(edit, shift + 5, hash, key, value, added);
+                    return child == storedValue ? this : withSlot(edit, index + 1, null, false, child);
+                }
+                if (key.equals(storedKey)) {
+                    return storedValue == value ? this : withSlot(edit, index + 1, null, false, value);
+                }
+                added[0] = true;
+                Node child = split(edit, shift + 5, storedKey, storedValue, hash, key, value);
+                return withSlot(edit, index, null, true, child);
+            }
+            added[0] = true;
+            int entries = Integer.bitCount(bitmap);
+            Object[] grown = new Object[2 * (entries + 1)];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = key;
+            grown[index + 1] = value;
+            System.arraycopy(array, index, grown, index + 2, 2 * entries - index);
+            if (isEditable(edit)) {
+                this.bitmap |= bit;
+                this.array = grown;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap | bit, grown);
+        }
+
+        @Override
+        public Node remove(Object edit, int shift, int hash, Object key) {
+            int bit = bitFor(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object storedKey = array[index];
+            Object storedValue = array[index + 1];
+            if (storedKey == null) {
+                Node child = ((Node) storedValue).remove(edit, shift + 5, hash, key);
+                if (child == storedValue) {
+                    return this;
+                }
+                if (child != null) {
+                    return withSlot(edit, index + 1, null, false, child);
+                }
+            } else if (!key.equals(storedKey)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, index);
+            System.arraycopy(array, index + 2, shrunk, index, array.length - index - 2);
+            if (isEditable(edit)) {
+                this.bitmap ^= bit;
+                this.array = shrunk;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap ^ bit, shrunk);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private boolean isEditable(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        /**
+         * Imposta una posizione dell'array (e, se richiesto, azzera la chiave precedente),
+         * sul posto se il nodo appartiene al builder, altrimenti su una copia.
+         */
+        private Node withSlot(Object edit, int index, Object keyValue, boolean setKey, Object slotValue) {
+            Node target = isEditable(edit) ? this : new BitmapNode(edit, bitmap, array.clone());
+            Object[] targetArray = ((BitmapNode) target).array;
+            if (setKey) {
+                targetArray[index] = keyValue;
+                targetArray[index + 1] = slotValue;
+            } else {
+                targetArray[index] = slotValue;
+            }
+            return target;
+        }
+
+        private static Node split(Object edit, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(edit, hash1, new Object[] {key1, value1, key2, value2});
+            }
+            boolean[] ignored = new boolean[1];
+            return new BitmapNode(edit, 0, NO_ENTRIES)
+                    .put(edit, shift, hash1, key1, value1, ignored)
+                    .put(edit, shift, hash2, key2, value2, ignored);
+        }
+
+        private static int bitFor(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+    }
+
+    /**
+     * Nodo per chiavi diverse con lo stesso hash, cercate in modo lineare.
+     */
+    private static final class CollisionNode implements Node {
+        private final Object edit;
+        private final int hash;
+        private Object[] array;
+
+        CollisionNode(Object edit, int hash, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        public Object get(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node put(Object edit, int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Hash diverso: questo nodo scende di un livello sotto un nodo a bitmap.
+                Object[] single = {null, this};
+                return new BitmapNode(edit, BitmapNode.bitFor(this.hash, shift), single)
+                        .put(edit, shift, hash, key, value, added);
+            }
+            int index = indexOf(key);
+            Object[] updated;
+            if (index >= 0) {
+                if (array[index + 1] == value) {
+                    return this;
+                }
+                updated = array.clone();
+                updated[index + 1] = value;
+            } else {
+                added[0] = true;
+                updated = new Object[array.length + 2];
+                System.arraycopy(array, 0, updated, 0, array.length);
+                updated[array.length] = key;
+                updated[array.length + 1] = value;
+            }
+            if (edit != null && this.edit == edit) {
+                this.array = updated;
+                return this;
+            }
+            return new CollisionNode(edit, hash, updated);
+        }
+
+        @Override
+        public Node remove(Object edit, int shift, int hash, Object key) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 2];
+            System.arraycopy(array, 0, shrunk, 0, index);
+            System.arraycopy(array, index + 2, shrunk, index, array.length - index - 2);
+            return new CollisionNode(edit, this.hash, shrunk);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2) {
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
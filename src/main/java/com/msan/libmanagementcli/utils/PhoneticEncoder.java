@@ -0,0 +1,171 @@
+package com.msan.libmanagementcli.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Codifica fonetica dei nomi, sul modello di Metaphone adattato alla pronuncia italiana e alle
+ * traslitterazioni più comuni: nomi che si pronunciano in modo simile ricevono lo stesso codice
+ * (es. "Pirandello" e "Pirandelo", "Dostoevskij", "Dostoyevsky" e "Dostojevskij").
+ * <p>
+ * Regole principali: accenti e maiuscole sono ignorati; le vocali (compresi {@code y} e {@code j},
+ * che in italiano vale {@code i}) contano solo all'inizio della parola; le consonanti doppie valgono
+ * una; {@code h} è muta; le consonanti simili hanno lo stesso codice (d/t, v/w/f/ph, q/k/c dura,
+ * z/s, th/t); {@code c} e {@code g} davanti a e/i sono dolci, come {@code sc}, {@code gli} e {@code gn}.
+ */
+public final class PhoneticEncoder {
+
+    private PhoneticEncoder() {
+    }
+
+    /**
+     * Restituisce il codice fonetico di una parola.
+     * @param word La parola (i caratteri diversi dalle lettere vengono ignorati).
+     * @return Il codice, o una stringa vuota se la parola non contiene lettere.
+     */
+    public static String encode(String word) {
+        return encodeLetters(normalize(word));
+    }
+
+    /**
+     * Restituisce i codici fonetici distinti delle parole di un testo, nell'ordine in cui compaiono.
+     * Le parole di una sola lettera (es. le iniziali) vengono ignorate.
+     * @param text Il testo, es. il nome di un autore.
+     * @return I codici delle parole, o una lista vuota se il testo è null o non ha parole utili.
+     */
+    public static List<String> encodeWords(String text) {
+        List<String> codes = new ArrayList<>(2);
+        if (text == null) {
+            return codes;
+        }
+        for (String word : normalize(text).split("[^a-z]+")) {
+            if (word.length() < 2) {
+                continue;
+            }
+            String code = encodeLetters(word);
+            if (!code.isEmpty() && !codes.contains(code)) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+
+    // --- Logica Interna Privata ---
+
+    /** Minuscole senza accenti; le lettere speciali non scomponibili restano e vengono poi ignorate. */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String encodeLetters(String w) {
+        StringBuilder code = new StringBuilder(w.length());
+        // Ultimo codice scritto dopo l'ultima vocale: due consonanti uguali vicine valgono una.
+        char[] last = new char[1];
+        int n = w.length();
+        for (int i = 0; i < n; i++) {
+            char c = w.charAt(i);
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char next = i + 1 < n ? w.charAt(i + 1) : 0;
+            char after = i + 2 < n ? w.charAt(i + 2) : 0;
+            switch (c) {
+                case 'a': case 'e': case 'i': case 'o': case 'u': case 'y': case 'j':
+                    if (code.length() == 0) {
+                        code.append('A');
+                    }
+                    last[0] = 0;
+                    break;
+                case 'c':
+                    if (next == 'h') {
+                        append(code, last, isFront(after) ? 'K' : 'X');
+                        i++;
+                    } else if (next == 'c' && isFront(after)) {
+                        // "cci": conta solo la seconda c, dolce.
+                    } else {
+                        append(code, last, isFront(next) ? 'X' : 'K');
+                    }
+                    break;
+                case 'g':
+                    if (next == 'h') {
+                        append(code, last, 'K');
+                        i++;
+                    } else if (next == 'l' && after == 'i') {
+                        append(code, last, 'L');
+                        i++;
+                    } else if (next == 'n') {
+                        append(code, last, 'N');
+                        i++;
+                    } else if (next == 'g' && isFront(after)) {
+                        // "ggi": conta solo la seconda g, dolce.
+                    } else {
+                        append(code, last, isFront(next) ? 'J' : 'K');
+                    }
+                    break;
+                case 's':
+                    if (next == 'c' && after == 'h') {
+                        append(code, last, 'S');
+                        append(code, last, 'K');
+                        i += 2;
+                    } else if (next == 'c' && isFront(after)) {
+                        append(code, last, 'X');
+                        i++;
+                    } else if (next == 'h') {
+                        append(code, last, 'X');
+                        i++;
+                    } else {
+                        append(code, last, 'S');
+                    }
+                    break;
+                case 'p':
+                    if (next == 'h') {
+                        append(code, last, 'F');
+                        i++;
+                    } else {
+                        append(code, last, 'P');
+                    }
+                    break;
+                case 'h':
+                    break;
+                case 'd': case 't':
+                    append(code, last, 'T');
+                    break;
+                case 'f': case 'v': case 'w':
+                    append(code, last, 'F');
+                    break;
+                case 'k': case 'q':
+                    append(code, last, 'K');
+                    break;
+                case 'x':
+                    append(code, last, 'K');
+                    append(code, last, 'S');
+                    break;
+                case 'z':
+                    append(code, last, 'S');
+                    break;
+                default: // b, l, m, n, r
+                    append(code, last, Character.toUpperCase(c));
+            }
+        }
+        return code.toString();
+    }
+
+    private static void append(StringBuilder code, char[] last, char letter) {
+        if (last[0] != letter) {
+            code.append(letter);
+            last[0] = letter;
+        }
+    }
+
+    /** Vocali davanti alle quali c e g sono dolci. */
+    private static boolean isFront(char c) {
+        return c == 'e' || c == 'i' || c == 'y';
+    }
+}
@@ -0,0 +1,82 @@
+package com.msan.libmanagementcli.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dizionario di stringhe canoniche: valori uguali restituiscono sempre la stessa istanza.
+ * <p>
+ * Serve per i campi che si ripetono molto tra i libri (autore, genere): ogni caricamento da CSV
+ * crea nuove stringhe per ogni riga, mentre con il dizionario ne resta in memoria una sola per valore.
+ * Al posto di {@link String#intern()} si usa una mappa limitata, così valori quasi tutti distinti
+ * non fanno crescere senza limite la tabella: raggiunto il limite le nuove stringhe vengono
+ * restituite così come sono. È sicuro per l'uso da più thread (es. l'importazione parallela).
+ * <p>
+ * I dizionari condivisi valgono per un caricamento: vanno svuotati con {@link #clear()} prima di caricare
+ * una nuova libreria, così non trattengono i valori di quelle precedenti. I libri già creati mantengono
+ * le proprie stringhe; si perde solo la condivisione con quelli creati dopo.
+ */
+public class StringPool {
+
+    /** Numero massimo di default di valori distinti conservati. */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    private static final StringPool AUTHORS = new StringPool(DEFAULT_MAX_ENTRIES);
+    private static final StringPool GENRES = new StringPool(DEFAULT_MAX_ENTRIES);
+
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    /**
+     * Crea un dizionario.
+     * @param maxEntries Numero massimo di valori distinti conservati.
+     * @throws IllegalArgumentException se il limite non è positivo.
+     */
+    public StringPool(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Il numero massimo di valori del dizionario deve essere positivo.");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /** Dizionario condiviso degli autori. */
+    public static StringPool authors() {
+        return AUTHORS;
+    }
+
+    /** Dizionario condiviso dei generi. */
+    public static StringPool genres() {
+        return GENRES;
+    }
+
+    /**
+     * Restituisce l'istanza canonica del valore, registrandolo se è nuovo e c'è ancora spazio.
+     * @param value Il valore (può essere null).
+     * @return L'istanza canonica, o il valore stesso se null o se il dizionario è pieno.
+     */
+    public String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = values.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (values.size() >= maxEntries) {
+            return value;
+        }
+        existing = values.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Dimentica tutti i valori registrati.
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /** Numero di valori distinti conservati. */
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,174 @@
+package com.msan.libmanagementcli.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test per la classe {@link BTreeStorageService}.
+ * Usa pagine della dimensione minima e una cache molto piccola per esercitare divisioni dei nodi
+ * ed espulsioni dalla cache.
+ */
+class BTreeStorageServiceTest {
+
+    // --- Setup per i Test ---
+    private BTreeStorageService storageService;
+    private String filePath;
+    private List<Book> books;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new BTreeStorageService(4096, 8);
+        filePath = tempDir.resolve("libreria.db").toString();
+        books = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            books.add(new Book.BookBuilder(String.format("ISBN%05d", (i * 7919) % 2000), "Titolo " + (i % 300),
+                    (i % 2 == 0 ? "autore " : "Autore ") + (i % 50)).publicationYear(1900 + i % 100).genre("Genere").build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+    }
+
+    // --- Sezione Test ---
+
+    /**
+     * Testa: il caricamento restituisce i libri in ordine di ISBN e la ricerca puntuale li trova tutti.
+     */
+    @Test
+    void testSaveAndLoad_ordinePerIsbnERicercaPuntuale() throws LibraryException {
+        // Act
+        storageService.saveBooks(books, filePath);
+        List<Book> loadedBooks = storageService.loadBooks(filePath);
+
+        // Assert
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(Comparator.comparing(Book::getIsbn));
+        assertEquals(expected, loadedBooks);
+        assertEquals(2000, storageService.count(filePath));
+        for (Book book : books) {
+            assertEquals(book, storageService.findBook(filePath, book.getIsbn()).orElseThrow());
+        }
+        assertFalse(storageService.findBook(filePath, "ISBN-INESISTENTE").isPresent());
+    }
+
+    /**
+     * Testa: la scansione per titolo segue lo stesso ordine della strategia di ordinamento per titolo.
+     */
+    @Test
+    void testScan_perTitoloEAutore() throws LibraryException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+
+        // Act
+        List<Book> perTitolo = new ArrayList<>();
+        storageService.scan(filePath, OrderedStorageService.Order.TITLE, perTitolo::add);
+        List<Book> perAutore = new ArrayList<>();
+        storageService.scan(filePath, OrderedStorageService.Order.AUTHOR, perAutore::add);
+
+        // Assert
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparing(Book::getIsbn));
+        assertEquals(expected, perTitolo);
+        List<String> autori = perAutore.stream().map(Book::getAuthor).collect(Collectors.toList());
+        List<String> autoriOrdinati = new ArrayList<>(autori);
+        autoriOrdinati.sort(String.CASE_INSENSITIVE_ORDER);
+        assertEquals(autoriOrdinati, autori);
+    }
+
+    /**
+     * Testa: le modifiche salvate sul posto aggiornano tutti gli indici e restano dopo la riapertura.
+     */
+    @Test
+    void testSaveChanges_aggiornaIndiciEPersiste() throws LibraryException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+        Book aggiornato = new Book.BookBuilder("ISBN00001", "AAA Primo Titolo", "Nuovo Autore").build();
+        Book nuovo = new Book.BookBuilder("ISBN99999", "Libro Nuovo", "Altro Autore").build();
+
+        // Act
+        storageService.saveChanges(Arrays.asList(aggiornato, nuovo), Collections.singleton("ISBN00002"), filePath);
+        storageService.close();
+        BTreeStorageService riaperto = new BTreeStorageService(4096, 8);
+        List<Book> perTitolo = new ArrayList<>();
+        riaperto.scan(filePath, OrderedStorageService.Order.TITLE, perTitolo::add);
+
+        // Assert
+        assertEquals(2000, riaperto.count(filePath));
+        assertEquals(aggiornato, perTitolo.get(0));
+        assertEquals(1, perTitolo.stream().filter(b -> b.getIsbn().equals("ISBN00001")).count(),
+                "La vecchia voce per titolo dovrebbe essere stata rimossa.");
+        assertFalse(riaperto.findBook(filePath, "ISBN00002").isPresent());
+        assertEquals("Altro Autore", riaperto.findBook(filePath, "ISBN99999").orElseThrow().getAuthor());
+        riaperto.close();
+    }
+
+    /**
+     * Testa: con le pagine della dimensione minima si salvano anche libri con titolo e autore lunghi,
+     * mentre una dimensione inferiore al minimo viene rifiutata.
+     */
+    @Test
+    void testSaveChanges_libroConCampiLunghiConPagineMinime() throws LibraryException {
+        // Arrange
+        StringBuilder titolo = new StringBuilder();
+        while (titolo.length() < 400) {
+            titolo.append("Un titolo molto lungo con sottotitolo, ");
+        }
+        Book lungo = new Book.BookBuilder("ISBN88888", titolo.toString().replace(",", "").trim(),
+                "Autore con un nome davvero molto lungo e più cognomi di famiglia nobiliare").publicationYear(1999)
+                .genre("Saggistica").build();
+        storageService.saveBooks(books, filePath);
+
+        // Act
+        storageService.saveChanges(Collections.singletonList(lungo), Collections.emptySet(), filePath);
+
+        // Assert
+        assertEquals(lungo, storageService.findBook(filePath, "ISBN88888").orElseThrow());
+        assertThrows(IllegalArgumentException.class,
+                () -> new BTreeStorageService(BTreeStorageService.MIN_PAGE_SIZE - 1, 8));
+    }
+
+    /**
+     * Testa: un gruppo di modifiche più grande della cache viene scaricato su disco prima del flush
+     * e salvato per intero; dopo il flush il file di scarico non resta.
+     */
+    @Test
+    void testSaveChanges_piuPagineModificateDellaCache() throws LibraryException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+        List<Book> modificati = books.stream()
+                .map(b -> new Book.BookBuilder(b.getIsbn(), "Rivisto " + b.getTitle(), b.getAuthor()).build())
+                .collect(Collectors.toList());
+
+        // Act
+        storageService.saveChanges(modificati, Collections.emptySet(), filePath);
+        storageService.close();
+        BTreeStorageService riaperto = new BTreeStorageService(4096, 8);
+        List<Book> perTitolo = new ArrayList<>();
+        riaperto.scan(filePath, OrderedStorageService.Order.TITLE, perTitolo::add);
+
+        // Assert
+        assertEquals(2000, perTitolo.size());
+        assertTrue(perTitolo.stream().allMatch(b -> b.getTitle().startsWith("Rivisto ")));
+        assertFalse(PageFile.spillPathFor(Path.of(filePath)).toFile().exists());
+        riaperto.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.msan.libmanagementcli.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.BookCollection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test per la classe {@link CollectionFileStorage}.
+ */
+class CollectionFileStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Testa: la gerarchia salvata viene ricostruita uguale, con i libri collegati per ISBN e i nomi con caratteri speciali.
+     */
+    @Test
+    void testSaveELoad_gerarchiaRicostruita() throws LibraryException {
+        // Arrange
+        Book libro1 = new Book.BookBuilder("ISBN001", "Il Nome della Rosa", "Umberto Eco").build();
+        Book libro2 = new Book.BookBuilder("ISBN002", "1984", "George Orwell").build();
+        Map<String, Book> libreria = new HashMap<>();
+        libreria.put(libro1.getIsbn(), libro1);
+        libreria.put(libro2.getIsbn(), libro2);
+        BookCollection narrativa = new BookCollection("Narrativa, \\ varia");
+        BookCollection gialli = new BookCollection("Gialli");
+        narrativa.addItem(gialli);
+        gialli.addItem(libro1);
+        narrativa.addItem(libro2);
+        BookCollection vuota = new BookCollection("Vuota");
+        String file = tempDir.resolve("libreria.collections").toString();
+        CollectionFileStorage storage = new CollectionFileStorage();
+
+        // Act
+        storage.saveCollections(Arrays.asList(narrativa, vuota), file);
+        List<BookCollection> caricate = storage.loadCollections(file, isbn -> "ISBN002".equals(isbn) ? null : libreria.get(isbn));
+
+        // Assert
+        assertEquals(2, caricate.size());
+        BookCollection radice = caricate.get(0);
+        assertEquals("Narrativa, \\ varia", radice.getTitle());
+        assertEquals(1, radice.getBookCount(), "Il libro non presente nella libreria viene saltato.");
+        BookCollection figlia = (BookCollection) radice.getItems().get(0);
+        assertEquals("Gialli", figlia.getTitle());
+        assertSame(libro1, figlia.getItems().get(0));
+        assertSame(radice, figlia.getParent());
+        assertEquals("Vuota", caricate.get(1).getTitle());
+        assertTrue(caricate.get(1).getItems().isEmpty());
+    }
+
+    /**
+     * Testa che un file con una profondità non coerente venga rifiutato.
+     */
+    @Test
+    void testLoad_profonditaNonValida_lanciaEccezione() throws IOException {
+        Path file = tempDir.resolve("errato.collections");
+        Files.write(file, Arrays.asList(CollectionFileStorage.HEADER, "C,0,Radice", "B,3,ISBN001"));
+        assertThrows(LibraryException.class, () -> new CollectionFileStorage().loadCollections(file.toString(), isbn -> null));
+    }
+}
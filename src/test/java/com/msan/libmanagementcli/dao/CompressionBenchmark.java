@@ -0,0 +1,71 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark (non eseguito dai test) di salvataggio, caricamento e dimensione su disco
+ * del CSV semplice rispetto al CSV compresso con diversi livelli.
+ * <p>
+ * Avvio (dopo {@code mvn test-compile}):
+ * {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.dao.CompressionBenchmark}
+ */
+public class CompressionBenchmark {
+
+    private static final int[] CATALOG_SIZES = {1_000, 10_000, 100_000};
+    private static final int[] COMPRESSION_LEVELS = {1, 6, 9};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException, LibraryException {
+        ConsoleLogger.getInstance().setLogLevel(ConsoleLogger.LogLevel.NONE);
+        Path dir = Files.createTempDirectory("compression-bench");
+
+        System.out.printf("%-10s %-10s %14s %14s %12s%n", "Libri", "Formato", "ms/salvataggio", "ms/caricamento", "KB");
+        for (int size : CATALOG_SIZES) {
+            List<Book> books = FsyncPolicyBenchmark.syntheticBooks(size);
+            measure("csv", new FileStorageService(FileStorageService.FsyncPolicy.NONE, 1), books,
+                    dir.resolve("bench.csv"));
+            for (int level : COMPRESSION_LEVELS) {
+                FileStorageService storage = new FileStorageService(FileStorageService.FsyncPolicy.NONE, 1,
+                        new FileStorageService.CompressionOptions(false, level, FileStorageService.DEFAULT_BUFFER_SIZE));
+                measure("gz-" + level, storage, books, dir.resolve("bench.csv.gz"));
+            }
+        }
+        Files.deleteIfExists(dir.resolve("bench.csv"));
+        Files.deleteIfExists(dir.resolve("bench.csv.gz"));
+        Files.deleteIfExists(dir);
+    }
+
+    private static void measure(String label, StorageService storage, List<Book> books, Path file)
+            throws IOException, LibraryException {
+        String filePath = file.toString();
+        AtomicInteger loaded = new AtomicInteger();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            storage.saveBooks(books, filePath);
+            storage.loadBooks(filePath, book -> loaded.incrementAndGet());
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            storage.saveBooks(books, filePath);
+        }
+        double saveMillis = (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            storage.loadBooks(filePath, book -> loaded.incrementAndGet());
+        }
+        double loadMillis = (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+
+        System.out.printf("%-10d %-10s %14.2f %14.2f %12d%n", books.size(), label, saveMillis, loadMillis,
+                Files.size(file) / 1024);
+    }
+}
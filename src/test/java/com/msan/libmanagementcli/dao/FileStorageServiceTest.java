@@ -12,6 +12,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -160,4 +161,202 @@ class FileStorageServiceTest {
         assertEquals(1, loadedBooks.size(), "Dovrebbe caricare solo il libro valido.");
         assertEquals(book1.getIsbn(), loadedBooks.get(0).getIsbn());
     }
-}
\ No newline at end of file
+
+    /**
+     * Testa: il salvataggio scrive intestazione e riga di controllo e non lascia file temporanei.
+     */
+    @Test
+    void testSaveBooks_scriveRigaDiControlloSenzaFileTemporanei() throws LibraryException, IOException {
+        // Act
+        storageService.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+
+        // Assert
+        List<String> righe = Files.readAllLines(testFile.toPath());
+        assertEquals(4, righe.size(), "Intestazione, due libri e riga di controllo.");
+        assertEquals(FileStorageService.FORMAT_HEADER, righe.get(0));
+        assertTrue(righe.get(3).startsWith(FileStorageService.CHECKSUM_PREFIX));
+        try (java.util.stream.Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.filter(file -> file.toString().endsWith(".tmp")).count(),
+                    "Non dovrebbero restare file temporanei.");
+        }
+        assertTrue(Files.exists(BookOffsetIndex.indexPathFor(testFile.getAbsolutePath())), "Dovrebbe esistere l'indice.");
+        try (java.util.stream.Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(2, files.count(), "Solo il file dati e il suo indice.");
+        }
+    }
+
+    /**
+     * Testa: loadBooks riconosce un file troncato grazie alla riga di controllo.
+     */
+    @Test
+    void testLoadBooks_conFileTroncato_lanciaEccezione() throws LibraryException, IOException {
+        // Arrange: salvo tre libri e poi elimino una riga di dati lasciando la riga di controllo.
+        Book book3 = new Book.BookBuilder("ISBN003", "Dune", "Frank Herbert").build();
+        storageService.saveBooks(Arrays.asList(book1, book2, book3), testFile.getAbsolutePath());
+        List<String> righe = new ArrayList<>(Files.readAllLines(testFile.toPath()));
+        righe.remove(1);
+        Files.write(testFile.toPath(), righe);
+
+        // Act & Assert
+        assertThrows(LibraryException.class, () -> storageService.loadBooks(testFile.getAbsolutePath()));
+    }
+
+    /**
+     * Testa: un file con l'intestazione ma senza riga di controllo è troncato, mentre un file
+     * senza intestazione (formato precedente) viene ancora caricato.
+     */
+    @Test
+    void testLoadBooks_senzaRigaDiControllo_soloFormatoPrecedente() throws LibraryException, IOException {
+        // Arrange: il salvataggio perde la coda del file, riga di controllo compresa.
+        storageService.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+        List<String> righe = new ArrayList<>(Files.readAllLines(testFile.toPath()));
+        righe.remove(righe.size() - 1);
+        Files.write(testFile.toPath(), righe);
+        File fileFormatoPrecedente = tempDir.resolve("precedente.csv").toFile();
+        Files.write(fileFormatoPrecedente.toPath(), Arrays.asList(book1.toCsvString(), book2.toCsvString()));
+
+        // Act & Assert
+        assertThrows(LibraryException.class, () -> storageService.loadBooks(testFile.getAbsolutePath()));
+        assertEquals(Arrays.asList(book1, book2), storageService.loadBooks(fileFormatoPrecedente.getAbsolutePath()));
+    }
+
+    /**
+     * Testa: salvataggio e caricamento con sincronizzazione a blocchi.
+     */
+    @Test
+    void testSaveAndLoad_conFsyncPerBlocco() throws LibraryException {
+        // Arrange
+        StorageService perBatchStorage = new FileStorageService(FileStorageService.FsyncPolicy.PER_BATCH, 1);
+
+        // Act
+        perBatchStorage.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+        List<Book> loadedBooks = perBatchStorage.loadBooks(testFile.getAbsolutePath());
+
+        // Assert
+        assertEquals(Arrays.asList(book1, book2), loadedBooks);
+    }
+
+    /**
+     * Testa: salvataggio da iteratore e caricamento verso consumer, senza liste intermedie.
+     */
+    @Test
+    void testSaveAndLoad_inStreaming() throws LibraryException {
+        // Act
+        storageService.saveBooks(Arrays.asList(book1, book2).iterator(), testFile.getAbsolutePath());
+        List<Book> ricevuti = new ArrayList<>();
+        storageService.loadBooks(testFile.getAbsolutePath(), ricevuti::add);
+
+        // Assert
+        assertEquals(Arrays.asList(book1, book2), ricevuti);
+    }
+
+    /**
+     * Testa: un file con estensione .gz viene scritto compresso e riletto correttamente.
+     */
+    @Test
+    void testSaveAndLoad_conFileGz() throws LibraryException, IOException {
+        // Arrange
+        Path gzFile = tempDir.resolve("library_test.csv.gz");
+
+        // Act
+        storageService.saveBooks(Arrays.asList(book1, book2), gzFile.toString());
+        byte[] header = Arrays.copyOf(Files.readAllBytes(gzFile), 2);
+        List<Book> loadedBooks = storageService.loadBooks(gzFile.toString());
+
+        // Assert
+        assertArrayEquals(new byte[] {(byte) 0x1f, (byte) 0x8b}, header, "Il file dovrebbe essere in formato GZIP.");
+        assertEquals(Arrays.asList(book1, book2), loadedBooks);
+    }
+
+    /**
+     * Testa: con la compressione sempre attiva anche un .csv viene compresso,
+     * e viene riconosciuto come tale da un servizio con opzioni di default.
+     */
+    @Test
+    void testSaveBooks_conCompressioneForzata() throws LibraryException, IOException {
+        // Arrange
+        FileStorageService compressingStorage = new FileStorageService(FileStorageService.FsyncPolicy.PER_BATCH, 1,
+                new FileStorageService.CompressionOptions(true, 9, 512));
+
+        // Act
+        compressingStorage.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+        List<Book> loadedBooks = storageService.loadBooks(testFile.getAbsolutePath());
+
+        // Assert
+        assertEquals((byte) 0x1f, Files.readAllBytes(testFile.toPath())[0]);
+        assertEquals(Arrays.asList(book1, book2), loadedBooks);
+    }
+
+    /**
+     * Testa: il salvataggio scrive un indice valido che permette di leggere un singolo libro.
+     */
+    @Test
+    void testLoadIndex_eLetturaDiUnSingoloLibro() throws LibraryException {
+        // Arrange
+        FileStorageService indexedStorage = new FileStorageService();
+        indexedStorage.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+
+        // Act
+        BookOffsetIndex index = indexedStorage.loadIndex(testFile.getAbsolutePath()).orElseThrow();
+        Book letto = indexedStorage.readBookAt(testFile.getAbsolutePath(), index.getOffset("ISBN002"));
+
+        // Assert
+        assertEquals(2, index.size());
+        assertEquals(book2, letto);
+        assertEquals("Distopia", letto.getGenre());
+        assertNull(index.getOffset("ISBN999"));
+    }
+
+    /**
+     * Testa: un indice non più allineato al file dati viene ignorato.
+     */
+    @Test
+    void testLoadIndex_conFileDatiModificato() throws LibraryException, IOException {
+        // Arrange
+        FileStorageService indexedStorage = new FileStorageService();
+        indexedStorage.saveBooks(Arrays.asList(book1, book2), testFile.getAbsolutePath());
+        Path indexCopy = tempDir.resolve("copia.idx");
+        Files.copy(BookOffsetIndex.indexPathFor(testFile.getAbsolutePath()), indexCopy);
+        indexedStorage.saveBooks(Arrays.asList(book2), testFile.getAbsolutePath());
+        Files.copy(indexCopy, BookOffsetIndex.indexPathFor(testFile.getAbsolutePath()), StandardCopyOption.REPLACE_EXISTING);
+
+        // Act & Assert
+        assertFalse(indexedStorage.loadIndex(testFile.getAbsolutePath()).isPresent());
+    }
+
+    /**
+     * Testa: l'indice è scritto ordinato per ISBN e la ricerca binaria sul file trova ogni libro;
+     * con un ISBN ripetuto vale la prima riga, come nel caricamento completo.
+     */
+    @Test
+    void testLoadIndex_ordinatoConRicercaBinaria() throws LibraryException, IOException {
+        // Arrange
+        FileStorageService indexedStorage = new FileStorageService();
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int number = (i * 7919) % 500; // ISBN in ordine sparso nel file dati.
+            books.add(new Book.BookBuilder("ISBN-" + number, "Titolo " + number, "Autore").build());
+        }
+        books.add(new Book.BookBuilder("ISBN-42", "Duplicato", "Autore").build());
+        indexedStorage.saveBooks(books, testFile.getAbsolutePath());
+
+        // Act
+        BookOffsetIndex index = indexedStorage.loadIndex(testFile.getAbsolutePath()).orElseThrow();
+
+        // Assert
+        List<String> righe = Files.readAllLines(BookOffsetIndex.indexPathFor(testFile.getAbsolutePath()));
+        List<String> voci = new ArrayList<>(righe.subList(0, righe.size() - 1));
+        List<String> ordinate = new ArrayList<>(voci);
+        ordinate.sort((a, b) -> a.substring(0, a.lastIndexOf(',')).compareTo(b.substring(0, b.lastIndexOf(','))));
+        assertEquals(ordinate, voci, "Le voci dell'indice dovrebbero essere ordinate per ISBN.");
+        assertEquals(501, index.size());
+        for (int i = 0; i < 500; i++) {
+            Book letto = indexedStorage.readBookAt(testFile.getAbsolutePath(), index.getOffset("ISBN-" + i));
+            assertEquals("Titolo " + i, letto.getTitle());
+        }
+        assertNull(index.getOffset("ISBN-"));
+        assertNull(index.getOffset("ISBN-9999"));
+        assertNull(index.getOffset("A"));
+        assertNull(index.getOffset("Z"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.msan.libmanagementcli.dao;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark (non eseguito dai test) del costo di salvataggio con le diverse {@link FileStorageService.FsyncPolicy}.
+ * <p>
+ * Avvio (dopo {@code mvn test-compile}):
+ * {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.dao.FsyncPolicyBenchmark}
+ */
+public class FsyncPolicyBenchmark {
+
+    private static final int[] CATALOG_SIZES = {1_000, 10_000, 100_000};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException, LibraryException {
+        ConsoleLogger.getInstance().setLogLevel(ConsoleLogger.LogLevel.NONE);
+        Path dir = Files.createTempDirectory("fsync-bench");
+        String filePath = dir.resolve("bench.csv").toString();
+
+        System.out.printf("%-10s %-10s %12s%n", "Libri", "Politica", "ms/salvataggio");
+        for (int size : CATALOG_SIZES) {
+            List<Book> books = syntheticBooks(size);
+            for (FileStorageService.FsyncPolicy policy : FileStorageService.FsyncPolicy.values()) {
+                StorageService storage = new FileStorageService(policy, FileStorageService.DEFAULT_FSYNC_BATCH_SIZE);
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    storage.saveBooks(books, filePath);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                    storage.saveBooks(books, filePath);
+                }
+                double avgMillis = (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+                System.out.printf("%-10d %-10s %12.2f%n", size, policy, avgMillis);
+            }
+        }
+        Files.deleteIfExists(Path.of(filePath));
+        Files.deleteIfExists(dir);
+    }
+
+    static List<Book> syntheticBooks(int count) {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(new Book.BookBuilder(String.format("978%010d", i), "Titolo del libro numero " + i, "Autore " + (i % 5000))
+                    .publicationYear(1900 + i % 125).genre("Genere " + (i % 40)).build());
+        }
+        return books;
+    }
+}
@@ -0,0 +1,208 @@
+package com.msan.libmanagementcli.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test per la classe {@link JournaledStorageService}.
+ * Verifica la scrittura dei record di journal, la loro riapplicazione e la compattazione.
+ */
+class JournaledStorageServiceTest {
+
+    // --- Setup per i Test ---
+    private JournaledStorageService storageService;
+    private Book book1;
+    private Book book2;
+    private String filePath;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new JournaledStorageService(new FileStorageService(), 10);
+        filePath = tempDir.resolve("library_journal.csv").toString();
+
+        book1 = new Book.BookBuilder("ISBN001", "Il Signore degli Anelli", "J.R.R. Tolkien")
+                        .publicationYear(1954).genre("Fantasy").build();
+        book2 = new Book.BookBuilder("ISBN002", "1984", "George Orwell")
+                        .publicationYear(1949).genre("Distopia").build();
+    }
+
+    // --- Sezione Test ---
+
+    /**
+     * Testa: le modifiche registrate vengono riapplicate sopra la base al caricamento.
+     */
+    @Test
+    void testLoadBooks_riapplicaJournalSullaBase() throws LibraryException {
+        // Arrange
+        storageService.saveBooks(Arrays.asList(book1), filePath);
+        Book book1Aggiornato = new Book.BookBuilder("ISBN001-B", "Il Signore degli Anelli", "Tolkien").build();
+
+        // Act
+        storageService.recordAdd(filePath, book2);
+        storageService.recordUpdate(filePath, "ISBN001", book1Aggiornato);
+        storageService.recordRemove(filePath, "ISBN002");
+        List<Book> loadedBooks = storageService.loadBooks(filePath);
+
+        // Assert
+        assertEquals(1, loadedBooks.size());
+        assertEquals("ISBN001-B", loadedBooks.get(0).getIsbn());
+        assertEquals("Tolkien", loadedBooks.get(0).getAuthor());
+        assertEquals(3, storageService.getJournalSize(filePath));
+    }
+
+    /**
+     * Testa: una registrazione non riscrive la base, che resta quella dell'ultimo salvataggio.
+     */
+    @Test
+    void testRecordAdd_nonRiscriveLaBase() throws LibraryException, IOException {
+        // Arrange
+        storageService.saveBooks(Arrays.asList(book1), filePath);
+        List<String> baseIniziale = Files.readAllLines(Path.of(filePath));
+
+        // Act
+        storageService.recordAdd(filePath, book2);
+
+        // Assert
+        assertEquals(baseIniziale, Files.readAllLines(Path.of(filePath)), "La base non dovrebbe cambiare.");
+        assertTrue(Files.exists(JournaledStorageService.journalPathFor(filePath)));
+    }
+
+    /**
+     * Testa: al raggiungimento della soglia il journal viene fuso nella base e azzerato.
+     */
+    @Test
+    void testRecordAdd_compattaAllaSoglia() throws LibraryException {
+        // Act
+        for (int i = 0; i < 10; i++) {
+            storageService.recordAdd(filePath, new Book.BookBuilder("ISBN-" + i, "Titolo " + i, "Autore").build());
+        }
+
+        // Assert
+        assertFalse(Files.exists(JournaledStorageService.journalPathFor(filePath)), "Il journal dovrebbe essere stato azzerato.");
+        assertEquals(0, storageService.getJournalSize(filePath));
+        assertEquals(10, new FileStorageService().loadBooks(filePath).size(), "La base dovrebbe contenere tutti i libri.");
+    }
+
+    /**
+     * Testa: un record troncato (es. crash durante la scrittura) viene saltato.
+     */
+    @Test
+    void testLoadBooks_conRecordTroncato() throws LibraryException, IOException {
+        // Arrange
+        storageService.recordAdd(filePath, book1);
+        Files.write(JournaledStorageService.journalPathFor(filePath), "A,ISBN00".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        // Act
+        List<Book> loadedBooks = storageService.loadBooks(filePath);
+
+        // Assert
+        assertEquals(1, loadedBooks.size());
+        assertEquals(book1, loadedBooks.get(0));
+    }
+
+    /**
+     * Testa: una riga finale scritta a metà, con abbastanza campi da sembrare un libro, viene scartata
+     * alla riapertura e il record accodato dopo non si attacca ad essa.
+     */
+    @Test
+    void testRecordAdd_dopoCodaTroncata_conservaIRecordPrecedentiEIlNuovo() throws LibraryException, IOException {
+        // Arrange
+        storageService.recordAdd(filePath, book1);
+        Files.write(JournaledStorageService.journalPathFor(filePath),
+                "1a2b3c4d,A,ISBN003,Il nome della rosa,Umberto E".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        JournaledStorageService reopened = new JournaledStorageService(new FileStorageService(), 10);
+
+        // Act
+        reopened.recordAdd(filePath, book2);
+        List<Book> loadedBooks = new JournaledStorageService(new FileStorageService(), 10).loadBooks(filePath);
+
+        // Assert
+        assertEquals(Arrays.asList(book1, book2), loadedBooks);
+        assertEquals(2, reopened.getJournalSize(filePath));
+    }
+
+    /**
+     * Testa: durante un checkpoint le modifiche finiscono nel nuovo journal; un checkpoint interrotto
+     * viene recuperato riapplicando anche il journal chiuso, uno completato lascia solo la coda.
+     */
+    @Test
+    void testCheckpoint_riapplicaSoloLaCodaDelJournal() throws LibraryException {
+        // Arrange
+        storageService.recordAdd(filePath, book1);
+        long checkpoint = storageService.beginCheckpoint(filePath);
+        storageService.recordAdd(filePath, book2);
+
+        // Act & Assert: checkpoint non ancora scritto (come dopo un crash)
+        assertTrue(Files.exists(JournaledStorageService.previousJournalPathFor(filePath)));
+        assertEquals(1, storageService.getJournalSize(filePath));
+        assertEquals(2, new JournaledStorageService(new FileStorageService(), 10).loadBooks(filePath).size());
+
+        // Act & Assert: checkpoint completato con l'istantanea catturata all'avvio
+        assertTrue(storageService.completeCheckpoint(filePath, checkpoint, Arrays.asList(book1).iterator()));
+        assertFalse(Files.exists(JournaledStorageService.previousJournalPathFor(filePath)));
+        assertEquals(Arrays.asList(book1), new FileStorageService().loadBooks(filePath), "La base contiene l'istantanea.");
+        assertEquals(2, storageService.loadBooks(filePath).size());
+        assertEquals(1, storageService.getJournalSize(filePath));
+    }
+
+    /**
+     * Testa: un checkpoint avviato prima di un salvataggio completo viene scartato, senza sovrascrivere la base.
+     */
+    @Test
+    void testCompleteCheckpoint_scartatoDopoSalvataggioCompleto() throws LibraryException {
+        // Arrange
+        storageService.recordAdd(filePath, book1);
+        long checkpoint = storageService.beginCheckpoint(filePath);
+        storageService.saveBooks(Arrays.asList(book1, book2), filePath);
+
+        // Act
+        boolean written = storageService.completeCheckpoint(filePath, checkpoint, Arrays.asList(book1).iterator());
+
+        // Assert
+        assertFalse(written);
+        assertEquals(2, storageService.loadBooks(filePath).size());
+    }
+
+    /**
+     * Testa: con il journal aperto tra un record e l'altro i record sono subito leggibili da un'altra istanza,
+     * e dopo un salvataggio completo il journal riaperto contiene solo i record successivi.
+     */
+    @Test
+    void testRecordAdd_journalApertoLeggibileERiapertoDopoIlSalvataggio() throws LibraryException {
+        // Arrange
+        JournaledStorageService senzaSync = new JournaledStorageService(new FileStorageService(), 10, false);
+        assertTrue(storageService.isSyncEachRecord());
+        assertFalse(senzaSync.isSyncEachRecord());
+
+        // Act
+        storageService.recordAdd(filePath, book1);
+        List<Book> primaDelSalvataggio = new JournaledStorageService(new FileStorageService(), 10).loadBooks(filePath);
+        storageService.saveBooks(Arrays.asList(book1), filePath);
+        storageService.recordAdd(filePath, book2);
+        storageService.close();
+
+        // Assert
+        assertEquals(Arrays.asList(book1), primaDelSalvataggio);
+        assertEquals(1, storageService.getJournalSize(filePath));
+        assertEquals(Arrays.asList(book1, book2),
+                new JournaledStorageService(new FileStorageService(), 10).loadBooks(filePath));
+    }
+}
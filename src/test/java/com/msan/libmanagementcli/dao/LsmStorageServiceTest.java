@@ -0,0 +1,202 @@
+package com.msan.libmanagementcli.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test per la classe {@link LsmStorageService}.
+ * Usa una memtable molto piccola per produrre molti segmenti e far scattare le compattazioni.
+ */
+class LsmStorageServiceTest {
+
+    // --- Setup per i Test ---
+    private LsmStorageService storageService;
+    private String filePath;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new LsmStorageService(50);
+        filePath = tempDir.resolve("libreria.lsm").toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+    }
+
+    private static Book book(int i, String title) {
+        return new Book.BookBuilder(String.format("ISBN%05d", i), title, "Autore " + (i % 10)).publicationYear(2000).build();
+    }
+
+    // --- Sezione Test ---
+
+    /**
+     * Testa: le modifiche registrate una alla volta, comprese le cancellazioni, si leggono in ordine di ISBN
+     * e restano dopo la riapertura, anche quelle ancora solo nel log.
+     */
+    @Test
+    void testRecord_cancellazioniERiaperturaConLog() throws LibraryException {
+        // Arrange
+        for (int i = 0; i < 120; i++) {
+            storageService.recordAdd(filePath, book(i, "Titolo " + i));
+        }
+
+        // Act
+        for (int i = 0; i < 120; i += 3) {
+            storageService.recordRemove(filePath, String.format("ISBN%05d", i));
+        }
+        storageService.recordUpdate(filePath, "ISBN00001", book(500, "Titolo Rinominato"));
+        storageService.close();
+        LsmStorageService riaperto = new LsmStorageService(50);
+        List<Book> loadedBooks = riaperto.loadBooks(filePath);
+
+        // Assert
+        assertEquals(80, loadedBooks.size());
+        List<Book> ordinati = new ArrayList<>(loadedBooks);
+        ordinati.sort(Comparator.comparing(Book::getIsbn));
+        assertEquals(ordinati, loadedBooks);
+        assertFalse(riaperto.findBook(filePath, "ISBN00000").isPresent(), "Il libro cancellato non deve tornare visibile.");
+        assertFalse(riaperto.findBook(filePath, "ISBN00001").isPresent());
+        assertEquals("Titolo Rinominato", riaperto.findBook(filePath, "ISBN00500").orElseThrow().getTitle());
+        assertEquals("Titolo 2", riaperto.findBook(filePath, "ISBN00002").orElseThrow().getTitle());
+        riaperto.close();
+    }
+
+    /**
+     * Testa: una riga finale del log scritta a metà non nasconde la versione già nei segmenti,
+     * e la scrittura successiva alla riapertura non si attacca ad essa.
+     */
+    @Test
+    void testRiapertura_conCodaDelLogTroncata_scartaIlRecordIncompleto() throws Exception {
+        // Arrange: i primi 50 libri finiscono in un segmento, gli altri restano nel log
+        for (int i = 0; i < 60; i++) {
+            storageService.recordAdd(filePath, book(i, "Titolo " + i));
+        }
+        storageService.close();
+        Path wal;
+        try (Stream<Path> files = Files.list(Path.of(filePath))) {
+            wal = files.filter(file -> file.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        Files.write(wal, "P,ISBN00001,Il no".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        // Act
+        LsmStorageService riaperto = new LsmStorageService(50);
+        riaperto.recordAdd(filePath, book(500, "Titolo Nuovo"));
+        riaperto.close();
+        LsmStorageService terzaApertura = new LsmStorageService(50);
+        List<Book> loadedBooks = terzaApertura.loadBooks(filePath);
+
+        // Assert
+        assertEquals(61, loadedBooks.size());
+        assertEquals("Titolo 1", terzaApertura.findBook(filePath, "ISBN00001").orElseThrow().getTitle());
+        assertEquals("Titolo 55", terzaApertura.findBook(filePath, "ISBN00055").orElseThrow().getTitle());
+        assertEquals("Titolo Nuovo", terzaApertura.findBook(filePath, "ISBN00500").orElseThrow().getTitle());
+        terzaApertura.close();
+    }
+
+    /**
+     * Testa: la compattazione in background riduce il numero di segmenti senza cambiare il contenuto.
+     */
+    @Test
+    void testCompattazione_riduceISegmenti() throws Exception {
+        // Arrange
+        for (int i = 0; i < 400; i++) {
+            storageService.recordAdd(filePath, book(i, "Titolo " + i));
+        }
+        for (int i = 0; i < 400; i += 2) {
+            storageService.recordRemove(filePath, String.format("ISBN%05d", i));
+        }
+
+        // Act
+        // 12 segmenti scritti: la compattazione li riunisce in gruppi di almeno 4 di dimensione simile.
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (storageService.getSegmentCount(filePath) >= 8 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        // Assert
+        assertTrue(storageService.getSegmentCount(filePath) < 8, "I segmenti dovrebbero essere stati compattati.");
+        assertEquals(200, storageService.count(filePath));
+        assertFalse(storageService.findBook(filePath, "ISBN00100").isPresent());
+        assertTrue(storageService.findBook(filePath, "ISBN00101").isPresent());
+    }
+
+    /**
+     * Testa: il salvataggio completo sostituisce il contenuto e la scansione per titolo segue l'ordine alfabetico.
+     */
+    @Test
+    void testSaveBooks_sostituisceContenutoEScansionePerTitolo() throws LibraryException {
+        // Arrange
+        storageService.recordAdd(filePath, book(999, "Da Rimuovere"));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            books.add(book((i * 37) % 130, "titolo " + (char) ('a' + i % 26)));
+        }
+
+        // Act
+        storageService.saveBooks(books, filePath);
+        List<Book> perTitolo = new ArrayList<>();
+        storageService.scan(filePath, OrderedStorageService.Order.TITLE, perTitolo::add);
+
+        // Assert
+        assertEquals(130, storageService.count(filePath));
+        assertFalse(storageService.findBook(filePath, "ISBN00999").isPresent());
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparing(Book::getIsbn));
+        assertEquals(expected, perTitolo);
+        storageService.saveChanges(Collections.singletonList(book(0, "AAA")), Collections.singleton("ISBN00001"), filePath);
+        assertEquals("AAA", storageService.findBook(filePath, "ISBN00000").orElseThrow().getTitle());
+        assertEquals(129, storageService.count(filePath));
+    }
+
+    /**
+     * Testa: un segmento scartato mentre una compattazione lo sta leggendo resta su disco
+     * fino al termine della lettura, poi viene eliminato.
+     */
+    @Test
+    void testSegmentoScartato_eliminatoAlTermineDellaLettura() throws Exception {
+        // Arrange
+        List<LsmSegment.Entry> voci = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            voci.add(new LsmSegment.Entry(String.format("ISBN%05d", i), book(i, "Titolo " + i).toCsvString()));
+        }
+        Path percorso = tempDir.resolve("segment-1.sst");
+        LsmSegment segmento = LsmSegment.write(percorso, voci.iterator(), voci.size(), false);
+        segmento.retain();
+
+        // Act
+        int lette = 0;
+        try (LsmSegment.EntryIterator iteratore = segmento.iterator()) {
+            segmento.discard(); // Il contenuto viene sostituito durante la lettura.
+            assertTrue(java.nio.file.Files.exists(percorso));
+            while (iteratore.hasNext()) {
+                iteratore.next();
+                lette++;
+            }
+        }
+        segmento.release();
+
+        // Assert
+        assertEquals(100, lette);
+        assertFalse(java.nio.file.Files.exists(percorso));
+    }
+}
@@ -0,0 +1,169 @@
+package com.msan.libmanagementcli.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test per la classe {@link ShardedStorageService}.
+ * Verifica la distribuzione tra gli shard, la riscrittura dei soli shard modificati e la ripartizione.
+ */
+class ShardedStorageServiceTest {
+
+    // --- Setup per i Test ---
+    private ShardedStorageService storageService;
+    private String filePath;
+    private List<Book> books;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new ShardedStorageService(new FileStorageService(), 4);
+        filePath = tempDir.resolve("libreria.shards").toString();
+        books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            books.add(new Book.BookBuilder("ISBN" + i, "Titolo " + i, "Autore " + (i % 7)).publicationYear(2000).build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+    }
+
+    private List<Path> shardFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(filePath))) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".csv")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // --- Sezione Test ---
+
+    /**
+     * Testa: i libri salvati vengono distribuiti su tutti gli shard e ricaricati tutti.
+     */
+    @Test
+    void testSaveAndLoad_distribuisceSuTuttiGliShard() throws LibraryException, IOException {
+        // Act
+        storageService.saveBooks(books, filePath);
+        List<Book> loadedBooks = storageService.loadBooks(filePath);
+
+        // Assert
+        assertEquals(4, storageService.readShardCount(filePath));
+        assertEquals(4, shardFiles().size());
+        assertEquals(new HashSet<>(books), new HashSet<>(loadedBooks));
+        assertEquals(books.size(), loadedBooks.size());
+    }
+
+    /**
+     * Testa: il salvataggio delle modifiche riscrive solo lo shard del libro modificato.
+     */
+    @Test
+    void testSaveChanges_riscriveSoloLoShardInteressato() throws LibraryException, IOException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+        FileTime old = FileTime.fromMillis(0);
+        for (Path shard : shardFiles()) {
+            Files.setLastModifiedTime(shard, old);
+        }
+        Book aggiornato = new Book.BookBuilder("ISBN7", "Titolo Nuovo", "Autore").build();
+
+        // Act
+        storageService.saveChanges(Collections.singletonList(aggiornato), Collections.singleton("ISBN8"), filePath);
+
+        // Assert
+        int expectedShards = new HashSet<>(List.of(ShardedStorageService.shardOf("ISBN7", 4),
+                ShardedStorageService.shardOf("ISBN8", 4))).size();
+        long rewritten = 0;
+        for (Path shard : shardFiles()) {
+            if (!Files.getLastModifiedTime(shard).equals(old)) {
+                rewritten++;
+            }
+        }
+        assertEquals(expectedShards, rewritten);
+        List<Book> loadedBooks = storageService.loadBooks(filePath);
+        assertEquals(199, loadedBooks.size());
+        assertTrue(loadedBooks.contains(aggiornato));
+        assertTrue(loadedBooks.stream().noneMatch(b -> b.getIsbn().equals("ISBN8")));
+    }
+
+    /**
+     * Testa: la ripartizione cambia il numero di shard, elimina i vecchi file e conserva tutti i libri.
+     */
+    @Test
+    void testReshard_cambiaNumeroDiShard() throws LibraryException, IOException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+
+        // Act
+        int riscritti = storageService.reshard(filePath, 3);
+
+        // Assert
+        assertEquals(200, riscritti);
+        assertEquals(3, storageService.readShardCount(filePath));
+        assertEquals(3, shardFiles().size());
+        List<Book> loadedBooks = new ArrayList<>(storageService.loadBooks(filePath));
+        loadedBooks.sort(Comparator.comparing(Book::getIsbn));
+        List<Book> expected = new ArrayList<>(books);
+        expected.sort(Comparator.comparing(Book::getIsbn));
+        assertEquals(expected, loadedBooks);
+    }
+
+    /**
+     * Testa: se la scrittura di uno shard fallisce, sia nel salvataggio completo sia in quello delle modifiche,
+     * l'archivio resta quello precedente per intero e i file scritti a metà vengono eliminati.
+     */
+    @Test
+    void testSalvataggioInterrotto_archivioPrecedenteIntatto() throws LibraryException, IOException {
+        // Arrange
+        storageService.saveBooks(books, filePath);
+        List<Path> shardPrecedenti = shardFiles();
+        FileStorageService guasto = new FileStorageService() {
+            @Override
+            public void saveBooks(java.util.Iterator<? extends Book> daSalvare, String percorso) throws LibraryException {
+                if (percorso.contains("shard-001-")) {
+                    throw new LibraryException("Disco pieno (simulato): " + percorso);
+                }
+                super.saveBooks(daSalvare, percorso);
+            }
+        };
+        List<Book> nuovi = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            nuovi.add(new Book.BookBuilder("NUOVO" + i, "Nuovo " + i, "Autore").build());
+        }
+        List<Book> nelloShardGuasto = books.stream()
+                .filter(b -> ShardedStorageService.shardOf(b.getIsbn(), 4) == 1)
+                .map(b -> new Book.BookBuilder(b.getIsbn(), "Modificato", "Autore").build())
+                .collect(Collectors.toList());
+
+        // Act
+        try (ShardedStorageService conGuasto = new ShardedStorageService(guasto, 4)) {
+            assertThrows(LibraryException.class, () -> conGuasto.saveBooks(nuovi, filePath));
+            assertThrows(LibraryException.class, () -> conGuasto.saveChanges(nelloShardGuasto,
+                    Collections.singleton(books.get(0).getIsbn()), filePath));
+        }
+
+        // Assert
+        assertEquals(shardPrecedenti, shardFiles());
+        assertEquals(new HashSet<>(books), new HashSet<>(storageService.loadBooks(filePath)));
+    }
+}
@@ -43,6 +43,21 @@ class BookFactoryTest {
         assertNull(book.getGenre());
     }
     
+    /**
+     * Testa che libri con lo stesso autore e genere condividano le stesse istanze di stringa.
+     */
+    @Test
+    void testCreateBook_autoreEGenereCanonici() throws InvalidBookDataException {
+        // Arrange & Act
+        Book first = BookFactory.createBook("ISBN-A", "Primo", new String("Italo Calvino"), 1957, new String("Narrativa"));
+        Book second = BookFactory.createBook("ISBN-B", "Secondo", new String(" Italo Calvino "), 1963, new String("Narrativa"));
+
+        // Assert
+        assertSame(first.getAuthor(), second.getAuthor());
+        assertSame(first.getGenre(), second.getGenre());
+        assertEquals("Italo Calvino", second.getAuthor());
+    }
+
     /**
      * Testa che la creazione di un Book fallisca se l'ISBN è nullo.
      */
@@ -3,9 +3,14 @@ package com.msan.libmanagementcli.model;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 /**
  * Test per la classe {@link BookCollection}.
@@ -163,4 +168,196 @@ class BookCollectionTest {
         
         assertThrows(UnsupportedOperationException.class, () -> iterator.remove());
     }
-}
\ No newline at end of file
+
+    // --- Sezione Test per l'Albero delle Collezioni ---
+
+    /**
+     * Testa che i conteggi del sottoalbero si aggiornino lungo gli antenati ad aggiunte e rimozioni.
+     */
+    @Test
+    void testGetBookCount_aggiornatoLungoGliAntenati() {
+        // Arrange
+        BookCollection scaffale = new BookCollection("Scaffale");
+        BookCollection ripiano = new BookCollection("Ripiano");
+        mainCollection.addItem(scaffale);
+        scaffale.addItem(ripiano);
+
+        // Act
+        ripiano.addItem(book1);
+        ripiano.addItem(book2);
+        scaffale.addItem(book1);
+
+        // Assert
+        assertEquals(2, ripiano.getBookCount());
+        assertEquals(3, scaffale.getBookCount());
+        assertEquals(3, mainCollection.getBookCount());
+        assertSame(mainCollection, scaffale.getParent());
+
+        scaffale.removeItem(ripiano);
+        assertEquals(1, mainCollection.getBookCount());
+        assertNull(ripiano.getParent());
+        assertEquals(2, ripiano.getBookCount());
+    }
+
+    /**
+     * Testa che non si possano creare cicli né collezioni con due genitori.
+     */
+    @Test
+    void testAddItem_cicloOSecondoGenitore_lanciaEccezione() {
+        BookCollection figlia = new BookCollection("Figlia");
+        mainCollection.addItem(figlia);
+        assertThrows(IllegalArgumentException.class, () -> figlia.addItem(mainCollection));
+        assertThrows(IllegalArgumentException.class, () -> mainCollection.addItem(mainCollection));
+        assertThrows(IllegalArgumentException.class, () -> new BookCollection("Altra").addItem(figlia));
+    }
+
+    /**
+     * Testa iteratore profondo e spliterator su un albero molto profondo, che una visita ricorsiva non reggerebbe.
+     */
+    @Test
+    void testVisitaProfonda_alberoMoltoProfondo() {
+        // Arrange
+        BookCollection livello = mainCollection;
+        List<String> attesi = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            Book libro = new Book.BookBuilder("ISBN" + i, "Libro " + i, "Autore").build();
+            livello.addItem(libro);
+            attesi.add(libro.getIsbn());
+            BookCollection sotto = new BookCollection("Livello " + i);
+            livello.addItem(sotto);
+            livello = sotto;
+        }
+
+        // Act
+        Iterator<LibraryItem> iterator = mainCollection.createDeepIterator();
+        int elementi = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            elementi++;
+        }
+        Spliterator<Book> spliterator = mainCollection.bookSpliterator();
+
+        // Assert
+        assertEquals(40_000, elementi);
+        assertEquals(20_000, mainCollection.getBookCount());
+        assertEquals(20_000, spliterator.getExactSizeIfKnown());
+        assertEquals(attesi, mainCollection.books().map(Book::getIsbn).collect(Collectors.toList()));
+    }
+
+    /**
+     * Testa la visualizzazione senza ricorsione: ogni elemento è indentato secondo il proprio livello.
+     */
+    @Test
+    void testDisplay_indentazionePerLivello() {
+        // Arrange
+        BookCollection figlia = new BookCollection("Figlia");
+        figlia.addItem(book2);
+        mainCollection.addItem(figlia);
+        mainCollection.addItem(book1);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream originale = System.out;
+
+        // Act
+        System.setOut(new PrintStream(output, true));
+        try {
+            mainCollection.display("> ");
+        } finally {
+            System.setOut(originale);
+        }
+
+        // Assert
+        String[] righe = output.toString().split("\\R");
+        assertEquals(4, righe.length);
+        assertEquals("> Collezione: Collezione Principale (2 elementi)", righe[0]);
+        assertEquals(">   Collezione: Figlia (1 elementi)", righe[1]);
+        assertTrue(righe[2].startsWith(">     Libro: \"Libro Due\""), righe[2]);
+        assertTrue(righe[3].startsWith(">   Libro: \"Libro Uno\""), righe[3]);
+    }
+
+    /**
+     * Testa la divisione dello spliterator su un albero largo: le parti coprono tutti i libri e le dimensioni sono esatte.
+     */
+    @Test
+    void testBookSpliterator_divisioneConDimensioniEsatte() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            BookCollection ripiano = new BookCollection("Ripiano " + i);
+            for (int j = 0; j < 25; j++) {
+                ripiano.addItem(new Book.BookBuilder("ISBN" + i + "-" + j, "Libro", "Autore").build());
+            }
+            mainCollection.addItem(ripiano);
+        }
+        Spliterator<Book> secondaMeta = mainCollection.bookSpliterator();
+
+        // Act
+        Spliterator<Book> primaMeta = secondaMeta.trySplit();
+        Spliterator<Book> primoQuarto = primaMeta.trySplit();
+
+        // Assert
+        assertEquals(50, secondaMeta.estimateSize());
+        assertEquals(25, primaMeta.estimateSize());
+        assertEquals(25, primoQuarto.estimateSize());
+        assertEquals(100, mainCollection.books().parallel().count());
+        List<Book> inOrdine = mainCollection.books().collect(Collectors.toList());
+        assertEquals(inOrdine, mainCollection.books().parallel().collect(Collectors.toList()));
+    }
+
+    // --- Sezione Test per l'Indice Inverso ---
+
+    /**
+     * Testa che l'indice inverso segua aggiunte e rimozioni in tutto l'albero, anche di interi sotto-alberi.
+     */
+    @Test
+    void testIndiceInverso_aggiornatoDaAggiunteERimozioni() {
+        // Arrange
+        CollectionMembershipIndex indice = new CollectionMembershipIndex();
+        BookCollection ripiano = new BookCollection("Ripiano");
+        ripiano.addItem(book1);
+        mainCollection.addItem(book1);
+        mainCollection.attachMembershipIndex(indice);
+
+        // Act
+        mainCollection.addItem(ripiano);
+        ripiano.addItem(book2);
+        ripiano.addItem(book2);
+
+        // Assert
+        assertEquals(List.of(mainCollection, ripiano), indice.getCollections(book1.getIsbn()));
+        assertEquals(List.of(ripiano), indice.getCollections(book2.getIsbn()));
+
+        ripiano.removeItem(book2);
+        assertTrue(indice.isInAnyCollection(book2.getIsbn()), "Resta la seconda occorrenza.");
+        mainCollection.removeItem(ripiano);
+        assertFalse(indice.isInAnyCollection(book2.getIsbn()));
+        assertEquals(List.of(mainCollection), indice.getCollections(book1.getIsbn()));
+        BookCollection figlia = new BookCollection("Figlia");
+        mainCollection.addItem(figlia);
+        assertThrows(IllegalStateException.class, () -> figlia.attachMembershipIndex(indice));
+    }
+
+    /**
+     * Testa sostituzione e rimozione di un libro per ISBN, con indice e conteggi aggiornati.
+     */
+    @Test
+    void testReplaceBookERemoveBook() {
+        // Arrange
+        CollectionMembershipIndex indice = new CollectionMembershipIndex();
+        mainCollection.attachMembershipIndex(indice);
+        mainCollection.addItem(book1);
+        mainCollection.addItem(book2);
+        Book nuovaVersione = new Book.BookBuilder("ISBN009", "Libro Uno (2a ed.)", "Autore Alpha").build();
+
+        // Act
+        int sostituiti = mainCollection.replaceBook(book1, nuovaVersione);
+        int rimossi = mainCollection.removeBook(book2.getIsbn());
+
+        // Assert
+        assertEquals(1, sostituiti);
+        assertEquals(1, rimossi);
+        assertEquals(List.of(nuovaVersione), mainCollection.getItems());
+        assertEquals(1, mainCollection.getBookCount());
+        assertFalse(indice.isInAnyCollection(book1.getIsbn()));
+        assertEquals(List.of(mainCollection), indice.getCollections("ISBN009"));
+        assertEquals(1, indice.size());
+    }
+}
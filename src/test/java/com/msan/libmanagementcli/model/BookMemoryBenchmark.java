@@ -0,0 +1,83 @@
+package com.msan.libmanagementcli.model;
+
+import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark (non eseguito dai test) della memoria occupata dai libri caricati da CSV,
+ * con e senza il dizionario di autori e generi usato da {@link Book#fromCsvString(String)}.
+ * <p>
+ * Il catalogo sintetico ha 5.000 autori e 12 generi, distribuiti in modo non uniforme come in un
+ * catalogo reale. La variante "senza dizionario" ricrea il comportamento precedente: stringhe nuove
+ * per ogni riga. La memoria è misurata come heap occupato dopo la garbage collection.
+ * <p>
+ * Avvio (dopo {@code mvn test-compile}, meglio con un heap fisso, es. {@code -Xms2g -Xmx2g}):
+ * {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.model.BookMemoryBenchmark}
+ */
+public class BookMemoryBenchmark {
+
+    private static final int[] CATALOG_SIZES = {100_000, 500_000};
+    private static final String[] GENRES = {"Narrativa", "Narrativa", "Narrativa", "Giallo", "Saggistica", "Fantasy",
+            "Fantascienza", "Storia", "Poesia", "Ragazzi", "Biografia", "Classici", "Scienza", "Viaggi"};
+
+    public static void main(String[] args) throws InvalidBookDataException {
+        ConsoleLogger.getInstance().setLogLevel(ConsoleLogger.LogLevel.NONE);
+        System.out.printf("%-10s %-18s %14s %12s%n", "Libri", "Variante", "MB", "byte/libro");
+        for (int size : CATALOG_SIZES) {
+            long plain = measure(size, false);
+            long pooled = measure(size, true);
+            System.out.printf("%-10d %-18s %14.1f %12d%n", size, "senza dizionario", plain / 1e6, plain / size);
+            System.out.printf("%-10d %-18s %14.1f %12d%n", size, "con dizionario", pooled / 1e6, pooled / size);
+            System.out.printf("%-10d %-18s %13.1f%%%n", size, "risparmio", 100.0 * (plain - pooled) / plain);
+        }
+    }
+
+    /**
+     * Carica il catalogo sintetico e restituisce l'heap trattenuto dalla lista dei libri.
+     */
+    private static long measure(int size, boolean pooled) throws InvalidBookDataException {
+        long before = usedHeap();
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String line = csvLine(i);
+            books.add(pooled ? Book.fromCsvString(line) : withoutPool(line));
+        }
+        long after = usedHeap();
+        if (books.size() != size) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    /**
+     * Riproduce il caricamento senza dizionario: ogni campo è una stringa nuova ricavata dalla riga.
+     */
+    private static Book withoutPool(String line) {
+        String[] parts = line.split(",", 5);
+        return new Book.BookBuilder(parts[0], parts[1], parts[2])
+                .publicationYear(Integer.parseInt(parts[3])).genre(parts[4]).build();
+    }
+
+    private static String csvLine(int i) {
+        // Pochi autori molto prolifici e una lunga coda, come nei cataloghi reali.
+        int author = (int) ((long) i * i % 5000);
+        return String.format("978%010d,Titolo del libro numero %d,Autore Cognome %d,%d,%s",
+                i, i, author, 1900 + i % 125, GENRES[i % GENRES.length]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -68,6 +68,17 @@ class BookTest {
         Book libroConIsbnDiverso = new Book.BookBuilder("ALTRO-ISBN", "Titolo", "Autore").build();
         assertFalse(bookCompleto.equals(libroConIsbnDiverso));
     }
+
+    /**
+     * Testa la forma di ricerca del titolo: in minuscolo, calcolata una volta e vuota per un titolo null.
+     */
+    @Test
+    void testGetSearchTitle() {
+        Book libro = new Book.BookBuilder("ISBN1", "Il Nome della ROSA", "Umberto Eco").build();
+        assertEquals("il nome della rosa", libro.getSearchTitle());
+        assertSame(libro.getSearchTitle(), libro.getSearchTitle(), "La forma di ricerca viene calcolata una sola volta.");
+        assertEquals("", new Book.BookBuilder("ISBN2", null, "Autore").build().getSearchTitle());
+    }
     
     // --- Test per la Conversione CSV ---
 
@@ -0,0 +1,137 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.dao.StorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test per la classe {@link BulkImportPipeline}.
+ * Verifica il conteggio di righe importate, scartate e duplicate con più worker.
+ */
+class BulkImportPipelineTest {
+
+    // --- Setup ---
+    private LibraryService service;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        LibraryService.resetInstanceForTesting();
+        service = LibraryService.getInstance(mock(StorageService.class));
+    }
+
+    /**
+     * Testa l'importazione di un file con righe valide, non valide, duplicate e di commento.
+     */
+    @Test
+    void testImportFile_conRigheMiste() throws LibraryException, IOException {
+        // Arrange
+        service.addItem(new Book.BookBuilder("ISBN-0", "Già presente", "Autore").build());
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add("ISBN-" + i + ",Titolo " + i + ",Autore " + (i % 7) + ",2000,Genere");
+        }
+        lines.add("ISBN-5,Duplicato nel file,Autore");
+        lines.add("riga senza campi sufficienti");
+        lines.add(",Titolo senza ISBN,Autore");
+        lines.add("");
+        lines.add("#checksum,1000,0");
+        Path file = tempDir.resolve("import.csv");
+        Files.write(file, lines, Charset.defaultCharset());
+        BulkImportPipeline pipeline = new BulkImportPipeline(service, 3, 64, 2);
+
+        // Act
+        ImportReport report = pipeline.importFile(file.toString());
+
+        // Assert
+        assertEquals(1003, report.getRowsRead());
+        assertEquals(999, report.getImportedBooks());
+        assertEquals(2, report.getRejectedRows());
+        assertEquals(2, report.getDuplicateBooks());
+        assertEquals(1000, service.getSortedBooks().size());
+        assertEquals("Già presente", service.findBookByIsbn("ISBN-0").get().getTitle());
+        assertTrue(service.findBookByIsbn("ISBN-999").isPresent());
+        assertTrue(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa l'importazione di una libreria salvata compressa in GZIP, letta come fa il caricamento.
+     */
+    @Test
+    void testImportFile_conFileCompresso() throws LibraryException {
+        // Arrange
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            books.add(new Book.BookBuilder("ISBN-" + i, "Titolo " + i, "Autore").publicationYear(2000).build());
+        }
+        String file = tempDir.resolve("libreria.csv.gz").toString();
+        new FileStorageService().saveBooks(books.iterator(), file);
+        BulkImportPipeline pipeline = new BulkImportPipeline(service, 2, 32, 2);
+
+        // Act
+        ImportReport report = pipeline.importFile(file);
+
+        // Assert
+        assertEquals(200, report.getImportedBooks());
+        assertEquals(0, report.getRejectedRows());
+        assertEquals("Titolo 199", service.findBookByIsbn("ISBN-199").get().getTitle());
+    }
+
+    /**
+     * Testa che un file inesistente produca una LibraryException senza modificare la libreria.
+     */
+    @Test
+    void testImportFile_conFileInesistente() throws LibraryException {
+        // Arrange
+        BulkImportPipeline pipeline = new BulkImportPipeline(service, 2, 10, 1);
+        String missingFile = tempDir.resolve("inesistente.csv").toString();
+
+        // Act & Assert
+        assertThrows(LibraryException.class, () -> pipeline.importFile(missingFile));
+        assertTrue(service.getSortedBooks().isEmpty());
+    }
+
+    /**
+     * Testa che un errore imprevisto nella conversione di una riga termini l'importazione con una
+     * LibraryException invece di lasciare l'inseritore in attesa del worker.
+     */
+    @Test
+    @Timeout(10)
+    void testImportFile_conErroreImprevistoNellaConversione() throws IOException {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add("ISBN-" + i + ",Titolo " + i + ",Autore");
+        }
+        Path file = tempDir.resolve("import.csv");
+        Files.write(file, lines, Charset.defaultCharset());
+        BulkImportPipeline pipeline = new BulkImportPipeline(service, 1, 10, 1, line -> {
+            if (line.startsWith("ISBN-50,")) {
+                throw new IllegalStateException("Conversione fallita");
+            }
+            return Book.fromCsvString(line);
+        });
+
+        // Act & Assert
+        LibraryException error = assertThrows(LibraryException.class, () -> pipeline.importFile(file.toString()));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+    }
+}
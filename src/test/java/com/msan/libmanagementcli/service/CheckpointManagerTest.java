@@ -0,0 +1,108 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.dao.JournaledStorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test per la classe {@link CheckpointManager}.
+ * Usa un vero {@link JournaledStorageService} su una directory temporanea.
+ */
+class CheckpointManagerTest {
+
+    // --- Setup ---
+    private JournaledStorageService storage;
+    private LibraryService service;
+    private CheckpointManager checkpointManager;
+    private String filePath;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws LibraryException {
+        LibraryService.resetInstanceForTesting();
+        storage = new JournaledStorageService(new FileStorageService(), 1000);
+        service = LibraryService.getInstance(storage);
+        filePath = tempDir.resolve("libreria.csv").toString();
+        service.loadLibrary(filePath);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (checkpointManager != null) {
+            checkpointManager.close();
+        }
+    }
+
+    /**
+     * Testa che al raggiungimento della soglia venga scritto un checkpoint in background,
+     * così il journal da riapplicare resta corto e il ripristino trova tutti i libri.
+     */
+    @Test
+    void testSogliaJournal_scriveCheckpointELimitaIlJournal() throws Exception {
+        checkpointManager = new CheckpointManager(service, 10, 60_000);
+        checkpointManager.start();
+
+        for (int i = 0; i < 25; i++) {
+            service.addItem(new Book.BookBuilder("ISBN0" + i, "Titolo " + i, "Autore").build());
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (checkpointManager.getCompletedCheckpoints() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        checkpointManager.close();
+
+        assertTrue(checkpointManager.getCompletedCheckpoints() > 0, "Dovrebbe essere stato scritto almeno un checkpoint.");
+        assertTrue(storage.getJournalSize(filePath) < 25, "Il journal non dovrebbe contenere tutte le modifiche.");
+        assertTrue(new FileStorageService().loadBooks(filePath).size() >= 10, "La base dovrebbe contenere il checkpoint.");
+        assertEquals(25, new JournaledStorageService(new FileStorageService(), 1000).loadBooks(filePath).size());
+        assertFalse(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa che senza modifiche nel journal non venga scritto alcun checkpoint.
+     */
+    @Test
+    void testCheckpointNow_senzaModificheNonScrive() {
+        checkpointManager = new CheckpointManager(service, 10, 60_000);
+
+        assertTrue(checkpointManager.checkpointNow());
+
+        assertEquals(0, checkpointManager.getCompletedCheckpoints());
+    }
+
+    /**
+     * Testa che le modifiche fatte tra l'avvio e la scrittura del checkpoint non entrino nella base,
+     * ma restino nel journal.
+     */
+    @Test
+    void testCheckpoint_istantaneaNonAlterataDaModificheSuccessive() throws Exception {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            service.addItem(new Book.BookBuilder("ISBN0" + i, "Titolo " + i, "Autore").build());
+        }
+        LibraryService.SaveSnapshot snapshot = service.beginCheckpoint(1).orElseThrow(AssertionError::new);
+        service.addItem(new Book.BookBuilder("ISBN9", "Dopo", "Autore").build());
+        service.removeItemByIsbn("ISBN00");
+
+        // Act
+        assertTrue(service.writeCheckpoint(snapshot));
+
+        // Assert
+        assertEquals(5, snapshot.size());
+        assertEquals(5, new FileStorageService().loadBooks(filePath).size());
+        assertEquals(5, new JournaledStorageService(new FileStorageService(), 1000).loadBooks(filePath).size());
+        assertEquals(2, storage.getJournalSize(filePath));
+    }
+}
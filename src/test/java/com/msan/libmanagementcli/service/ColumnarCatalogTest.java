@@ -0,0 +1,82 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test per la classe {@link ColumnarCatalog}.
+ */
+class ColumnarCatalogTest {
+
+    /**
+     * Testa: aggiunte, modifiche, cambi di ISBN e rimozioni aggiornano la copia senza ricostruirla;
+     * le righe restano nell'ordine della libreria e i libri vengono ricostruiti dalle colonne.
+     */
+    @Test
+    void testModifiche_righeAggiornateNellOrdineDellaLibreria() {
+        // Arrange
+        Book primo = new Book.BookBuilder("ISBN1", "Il Nome della Rosa", "Umberto Eco").publicationYear(1980).genre("Giallo").build();
+        Book secondo = new Book.BookBuilder("ISBN2", "La rosa purpurea", "Altro Autore").publicationYear(2001).build();
+        Book terzo = new Book.BookBuilder("ISBN3", "Il pendolo di Foucault", "Umberto Eco").publicationYear(1988).genre("Narrativa").build();
+        ColumnarCatalog catalog = ColumnarCatalog.build(Arrays.asList(primo, secondo, terzo));
+
+        // Act
+        catalog.put(new Book.BookBuilder("ISBN1", "Senza fiori", "Umberto Eco").publicationYear(1980).genre("Narrativa").build());
+        catalog.replace("ISBN2", new Book.BookBuilder("ISBN9", "Rosa dei venti", "Nuovo Autore").publicationYear(1985).build());
+        catalog.remove("ISBN3");
+        catalog.put(new Book.BookBuilder("ISBN4", "Una rosa", "Umberto Eco").publicationYear(1990).genre("Poesia").build());
+
+        // Assert
+        assertEquals(3, catalog.size());
+        assertEquals(Arrays.asList("ISBN9", "ISBN4"), isbns(catalog.findByTitle("ROSA")));
+        assertEquals(Arrays.asList("ISBN1", "ISBN4"), isbns(catalog.findByAuthor("eco")));
+        assertEquals(Arrays.asList("ISBN1", "ISBN9", "ISBN4"), isbns(catalog.findByYearRange(1980, 1990)));
+        Book ricostruito = catalog.findByAuthor("nuovo").get(0);
+        assertEquals("Rosa dei venti", ricostruito.getTitle());
+        assertEquals(1985, ricostruito.getPublicationYear());
+        assertNull(ricostruito.getGenre());
+        assertNull(catalog.countByGenre().get("Giallo"), "I generi senza più libri non vengono contati.");
+        assertEquals(Integer.valueOf(1), catalog.countByGenre().get("Narrativa"));
+    }
+
+    /**
+     * Testa: dopo molte rimozioni e riscritture la copia viene compattata e resta coerente.
+     */
+    @Test
+    void testModifiche_compattazioneDopoMolteRimozioni() {
+        // Arrange
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            books.add(new Book.BookBuilder("ISBN" + i, "Titolo " + i, "Autore " + (i % 10)).publicationYear(1900 + i % 100).build());
+        }
+        ColumnarCatalog catalog = ColumnarCatalog.build(books);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            if (i % 4 != 0) {
+                catalog.remove("ISBN" + i);
+            } else {
+                catalog.put(new Book.BookBuilder("ISBN" + i, "Nuovo titolo " + i, "Autore " + (i % 10)).build());
+            }
+        }
+
+        // Assert
+        assertEquals(250, catalog.size());
+        assertEquals(250, catalog.findByTitle("nuovo titolo").size());
+        assertEquals(Arrays.asList("ISBN0", "ISBN4", "ISBN8"), isbns(catalog.findByTitle("nuovo titolo")).subList(0, 3));
+        assertEquals(Arrays.asList("ISBN996"), isbns(catalog.findByTitle("titolo 996")));
+        assertEquals(100, catalog.findByAuthor("autore 0").size() + catalog.findByAuthor("autore 4").size());
+        assertTrue(catalog.findByYearRange(1901, 2000).isEmpty());
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).collect(Collectors.toList());
+    }
+}
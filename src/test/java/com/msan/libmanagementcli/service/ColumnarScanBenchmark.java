@@ -0,0 +1,101 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.LibraryItem;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmark (non eseguito dai test) delle scansioni sull'intero catalogo: filtri con stream
+ * su una lista di {@link Book}, come in precedenza, contro la copia per colonne {@link ColumnarCatalog}.
+ * <p>
+ * Avvio (dopo {@code mvn test-compile}, con un heap adeguato, es. {@code -Xmx2g}):
+ * {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.service.ColumnarScanBenchmark}
+ */
+public class ColumnarScanBenchmark {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+    private static final String[] GENRES = {"Narrativa", "Giallo", "Saggistica", "Fantasy", "Storia", "Poesia", "Ragazzi"};
+
+    public static void main(String[] args) {
+        ConsoleLogger.getInstance().setLogLevel(ConsoleLogger.LogLevel.NONE);
+        List<LibraryItem> items = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            items.add(new Book.BookBuilder(String.format("978%010d", i), "Titolo del libro numero " + i,
+                    "Autore " + (i % 20_000)).publicationYear(1900 + i % 125).genre(GENRES[i % GENRES.length]).build());
+        }
+        long start = System.nanoTime();
+        ColumnarCatalog columnar = ColumnarCatalog.build(items);
+        System.out.printf("Costruzione della copia per colonne: %.1f ms per %d libri%n%n",
+                (System.nanoTime() - start) / 1e6, columnar.size());
+
+        System.out.printf("%-22s %12s %12s %10s%n", "Scansione", "lista ms", "colonne ms", "speedup");
+        compare("titolo contiene", () -> listTitle(items, "numero 4242").size(), () -> columnar.findByTitle("numero 4242").size());
+        compare("autore contiene", () -> listAuthor(items, "autore 1999").size(), () -> columnar.findByAuthor("autore 1999").size());
+        compare("anni 1950-1960", () -> listYears(items, 1950, 1960).size(), () -> columnar.findByYearRange(1950, 1960).size());
+        compare("conteggio per genere", () -> listGenres(items).size(), () -> columnar.countByGenre().size());
+    }
+
+    private static void compare(String label, Scan list, Scan columns) {
+        double listMillis = measure(list);
+        double columnMillis = measure(columns);
+        System.out.printf("%-22s %12.2f %12.2f %9.1fx%n", label, listMillis, columnMillis, listMillis / columnMillis);
+    }
+
+    private static double measure(Scan scan) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += scan.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            sink += scan.run();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / MEASURED_ROUNDS;
+        if (sink < 0) {
+            System.out.println(sink);
+        }
+        return millis;
+    }
+
+    // --- Scansioni sulla lista, come prima della copia per colonne ---
+
+    private static List<Book> listTitle(List<LibraryItem> items, String query) {
+        String lower = query.toLowerCase();
+        return items.stream().filter(Book.class::isInstance).map(Book.class::cast)
+                .filter(b -> b.getTitle() != null && b.getTitle().toLowerCase().contains(lower)).collect(Collectors.toList());
+    }
+
+    private static List<Book> listAuthor(List<LibraryItem> items, String query) {
+        String lower = query.toLowerCase();
+        return items.stream().filter(Book.class::isInstance).map(Book.class::cast)
+                .filter(b -> b.getAuthor() != null && b.getAuthor().toLowerCase().contains(lower)).collect(Collectors.toList());
+    }
+
+    private static List<Book> listYears(List<LibraryItem> items, int from, int to) {
+        return items.stream().filter(Book.class::isInstance).map(Book.class::cast)
+                .filter(b -> b.getPublicationYear() >= from && b.getPublicationYear() <= to).collect(Collectors.toList());
+    }
+
+    private static Map<String, Integer> listGenres(List<LibraryItem> items) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (LibraryItem item : items) {
+            if (item instanceof Book && ((Book) item).getGenre() != null) {
+                counts.merge(((Book) item).getGenre(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @FunctionalInterface
+    private interface Scan {
+        int run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test per la classe {@link IsbnIndex}.
+ */
+class IsbnIndexTest {
+
+    /**
+     * Testa: la chiave numerica distingue ISBN-10, ISBN-13 e X finale, e rifiuta gli identificativi non numerici.
+     */
+    @Test
+    void testPackIsbn_chiaviDistinteEIdentificativiNonNumerici() {
+        // Act & Assert
+        assertNotEquals(IsbnIndex.packIsbn("0123456789"), IsbnIndex.packIsbn("0000123456789"));
+        assertNotEquals(IsbnIndex.packIsbn("1234567890"), IsbnIndex.packIsbn("123456789X"));
+        assertEquals(IsbnIndex.packIsbn("9788804668237"), IsbnIndex.packIsbn(new String("9788804668237")));
+        assertEquals(IsbnIndex.NOT_PACKABLE, IsbnIndex.packIsbn("978-88-04-66823-7"));
+        assertEquals(IsbnIndex.NOT_PACKABLE, IsbnIndex.packIsbn("12345X7890"));
+        assertEquals(IsbnIndex.NOT_PACKABLE, IsbnIndex.packIsbn("ISBN1"));
+    }
+
+    /**
+     * Testa: con inserimenti e rimozioni casuali di ISBN numerici e non, l'indice si comporta come una HashMap.
+     */
+    @Test
+    void testOperazioniCasuali_comeHashMap() {
+        // Arrange
+        IsbnIndex index = new IsbnIndex();
+        Map<String, Book> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            int n = random.nextInt(3000);
+            String isbn = n % 5 == 0 ? "ISBN-" + n : String.valueOf(9_780_000_000_000L + n);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(isbn) != null, index.remove(isbn));
+            } else {
+                Book book = new Book.BookBuilder(isbn, "Titolo " + i, "Autore").build();
+                expected.put(isbn, book);
+                index.put(isbn, book);
+            }
+        }
+
+        // Assert
+        assertEquals(expected.size(), index.size());
+        for (int n = 0; n < 3000; n++) {
+            String isbn = n % 5 == 0 ? "ISBN-" + n : String.valueOf(9_780_000_000_000L + n);
+            assertSame(expected.get(isbn), index.get(isbn));
+            assertEquals(expected.containsKey(isbn), index.containsKey(isbn));
+        }
+        Map<String, Book> visited = new HashMap<>();
+        index.forEach(book -> visited.put(book.getIsbn(), book));
+        assertEquals(expected, visited);
+        assertFalse(index.putIfAbsent(expected.keySet().iterator().next(), null));
+    }
+}
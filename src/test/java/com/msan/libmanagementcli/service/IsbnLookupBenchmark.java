@@ -0,0 +1,58 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark (non eseguito dai test) delle ricerche per ISBN con una {@code HashMap<String, Book>}
+ * e con {@link IsbnIndex}, su ISBN letti come nuove stringhe (come dopo il parsing dell'input).
+ * <p>
+ * Esecuzione: {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.service.IsbnLookupBenchmark [libri]}
+ */
+public class IsbnLookupBenchmark {
+
+    private static final int DEFAULT_BOOKS = 1_000_000;
+    private static final int LOOKUPS = 5_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        Map<String, Book> map = new HashMap<>();
+        IsbnIndex index = new IsbnIndex(books);
+        for (int i = 0; i < books; i++) {
+            Book book = new Book.BookBuilder(isbn(i), "Titolo " + i, "Autore").build();
+            map.put(book.getIsbn(), book);
+            index.put(book.getIsbn(), book);
+        }
+        // Metà delle chiavi cercate non esiste, come nei controlli di unicità.
+        String[] queries = new String[LOOKUPS];
+        Random random = new Random(7);
+        for (int i = 0; i < LOOKUPS; i++) {
+            queries[i] = isbn(random.nextInt(books * 2));
+        }
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (String query : queries) {
+                found += map.containsKey(query) ? 1 : 0;
+            }
+            double mapMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            int indexFound = 0;
+            for (String query : queries) {
+                indexFound += index.containsKey(query) ? 1 : 0;
+            }
+            double indexMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("Giro %d: HashMap %.0f ms, IsbnIndex %.0f ms (trovati %d/%d)%n",
+                    round, mapMillis, indexMillis, found, indexFound);
+        }
+    }
+
+    private static String isbn(int i) {
+        return "978" + (1_000_000_000L + i);
+    }
+}
@@ -0,0 +1,103 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test per la classe {@link LibraryFileMerger}.
+ * Il limite di memoria molto basso costringe l'ordinamento a usare i run su disco.
+ */
+class LibraryFileMergerTest {
+
+    // --- Setup ---
+    private FileStorageService fileStorage;
+    private LibraryFileMerger merger;
+    private String leftPath;
+    private String rightPath;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws LibraryException {
+        fileStorage = new FileStorageService();
+        merger = new LibraryFileMerger(fileStorage, 3, tempDir);
+        leftPath = tempDir.resolve("sede-a.csv").toString();
+        rightPath = tempDir.resolve("sede-b.csv").toString();
+
+        // Sede A: ISBN 0-19 in ordine inverso. Sede B: ISBN 10-29, con i multipli di 5 rinominati.
+        List<Book> left = new ArrayList<>();
+        for (int i = 19; i >= 0; i--) {
+            left.add(book(i, "Titolo " + i));
+        }
+        List<Book> right = new ArrayList<>();
+        for (int i = 10; i < 30; i++) {
+            right.add(book(i, i % 5 == 0 ? "Nuovo " + i : "Titolo " + i));
+        }
+        fileStorage.saveBooks(left, leftPath);
+        fileStorage.saveBooks(right, rightPath);
+    }
+
+    private static Book book(int i, String title) {
+        return new Book.BookBuilder(String.format("ISBN%03d", i), title, "Autore").publicationYear(2000).build();
+    }
+
+    /**
+     * Testa: il confronto riporta aggiunte, rimozioni e modifiche in ordine di ISBN.
+     */
+    @Test
+    void testDiff_riportaLeDifferenzePerIsbn() throws LibraryException {
+        // Arrange
+        List<String> differences = new ArrayList<>();
+
+        // Act
+        MergeReport report = merger.diff(leftPath, rightPath, differences::add);
+
+        // Assert
+        assertEquals(10, report.getAddedBooks());
+        assertEquals(10, report.getRemovedBooks());
+        assertEquals(2, report.getChangedBooks());
+        assertEquals(8, report.getUnchangedBooks());
+        assertTrue(report.getSpilledRuns() > 2, "Con un limite di 3 libri l'ordinamento deve passare dal disco.");
+        assertEquals(22, differences.size());
+        assertEquals("- ISBN000,Titolo 0,Autore,2000,", differences.get(0));
+        assertEquals("~ ISBN010,Titolo 10,Autore,2000, -> ISBN010,Nuovo 10,Autore,2000,", differences.get(10));
+        assertEquals("+ ISBN029,Titolo 29,Autore,2000,", differences.get(21));
+    }
+
+    /**
+     * Testa: la fusione unisce i due file applicando la politica dei conflitti, e con FAIL
+     * si interrompe senza scrivere il file risultante.
+     */
+    @Test
+    void testMerge_politicaDeiConflitti() throws LibraryException {
+        // Arrange
+        String outputPath = tempDir.resolve("fusione.csv").toString();
+        String failedPath = tempDir.resolve("fallita.csv").toString();
+
+        // Act
+        MergeReport report = merger.merge(leftPath, rightPath, outputPath, LibraryFileMerger.ConflictPolicy.KEEP_RIGHT);
+        List<Book> merged = fileStorage.loadBooks(outputPath);
+
+        // Assert
+        assertEquals(2, report.getChangedBooks());
+        assertEquals(30, merged.size());
+        List<String> isbns = merged.stream().map(Book::getIsbn).collect(Collectors.toList());
+        assertEquals(isbns.stream().sorted().collect(Collectors.toList()), isbns);
+        assertEquals("Nuovo 15", merged.get(15).getTitle());
+        assertThrows(LibraryException.class,
+                () -> merger.merge(leftPath, rightPath, failedPath, LibraryFileMerger.ConflictPolicy.FAIL));
+        assertTrue(fileStorage.loadBooks(failedPath).isEmpty(), "Una fusione annullata non deve scrivere il file.");
+    }
+}
@@ -0,0 +1,69 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test per la classe {@link LibraryFileWatcher}.
+ * Usa un vero file su una directory temporanea, modificato come farebbe un altro programma.
+ */
+class LibraryFileWatcherTest {
+
+    // --- Setup ---
+    private FileStorageService fileStorage;
+    private LibraryService service;
+    private LibraryFileWatcher watcher;
+    private String filePath;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws LibraryException {
+        LibraryService.resetInstanceForTesting();
+        fileStorage = new FileStorageService();
+        filePath = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Collections.singletonList(new Book.BookBuilder("ISBN001", "Titolo", "Autore").build()), filePath);
+        service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(filePath);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Testa che una modifica esterna al file venga applicata alla libreria senza ricaricarla da capo.
+     */
+    @Test
+    void testModificaEsterna_vieneApplicata() throws Exception {
+        watcher = new LibraryFileWatcher(service, filePath, 50);
+        watcher.start();
+
+        fileStorage.saveBooks(Arrays.asList(new Book.BookBuilder("ISBN001", "Titolo", "Autore").build(),
+                new Book.BookBuilder("ISBN002", "Nuovo", "Altro Autore").build()), filePath);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!service.findBookByIsbn("ISBN002").isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertTrue(service.findBookByIsbn("ISBN002").isPresent(), "Il libro aggiunto dall'esterno dovrebbe essere visibile.");
+        assertEquals(2, service.getAllItems().size());
+        assertFalse(service.hasUnsavedChanges());
+    }
+}
@@ -3,19 +3,31 @@ package com.msan.libmanagementcli.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.msan.libmanagementcli.dao.BTreeStorageService;
+import com.msan.libmanagementcli.dao.DeltaStorageService;
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.dao.MutationJournal;
 import com.msan.libmanagementcli.dao.StorageService;
 import com.msan.libmanagementcli.exceptions.BookNotFoundException;
 import com.msan.libmanagementcli.exceptions.InvalidBookDataException;
 import com.msan.libmanagementcli.exceptions.LibraryException;
 import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.model.BookCollection;
 // import com.msan.libmanagementcli.model.LibraryItem; // RIMOSSO perché segnalato come non utilizzato
-// import java.util.ArrayList; // RIMOSSO perché segnalato come non utilizzato
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 
 /**
@@ -41,7 +53,7 @@ class LibraryServiceTest {
      * Testa l'aggiunta di un libro valido.
      */
     @Test
-    void testAddItem_conLibroValido() throws InvalidBookDataException {
+    void testAddItem_conLibroValido() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -53,7 +65,7 @@ class LibraryServiceTest {
      * Testa che l'aggiunta di un libro con ISBN duplicato lanci un'eccezione.
      */
     @Test
-    void testAddItem_conIsbnDuplicato_lanciaEccezione() throws InvalidBookDataException {
+    void testAddItem_conIsbnDuplicato_lanciaEccezione() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1); 
@@ -67,7 +79,7 @@ class LibraryServiceTest {
      * Testa la ricerca di un libro esistente tramite ISBN.
      */
     @Test
-    void testFindBookByIsbn_conLibroEsistente() throws InvalidBookDataException {
+    void testFindBookByIsbn_conLibroEsistente() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -80,7 +92,7 @@ class LibraryServiceTest {
      * Testa la rimozione di un libro esistente.
      */
     @Test
-    void testRemoveItemByIsbn_conLibroEsistente() throws InvalidBookDataException, BookNotFoundException {
+    void testRemoveItemByIsbn_conLibroEsistente() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -104,7 +116,7 @@ class LibraryServiceTest {
      * Testa l'aggiornamento di un libro esistente con dati validi.
      */
     @Test
-    void testUpdateBook_conDatiValidi() throws InvalidBookDataException, BookNotFoundException {
+    void testUpdateBook_conDatiValidi() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -114,11 +126,37 @@ class LibraryServiceTest {
         assertEquals("Titolo Aggiornato", libroRecuperato.getTitle());
     }
 
+    /**
+     * Testa che l'aggiornamento sostituisca il libro: chi ha ancora il riferimento precedente lo vede invariato,
+     * mentre lista, indice e ricerche restituiscono la nuova versione.
+     */
+    @Test
+    void testUpdateBook_sostituisceIlLibroSenzaModificareIlPrecedente() throws LibraryException {
+        // Arrange
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        service.addItem(book1);
+        service.addItem(book2);
+        Book precedente = service.findBookByIsbn(book1.getIsbn()).orElseThrow();
+        Book nuovaVersione = new Book.BookBuilder("ISBN999", "Nuovo Titolo", book1.getAuthor()).build();
+
+        // Act
+        service.updateBook(book1.getIsbn(), nuovaVersione);
+
+        // Assert
+        assertEquals(book1.getTitle(), precedente.getTitle());
+        assertEquals(book1.getIsbn(), precedente.getIsbn());
+        assertSame(nuovaVersione, service.findBookByIsbn("ISBN999").orElseThrow());
+        assertFalse(service.findBookByIsbn(book1.getIsbn()).isPresent());
+        assertSame(nuovaVersione, service.getAllItems().get(0), "La nuova versione resta nella stessa posizione.");
+        assertEquals(1, service.findBooksByTitle("nuovo titolo").size());
+    }
+
     /**
      * Testa che l'aggiornamento a un ISBN già usato da un altro libro lanci un'eccezione.
      */
     @Test
-    void testUpdateBook_conNuovoIsbnDuplicato_lanciaEccezione() throws InvalidBookDataException {
+    void testUpdateBook_conNuovoIsbnDuplicato_lanciaEccezione() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -127,13 +165,40 @@ class LibraryServiceTest {
         assertThrows(InvalidBookDataException.class, () -> service.updateBook(book1.getIsbn(), datiAggiornati));
     }
     
+    // --- Test per Ricerche e Aggregazioni ---
+
+    /**
+     * Testa ricerche e conteggi sulla copia per colonne, anche dopo una modifica che la aggiorna.
+     */
+    @Test
+    void testRicercheEConteggi_dopoModifica() throws LibraryException {
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        service.addItem(new Book.BookBuilder("ISBN010", "Il Nome della Rosa", "Umberto Eco").publicationYear(1980).genre("Giallo").build());
+        service.addItem(new Book.BookBuilder("ISBN011", "Il pendolo di Foucault", "Umberto Eco").publicationYear(1988).genre("Narrativa").build());
+        service.addItem(new Book.BookBuilder("ISBN012", "La rosa purpurea", "Altro Autore").publicationYear(2001).genre("Narrativa").build());
+
+        assertEquals(2, service.findBooksByTitle("ROSA").size());
+        assertEquals(2, service.findBooksByAuthor("eco").size());
+        assertEquals(Arrays.asList("ISBN010", "ISBN011"),
+                service.findBooksByYearRange(1980, 1990).stream().map(Book::getIsbn).collect(Collectors.toList()));
+        assertEquals(Integer.valueOf(2), service.countBooksByGenre().get("Narrativa"));
+
+        service.updateBook("ISBN012", new Book.BookBuilder("ISBN012", "Senza fiori", "Umberto Eco").publicationYear(1985).genre("Giallo").build());
+
+        assertEquals(1, service.findBooksByTitle("rosa").size(), "La ricerca deve vedere il titolo aggiornato.");
+        assertEquals(3, service.findBooksByAuthor("Umberto").size());
+        assertEquals(3, service.findBooksByYearRange(1980, 1990).size());
+        assertEquals(Integer.valueOf(2), service.countBooksByGenre().get("Giallo"));
+    }
+
     // --- Test per l'Ordinamento (Strategy) ---
 
     /**
      * Testa l'ordinamento per autore.
      */
     @Test
-    void testGetSortedBooks_perAutore() throws InvalidBookDataException {
+    void testGetSortedBooks_perAutore() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1); // Autore: Bloch
@@ -154,7 +219,7 @@ class LibraryServiceTest {
      * Testa che il metodo saveLibrary chiami correttamente lo storage service.
      */
     @Test
-    void testSaveLibrary_chiamaCorrettamenteStorageService() throws LibraryException, InvalidBookDataException {
+    void testSaveLibrary_chiamaCorrettamenteStorageService() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1);
@@ -162,28 +227,30 @@ class LibraryServiceTest {
 
         service.saveLibrary(percorsoTest);
 
-        // Verifica che il metodo saveBooks del mock sia stato chiamato una volta
-        // con la lista corretta e il percorso corretto.
+        // Verifica che il metodo saveBooks (in streaming) del mock sia stato chiamato una volta
+        // con i libri corretti e il percorso corretto.
         @SuppressWarnings("unchecked")
-        ArgumentCaptor<List<Book>> listCaptor = ArgumentCaptor.forClass(List.class);
-        verify(localMockStorage).saveBooks(listCaptor.capture(), eq(percorsoTest));
-        assertEquals(1, listCaptor.getValue().size());
-        assertEquals(book1, listCaptor.getValue().get(0));
+        ArgumentCaptor<Iterator<Book>> iteratorCaptor = ArgumentCaptor.forClass(Iterator.class);
+        verify(localMockStorage).saveBooks(iteratorCaptor.capture(), eq(percorsoTest));
+        List<Book> libriSalvati = new ArrayList<>();
+        iteratorCaptor.getValue().forEachRemaining(libriSalvati::add);
+        assertEquals(1, libriSalvati.size());
+        assertEquals(book1, libriSalvati.get(0));
     }
     
     /**
      * Testa che il metodo loadLibrary rimpiazzi i dati correnti con quelli caricati.
      */
     @Test
-    void testLoadLibrary_sostituisceDatiCorrenti() throws LibraryException, InvalidBookDataException {
+    void testLoadLibrary_sostituisceDatiCorrenti() throws LibraryException {
         StorageService localMockStorage = mock(StorageService.class);
         LibraryService service = LibraryService.getInstance(localMockStorage);
         service.addItem(book1); // Aggiungo un libro che deve sparire dopo il caricamento.
         
         List<Book> libriDaCaricare = Arrays.asList(book2, book3);
         String percorsoTest = "libreria_da_caricare.csv";
-        // Dico al mock cosa restituire quando loadBooks viene chiamato
-        when(localMockStorage.loadBooks(percorsoTest)).thenReturn(libriDaCaricare);
+        // Dico al mock quali libri passare al consumer quando loadBooks viene chiamato
+        stubLoadBooks(localMockStorage, percorsoTest, libriDaCaricare);
 
         service.loadLibrary(percorsoTest);
 
@@ -191,4 +258,522 @@ class LibraryServiceTest {
         assertTrue(service.getAllItems().contains(book2));
         assertFalse(service.getAllItems().contains(book1)); // Il vecchio libro non deve più esserci.
     }
-}
\ No newline at end of file
+
+    // --- Test per lo Storage con Journal ---
+
+    /**
+     * Testa che con uno storage a journal le modifiche vengano registrate
+     * e il salvataggio non riscriva l'intero catalogo.
+     */
+    @Test
+    void testAddItem_conStorageJournal_registraModificaSenzaRiscrittura() throws LibraryException {
+        StorageService journaledStorage = mock(StorageService.class, withSettings().extraInterfaces(MutationJournal.class));
+        LibraryService service = LibraryService.getInstance(journaledStorage);
+        String percorsoTest = "libreria_journal.csv";
+        service.loadLibrary(percorsoTest);
+
+        service.addItem(book1);
+        service.saveLibrary();
+
+        verify((MutationJournal) journaledStorage).recordAdd(percorsoTest, book1);
+        verify(journaledStorage, never()).saveBooks(anyList(), anyString());
+        verify(journaledStorage, never()).saveBooks(any(Iterator.class), anyString());
+    }
+
+    // --- Test per il Tracciamento delle Modifiche ---
+
+    /**
+     * Testa che un salvataggio senza modifiche dopo il caricamento non scriva nulla.
+     */
+    @Test
+    void testSaveLibrary_senzaModifiche_saltaScrittura() throws LibraryException {
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        String percorsoTest = "libreria.csv";
+        stubLoadBooks(localMockStorage, percorsoTest, Arrays.asList(book1));
+        service.loadLibrary(percorsoTest);
+
+        SaveReport report = service.saveLibrary();
+
+        assertEquals(SaveReport.Mode.SKIPPED, report.getMode());
+        assertFalse(service.hasUnsavedChanges());
+        verify(localMockStorage, never()).saveBooks(anyList(), anyString());
+        verify(localMockStorage, never()).saveBooks(any(Iterator.class), anyString());
+    }
+
+    /**
+     * Testa che uno storage con scritture parziali riceva solo i libri modificati e quelli rimossi.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSaveLibrary_conStorageDelta_riceveSoloModifiche() throws LibraryException {
+        DeltaStorageService deltaStorage = mock(DeltaStorageService.class);
+        LibraryService service = LibraryService.getInstance(deltaStorage);
+        String percorsoTest = "libreria.csv";
+        stubLoadBooks(deltaStorage, percorsoTest, Arrays.asList(book1, book2));
+        service.loadLibrary(percorsoTest);
+
+        service.addItem(book3);
+        service.removeItemByIsbn(book1.getIsbn());
+        assertTrue(service.hasUnsavedChanges());
+        SaveReport report = service.saveLibrary();
+
+        assertEquals(SaveReport.Mode.DELTA, report.getMode());
+        ArgumentCaptor<List<Book>> changedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Set<String>> removedCaptor = ArgumentCaptor.forClass(Set.class);
+        verify(deltaStorage).saveChanges(changedCaptor.capture(), removedCaptor.capture(), eq(percorsoTest));
+        assertEquals(Collections.singletonList(book3), changedCaptor.getValue());
+        assertEquals(Collections.singleton(book1.getIsbn()), removedCaptor.getValue());
+        verify(deltaStorage, never()).saveBooks(anyList(), anyString());
+        verify(deltaStorage, never()).saveBooks(any(Iterator.class), anyString());
+        assertFalse(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa il caricamento differito: la ricerca per ISBN legge il singolo libro tramite l'indice,
+     * mentre l'elenco completo carica tutto il file.
+     */
+    @Test
+    void testLoadLibrary_differito_leggeSoloIlLibroRichiesto(@TempDir Path tempDir) throws LibraryException {
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2, book3), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.setLazyLoading(true);
+
+        service.loadLibrary(percorsoTest);
+        Optional<Book> trovato = service.findBookByIsbn(book2.getIsbn());
+
+        assertEquals(Optional.of(book2), trovato);
+        assertFalse(service.findBookByIsbn("ISBN-INESISTENTE").isPresent());
+        assertFalse(service.isFullyLoaded(), "La ricerca per ISBN non dovrebbe caricare l'intero file.");
+        assertEquals(Arrays.asList(book2), service.findBooksByTitle("CLEAN"));
+        assertEquals(Arrays.asList(book3), service.findBooksByAuthor("hunt"));
+        assertFalse(service.isFullyLoaded(), "Le ricerche per titolo e autore dovrebbero scorrere il file.");
+        assertFalse(service.hasUnsavedChanges());
+
+        assertEquals(3, service.getSortedBooks().size());
+        assertTrue(service.isFullyLoaded());
+        assertFalse(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa che su un archivio B+tree aperto in modo differito aggiunte, aggiornamenti, rimozioni e ricerche
+     * per titolo o autore lavorino direttamente sull'archivio, senza caricare la libreria in memoria.
+     */
+    @Test
+    void testModifiche_archivioDifferito_scritteSenzaCaricareLaLibreria(@TempDir Path tempDir) throws LibraryException {
+        // Arrange
+        BTreeStorageService btreeStorage = new BTreeStorageService();
+        String percorsoTest = tempDir.resolve("libreria.db").toString();
+        btreeStorage.saveBooks(Arrays.asList(book1, book2), percorsoTest);
+        LibraryService service = LibraryService.getInstance(btreeStorage);
+        service.setLazyLoading(true);
+        service.loadLibrary(percorsoTest);
+        Book aggiornato = new Book.BookBuilder("ISBN004", "Clean Architecture", "Robert C. Martin").build();
+
+        // Act
+        service.addItem(book3);
+        service.updateBook(book2.getIsbn(), aggiornato);
+        service.removeItemByIsbn(book1.getIsbn());
+
+        // Assert
+        assertThrows(InvalidBookDataException.class, () -> service.addItem(book3));
+        assertThrows(BookNotFoundException.class, () -> service.removeItemByIsbn(book1.getIsbn()));
+        assertEquals(Arrays.asList(aggiornato), service.findBooksByTitle("architecture"));
+        assertEquals(Arrays.asList(book3), service.findBooksByAuthor("HUNT"));
+        assertFalse(service.isFullyLoaded(), "Le modifiche non dovrebbero caricare l'intero archivio.");
+        assertFalse(service.hasUnsavedChanges());
+        btreeStorage.close();
+        BTreeStorageService riaperto = new BTreeStorageService();
+        assertEquals(Arrays.asList(book3, aggiornato), riaperto.loadBooks(percorsoTest));
+        riaperto.close();
+    }
+
+    /**
+     * Testa che un errore di lettura durante il caricamento completo di una libreria aperta in modo differito
+     * venga segnalato con una LibraryException, lasciando la libreria aperta in modo differito.
+     */
+    @Test
+    void testLoadLibrary_differito_erroreDiLetturaSegnalato(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2, book3), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.setLazyLoading(true);
+        service.loadLibrary(percorsoTest);
+        // Il file viene troncato da un altro programma: la riga di controllo non torna più.
+        List<String> righe = new ArrayList<>(java.nio.file.Files.readAllLines(Path.of(percorsoTest)));
+        righe.remove(1); // Il primo libro, dopo l'intestazione.
+        java.nio.file.Files.write(Path.of(percorsoTest), righe);
+
+        // Act & Assert
+        assertThrows(LibraryException.class, service::getSortedBooks);
+        assertFalse(service.isFullyLoaded());
+    }
+
+    /**
+     * Testa la copia fuori heap: ricerche, elenco e modifiche lavorano sui record senza trasferire
+     * la libreria nell'heap, e il salvataggio scrive i libri modificati.
+     */
+    @Test
+    void testLoadLibrary_fuoriHeap_modificheSenzaTrasferimento(@TempDir Path tempDir) throws LibraryException {
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2, book3), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.setOffHeap(true);
+
+        service.loadLibrary(percorsoTest);
+
+        assertEquals("Clean Code", service.findBookByIsbn(book2.getIsbn()).orElseThrow().getTitle());
+        assertFalse(service.findBookByIsbn("ISBN-INESISTENTE").isPresent());
+        assertEquals(Arrays.asList(book1), service.findBooksByTitle("JAVA"));
+        assertEquals(Arrays.asList(book3), service.findBooksByAuthor("hunt"));
+        assertEquals("Clean Code", service.getSortedBooks().get(0).getTitle());
+        assertFalse(service.isFullyLoaded(), "Le letture non dovrebbero trasferire la libreria nell'heap.");
+
+        Book aggiornato = new Book.BookBuilder("ISBN005", "Clean Code 2", "Robert C. Martin").build();
+        service.addItem(new Book.BookBuilder("ISBN004", "Refactoring", "Martin Fowler").build());
+        service.updateBook(book2.getIsbn(), aggiornato);
+        service.removeItemByIsbn(book1.getIsbn());
+
+        assertThrows(InvalidBookDataException.class, () -> service.addItem(book3));
+        assertThrows(BookNotFoundException.class, () -> service.removeItemByIsbn(book1.getIsbn()));
+        assertEquals(Arrays.asList(aggiornato), service.findBooksByTitle("clean"));
+        assertFalse(service.findBookByIsbn(book2.getIsbn()).isPresent());
+        assertFalse(service.isFullyLoaded(), "Le modifiche non dovrebbero trasferire la libreria nell'heap.");
+        assertTrue(service.hasUnsavedChanges());
+
+        service.saveLibrary();
+
+        assertFalse(service.isFullyLoaded());
+        assertFalse(service.hasUnsavedChanges());
+        assertEquals(Arrays.asList("ISBN003", "ISBN004", "ISBN005"), fileStorage.loadBooks(percorsoTest).stream()
+                .map(Book::getIsbn).collect(Collectors.toList()));
+        assertEquals(3, service.getAllItems().size());
+        assertTrue(service.isFullyLoaded());
+    }
+
+    /**
+     * Testa che rimozione e aggiornamento di un libro si propaghino alle collezioni che lo contengono, trovate con l'indice inverso.
+     */
+    @Test
+    void testRemoveEUpdate_propagatiAlleCollezioni() throws Exception {
+        // Arrange
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        service.addItem(book1);
+        service.addItem(book2);
+        BookCollection scaffale = new BookCollection("Scaffale");
+        BookCollection ripiano = new BookCollection("Ripiano");
+        scaffale.addItem(ripiano);
+        service.addItem(scaffale);
+        ripiano.addItem(book1);
+        ripiano.addItem(book2);
+        scaffale.addItem(book2);
+
+        // Act
+        Book nuovaVersione = new Book.BookBuilder("ISBN777", "Titolo Nuovo", book1.getAuthor()).build();
+        service.updateBook(book1.getIsbn(), nuovaVersione);
+        service.removeItemByIsbn(book2.getIsbn());
+
+        // Assert
+        assertEquals(List.of(ripiano), service.findCollectionsContaining("ISBN777"));
+        assertTrue(service.findCollectionsContaining(book1.getIsbn()).isEmpty());
+        assertTrue(service.findCollectionsContaining(book2.getIsbn()).isEmpty());
+        assertEquals(List.of(nuovaVersione), ripiano.getItems());
+        assertEquals(1, scaffale.getBookCount());
+    }
+
+    /**
+     * Testa il salvataggio della gerarchia delle collezioni e il ricaricamento dopo la libreria,
+     * con i libri collegati alle istanze caricate.
+     */
+    @Test
+    void testSaveELoadCollections_gerarchiaCollegataAiLibri(@TempDir Path tempDir) throws Exception {
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoLibri = tempDir.resolve("libreria.csv").toString();
+        String percorsoCollezioni = tempDir.resolve("libreria.collections").toString();
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.addItem(book1);
+        service.addItem(book2);
+        BookCollection scaffale = new BookCollection("Programmazione");
+        BookCollection ripiano = new BookCollection("Classici");
+        scaffale.addItem(book1);
+        scaffale.addItem(ripiano);
+        ripiano.addItem(book2);
+        service.addItem(scaffale);
+        service.saveLibrary(percorsoLibri);
+        assertEquals(1, service.saveCollections(percorsoCollezioni));
+
+        LibraryService.resetInstanceForTesting();
+        LibraryService ricaricato = LibraryService.getInstance(fileStorage);
+        ricaricato.loadLibrary(percorsoLibri);
+        assertEquals(1, ricaricato.loadCollections(percorsoCollezioni));
+
+        BookCollection caricato = (BookCollection) ricaricato.getAllItems().get(2);
+        assertEquals("Programmazione", caricato.getTitle());
+        assertEquals(2, caricato.getBookCount());
+        Book libroNellaCollezione = caricato.books().skip(1).findFirst().orElseThrow();
+        assertSame(ricaricato.findBookByIsbn(book2.getIsbn()).orElseThrow(), libroNellaCollezione);
+    }
+
+    /**
+     * Testa la ricarica incrementale: vengono applicate solo le differenze con il file,
+     * i libri invariati restano gli stessi oggetti e le modifiche locali non salvate hanno la precedenza.
+     */
+    @Test
+    void testReloadChanges_applicaSoloLeDifferenze(@TempDir Path tempDir) throws Exception {
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2, book3), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(percorsoTest);
+        Book istanzaInvariata = service.findBookByIsbn(book1.getIsbn()).orElseThrow();
+        service.updateBook(book3.getIsbn(), new Book.BookBuilder(book3.getIsbn(), "Titolo Locale", "Andrew Hunt").build());
+
+        Book book2Esterno = new Book.BookBuilder(book2.getIsbn(), "Clean Code (2a ed.)", "Robert C. Martin").build();
+        Book book3Esterno = new Book.BookBuilder(book3.getIsbn(), "Titolo Esterno", "Andrew Hunt").build();
+        Book nuovo = new Book.BookBuilder("ISBN004", "Refactoring", "Martin Fowler").build();
+        fileStorage.saveBooks(Arrays.asList(book1, book2Esterno, book3Esterno, nuovo), percorsoTest);
+        ReloadReport report = service.reloadChanges(percorsoTest);
+
+        assertEquals(1, report.getAddedBooks());
+        assertEquals(1, report.getUpdatedBooks());
+        assertEquals(0, report.getRemovedBooks());
+        assertEquals(1, report.getConflictingBooks());
+        assertSame(istanzaInvariata, service.findBookByIsbn(book1.getIsbn()).orElseThrow());
+        assertEquals("Clean Code (2a ed.)", service.findBookByIsbn(book2.getIsbn()).orElseThrow().getTitle());
+        assertEquals("Titolo Locale", service.findBookByIsbn(book3.getIsbn()).orElseThrow().getTitle());
+        assertEquals(4, service.getAllItems().size());
+        assertTrue(service.hasUnsavedChanges(), "La modifica locale resta da salvare.");
+
+        service.saveLibrary();
+        fileStorage.saveBooks(Arrays.asList(book2Esterno, nuovo), percorsoTest);
+        ReloadReport rimozione = service.reloadChanges(percorsoTest);
+
+        assertEquals(2, rimozione.getRemovedBooks());
+        assertEquals(2, service.getAllItems().size());
+        assertFalse(service.hasUnsavedChanges(), "Dopo la ricarica la memoria rispecchia il file.");
+    }
+
+    /**
+     * Testa che la ricarica di un file diverso da quello allineato mantenga i libri aggiunti e non salvati.
+     */
+    @Test
+    void testReloadChanges_fileNonAllineato_mantieneLeModificheNonSalvate(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        String altroPercorso = tempDir.resolve("altra.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1), percorsoTest);
+        fileStorage.saveBooks(Arrays.asList(book1, book2), altroPercorso);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(percorsoTest);
+        service.addItem(book3);
+
+        // Act
+        ReloadReport report = service.reloadChanges(altroPercorso);
+
+        // Assert
+        assertEquals(1, report.getAddedBooks());
+        assertEquals(0, report.getRemovedBooks());
+        assertEquals(1, report.getConflictingBooks());
+        assertTrue(service.findBookByIsbn(book3.getIsbn()).isPresent(), "Il libro non salvato deve restare.");
+        assertEquals(3, service.getAllItems().size());
+    }
+
+    /**
+     * Testa che un file con data di modifica e dimensione dell'ultima lettura non venga riletto.
+     */
+    @Test
+    void testReloadChanges_fileInvariato_nonVieneLetto(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = spy(new FileStorageService());
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(percorsoTest);
+
+        // Act
+        ReloadReport report = service.reloadChanges(percorsoTest);
+
+        // Assert
+        assertFalse(report.hasChanges());
+        verify(fileStorage, times(1)).loadBooks(eq(percorsoTest), any());
+    }
+
+    /**
+     * Testa che i dizionari di autori e generi ripartano a ogni caricamento, senza i valori dei file precedenti.
+     */
+    @Test
+    void testLoadLibrary_dizionariDegliAutoriLimitatiAlCaricamento(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = new FileStorageService();
+        String primo = tempDir.resolve("primo.csv").toString();
+        String secondo = tempDir.resolve("secondo.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2), primo);
+        fileStorage.saveBooks(Arrays.asList(book3, new Book.BookBuilder("ISBN004", "Altro", "Andrew Hunt").build()), secondo);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(primo);
+
+        // Act
+        service.loadLibrary(secondo);
+
+        // Assert
+        assertEquals(1, com.msan.libmanagementcli.utils.StringPool.authors().size());
+        List<Book> caricati = service.getSortedBooks();
+        assertSame(caricati.get(0).getAuthor(), caricati.get(1).getAuthor());
+    }
+
+    /**
+     * Testa lo storico delle versioni: ogni modifica registra una versione che continua a vedere
+     * i libri come erano, anche dopo aggiornamenti e rimozioni, e si può esportare su file.
+     */
+    @Test
+    void testVersioni_consultazioneEdEsportazioneDelPassato(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(percorsoTest);
+        LibraryVersion primaDellImportazione = service.getVersions().get(0);
+
+        // Act
+        service.addBooks(Arrays.asList(book3, new Book.BookBuilder("ISBN004", "Refactoring", "Martin Fowler").build()));
+        service.updateBook(book1.getIsbn(), new Book.BookBuilder(book1.getIsbn(), "Effective Java (3a ed.)", "Joshua Bloch").build());
+        service.removeItemByIsbn(book2.getIsbn());
+
+        // Assert
+        List<LibraryVersion> versioni = service.getVersions();
+        assertEquals(4, versioni.size(), "Caricamento, importazione, aggiornamento e rimozione.");
+        assertEquals(service.getGeneration(), versioni.get(3).getGeneration());
+        assertEquals(2, primaDellImportazione.size());
+        assertEquals("Effective Java", primaDellImportazione.findBookByIsbn(book1.getIsbn()).orElseThrow().getTitle());
+        assertTrue(primaDellImportazione.findBookByIsbn(book3.getIsbn()).isEmpty());
+        assertEquals(4, versioni.get(1).size());
+        assertTrue(versioni.get(2).findBookByIsbn(book2.getIsbn()).isPresent());
+        assertTrue(versioni.get(3).findBookByIsbn(book2.getIsbn()).isEmpty());
+        assertEquals(versioni.get(3).getGeneration(),
+                service.findVersionAt(versioni.get(3).getTimestamp()).orElseThrow().getGeneration());
+        assertTrue(service.findVersionAt(primaDellImportazione.getTimestamp().minusSeconds(1)).isEmpty());
+
+        String percorsoEsportazione = tempDir.resolve("prima.csv").toString();
+        assertEquals(2, service.exportVersion(primaDellImportazione, percorsoEsportazione));
+        List<String> titoliEsportati = fileStorage.loadBooks(percorsoEsportazione).stream()
+            .map(Book::getTitle).collect(Collectors.toList());
+        assertEquals(Arrays.asList("Clean Code", "Effective Java"), titoliEsportati);
+        assertEquals(3, service.getAllItems().size(), "L'esportazione non modifica la libreria.");
+
+        service.setMaxVersions(2);
+        assertEquals(2, service.getVersions().size());
+        assertTrue(service.getVersion(primaDellImportazione.getGeneration()).isEmpty());
+    }
+
+    /**
+     * Testa che il catalogo persistente, costruito solo alla prima modifica, conservi come prima versione
+     * la libreria caricata.
+     */
+    @Test
+    void testVersioni_versioneCaricataRegistrataAllaPrimaModifica(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        FileStorageService fileStorage = new FileStorageService();
+        String percorsoTest = tempDir.resolve("libreria.csv").toString();
+        fileStorage.saveBooks(Arrays.asList(book1, book2), percorsoTest);
+        LibraryService service = LibraryService.getInstance(fileStorage);
+        service.loadLibrary(percorsoTest);
+        long generazioneCaricata = service.getGeneration();
+
+        // Act
+        service.removeItemByIsbn(book1.getIsbn());
+
+        // Assert
+        List<LibraryVersion> versioni = service.getVersions();
+        assertEquals(2, versioni.size());
+        assertEquals("Caricato " + percorsoTest, versioni.get(0).getDescription());
+        assertEquals(generazioneCaricata, versioni.get(0).getGeneration());
+        assertTrue(versioni.get(0).findBookByIsbn(book1.getIsbn()).isPresent());
+        assertTrue(versioni.get(1).findBookByIsbn(book1.getIsbn()).isEmpty());
+    }
+
+    /**
+     * Testa la ricerca fonetica per autore: trova le varianti di grafia, segue aggiunte,
+     * aggiornamenti e rimozioni successivi alla costruzione dell'indice e restituisce i libri
+     * nell'ordine della libreria.
+     */
+    @Test
+    void testFindBooksByAuthorSound_variantiEAggiornamenti() throws Exception {
+        // Arrange
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        Book delitto = new Book.BookBuilder("ISBN010", "Delitto e castigo", "Fëdor Dostoevskij").build();
+        Book fuMattia = new Book.BookBuilder("ISBN011", "Il fu Mattia Pascal", "Luigi Pirandello").build();
+        service.addItem(delitto);
+        service.addItem(fuMattia);
+        service.addItem(book1);
+
+        // Act & Assert
+        assertEquals(Collections.singletonList(delitto), service.findBooksByAuthorSound("Dostoyevsky"));
+        assertEquals(Collections.singletonList(fuMattia), service.findBooksByAuthorSound("luigi pirandelo"));
+        assertTrue(service.findBooksByAuthorSound("Mario Pirandello").isEmpty(), "Ogni parola deve corrispondere.");
+        assertTrue(service.findBooksByAuthor("Pirandelo").isEmpty(), "La ricerca per sottostringa non trova la variante.");
+
+        Book idiota = new Book.BookBuilder("ISBN012", "L'idiota", "Dostojevskij").build();
+        service.addItem(idiota);
+        service.updateBook("ISBN010", new Book.BookBuilder("ISBN010", "Delitto e castigo", "Anonimo").build());
+        service.removeItemByIsbn("ISBN011");
+
+        assertEquals(Collections.singletonList(idiota), service.findBooksByAuthorSound("Dostoevsky"));
+        assertTrue(service.findBooksByAuthorSound("Pirandello").isEmpty());
+        Book delittoRipristinato = new Book.BookBuilder("ISBN010", "Delitto e castigo", "F. Dostoevskij").build();
+        service.updateBook("ISBN010", delittoRipristinato);
+        assertEquals(Arrays.asList(delittoRipristinato, idiota), service.findBooksByAuthorSound("Dostoevsky"),
+                "Il libro aggiornato resta nella sua posizione della libreria.");
+        assertThrows(InvalidBookDataException.class, () -> service.findBooksByAuthorSound(" "));
+    }
+
+    /**
+     * Testa la ricerca per rilevanza: i risultati sono ordinati per punteggio, limitati al numero
+     * richiesto e seguono le modifiche alla libreria.
+     */
+    @Test
+    void testSearchBooks_ordinatiPerRilevanzaEAggiornati() throws Exception {
+        // Arrange
+        StorageService localMockStorage = mock(StorageService.class);
+        LibraryService service = LibraryService.getInstance(localMockStorage);
+        Book javaNelTitolo = new Book.BookBuilder("ISBN020", "Java Generics", "Maurice Naftalin").genre("Java").build();
+        service.addItem(book1);
+        service.addItem(book2);
+        service.addItem(javaNelTitolo);
+
+        // Act
+        List<ScoredBook> risultati = service.searchBooks("java", 10);
+        service.removeItemByIsbn(javaNelTitolo.getIsbn());
+        List<ScoredBook> dopoRimozione = service.searchBooks("java", 10);
+
+        // Assert
+        assertEquals(2, risultati.size());
+        assertEquals(javaNelTitolo, risultati.get(0).getBook(), "Titolo e genere battono il solo titolo.");
+        assertTrue(risultati.get(0).getScore() > risultati.get(1).getScore());
+        assertEquals(1, service.searchBooks("java", 1).size());
+        assertEquals(Collections.singletonList(book1), dopoRimozione.stream().map(ScoredBook::getBook).collect(Collectors.toList()));
+        assertThrows(InvalidBookDataException.class, () -> service.searchBooks("", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.searchBooks("java", 0));
+    }
+
+    // --- Metodi di Supporto ---
+
+    /**
+     * Configura il mock perché il caricamento in streaming passi i libri indicati al consumer.
+     */
+    @SuppressWarnings("unchecked")
+    private static void stubLoadBooks(StorageService storage, String filePath, List<Book> books) throws LibraryException {
+        doAnswer(invocation -> {
+            books.forEach((Consumer<Book>) invocation.getArgument(1));
+            return null;
+        }).when(storage).loadBooks(eq(filePath), any(Consumer.class));
+    }
+}
@@ -0,0 +1,119 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.ConsoleLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Benchmark (non eseguito dai test) di heap occupato e latenza delle richieste a {@link LibraryService}
+ * con la libreria caricata nell'heap e fuori heap ({@link OffHeapCatalog}): ogni richiesta fa ricerche
+ * per ISBN e un aggiornamento, mentre l'applicazione continua ad allocare e il garbage collector lavora.
+ * <p>
+ * Ogni modalità va eseguita in una JVM separata, con lo stesso heap a dimensione fissa (le pause del
+ * garbage collector si possono osservare aggiungendo {@code -Xlog:gc}):
+ * {@code java -Xms4g -Xmx4g -XX:MaxDirectMemorySize=4g -cp target/classes:target/test-classes
+ * com.msan.libmanagementcli.service.OffHeapBenchmark heap|off-heap [libri]}
+ */
+public class OffHeapBenchmark {
+
+    private static final int DEFAULT_BOOKS = 5_000_000;
+    private static final int WARMUP_REQUESTS = 500;
+    private static final int REQUESTS = 5_000;
+    private static final int LOOKUPS_PER_REQUEST = 200;
+    /** Oggetti di lunga durata allocati durante le ricerche, per far lavorare anche la old generation. */
+    private static final int RETAINED_GARBAGE = 200_000;
+
+    public static void main(String[] args) throws LibraryException, IOException {
+        ConsoleLogger.getInstance().setLogLevel(ConsoleLogger.LogLevel.NONE);
+        boolean offHeap = args.length > 0 && "off-heap".equals(args[0]);
+        int books = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_BOOKS;
+
+        Path file = Files.createTempFile("offheap-benchmark", ".csv");
+        try {
+            FileStorageService storage = new FileStorageService();
+            storage.saveBooks(new Iterator<Book>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < books;
+                }
+
+                @Override
+                public Book next() {
+                    return book(next++, "");
+                }
+            }, file.toString());
+            LibraryService service = LibraryService.getInstance(storage);
+            service.setOffHeap(offHeap);
+            long start = System.nanoTime();
+            service.loadLibrary(file.toString());
+            double loadMillis = (System.nanoTime() - start) / 1e6;
+            long heap = usedHeap();
+
+            Random random = new Random(7);
+            Object[] retained = new Object[RETAINED_GARBAGE];
+            run(service, books, random, retained, new long[WARMUP_REQUESTS]);
+            long[] latencies = new long[REQUESTS];
+            long found = run(service, books, random, retained, latencies);
+            Arrays.sort(latencies);
+
+            System.out.printf("Modalità %s, %d libri (caricati in %.0f ms, trovati %d/%d, libreria nell'heap: %s)%n",
+                    offHeap ? "fuori heap" : "heap", books, loadMillis, found, (long) REQUESTS * LOOKUPS_PER_REQUEST,
+                    service.isFullyLoaded() ? "sì" : "no");
+            System.out.printf("  heap occupato dopo il caricamento: %d MB%n", heap / (1024 * 1024));
+            System.out.printf("  richieste da %d ricerche e un aggiornamento: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                    LOOKUPS_PER_REQUEST, latencies[REQUESTS / 2] / 1e6, latencies[(int) (REQUESTS * 0.99)] / 1e6,
+                    latencies[(int) (REQUESTS * 0.999)] / 1e6, latencies[REQUESTS - 1] / 1e6);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + ".idx"));
+        }
+    }
+
+    /** Esegue una richiesta per posizione di {@code latencies}, registrandone la durata. */
+    private static long run(LibraryService service, int books, Random random, Object[] retained, long[] latencies)
+            throws LibraryException {
+        long found = 0;
+        for (int r = 0; r < latencies.length; r++) {
+            long t = System.nanoTime();
+            for (int i = 0; i < LOOKUPS_PER_REQUEST; i++) {
+                // Ogni richiesta alloca oggetti temporanei e ne trattiene alcuni più a lungo.
+                byte[] scratch = new byte[1024];
+                if (i % 10 == 0) {
+                    retained[random.nextInt(RETAINED_GARBAGE)] = scratch;
+                }
+                found += service.findBookByIsbn(isbn(random.nextInt(books))).isPresent() ? 1 : 0;
+            }
+            int updated = random.nextInt(books);
+            service.updateBook(isbn(updated), book(updated, " (rev. " + r + ")"));
+            latencies[r] = System.nanoTime() - t;
+        }
+        return found;
+    }
+
+    private static Book book(int i, String suffix) {
+        return new Book.BookBuilder(isbn(i), "Titolo del libro numero " + i + suffix, "Autore " + (i % 50_000))
+                .publicationYear(1900 + i % 125).genre("Genere " + (i % 40)).build();
+    }
+
+    private static String isbn(int i) {
+        return "978" + (1_000_000_000L + i);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,137 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.msan.libmanagementcli.model.Book;
+import com.msan.libmanagementcli.utils.PhoneticEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test per la classe {@link OffHeapCatalog}.
+ * Blocchi molto piccoli costringono i record a distribuirsi su molti buffer e l'indice a crescere più volte.
+ */
+class OffHeapCatalogTest {
+
+    /**
+     * Testa: tutti i libri restano leggibili dai buffer, la ricerca per ISBN trova il primo di due
+     * duplicati e la scansione restituisce i libri nell'ordine di inserimento.
+     */
+    @Test
+    void testAppend_moltiBlocchiEIndiceCresciuto() {
+        // Arrange
+        OffHeapCatalog catalog = new OffHeapCatalog(256);
+        for (int i = 0; i < 3000; i++) {
+            catalog.append(new Book.BookBuilder("ISBN" + i, "Titolo è " + i, "Autore " + (i % 7))
+                    .publicationYear(1900 + i % 100).genre(i % 3 == 0 ? null : "Genere " + (i % 2)).build());
+        }
+        catalog.append(new Book.BookBuilder("ISBN5", "Duplicato", "Altro").build());
+
+        // Act
+        List<String> isbns = new ArrayList<>();
+        catalog.forEach(view -> isbns.add(view.getIsbn()));
+
+        // Assert
+        assertEquals(3001, catalog.size());
+        assertEquals(3001, isbns.size());
+        assertEquals("ISBN2999", isbns.get(2999));
+        assertEquals("Titolo è 5", catalog.find("ISBN5").orElseThrow().getTitle(), "Vale il primo libro con lo stesso ISBN.");
+        Book book = catalog.find("ISBN2998").orElseThrow();
+        assertEquals("Autore 2", book.getAuthor());
+        assertEquals(1998, book.getPublicationYear());
+        assertEquals("Genere 0", book.getGenre());
+        assertNull(catalog.find("ISBN2997").orElseThrow().getGenre());
+        assertFalse(catalog.find("ISBN3000").isPresent());
+        assertEquals(1, catalog.findByTitle("TITOLO È 2999").size());
+        assertEquals(2000, catalog.countByGenre().values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * Testa: aggiunte, modifiche e rimozioni restano fuori heap; i record rimossi spariscono da ricerche
+     * e scansioni e la compattazione li recupera senza perdere i libri vivi.
+     */
+    @Test
+    void testPutERemove_recordRimossiECompattazione() {
+        // Arrange
+        OffHeapCatalog catalog = new OffHeapCatalog(256);
+        for (int i = 0; i < 100; i++) {
+            catalog.append(new Book.BookBuilder("ISBN" + i, "Titolo " + i, "Autore " + i).build());
+        }
+
+        // Act
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i += 2) {
+                catalog.put(new Book.BookBuilder("ISBN" + i, "Nuovo titolo " + i + " giro " + round, "Autore " + i).build());
+            }
+        }
+        for (int i = 1; i < 100; i += 2) {
+            assertTrue(catalog.remove("ISBN" + i));
+        }
+        catalog.put(new Book.BookBuilder("ISBN1", "Ritorno", "Autore 1").build());
+
+        // Assert
+        assertFalse(catalog.remove("ISBN3"), "Un libro già rimosso non si rimuove due volte.");
+        assertFalse(catalog.contains("ISBN3"));
+        assertFalse(catalog.find("ISBN3").isPresent());
+        assertEquals(51, catalog.size());
+        assertEquals("Nuovo titolo 42 giro 4", catalog.find("ISBN42").orElseThrow().getTitle());
+        assertEquals("Ritorno", catalog.find("ISBN1").orElseThrow().getTitle());
+        assertEquals(50, catalog.findByTitle("GIRO 4").size());
+        assertTrue(catalog.findByTitle("giro 3").isEmpty());
+        List<String> isbns = new ArrayList<>();
+        catalog.books().forEachRemaining(book -> isbns.add(book.getIsbn()));
+        assertEquals(51, isbns.size());
+        assertEquals("ISBN1", isbns.get(50), "Il libro modificato per ultimo è in fondo alle scansioni.");
+        assertTrue(catalog.allocatedBytes() < 64 * 1024, "I record rimossi devono essere stati compattati.");
+    }
+
+    /**
+     * Testa: le ricerche senza distinzione tra maiuscole e minuscole usano {@link String#toLowerCase()},
+     * come quelle sulla libreria nell'heap, anche per i caratteri che diventano più di uno.
+     */
+    @Test
+    void testFindByTitle_stessaFormaDiRicercaDellHeap() {
+        // Arrange
+        Book libro = new Book.BookBuilder("ISBN1", "Guida di İzmir", "Orhan Pamuk").build();
+        OffHeapCatalog catalog = new OffHeapCatalog(256);
+        catalog.append(libro);
+
+        // Act
+        List<Book> trovati = catalog.findByTitle("İzmir");
+
+        // Assert
+        assertTrue(libro.getSearchTitle().contains("İzmir".toLowerCase()), "Nell'heap il libro viene trovato.");
+        assertEquals(Arrays.asList(libro), trovati);
+    }
+
+    /**
+     * Testa: la ricerca fonetica usa i codici salvati nei record e confronta parole intere,
+     * quindi un codice che è solo l'inizio di un altro non basta.
+     */
+    @Test
+    void testFindByAuthorSound_codiciSalvatiNeiRecord() {
+        // Arrange
+        Book fuMattia = new Book.BookBuilder("ISBN1", "Il fu Mattia Pascal", "Luigi Pirandello").build();
+        Book altro = new Book.BookBuilder("ISBN2", "Altro", "Mario Pirandellone").build();
+        Book delitto = new Book.BookBuilder("ISBN3", "Delitto e castigo", "Dostoevskij").build();
+        Book anonimo = new Book.BookBuilder("ISBN4", "Senza autore", null).build();
+        OffHeapCatalog catalog = new OffHeapCatalog(256);
+        catalog.append(fuMattia);
+        catalog.append(altro);
+        catalog.append(delitto);
+        catalog.append(anonimo);
+
+        // Act
+        List<Book> pirandello = catalog.findByAuthorSound(PhoneticEncoder.encodeWords("Pirandelo"));
+        List<Book> dostoevskij = catalog.findByAuthorSound(PhoneticEncoder.encodeWords("Dostoyevsky"));
+
+        // Assert
+        assertEquals(Arrays.asList(fuMattia), pirandello);
+        assertEquals(Arrays.asList(delitto), dostoevskij);
+        assertTrue(catalog.findByAuthorSound(PhoneticEncoder.encodeWords("Luigi Dostoevskij")).isEmpty());
+        assertEquals(anonimo, catalog.find("ISBN4").get(), "Un record senza autore resta leggibile.");
+    }
+}
@@ -0,0 +1,68 @@
+package com.msan.libmanagementcli.service;
+
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark (non eseguito dai test) della ricerca per rilevanza con WAND rispetto alla valutazione
+ * di tutti i libri che contengono almeno una parola, su titoli con parole a frequenza sbilanciata.
+ * <p>
+ * Esecuzione: {@code java -cp target/classes:target/test-classes com.msan.libmanagementcli.service.RankedSearchBenchmark [libri]}
+ */
+public class RankedSearchBenchmark {
+
+    private static final int DEFAULT_BOOKS = 1_000_000;
+    private static final int VOCABULARY = 20_000;
+    private static final int QUERIES = 200;
+    private static final int TOP_K = 10;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+        Random random = new Random(7);
+        List<Book> books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(6);
+            for (int w = 0; w < length; w++) {
+                title.append(word(random)).append(' ');
+            }
+            books.add(new Book.BookBuilder("978" + (1_000_000_000L + i), title.toString(), "Autore " + word(random))
+                    .genre("genere" + random.nextInt(30)).build());
+        }
+        long start = System.nanoTime();
+        RankedSearchIndex index = RankedSearchIndex.build(books);
+        System.out.printf("Indice: %d libri, %d parole in %d ms%n", index.size(), index.termCount(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        // Ricerche di 2-3 parole: una molto comune e una o due più rare.
+        String[] queries = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = "w1 " + word(random) + " " + (q % 2 == 0 ? word(random) : "");
+        }
+        for (int round = 1; round <= ROUNDS; round++) {
+            long exhaustiveScored = 0;
+            start = System.nanoTime();
+            for (String query : queries) {
+                exhaustiveScored += index.searchExhaustive(query, TOP_K).scoredCount();
+            }
+            double exhaustiveMillis = (System.nanoTime() - start) / 1e6;
+            long wandScored = 0;
+            start = System.nanoTime();
+            for (String query : queries) {
+                wandScored += index.search(query, TOP_K).scoredCount();
+            }
+            double wandMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("Giro %d: completa %.0f ms (%d libri valutati), WAND %.0f ms (%d libri valutati)%n",
+                    round, exhaustiveMillis, exhaustiveScored / QUERIES, wandMillis, wandScored / QUERIES);
+        }
+    }
+
+    /** Parola con distribuzione approssimativamente di Zipf: "w1" è la più frequente. */
+    private static String word(Random random) {
+        return "w" + (int) Math.pow(VOCABULARY, random.nextDouble());
+    }
+}
@@ -0,0 +1,173 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test per la classe {@link RankedSearchIndex}.
+ */
+class RankedSearchIndexTest {
+
+    /**
+     * Testa: a parità di lunghezza dei campi il titolo pesa più dell'autore e l'autore più del genere;
+     * le parole comuni come "il" contano meno di quelle rare.
+     */
+    @Test
+    void testSearch_pesiPerCampoERaritaDelleParole() {
+        // Arrange
+        // Campi della stessa lunghezza, così conta solo il peso del campo.
+        Book nelTitolo = new Book.BookBuilder("ISBN1", "Rosa selvatica", "Mario Rossi").genre("Giallo").build();
+        Book nelGenere = new Book.BookBuilder("ISBN2", "Il giardino", "Anna Bianchi").genre("Rosa").build();
+        Book nellAutore = new Book.BookBuilder("ISBN3", "Poesie varie", "Rosa Balistreri").genre("Poesia").build();
+        Book senza = new Book.BookBuilder("ISBN4", "Il castello", "Franz Kafka").genre("Romanzo").build();
+        RankedSearchIndex index = RankedSearchIndex.build(Arrays.asList(nelTitolo, nelGenere, nellAutore, senza));
+
+        // Act
+        List<ScoredBook> rosa = index.search("Rosa", 10).books();
+        List<ScoredBook> castello = index.search("il CASTELLO", 1).books();
+
+        // Assert
+        assertEquals(Arrays.asList(nelTitolo, nellAutore, nelGenere), books(rosa));
+        assertEquals(Arrays.asList(senza), books(castello));
+        assertTrue(index.search("inesistente", 5).books().isEmpty());
+        assertEquals(Arrays.asList("nome", "idiota", "1984"), RankedSearchIndex.tokenize("Nome, L'idiota 1984"));
+    }
+
+    /**
+     * Testa: su un catalogo casuale WAND restituisce gli stessi primi K della valutazione completa,
+     * valutando per intero meno libri.
+     */
+    @Test
+    void testSearch_comeValutazioneCompletaConMenoLibriValutati() {
+        // Arrange
+        String[] words = {"il", "la", "di", "rosa", "nome", "guerra", "pace", "mare", "notte", "giorno",
+                "storia", "amore", "viaggio", "tempo", "luna", "sole", "vento", "fiume", "montagna", "citta"};
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder title = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int w = 0; w < length; w++) {
+                // Distribuzione sbilanciata: le prime parole sono molto più frequenti.
+                title.append(words[(int) (words.length * Math.pow(random.nextDouble(), 3))]).append(' ');
+            }
+            books.add(new Book.BookBuilder("ISBN" + i, title.toString(), "Autore " + words[random.nextInt(words.length)])
+                    .genre(words[random.nextInt(words.length)]).build());
+        }
+        RankedSearchIndex index = RankedSearchIndex.build(books);
+
+        for (String query : new String[] {"il rosa", "la guerra e la pace", "montagna citta di", "amore"}) {
+            // Act
+            RankedSearchIndex.SearchResult exhaustive = index.searchExhaustive(query, 10);
+            RankedSearchIndex.SearchResult wand = index.search(query, 10);
+
+            // Assert
+            assertEquals(books(exhaustive.books()), books(wand.books()), query);
+            for (int i = 0; i < wand.books().size(); i++) {
+                assertEquals(exhaustive.books().get(i).getScore(), wand.books().get(i).getScore(), 1e-4, query);
+            }
+            assertTrue(wand.scoredCount() <= exhaustive.scoredCount(), query);
+        }
+        int allMatching = index.searchExhaustive("il rosa", 10).scoredCount();
+        assertTrue(index.search("il rosa", 10).scoredCount() < allMatching / 2,
+                "WAND deve saltare la maggior parte dei libri che contengono solo la parola comune.");
+    }
+
+    /**
+     * Testa: a parità di punteggio un libro modificato, che nell'indice sta in fondo,
+     * precede quelli che lo seguono nella libreria, come nella valutazione completa.
+     */
+    @Test
+    void testSearch_paritaNellOrdineDellaLibreriaDopoUnaModifica() {
+        // Arrange
+        Book primo = new Book.BookBuilder("ISBN1", "Rosa", "Autore Uno").build();
+        Book secondo = new Book.BookBuilder("ISBN2", "Rosa", "Autore Due").build();
+        Book terzo = new Book.BookBuilder("ISBN3", "Rosa", "Autore Tre").build();
+        RankedSearchIndex index = RankedSearchIndex.build(Arrays.asList(primo, secondo, terzo));
+        Book primoModificato = new Book.BookBuilder("ISBN1", "Rosa", "Autore Quattro").build();
+
+        // Act
+        index.put(primoModificato);
+        List<ScoredBook> wand = index.search("rosa", 1).books();
+
+        // Assert
+        assertEquals(Arrays.asList(primoModificato), books(wand));
+        assertEquals(books(index.searchExhaustive("rosa", 1).books()), books(wand));
+    }
+
+    /**
+     * Testa: dopo aggiunte, modifiche, cambi di ISBN e rimozioni (anche oltre la soglia di compattazione)
+     * l'indice aggiornato dà gli stessi risultati, nello stesso ordine, di uno costruito da zero.
+     */
+    @Test
+    void testModifiche_comeIndiceRicostruito() {
+        // Arrange
+        String[] words = {"il", "rosa", "nome", "guerra", "pace", "mare", "notte", "giorno"};
+        Random random = new Random(7);
+        List<Book> library = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            library.add(randomBook("ISBN" + i, words, random));
+        }
+        RankedSearchIndex index = RankedSearchIndex.build(library);
+
+        // Act
+        for (int i = 0; i < 8000; i++) {
+            int position = random.nextInt(library.size());
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                index.remove(library.remove(position).getIsbn());
+            } else if (operation == 1) {
+                Book updated = randomBook(library.get(position).getIsbn(), words, random);
+                library.set(position, updated);
+                index.put(updated);
+            } else if (operation == 2) {
+                Book renamed = randomBook("NUOVO" + i, words, random);
+                index.replace(library.set(position, renamed).getIsbn(), renamed);
+            } else {
+                Book added = randomBook("AGGIUNTO" + i, words, random);
+                library.add(added);
+                index.put(added);
+            }
+            if (i % 2000 == 0) {
+                index.search("rosa mare", 5); // Contributi calcolati a metà delle modifiche, poi da aggiornare.
+            }
+        }
+        RankedSearchIndex rebuilt = RankedSearchIndex.build(library);
+
+        // Assert
+        assertEquals(rebuilt.size(), index.size());
+        for (String query : new String[] {"rosa mare", "il", "guerra pace notte"}) {
+            List<ScoredBook> expected = rebuilt.search(query, 20).books();
+            List<ScoredBook> actual = index.search(query, 20).books();
+            assertEquals(books(expected), books(actual), query);
+            assertEquals(books(index.searchExhaustive(query, 20).books()), books(actual), query);
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-4, query);
+            }
+        }
+    }
+
+    private static Book randomBook(String isbn, String[] words, Random random) {
+        StringBuilder title = new StringBuilder();
+        int length = 1 + random.nextInt(4);
+        for (int w = 0; w < length; w++) {
+            title.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        return new Book.BookBuilder(isbn, title.toString(), "Autore " + words[random.nextInt(words.length)]).build();
+    }
+
+    private static List<Book> books(List<ScoredBook> results) {
+        List<Book> books = new ArrayList<>();
+        for (ScoredBook result : results) {
+            books.add(result.getBook());
+        }
+        return books;
+    }
+}
@@ -0,0 +1,97 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.msan.libmanagementcli.dao.FileStorageService;
+import com.msan.libmanagementcli.model.Book;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test per la classe {@link SortedExporter}.
+ * Il limite di memoria molto basso costringe l'esportazione a ordinare tramite run su disco.
+ */
+class SortedExporterTest {
+
+    // --- Setup ---
+    private FileStorageService fileStorage;
+    private LibraryService service;
+    private Path runDirectory;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        LibraryService.resetInstanceForTesting();
+        fileStorage = new FileStorageService();
+        service = LibraryService.getInstance(fileStorage);
+        runDirectory = Files.createDirectory(tempDir.resolve("run"));
+    }
+
+    /**
+     * Testa: l'esportazione scrive i libri nell'ordine della strategia, a parità di autore
+     * nell'ordine della libreria, e non lascia run temporanei.
+     */
+    @Test
+    void testExport_ordinePerAutoreStabile() throws Exception {
+        // Arrange
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            books.add(new Book.BookBuilder(String.format("ISBN%03d", i), "Titolo " + i, "Autore " + (char) ('e' - i % 5)).build());
+        }
+        service.addBooks(books);
+        SortedExporter exporter = new SortedExporter(service, fileStorage, 4, runDirectory);
+        String targetPath = tempDir.resolve("ordinati.csv").toString();
+
+        // Act
+        long exported = exporter.export(targetPath, new SortByAuthorStrategy());
+        List<Book> written = fileStorage.loadBooks(targetPath);
+
+        // Assert
+        List<Book> expected = new ArrayList<>(books);
+        new SortByAuthorStrategy().sort(expected);
+        assertEquals(25, exported);
+        assertEquals(expected.stream().map(Book::getIsbn).collect(Collectors.toList()),
+                written.stream().map(Book::getIsbn).collect(Collectors.toList()));
+        assertEquals("Autore a", written.get(0).getAuthor());
+        try (Stream<Path> files = Files.list(runDirectory)) {
+            assertEquals(0, files.count(), "I run temporanei devono essere eliminati.");
+        }
+    }
+
+    /**
+     * Testa: una strategia scritta come lambda sul solo metodo sort viene ancora accettata,
+     * con l'ordinamento in memoria.
+     */
+    @Test
+    void testExport_strategiaLambda() throws Exception {
+        // Arrange
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            books.add(new Book.BookBuilder(String.format("ISBN%03d", i), "Titolo " + i, "Autore").build());
+        }
+        service.addBooks(books);
+        SortedExporter exporter = new SortedExporter(service, fileStorage, 4, runDirectory);
+        String targetPath = tempDir.resolve("inversi.csv").toString();
+        SortStrategy perIsbnDecrescente = daOrdinare -> daOrdinare.sort(
+                java.util.Comparator.comparing(Book::getIsbn).reversed());
+
+        // Act
+        long exported = exporter.export(targetPath, perIsbnDecrescente);
+        List<Book> written = fileStorage.loadBooks(targetPath);
+
+        // Assert
+        assertEquals(10, exported);
+        assertEquals("ISBN009", written.get(0).getIsbn());
+        assertEquals("ISBN000", written.get(9).getIsbn());
+    }
+}
@@ -0,0 +1,119 @@
+package com.msan.libmanagementcli.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.msan.libmanagementcli.dao.DeltaStorageService;
+import com.msan.libmanagementcli.dao.StorageService;
+import com.msan.libmanagementcli.exceptions.LibraryException;
+import com.msan.libmanagementcli.model.Book;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Test per la classe {@link WriteBehindPersister}.
+ * Verifica l'accorpamento delle modifiche e il salvataggio forzato.
+ */
+class WriteBehindPersisterTest {
+
+    // --- Setup ---
+    private static final String PERCORSO_TEST = "libreria_write_behind.csv";
+    private StorageService mockStorage;
+    private LibraryService service;
+    private WriteBehindPersister persister;
+
+    @BeforeEach
+    void setUp() throws LibraryException {
+        LibraryService.resetInstanceForTesting();
+        mockStorage = mock(StorageService.class);
+        service = LibraryService.getInstance(mockStorage);
+        service.loadLibrary(PERCORSO_TEST);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (persister != null) {
+            persister.close();
+        }
+    }
+
+    /**
+     * Testa che più modifiche ravvicinate producano un solo salvataggio con tutti i libri.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testModificheRavvicinate_vengonoAccorpate() throws Exception {
+        persister = new WriteBehindPersister(service, 100, 2000);
+        persister.start();
+
+        for (int i = 0; i < 5; i++) {
+            service.addItem(new Book.BookBuilder("ISBN00" + i, "Titolo " + i, "Autore").build());
+        }
+        long deadline = System.currentTimeMillis() + 3000;
+        while (persister.getCompletedSaves() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        ArgumentCaptor<List<Book>> listCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mockStorage, times(1)).saveBooks(listCaptor.capture(), eq(PERCORSO_TEST));
+        assertEquals(5, listCaptor.getValue().size());
+        assertFalse(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa che flush salvi subito le modifiche in sospeso, senza attendere la finestra.
+     */
+    @Test
+    void testFlush_salvaModificheInSospeso() throws Exception {
+        persister = new WriteBehindPersister(service, 60_000, 60_000);
+        persister.start();
+        service.addItem(new Book.BookBuilder("ISBN001", "Titolo", "Autore").build());
+        assertTrue(service.hasUnsavedChanges());
+
+        assertTrue(persister.flush());
+
+        verify(mockStorage).saveBooks(anyList(), eq(PERCORSO_TEST));
+        assertFalse(service.hasUnsavedChanges());
+    }
+
+    /**
+     * Testa che con uno storage incrementale vengano scritte solo le modifiche, senza riscrivere il file.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_conStorageIncrementale_salvaSoloLeModifiche() throws Exception {
+        // Arrange
+        LibraryService.resetInstanceForTesting();
+        DeltaStorageService deltaStorage = mock(DeltaStorageService.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Book>>getArgument(1).accept(new Book.BookBuilder("ISBN000", "Esistente", "Autore").build());
+            return null;
+        }).when(deltaStorage).loadBooks(eq(PERCORSO_TEST), any());
+        service = LibraryService.getInstance(deltaStorage);
+        service.loadLibrary(PERCORSO_TEST);
+        persister = new WriteBehindPersister(service, 60_000, 60_000);
+        persister.start();
+        service.addItem(new Book.BookBuilder("ISBN001", "Titolo", "Autore").build());
+        service.removeItemByIsbn("ISBN000");
+
+        // Act
+        assertTrue(persister.flush());
+
+        // Assert
+        ArgumentCaptor<List<Book>> changedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Set<String>> removedCaptor = ArgumentCaptor.forClass(Set.class);
+        verify(deltaStorage).saveChanges(changedCaptor.capture(), removedCaptor.capture(), eq(PERCORSO_TEST));
+        verify(deltaStorage, never()).saveBooks(anyList(), anyString());
+        assertEquals("ISBN001", changedCaptor.getValue().get(0).getIsbn());
+        assertEquals(Collections.singleton("ISBN000"), removedCaptor.getValue());
+        assertFalse(service.hasUnsavedChanges());
+    }
+}
@@ -0,0 +1,61 @@
+package com.msan.libmanagementcli.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Test per la classe {@link ExternalSorter}.
+ */
+class ExternalSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Testa: con pochi run per fusione l'ordinamento passa per più fusioni intermedie,
+     * resta stabile e alla chiusura non lascia file temporanei.
+     */
+    @Test
+    void testSortedIterator_fusioniIntermedieStabili() throws IOException {
+        // Arrange
+        Comparator<String> byKey = Comparator.comparing(line -> line.substring(0, line.indexOf(':')));
+        List<String> lines = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            lines.add(String.format("%03d:%d", random.nextInt(100), i));
+        }
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort(byKey);
+
+        // Act
+        List<String> result = new ArrayList<>();
+        int runs;
+        try (ExternalSorter<String> sorter = new ExternalSorter<>(byKey, Function.identity(), Function.identity(), 7, tempDir, 3)) {
+            for (String line : lines) {
+                sorter.add(line);
+            }
+            runs = sorter.getRunCount();
+            Iterator<String> sorted = sorter.sortedIterator();
+            sorted.forEachRemaining(result::add);
+        }
+
+        // Assert
+        assertTrue(runs > 9, "Il limite di memoria dovrebbe produrre molti run.");
+        assertEquals(expected, result, "L'ordine deve essere quello di un ordinamento stabile in memoria.");
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count(), "I run temporanei devono essere eliminati.");
+        }
+    }
+}
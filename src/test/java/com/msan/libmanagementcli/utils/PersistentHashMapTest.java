@@ -0,0 +1,123 @@
+package com.msan.libmanagementcli.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Test per la classe {@link PersistentHashMap}.
+ */
+class PersistentHashMapTest {
+
+    /**
+     * Chiave con hash costante, per forzare i nodi di collisione.
+     */
+    private static final class CollidingKey {
+        private final String name;
+
+        CollidingKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+
+    /**
+     * Testa: con inserimenti e rimozioni casuali ogni versione si comporta come una HashMap
+     * e le versioni precedenti restano invariate.
+     */
+    @Test
+    void testOperazioniCasuali_versioniPrecedentiInvariate() {
+        // Arrange
+        Random random = new Random(42);
+        PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+        Map<String, Integer> expected = new HashMap<>();
+        List<PersistentHashMap<String, Integer>> versions = new ArrayList<>();
+        List<Map<String, Integer>> expectedVersions = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 20_000; i++) {
+            String key = "ISBN" + random.nextInt(3000);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+            if (i % 2000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+
+        // Assert
+        versions.add(map);
+        expectedVersions.add(expected);
+        for (int v = 0; v < versions.size(); v++) {
+            PersistentHashMap<String, Integer> version = versions.get(v);
+            Map<String, Integer> expectedVersion = expectedVersions.get(v);
+            assertEquals(expectedVersion.size(), version.size());
+            Map<String, Integer> contents = new HashMap<>();
+            version.forEach(contents::put);
+            assertEquals(expectedVersion, contents);
+            for (int n = 0; n < 3000; n++) {
+                assertEquals(expectedVersion.get("ISBN" + n), version.get("ISBN" + n));
+            }
+        }
+    }
+
+    /**
+     * Testa: il builder produce la stessa mappa degli inserimenti singoli e non è riutilizzabile;
+     * le chiavi con lo stesso hash convivono e si rimuovono correttamente.
+     */
+    @Test
+    void testBuilderECollisioni() {
+        // Arrange
+        PersistentHashMap.Builder<Integer, String> builder = PersistentHashMap.builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.put(i, "v" + i);
+        }
+        builder.put(5, "sostituito");
+
+        // Act
+        PersistentHashMap<Integer, String> built = builder.build();
+        PersistentHashMap<Integer, String> modified = built.plus(5, "nuovo").minus(6);
+        PersistentHashMap<CollidingKey, String> collisions = PersistentHashMap.<CollidingKey, String>empty()
+                .plus(new CollidingKey("a"), "A")
+                .plus(new CollidingKey("b"), "B")
+                .plus(new CollidingKey("c"), "C");
+
+        // Assert
+        assertEquals(10_000, built.size());
+        assertEquals("sostituito", built.get(5));
+        assertEquals("v6", built.get(6));
+        assertEquals("nuovo", modified.get(5));
+        assertNull(modified.get(6));
+        assertEquals(9_999, modified.size());
+        assertThrows(IllegalStateException.class, () -> builder.put(1, "x"));
+        assertSame(built, built.minus(20_000));
+
+        assertEquals(3, collisions.size());
+        assertEquals("B", collisions.get(new CollidingKey("b")));
+        PersistentHashMap<CollidingKey, String> withoutB = collisions.minus(new CollidingKey("b"));
+        assertEquals(2, withoutB.size());
+        assertNull(withoutB.get(new CollidingKey("b")));
+        assertEquals("C", withoutB.get(new CollidingKey("c")));
+        assertEquals("B", collisions.get(new CollidingKey("b")));
+        assertEquals(0, withoutB.minus(new CollidingKey("a")).minus(new CollidingKey("c")).size());
+    }
+}
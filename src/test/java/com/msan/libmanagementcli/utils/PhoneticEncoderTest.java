@@ -0,0 +1,54 @@
+package com.msan.libmanagementcli.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test per la classe {@link PhoneticEncoder}.
+ */
+class PhoneticEncoderTest {
+
+    /**
+     * Testa: le varianti di grafia e traslitterazione dello stesso nome hanno lo stesso codice.
+     */
+    @Test
+    void testEncode_variantiConLoStessoCodice() {
+        // Act & Assert
+        assertEquals(PhoneticEncoder.encode("Pirandello"), PhoneticEncoder.encode("Pirandelo"));
+        assertEquals(PhoneticEncoder.encode("Dostoevskij"), PhoneticEncoder.encode("Dostoyevsky"));
+        assertEquals(PhoneticEncoder.encode("Dostoevskij"), PhoneticEncoder.encode("Dostojevskij"));
+        assertEquals(PhoneticEncoder.encode("Tolstoj"), PhoneticEncoder.encode("Tolstoy"));
+        assertEquals(PhoneticEncoder.encode("Boccaccio"), PhoneticEncoder.encode("Bocaccio"));
+        assertEquals(PhoneticEncoder.encode("Sciascia"), PhoneticEncoder.encode("Shasha"));
+        assertEquals(PhoneticEncoder.encode("Čechov"), PhoneticEncoder.encode("cechov"));
+        assertEquals(PhoneticEncoder.encode("Walter"), PhoneticEncoder.encode("Valter"));
+        assertEquals("", PhoneticEncoder.encode("-"));
+    }
+
+    /**
+     * Testa: nomi che suonano diversi hanno codici diversi; c e g dolci e dure sono distinte.
+     */
+    @Test
+    void testEncode_nomiDiversiConCodiciDiversi() {
+        // Act & Assert
+        assertNotEquals(PhoneticEncoder.encode("Pirandello"), PhoneticEncoder.encode("Pirelli"));
+        assertNotEquals(PhoneticEncoder.encode("Cesare"), PhoneticEncoder.encode("Casare"));
+        assertNotEquals(PhoneticEncoder.encode("Gino"), PhoneticEncoder.encode("Ghino"));
+        assertNotEquals(PhoneticEncoder.encode("Eco"), PhoneticEncoder.encode("Calvino"));
+    }
+
+    /**
+     * Testa: le parole di un nome vengono codificate una volta ciascuna, ignorando iniziali e punteggiatura.
+     */
+    @Test
+    void testEncodeWords_paroleDistinteSenzaIniziali() {
+        // Act & Assert
+        assertEquals(Arrays.asList(PhoneticEncoder.encode("Tolkien")), PhoneticEncoder.encodeWords("J. R. R. Tolkien"));
+        assertEquals(Arrays.asList(PhoneticEncoder.encode("Luigi"), PhoneticEncoder.encode("Pirandello")),
+                PhoneticEncoder.encodeWords("Luigi Pirandello, Luigi"));
+        assertEquals(Collections.emptyList(), PhoneticEncoder.encodeWords(null));
+    }
+}